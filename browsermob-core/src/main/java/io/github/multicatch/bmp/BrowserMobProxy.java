@@ -4,10 +4,19 @@ import io.github.multicatch.bmp.core.har.HarPageTimings;
 import io.github.multicatch.bmp.mitm.manager.ImpersonatingMitmManager;
 import io.github.multicatch.bmp.proxy.dns.ChainedHostResolver;
 import io.github.multicatch.bmp.core.har.Har;
+import io.github.multicatch.bmp.core.har.HarCaptureLimits;
+import io.github.multicatch.bmp.core.har.HarEntry;
+import io.github.multicatch.bmp.filters.AggregationPredicate;
 import io.github.multicatch.bmp.filters.RequestFilter;
 import io.github.multicatch.bmp.filters.ResponseFilter;
+import io.github.multicatch.bmp.filters.StreamingRequestFilter;
+import io.github.multicatch.bmp.filters.StreamingResponseFilter;
 import io.github.multicatch.bmp.mitm.TrustSource;
 import io.github.multicatch.bmp.proxy.BlacklistEntry;
+import io.github.multicatch.bmp.proxy.FilterRule;
+import io.github.multicatch.bmp.proxy.CapturePolicy;
+import io.github.multicatch.bmp.proxy.NetworkConditions;
+import io.github.multicatch.bmp.proxy.FilterLatency;
 import io.github.multicatch.bmp.proxy.CaptureType;
 import io.github.multicatch.bmp.proxy.auth.AuthType;
 import io.github.multicatch.bmp.proxy.dns.AdvancedHostResolver;
@@ -18,6 +27,7 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -104,12 +114,26 @@ public interface BrowserMobProxy {
     InetAddress getServerBindAddress();
 
     /**
-     * Retrieves the current HAR.
+     * Retrieves the current HAR. Request and response data is added to HAR entries by background threads, so this method waits for
+     * the entries captured so far to be fully populated, for at most the HAR capture timeout (see {@link #setHarCaptureTimeout(long, TimeUnit)}).
+     * If the timeout elapses, the HAR is returned with the entries as they are, and the remaining data is added to them later.
      *
      * @return current HAR, or null if HAR capture is not enabled
      */
     Har getHar();
 
+    /**
+     * Retrieves the entries in the current HAR that were completed after the entry with the specified sequence number, in the order
+     * they were completed. Each completed entry is assigned a monotonically increasing sequence number (see {@link HarEntry#getSequence()}),
+     * so polling clients can pass the sequence number of the last entry they received to retrieve only new entries. Sequence numbers
+     * continue to increase when a new HAR is started with {@link #newHar()}.
+     *
+     * @param sequence sequence number of the last entry previously retrieved, or 0 to retrieve all completed entries
+     * @param limit maximum number of entries to return, or 0 for no limit
+     * @return completed entries with a sequence number greater than the specified sequence number, or an empty list if HAR capture is not enabled
+     */
+    List<HarEntry> getHarEntriesSince(long sequence, int limit);
+
     /**
      * Starts a new HAR file with the default page name (see {@link #newPage()}. Enables HAR capture if it was not previously enabled.
      *
@@ -134,6 +158,18 @@ public interface BrowserMobProxy {
      */
     Har newHar(String initialPageRef, String initialPageTitle);
 
+    /**
+     * Starts a new HAR file with the specified page name and page title that retains only the most recent entries allowed by the
+     * specified limits. When a limit is exceeded, the oldest entries are evicted, and pages with no remaining entries are removed.
+     * Enables HAR capture if it was not previously enabled.
+     *
+     * @param initialPageRef initial page name of the new HAR file
+     * @param initialPageTitle initial page title of the new HAR file
+     * @param limits limits on the number of entries and the amount of content to retain; null to retain all entries
+     * @return existing HAR file, or null if none exists or HAR capture was disabled
+     */
+    Har newHar(String initialPageRef, String initialPageTitle, HarCaptureLimits limits);
+
     /**
      * Sets the data types that will be captured in the HAR file for future requests. Replaces any existing capture types with the specified
      * capture types. A null or empty set will not disable HAR capture, but will disable collection of
@@ -193,6 +229,79 @@ public interface BrowserMobProxy {
      */
     void disableHarCaptureTypes(CaptureType... captureTypes);
 
+    /**
+     * Adds a HAR capture policy. Policies are evaluated in the order they were added, and the first policy that matches a request's
+     * URL and HTTP method determines the data captured for that request, replacing the capture types set by
+     * {@link #setHarCaptureTypes(Set)}. Requests that do not match any policy are captured using the HAR capture types.
+     * See {@link CapturePolicy} for details.
+     *
+     * @param capturePolicy policy to add
+     */
+    void addCapturePolicy(CapturePolicy capturePolicy);
+
+    /**
+     * Replaces any existing HAR capture policies with the specified policies. Policies will be evaluated in the order specified
+     * by the List.
+     *
+     * @param capturePolicies new capture policies
+     */
+    void setCapturePolicies(List<CapturePolicy> capturePolicies);
+
+    /**
+     * Returns the HAR capture policies currently in effect, in the order in which they are evaluated.
+     *
+     * @return capture policies, or an empty list if none exist
+     */
+    List<CapturePolicy> getCapturePolicies();
+
+    /**
+     * Removes all HAR capture policies.
+     */
+    void clearCapturePolicies();
+
+    /**
+     * Enables or disables filter latency statistics. While enabled, the proxy records the time every filter spends in each
+     * {@link org.littleshoot.proxy.HttpFilters} callback, keyed by filter class and callback. Statistics are not recorded for requests
+     * that were already in progress when statistics were enabled. Disabling statistics does not discard the statistics recorded so far.
+     *
+     * @param enabled true to record filter latency statistics
+     */
+    void setFilterLatencyStatsEnabled(boolean enabled);
+
+    /**
+     * @return true if filter latency statistics are being recorded
+     */
+    boolean isFilterLatencyStatsEnabled();
+
+    /**
+     * Returns the latency statistics for every filter class and callback that has been invoked while filter latency statistics were
+     * enabled. See {@link #setFilterLatencyStatsEnabled(boolean)}.
+     *
+     * @return filter latency statistics, or an empty list if none have been recorded
+     */
+    List<FilterLatency> getFilterLatencyStats();
+
+    /**
+     * Discards all recorded filter latency statistics.
+     */
+    void resetFilterLatencyStats();
+
+    /**
+     * Emulates the latency, packet loss and bandwidth of a network, such as a mobile network. See {@link NetworkConditions} for
+     * details; presets for common networks are available from {@link NetworkConditions#getPreset(String)}. The profile may be changed
+     * while the proxy is running and applies to all new requests. Connections to upstream servers that were opened under a previous
+     * profile are no longer bandwidth-limited. The profile is applied in addition to {@link #setLatency(long, TimeUnit)},
+     * {@link #setReadBandwidthLimit(long)} and {@link #setWriteBandwidthLimit(long)}.
+     *
+     * @param networkConditions network condition profile to emulate, or null to stop emulating network conditions
+     */
+    void setNetworkConditions(NetworkConditions networkConditions);
+
+    /**
+     * @return the network condition profile being emulated, or null if none
+     */
+    NetworkConditions getNetworkConditions();
+
     /**
      * Starts a new HAR page using the default page naming convention. The default page naming convention is "Page #", where "#" resets to 1
      * every time {@link #newHar()} or {@link #newHar(String)} is called, and increments on every subsequent call to {@link #newPage()} or
@@ -286,6 +395,15 @@ public interface BrowserMobProxy {
      */
     void setIdleConnectionTimeout(int idleConnectionTimeout, TimeUnit timeUnit);
 
+    /**
+     * Maximum amount of time {@link #getHar()}, {@link #newHar()}, {@link #newPage()} and {@link #endHar()} wait for the HAR entries
+     * captured so far to be fully populated before returning the HAR. The default value is 5 seconds.
+     *
+     * @param harCaptureTimeout maximum time to wait for HAR entries to be populated, or 0 to return the HAR without waiting
+     * @param timeUnit TimeUnit for the harCaptureTimeout
+     */
+    void setHarCaptureTimeout(long harCaptureTimeout, TimeUnit timeUnit);
+
     /**
      * Maximum amount of time to wait for an HTTP response from the remote server after the request has been sent in its entirety. The HTTP
      * request must complete within the specified time. If the proxy has not yet begun to forward the response to the client, the proxy
@@ -440,6 +558,34 @@ public interface BrowserMobProxy {
      */
     void clearBlacklist();
 
+    /**
+     * Adds declarative filter rules, which are evaluated after any existing rules. Every rule matching a request applies its actions,
+     * in the order the rules were added. Rules are compiled into an index, so they are considerably cheaper to evaluate than
+     * scripted or custom filters that perform the same actions. See {@link io.github.multicatch.bmp.filters.RuleFilter}.
+     *
+     * @param rules rules to add, in evaluation order
+     */
+    void addFilterRules(Collection<FilterRule> rules);
+
+    /**
+     * Replaces any existing filter rules with the specified rules.
+     *
+     * @param rules new filter rules, in evaluation order
+     */
+    void setFilterRules(Collection<FilterRule> rules);
+
+    /**
+     * Returns all filter rules currently in effect, in evaluation order.
+     *
+     * @return filter rules, or an empty list if none exist
+     */
+    List<FilterRule> getFilterRules();
+
+    /**
+     * Removes all filter rules.
+     */
+    void clearFilterRules();
+
     /**
      * Whitelists URLs matching the specified regular expression patterns. Replaces any existing whitelist.
      * The urlPattern matches the full URL of the request, including scheme, host, and port, path, and query parameters
@@ -601,6 +747,24 @@ public interface BrowserMobProxy {
      */
     void addResponseFilter(ResponseFilter filter);
 
+    /**
+     * Adds a new ResponseFilter that only needs to see the contents of the responses matching the aggregation predicate. Other
+     * responses are not buffered for this filter, and the filter receives null contents for them. See
+     * {@link io.github.multicatch.bmp.filters.AggregationGatedFiltersSource} for details.
+     *
+     * @param filter filter instance
+     * @param aggregationPredicate predicate matching the responses whose contents the filter needs
+     */
+    void addResponseFilter(ResponseFilter filter, AggregationPredicate aggregationPredicate);
+
+    /**
+     * Adds a new StreamingResponseFilter that can be used to examine and manipulate the response, one chunk at a time, as it is sent
+     * to the client. Unlike a {@link ResponseFilter}, a streaming filter does not buffer the entire response before it is filtered.
+     *
+     * @param filter filter instance
+     */
+    void addStreamingResponseFilter(StreamingResponseFilter filter);
+
     /**
      * Adds a new RequestFilter that can be used to examine and manipulate the request before sending it to the server.
      *
@@ -608,6 +772,24 @@ public interface BrowserMobProxy {
      */
     void addRequestFilter(RequestFilter filter);
 
+    /**
+     * Adds a new RequestFilter that only needs to see the contents of the requests matching the aggregation predicate. Other
+     * requests are not buffered for this filter, and the filter receives null contents for them. See
+     * {@link io.github.multicatch.bmp.filters.AggregationGatedFiltersSource} for details.
+     *
+     * @param filter filter instance
+     * @param aggregationPredicate predicate matching the requests whose contents the filter needs
+     */
+    void addRequestFilter(RequestFilter filter, AggregationPredicate aggregationPredicate);
+
+    /**
+     * Adds a new StreamingRequestFilter that can be used to examine and manipulate the request body, one chunk at a time, as it is sent
+     * to the server. Unlike a {@link RequestFilter}, a streaming filter does not buffer the entire request before it is filtered.
+     *
+     * @param filter filter instance
+     */
+    void addStreamingRequestFilter(StreamingRequestFilter filter);
+
     /**
      * Completely disables MITM for this proxy server. The proxy will no longer intercept HTTPS requests, but they will
      * still be pass-through proxied. This option must be set before the proxy is started; otherwise an IllegalStateException will be thrown.
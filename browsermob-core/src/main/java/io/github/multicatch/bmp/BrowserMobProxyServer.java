@@ -11,18 +11,29 @@ import io.netty.handler.codec.http.HttpObject;
 import io.netty.handler.codec.http.HttpRequest;
 import io.github.multicatch.bmp.client.ClientUtil;
 import io.github.multicatch.bmp.core.har.Har;
+import io.github.multicatch.bmp.core.har.HarCaptureLimits;
+import io.github.multicatch.bmp.core.har.HarContentStore;
+import io.github.multicatch.bmp.core.har.HarEntry;
 import io.github.multicatch.bmp.core.har.HarLog;
 import io.github.multicatch.bmp.core.har.HarNameVersion;
 import io.github.multicatch.bmp.core.har.HarPage;
 import io.github.multicatch.bmp.filters.AddHeadersFilter;
+import io.github.multicatch.bmp.filters.AggregationGatedFiltersSource;
+import io.github.multicatch.bmp.filters.AggregationPredicate;
 import io.github.multicatch.bmp.filters.AutoBasicAuthFilter;
 import io.github.multicatch.bmp.filters.BlacklistFilter;
 import io.github.multicatch.bmp.filters.BrowserMobHttpFilterChain;
 import io.github.multicatch.bmp.filters.HarCaptureFilter;
 import io.github.multicatch.bmp.filters.HttpConnectHarCaptureFilter;
+import io.github.multicatch.bmp.filters.RequestContextAwareFiltersSource;
+import io.github.multicatch.bmp.filters.support.FilterLatencyRecorder;
+import io.github.multicatch.bmp.filters.support.HarCaptureExecutor;
+import io.github.multicatch.bmp.filters.support.NetworkConditionsShaper;
+import io.github.multicatch.bmp.filters.support.RequestContext;
 import io.github.multicatch.bmp.filters.HttpsHostCaptureFilter;
 import io.github.multicatch.bmp.filters.HttpsOriginalHostCaptureFilter;
 import io.github.multicatch.bmp.filters.LatencyFilter;
+import io.github.multicatch.bmp.filters.NetworkConditionsFilter;
 import io.github.multicatch.bmp.filters.RegisterRequestFilter;
 import io.github.multicatch.bmp.filters.RequestFilter;
 import io.github.multicatch.bmp.filters.RequestFilterAdapter;
@@ -30,6 +41,11 @@ import io.github.multicatch.bmp.filters.ResolvedHostnameCacheFilter;
 import io.github.multicatch.bmp.filters.ResponseFilter;
 import io.github.multicatch.bmp.filters.ResponseFilterAdapter;
 import io.github.multicatch.bmp.filters.RewriteUrlFilter;
+import io.github.multicatch.bmp.filters.RuleFilter;
+import io.github.multicatch.bmp.filters.StreamingRequestFilter;
+import io.github.multicatch.bmp.filters.StreamingRequestFilterAdapter;
+import io.github.multicatch.bmp.filters.StreamingResponseFilter;
+import io.github.multicatch.bmp.filters.StreamingResponseFilterAdapter;
 import io.github.multicatch.bmp.filters.UnregisterRequestFilter;
 import io.github.multicatch.bmp.filters.WhitelistFilter;
 import io.github.multicatch.bmp.mitm.KeyStoreFileCertificateSource;
@@ -38,9 +54,17 @@ import io.github.multicatch.bmp.mitm.keys.ECKeyGenerator;
 import io.github.multicatch.bmp.mitm.keys.RSAKeyGenerator;
 import io.github.multicatch.bmp.mitm.manager.ImpersonatingMitmManager;
 import io.github.multicatch.bmp.proxy.ActivityMonitor;
+import io.github.multicatch.bmp.proxy.Blacklist;
 import io.github.multicatch.bmp.proxy.BlacklistEntry;
+import io.github.multicatch.bmp.proxy.FilterRule;
+import io.github.multicatch.bmp.proxy.FilterRules;
+import io.github.multicatch.bmp.proxy.CapturePolicies;
+import io.github.multicatch.bmp.proxy.CapturePolicy;
 import io.github.multicatch.bmp.proxy.CaptureType;
+import io.github.multicatch.bmp.proxy.FilterLatency;
+import io.github.multicatch.bmp.proxy.NetworkConditions;
 import io.github.multicatch.bmp.proxy.RewriteRule;
+import io.github.multicatch.bmp.proxy.UrlRewriter;
 import io.github.multicatch.bmp.proxy.Whitelist;
 import io.github.multicatch.bmp.proxy.auth.AuthType;
 import io.github.multicatch.bmp.proxy.dns.AdvancedHostResolver;
@@ -91,6 +115,11 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
 
     private static final HarNameVersion HAR_CREATOR_VERSION = new HarNameVersion("BrowserMob Proxy", BrowserMobProxyUtil.getVersionString());
 
+    /**
+     * Default maximum time to wait for pending HAR entries to be populated when a HAR is returned.
+     */
+    private static final int DEFAULT_HAR_CAPTURE_TIMEOUT_SECONDS = 5;
+
     /* Default MITM resources */
     private static final String RSA_KEYSTORE_RESOURCE = "/sslSupport/ca-keystore-rsa.p12";
     private static final String EC_KEYSTORE_RESOURCE = "/sslSupport/ca-keystore-ec.p12";
@@ -133,16 +162,49 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
      */
     private final List<HttpFiltersSource> filterFactories = new CopyOnWriteArrayList<>();
 
+    /**
+     * Read-only view of {@link #filterFactories}, so that filter factories are only added through the methods that invalidate
+     * {@link #compiledAggregationPredicates}.
+     */
+    private final List<HttpFiltersSource> unmodifiableFilterFactories = Collections.unmodifiableList(filterFactories);
+
+    /**
+     * The aggregation predicates combined from the filter factories, or null if filter factories have been added since they were combined.
+     */
+    private volatile AggregationPredicates compiledAggregationPredicates;
+
     /**
      * List of rejected URL patterns
      */
     private volatile Collection<BlacklistEntry> blacklistEntries = new CopyOnWriteArrayList<>();
 
+    /**
+     * The blacklist entries compiled for matching, or null if the entries have been modified since the blacklist was compiled.
+     * Compiled when the first request after a modification is filtered.
+     */
+    private volatile Blacklist compiledBlacklist = Blacklist.EMPTY;
+
     /**
      * List of URLs to rewrite
      */
     private volatile CopyOnWriteArrayList<RewriteRule> rewriteRules = new CopyOnWriteArrayList<>();
 
+    /**
+     * The rewrite rules compiled for matching, or null if the rules have been modified since they were compiled.
+     * Compiled when the first request after a modification is filtered.
+     */
+    private volatile UrlRewriter compiledRewriteRules = UrlRewriter.EMPTY;
+
+    /**
+     * Declarative filter rules, in evaluation order.
+     */
+    private volatile Collection<FilterRule> filterRules = new CopyOnWriteArrayList<>();
+
+    /**
+     * The filter rules compiled for matching, or null if the rules have been modified since they were compiled.
+     */
+    private volatile FilterRules compiledFilterRules = FilterRules.EMPTY;
+
     /**
      * The LittleProxy instance that performs all proxy operations.
      */
@@ -153,10 +215,39 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
      */
     private volatile EnumSet<CaptureType> harCaptureTypes = EnumSet.noneOf(CaptureType.class);
 
+    /**
+     * HAR capture policies, in evaluation order, compiled for matching. Replaced as a whole when policies are modified, so requests
+     * can read the policies without locking.
+     */
+    private volatile CapturePolicies capturePolicies = CapturePolicies.EMPTY;
+
+    /**
+     * Records the time spent in each filter callback while {@link #filterLatencyStatsEnabled} is true.
+     */
+    private final FilterLatencyRecorder filterLatencyRecorder = new FilterLatencyRecorder();
+
+    private volatile boolean filterLatencyStatsEnabled;
+
     /**
      * The current HAR being captured.
      */
     private volatile Har har;
+    /**
+     * Captured response content shared by the entries of this proxy's HARs. Each HAR's references are released when the HAR is
+     * replaced or ended.
+     */
+    private final HarContentStore harContentStore = new HarContentStore();
+
+    /**
+     * Populates HAR entries off the proxy's event loop threads. Worker threads are only started while requests are being captured.
+     */
+    private final HarCaptureExecutor harCaptureExecutor = new HarCaptureExecutor();
+
+    /**
+     * The last sequence number assigned by the most recently ended HAR, so that sequence numbers keep increasing when a new HAR
+     * is started after {@link #endHar()}.
+     */
+    private volatile long endedHarLastSequence;
     /**
      * The current HarPage to which new requests will be associated.
      */
@@ -181,6 +272,11 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
      */
     private volatile ConcurrentMap<String, String> additionalHeaders = new MapMaker().concurrencyLevel(1).makeMap();
 
+    /**
+     * Adds the additionalHeaders to every request. Shared by all requests, and replaced when the additionalHeaders map is replaced.
+     */
+    private volatile AddHeadersFilter addHeadersFilter = new AddHeadersFilter(additionalHeaders);
+
     /**
      * The amount of time to wait while connecting to a server.
      */
@@ -196,6 +292,16 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
      */
     private volatile int latencyMs;
 
+    /**
+     * Maximum time to wait for pending HAR entries to be populated when a HAR is returned, in milliseconds.
+     */
+    private volatile long harCaptureTimeoutMs = TimeUnit.SECONDS.toMillis(DEFAULT_HAR_CAPTURE_TIMEOUT_SECONDS);
+
+    /**
+     * Emulates the current network condition profile. Null when no profile is set.
+     */
+    private volatile NetworkConditionsShaper networkConditionsShaper;
+
     /**
      * Set to true once the HAR capture filter has been added to the filter chain.
      */
@@ -404,6 +510,13 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
     protected void stop(boolean graceful) {
         if (isStarted()) {
             if (stopped.compareAndSet(false, true)) {
+                harCaptureExecutor.shutdown();
+
+                NetworkConditionsShaper shaper = networkConditionsShaper;
+                if (shaper != null) {
+                    shaper.release();
+                }
+
                 if (proxyServer != null) {
                     if (graceful) {
                         proxyServer.stop();
@@ -446,7 +559,31 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
 
     @Override
     public Har getHar() {
-        return har;
+        Har currentHar = har;
+
+        awaitPendingHarEntries();
+
+        return currentHar;
+    }
+
+    /**
+     * Waits for the HAR entries captured so far to be fully populated by the {@link HarCaptureExecutor}, for at most the HAR capture timeout.
+     */
+    private void awaitPendingHarEntries() {
+        long timeoutMs = harCaptureTimeoutMs;
+        if (!harCaptureExecutor.awaitPending(timeoutMs, TimeUnit.MILLISECONDS)) {
+            log.warn("Timed out after {} ms waiting for pending HAR entries to be captured. HAR may be incomplete.", timeoutMs);
+        }
+    }
+
+    @Override
+    public List<HarEntry> getHarEntriesSince(long sequence, int limit) {
+        Har currentHar = har;
+        if (currentHar == null) {
+            return Collections.emptyList();
+        }
+
+        return currentHar.getLog().getCompletedEntriesSince(sequence, limit);
     }
 
     @Override
@@ -461,13 +598,28 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
 
     @Override
     public Har newHar(String initialPageRef, String initialPageTitle) {
-        Har oldHar = getHar();
+        return newHar(initialPageRef, initialPageTitle, HarCaptureLimits.UNLIMITED);
+    }
+
+    @Override
+    public Har newHar(String initialPageRef, String initialPageTitle, HarCaptureLimits limits) {
+        Har oldHar = har;
 
         addHarCaptureFilter();
 
         harPageCount.set(0);
 
-        this.har = new Har(new HarLog(HAR_CREATOR_VERSION));
+        // continue the sequence of the previous HAR, so clients polling for new entries do not miss entries in the new HAR
+        long initialSequence = oldHar != null ? oldHar.getLog().getLastSequence() : endedHarLastSequence;
+
+        this.har = new Har(new HarLog(HAR_CREATOR_VERSION, limits, initialSequence, harContentStore));
+
+        if (oldHar != null) {
+            awaitPendingHarEntries();
+
+            // the old HAR keeps its content, but no longer holds it in the content store
+            oldHar.getLog().releaseStoredContent();
+        }
 
         newPage(initialPageRef, initialPageTitle);
 
@@ -526,6 +678,87 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
         }
     }
 
+    @Override
+    public synchronized void addCapturePolicy(CapturePolicy capturePolicy) {
+        this.capturePolicies = new CapturePolicies(ImmutableList.<CapturePolicy>builder()
+                .addAll(capturePolicies.getPolicies())
+                .add(capturePolicy)
+                .build());
+    }
+
+    @Override
+    public synchronized void setCapturePolicies(List<CapturePolicy> capturePolicies) {
+        this.capturePolicies = capturePolicies == null ? CapturePolicies.EMPTY : new CapturePolicies(capturePolicies);
+    }
+
+    @Override
+    public List<CapturePolicy> getCapturePolicies() {
+        return capturePolicies.getPolicies();
+    }
+
+    @Override
+    public synchronized void clearCapturePolicies() {
+        this.capturePolicies = CapturePolicies.EMPTY;
+    }
+
+    @Override
+    public void setFilterLatencyStatsEnabled(boolean enabled) {
+        this.filterLatencyStatsEnabled = enabled;
+    }
+
+    @Override
+    public boolean isFilterLatencyStatsEnabled() {
+        return filterLatencyStatsEnabled;
+    }
+
+    @Override
+    public List<FilterLatency> getFilterLatencyStats() {
+        return filterLatencyRecorder.getFilterLatencies();
+    }
+
+    @Override
+    public void resetFilterLatencyStats() {
+        filterLatencyRecorder.reset();
+    }
+
+    @Override
+    public synchronized void setNetworkConditions(NetworkConditions networkConditions) {
+        NetworkConditionsShaper oldShaper = this.networkConditionsShaper;
+
+        this.networkConditionsShaper = networkConditions == null ? null : new NetworkConditionsShaper(networkConditions);
+
+        if (oldShaper != null) {
+            oldShaper.release();
+        }
+    }
+
+    @Override
+    public NetworkConditions getNetworkConditions() {
+        NetworkConditionsShaper shaper = networkConditionsShaper;
+        return shaper == null ? null : shaper.getNetworkConditions();
+    }
+
+    /**
+     * Returns the recorder that filter chains use to record filter latency statistics.
+     *
+     * @return the filter latency recorder, or null if filter latency statistics are disabled
+     */
+    public FilterLatencyRecorder getFilterLatencyRecorder() {
+        return filterLatencyStatsEnabled ? filterLatencyRecorder : null;
+    }
+
+    /**
+     * Returns the first capture policy that matches the request, or null if no policy matches.
+     */
+    private CapturePolicy findCapturePolicy(HttpRequest originalRequest, RequestContext requestContext) {
+        CapturePolicies policies = capturePolicies;
+        if (policies.isEmpty()) {
+            return null;
+        }
+
+        return policies.findMatchingPolicy(requestContext.getOriginalUrl().getUrl(), originalRequest.getMethod().name());
+    }
+
     @Override
     public Har newPage() {
         return newPage(null);
@@ -551,6 +784,7 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
             endPage();
 
             // the interface requires newPage() to return the Har as it was immediately after the previous page was ended.
+            awaitPendingHarEntries();
             endOfPageHar = BrowserMobProxyUtil.copyHarThroughPageRef(har, currentPageRef);
         }
 
@@ -572,11 +806,19 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
 
     @Override
     public Har endHar() {
-        Har oldHar = getHar();
+        Har oldHar = har;
 
         // end the page and populate timings
         endPage();
 
+        if (oldHar != null) {
+            awaitPendingHarEntries();
+
+            endedHarLastSequence = oldHar.getLog().getLastSequence();
+
+            oldHar.getLog().releaseStoredContent();
+        }
+
         this.har = null;
 
         return oldHar;
@@ -631,6 +873,7 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
         newHeaders.putAll(headers);
 
         this.additionalHeaders = newHeaders;
+        this.addHeadersFilter = new AddHeadersFilter(newHeaders);
     }
 
     @Override
@@ -697,6 +940,11 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
         }
     }
 
+    @Override
+    public void setHarCaptureTimeout(long harCaptureTimeout, TimeUnit timeUnit) {
+        this.harCaptureTimeoutMs = TimeUnit.MILLISECONDS.convert(harCaptureTimeout, timeUnit);
+    }
+
     @Override
     public void setRequestTimeout(int requestTimeout, TimeUnit timeUnit) {
         //TODO: implement Request Timeouts using LittleProxy. currently this only sets an idle connection timeout, if the idle connection
@@ -707,12 +955,13 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
     }
 
     @Override
-    public void rewriteUrl(String pattern, String replace) {
+    public synchronized void rewriteUrl(String pattern, String replace) {
         rewriteRules.add(new RewriteRule(pattern, replace));
+        compiledRewriteRules = null;
     }
 
     @Override
-    public void rewriteUrls(Map<String, String> rewriteRules) {
+    public synchronized void rewriteUrls(Map<String, String> rewriteRules) {
         List<RewriteRule> newRules = new ArrayList<>(rewriteRules.size());
         for (Map.Entry<String, String> rewriteRule : rewriteRules.entrySet()) {
             RewriteRule newRule = new RewriteRule(rewriteRule.getKey(), rewriteRule.getValue());
@@ -720,26 +969,31 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
         }
 
         this.rewriteRules = new CopyOnWriteArrayList<>(newRules);
+        compiledRewriteRules = null;
     }
 
     @Override
-    public void clearRewriteRules() {
+    public synchronized void clearRewriteRules() {
         rewriteRules.clear();
+        compiledRewriteRules = null;
     }
 
     @Override
-    public void blacklistRequests(String pattern, int responseCode) {
+    public synchronized void blacklistRequests(String pattern, int responseCode) {
         blacklistEntries.add(new BlacklistEntry(pattern, responseCode));
+        compiledBlacklist = null;
     }
 
     @Override
-    public void blacklistRequests(String pattern, int responseCode, String method) {
+    public synchronized void blacklistRequests(String pattern, int responseCode, String method) {
         blacklistEntries.add(new BlacklistEntry(pattern, responseCode, method));
+        compiledBlacklist = null;
     }
 
     @Override
-    public void setBlacklist(Collection<BlacklistEntry> blacklist) {
+    public synchronized void setBlacklist(Collection<BlacklistEntry> blacklist) {
         this.blacklistEntries = new CopyOnWriteArrayList<>(blacklist);
+        compiledBlacklist = null;
     }
 
     @Override
@@ -768,8 +1022,87 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
     }
 
     @Override
-    public void clearBlacklist() {
+    public synchronized void clearBlacklist() {
         blacklistEntries.clear();
+        compiledBlacklist = null;
+    }
+
+    @Override
+    public synchronized void addFilterRules(Collection<FilterRule> rules) {
+        filterRules.addAll(rules);
+        compiledFilterRules = null;
+    }
+
+    @Override
+    public synchronized void setFilterRules(Collection<FilterRule> rules) {
+        this.filterRules = new CopyOnWriteArrayList<>(rules);
+        compiledFilterRules = null;
+    }
+
+    @Override
+    public List<FilterRule> getFilterRules() {
+        return ImmutableList.copyOf(filterRules);
+    }
+
+    @Override
+    public synchronized void clearFilterRules() {
+        filterRules.clear();
+        compiledFilterRules = null;
+    }
+
+    /**
+     * Returns the compiled filter rules, compiling the current rules if they have been modified.
+     */
+    private FilterRules getCompiledFilterRules() {
+        FilterRules rules = compiledFilterRules;
+        if (rules == null) {
+            synchronized (this) {
+                rules = compiledFilterRules;
+                if (rules == null) {
+                    rules = new FilterRules(filterRules);
+                    compiledFilterRules = rules;
+                }
+            }
+        }
+
+        return rules;
+    }
+
+    /**
+     * Returns the compiled blacklist, compiling the current blacklist entries if they have been modified. Entries are usually
+     * added one at a time, so compiling lazily avoids recompiling the blacklist for every entry.
+     */
+    private Blacklist getCompiledBlacklist() {
+        Blacklist blacklist = compiledBlacklist;
+        if (blacklist == null) {
+            synchronized (this) {
+                blacklist = compiledBlacklist;
+                if (blacklist == null) {
+                    blacklist = new Blacklist(blacklistEntries);
+                    compiledBlacklist = blacklist;
+                }
+            }
+        }
+
+        return blacklist;
+    }
+
+    /**
+     * Returns the compiled rewrite rules, compiling the current rewrite rules if they have been modified.
+     */
+    private UrlRewriter getCompiledRewriteRules() {
+        UrlRewriter urlRewriter = compiledRewriteRules;
+        if (urlRewriter == null) {
+            synchronized (this) {
+                urlRewriter = compiledRewriteRules;
+                if (urlRewriter == null) {
+                    urlRewriter = new UrlRewriter(rewriteRules);
+                    compiledRewriteRules = urlRewriter;
+                }
+            }
+        }
+
+        return urlRewriter;
     }
 
     @Override
@@ -918,13 +1251,15 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
     }
 
     @Override
-    public void addFirstHttpFilterFactory(HttpFiltersSource filterFactory) {
+    public synchronized void addFirstHttpFilterFactory(HttpFiltersSource filterFactory) {
         filterFactories.add(0, filterFactory);
+        compiledAggregationPredicates = null;
     }
 
     @Override
-    public void addLastHttpFilterFactory(HttpFiltersSource filterFactory) {
+    public synchronized void addLastHttpFilterFactory(HttpFiltersSource filterFactory) {
         filterFactories.add(filterFactory);
+        compiledAggregationPredicates = null;
     }
 
     /**
@@ -937,6 +1272,25 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
         addLastHttpFilterFactory(new ResponseFilterAdapter.FilterSource(filter));
     }
 
+    /**
+     * <b>Note:</b> Matching responses are aggregated up to the same 2 MiB maximum as {@link #addResponseFilter(ResponseFilter)}. To adjust
+     * the maximum response size, add the filter source directly:
+     * <code>addLastHttpFilterFactory(new AggregationGatedFiltersSource(new ResponseFilterAdapter.FilterSource(filter, bufferSizeInBytes), aggregationPredicate));</code>
+     */
+    @Override
+    public void addResponseFilter(ResponseFilter filter, AggregationPredicate aggregationPredicate) {
+        addLastHttpFilterFactory(new AggregationGatedFiltersSource(new ResponseFilterAdapter.FilterSource(filter), aggregationPredicate));
+    }
+
+    /**
+     * To create a new filter for each request, for filters that keep state for the duration of a response, add the filter source
+     * directly: <code>addLastHttpFilterFactory(new StreamingResponseFilterAdapter.FilterSource(filterSupplier));</code>
+     */
+    @Override
+    public void addStreamingResponseFilter(StreamingResponseFilter filter) {
+        addLastHttpFilterFactory(new StreamingResponseFilterAdapter.FilterSource(filter));
+    }
+
     /**
      * <b>Note:</b> The current implementation of this method forces a maximum request size of 2 MiB. To adjust the maximum request size, or
      * to disable aggregation (which disallows access to the {@link HttpMessageContents}), you may add the filter source
@@ -947,6 +1301,25 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
         addFirstHttpFilterFactory(new RequestFilterAdapter.FilterSource(filter));
     }
 
+    /**
+     * <b>Note:</b> Matching requests are aggregated up to the same 2 MiB maximum as {@link #addRequestFilter(RequestFilter)}. To adjust
+     * the maximum request size, add the filter source directly:
+     * <code>addFirstHttpFilterFactory(new AggregationGatedFiltersSource(new RequestFilterAdapter.FilterSource(filter, bufferSizeInBytes), aggregationPredicate));</code>
+     */
+    @Override
+    public void addRequestFilter(RequestFilter filter, AggregationPredicate aggregationPredicate) {
+        addFirstHttpFilterFactory(new AggregationGatedFiltersSource(new RequestFilterAdapter.FilterSource(filter), aggregationPredicate));
+    }
+
+    /**
+     * To create a new filter for each request, for filters that keep state for the duration of a request, add the filter source
+     * directly: <code>addFirstHttpFilterFactory(new StreamingRequestFilterAdapter.FilterSource(filterSupplier));</code>
+     */
+    @Override
+    public void addStreamingRequestFilter(StreamingRequestFilter filter) {
+        addFirstHttpFilterFactory(new StreamingRequestFilterAdapter.FilterSource(filter));
+    }
+
     @Override
     public Map<String, String> getRewriteRules() {
         ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
@@ -958,7 +1331,7 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
     }
 
     @Override
-    public void removeRewriteRule(String urlPattern) {
+    public synchronized void removeRewriteRule(String urlPattern) {
         // normally removing elements from the list we are iterating over would not be possible, but since this is a CopyOnWriteArrayList
         // the iterator it returns is a "snapshot" of the list that will not be affected by removal (and that does not support removal, either)
         for (RewriteRule rewriteRule : rewriteRules) {
@@ -966,6 +1339,8 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
                 rewriteRules.remove(rewriteRule);
             }
         }
+
+        compiledRewriteRules = null;
     }
 
     public boolean isStopped() {
@@ -976,12 +1351,17 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
         return currentHarPage;
     }
 
-    public void addHttpFilterFactory(HttpFiltersSource filterFactory) {
+    public synchronized void addHttpFilterFactory(HttpFiltersSource filterFactory) {
         filterFactories.add(filterFactory);
+        compiledAggregationPredicates = null;
     }
 
+    /**
+     * @return a read-only view of the filter factories, in the order their filters are applied. Use {@link #addFirstHttpFilterFactory(HttpFiltersSource)}
+     * or {@link #addLastHttpFilterFactory(HttpFiltersSource)} to add a filter factory.
+     */
     public List<HttpFiltersSource> getFilterFactories() {
-        return filterFactories;
+        return unmodifiableFilterFactories;
     }
 
     @Override
@@ -1034,23 +1414,32 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
      * Adds the basic browsermob-proxy filters, except for the relatively-expensive HAR capture filter.
      */
     protected void addBrowserMobFilters() {
+        // filters that do not depend on the request are shared by all requests, and filters for features that are disabled are
+        // not added to the filter chain at all, so requests only pay for the features that are in use.
+        final HttpFilters resolvedHostnameCacheFilter = new ResolvedHostnameCacheFilter();
         addHttpFilterFactory(new HttpFiltersSourceAdapter() {
             @Override
             public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
-                return new ResolvedHostnameCacheFilter(originalRequest, ctx);
+                return resolvedHostnameCacheFilter;
             }
         });
 
+        final HttpFilters registerRequestFilter = new RegisterRequestFilter(activityMonitor);
         addHttpFilterFactory(new HttpFiltersSourceAdapter() {
             @Override
             public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
-                return new RegisterRequestFilter(originalRequest, ctx, activityMonitor);
+                return registerRequestFilter;
             }
         });
 
         addHttpFilterFactory(new HttpFiltersSourceAdapter() {
             @Override
             public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
+                // the HTTPS host is only captured from the CONNECT that establishes the tunnel
+                if (!ProxyUtils.isCONNECT(originalRequest)) {
+                    return null;
+                }
+
                 return new HttpsOriginalHostCaptureFilter(originalRequest, ctx);
             }
         });
@@ -1058,7 +1447,12 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
         addHttpFilterFactory(new HttpFiltersSourceAdapter() {
             @Override
             public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
-                return new BlacklistFilter(originalRequest, ctx, getBlacklist());
+                Blacklist currentBlacklist = getCompiledBlacklist();
+                if (currentBlacklist.isEmpty()) {
+                    return null;
+                }
+
+                return new BlacklistFilter(originalRequest, ctx, currentBlacklist);
             }
         });
 
@@ -1066,13 +1460,21 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
             @Override
             public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
                 Whitelist currentWhitelist = whitelist.get();
-                return new WhitelistFilter(originalRequest, ctx, isWhitelistEnabled(), currentWhitelist.getStatusCode(), currentWhitelist.getPatterns());
+                if (!currentWhitelist.isEnabled()) {
+                    return null;
+                }
+
+                return new WhitelistFilter(originalRequest, ctx, currentWhitelist);
             }
         });
 
         addHttpFilterFactory(new HttpFiltersSourceAdapter() {
             @Override
             public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
+                if (basicAuthCredentials.isEmpty()) {
+                    return null;
+                }
+
                 return new AutoBasicAuthFilter(originalRequest, ctx, basicAuthCredentials);
             }
         });
@@ -1080,13 +1482,34 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
         addHttpFilterFactory(new HttpFiltersSourceAdapter() {
             @Override
             public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
-                return new RewriteUrlFilter(originalRequest, ctx, rewriteRules);
+                UrlRewriter currentRewriteRules = getCompiledRewriteRules();
+                if (currentRewriteRules.isEmpty()) {
+                    return null;
+                }
+
+                return new RewriteUrlFilter(originalRequest, ctx, currentRewriteRules);
+            }
+        });
+
+        addHttpFilterFactory(new HttpFiltersSourceAdapter() {
+            @Override
+            public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
+                FilterRules currentFilterRules = getCompiledFilterRules();
+                if (currentFilterRules.isEmpty()) {
+                    return null;
+                }
+
+                return new RuleFilter(originalRequest, ctx, currentFilterRules);
             }
         });
 
         addHttpFilterFactory(new HttpFiltersSourceAdapter() {
             @Override
             public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
+                if (!ProxyUtils.isCONNECT(originalRequest)) {
+                    return null;
+                }
+
                 return new HttpsHostCaptureFilter(originalRequest, ctx);
             }
         });
@@ -1094,21 +1517,41 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
         addHttpFilterFactory(new HttpFiltersSourceAdapter() {
             @Override
             public HttpFilters filterRequest(HttpRequest originalRequest) {
-                return new AddHeadersFilter(originalRequest, additionalHeaders);
+                // the filter is replaced whenever the headers map is replaced
+                return additionalHeaders.isEmpty() ? null : addHeadersFilter;
             }
         });
 
         addHttpFilterFactory(new HttpFiltersSourceAdapter() {
             @Override
-            public HttpFilters filterRequest(HttpRequest originalRequest) {
-                return new LatencyFilter(originalRequest, latencyMs);
+            public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
+                int currentLatencyMs = latencyMs;
+                if (currentLatencyMs <= 0) {
+                    return null;
+                }
+
+                // the filter delays the response on the client channel's event loop, so it needs the channel of this request
+                return new LatencyFilter(originalRequest, ctx, currentLatencyMs);
             }
         });
 
         addHttpFilterFactory(new HttpFiltersSourceAdapter() {
             @Override
             public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
-                return new UnregisterRequestFilter(originalRequest, ctx, activityMonitor);
+                NetworkConditionsShaper shaper = networkConditionsShaper;
+                if (shaper == null) {
+                    return null;
+                }
+
+                return new NetworkConditionsFilter(originalRequest, ctx, shaper);
+            }
+        });
+
+        final HttpFilters unregisterRequestFilter = new UnregisterRequestFilter(activityMonitor);
+        addHttpFilterFactory(new HttpFiltersSourceAdapter() {
+            @Override
+            public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
+                return unregisterRequestFilter;
             }
         });
     }
@@ -1137,6 +1580,65 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
         return maxBufferSize;
     }
 
+    /**
+     * Returns a predicate that selects the requests the proxy aggregates, or null if every request is aggregated. Requests are only
+     * aggregated selectively when every filter source that buffers requests is an {@link AggregationGatedFiltersSource}.
+     */
+    public AggregationPredicate getRequestAggregationPredicate() {
+        return getCompiledAggregationPredicates().requestPredicate;
+    }
+
+    /**
+     * Returns a predicate that selects the responses the proxy aggregates, or null if every response is aggregated. Responses are only
+     * aggregated selectively when every filter source that buffers responses is an {@link AggregationGatedFiltersSource}.
+     */
+    public AggregationPredicate getResponseAggregationPredicate() {
+        return getCompiledAggregationPredicates().responsePredicate;
+    }
+
+    /**
+     * Returns the aggregation predicates of the current filter factories, combining them if filter factories have been added.
+     * The predicates are obtained for every HTTP message the proxy reads, so they are only combined when the filter factories change.
+     */
+    private AggregationPredicates getCompiledAggregationPredicates() {
+        AggregationPredicates predicates = compiledAggregationPredicates;
+        if (predicates == null) {
+            synchronized (this) {
+                predicates = compiledAggregationPredicates;
+                if (predicates == null) {
+                    predicates = new AggregationPredicates(combineAggregationPredicates(true), combineAggregationPredicates(false));
+                    compiledAggregationPredicates = predicates;
+                }
+            }
+        }
+
+        return predicates;
+    }
+
+    private AggregationPredicate combineAggregationPredicates(boolean requests) {
+        List<AggregationPredicate> predicates = new ArrayList<>();
+        for (HttpFiltersSource source : filterFactories) {
+            int bufferSize = requests ? source.getMaximumRequestBufferSizeInBytes() : source.getMaximumResponseBufferSizeInBytes();
+            if (bufferSize > 0) {
+                if (!(source instanceof AggregationGatedFiltersSource)) {
+                    return null;
+                }
+
+                predicates.add(((AggregationGatedFiltersSource) source).getAggregationPredicate());
+            }
+        }
+
+        return (request, url, message) -> {
+            for (AggregationPredicate predicate : predicates) {
+                if (predicate.shouldAggregate(request, url, message)) {
+                    return true;
+                }
+            }
+
+            return false;
+        };
+    }
+
     /**
      * Enables the HAR capture filter if it has not already been enabled. The filter will be added to the end of the filter chain.
      * The HAR capture filter is relatively expensive, so this method is only called when a HAR is requested.
@@ -1146,23 +1648,13 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
             // the HAR capture filter is (relatively) expensive, so only enable it when a HAR is being captured. furthermore,
             // restricting the HAR capture filter to requests where the HAR exists, as well as  excluding HTTP CONNECTs
             // from the HAR capture filter, greatly simplifies the filter code.
-            addHttpFilterFactory(new HttpFiltersSourceAdapter() {
-                @Override
-                public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
-                    Har har = getHar();
-                    if (har != null && !ProxyUtils.isCONNECT(originalRequest)) {
-                        return new HarCaptureFilter(originalRequest, ctx, har, getCurrentHarPage() == null ? null : getCurrentHarPage().getId(), getHarCaptureTypes());
-                    } else {
-                        return null;
-                    }
-                }
-            });
+            addHttpFilterFactory(new HarCaptureFiltersSource());
 
             // HTTP CONNECTs are a special case, since they require special timing and error handling
             addHttpFilterFactory(new HttpFiltersSourceAdapter() {
                 @Override
                 public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
-                    Har har = getHar();
+                    Har har = BrowserMobProxyServer.this.har;
                     if (har != null && ProxyUtils.isCONNECT(originalRequest)) {
                         return new HttpConnectHarCaptureFilter(originalRequest, ctx, har, getCurrentHarPage() == null ? null : getCurrentHarPage().getId());
                     } else {
@@ -1172,4 +1664,53 @@ public class BrowserMobProxyServer implements BrowserMobProxy {
             });
         }
     }
+
+    /**
+     * Creates the HAR capture filter for requests other than CONNECTs while a HAR is being captured, applying the first matching
+     * capture policy.
+     */
+    private class HarCaptureFiltersSource extends HttpFiltersSourceAdapter implements RequestContextAwareFiltersSource {
+        @Override
+        public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
+            return filterRequest(originalRequest, ctx, new RequestContext(originalRequest, ctx));
+        }
+
+        @Override
+        public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx, RequestContext requestContext) {
+            // read the field directly, since getHar() waits for pending HAR entries
+            Har har = BrowserMobProxyServer.this.har;
+            if (har == null || ProxyUtils.isCONNECT(originalRequest)) {
+                return null;
+            }
+
+            CapturePolicy capturePolicy = findCapturePolicy(originalRequest, requestContext);
+            if (capturePolicy == null) {
+                return new HarCaptureFilter(originalRequest, ctx, har, getCurrentHarPage() == null ? null : getCurrentHarPage().getId(), getHarCaptureTypes(), null,
+                        harCaptureExecutor.newSequentialExecutor());
+            }
+
+            // requests that are not sampled are not recorded in the HAR
+            if (!capturePolicy.sample()) {
+                return null;
+            }
+
+            Set<CaptureType> captureTypes = capturePolicy.getCaptureTypes() != null ? capturePolicy.getCaptureTypes() : getHarCaptureTypes();
+
+            return new HarCaptureFilter(originalRequest, ctx, har, getCurrentHarPage() == null ? null : getCurrentHarPage().getId(), captureTypes, capturePolicy,
+                    harCaptureExecutor.newSequentialExecutor());
+        }
+    }
+
+    /**
+     * The request and response aggregation predicates combined from the filter factories. A null predicate aggregates every message.
+     */
+    private static class AggregationPredicates {
+        private final AggregationPredicate requestPredicate;
+        private final AggregationPredicate responsePredicate;
+
+        private AggregationPredicates(AggregationPredicate requestPredicate, AggregationPredicate responsePredicate) {
+            this.requestPredicate = requestPredicate;
+            this.responsePredicate = responsePredicate;
+        }
+    }
 }
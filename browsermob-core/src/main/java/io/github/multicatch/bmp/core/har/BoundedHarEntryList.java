@@ -0,0 +1,231 @@
+package io.github.multicatch.bmp.core.har;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Ring buffer of {@link HarEntry}s that retains only the most recent entries allowed by a {@link HarCaptureLimits}. Adding an
+ * entry evicts the oldest entries in constant time once the limits are exceeded. Since content is captured after an entry is added,
+ * callers must invoke {@link #updateContentSize(HarEntry)} when an entry's content changes so the content size limit can be enforced.
+ * <br>
+ * The list is thread-safe. Iterators return a snapshot of the entries at the time the iterator was created. The number of
+ * retained entries per page is tracked, and the pageEmptied callback is invoked when the last entry of a page is evicted.
+ */
+class BoundedHarEntryList extends AbstractList<HarEntry> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final HarCaptureLimits limits;
+
+    /**
+     * Invoked with the page ref of a page when its last retained entry is evicted. Invoked while holding the list's lock.
+     */
+    private final Consumer<String> pageEmptied;
+
+    /**
+     * Invoked with each entry evicted from the list. Invoked while holding the list's lock.
+     */
+    private final Consumer<HarEntry> entryEvicted;
+
+    private HarEntry[] ring = new HarEntry[INITIAL_CAPACITY];
+    private long[] contentSizes = new long[INITIAL_CAPACITY];
+
+    /**
+     * Position of the oldest entry in the ring.
+     */
+    private int head;
+
+    private int count;
+
+    private long totalContentSize;
+
+    /**
+     * Total number of entries ever added. Together with count, this identifies the ring position of an entry from its insertion number.
+     */
+    private long added;
+
+    /**
+     * Insertion number of each retained entry, used to locate the entry when its content size is updated.
+     */
+    private final Map<HarEntry, Long> insertionNumbers = new IdentityHashMap<>();
+
+    private final Map<String, Integer> pageEntryCounts = new HashMap<>();
+
+    BoundedHarEntryList(HarCaptureLimits limits, Consumer<String> pageEmptied, Consumer<HarEntry> entryEvicted) {
+        this.limits = limits;
+        this.pageEmptied = pageEmptied;
+        this.entryEvicted = entryEvicted;
+    }
+
+    @Override
+    public synchronized boolean add(HarEntry entry) {
+        if (count == ring.length) {
+            grow();
+        }
+
+        int position = (head + count) % ring.length;
+        ring[position] = entry;
+
+        long contentSize = measureContentSize(entry);
+        contentSizes[position] = contentSize;
+        totalContentSize += contentSize;
+
+        insertionNumbers.put(entry, added);
+        added++;
+        count++;
+
+        if (entry.getPageref() != null) {
+            pageEntryCounts.merge(entry.getPageref(), 1, Integer::sum);
+        }
+
+        evictExcessEntries();
+
+        return true;
+    }
+
+    /**
+     * Re-measures the captured content of the entry, evicting old entries if the content size limit is now exceeded. Does nothing
+     * if the entry has already been evicted.
+     *
+     * @param entry entry whose content was captured
+     */
+    synchronized void updateContentSize(HarEntry entry) {
+        Long insertionNumber = insertionNumbers.get(entry);
+        if (insertionNumber == null) {
+            return;
+        }
+
+        int position = (int) ((head + (insertionNumber - (added - count))) % ring.length);
+
+        long contentSize = measureContentSize(entry);
+        totalContentSize += contentSize - contentSizes[position];
+        contentSizes[position] = contentSize;
+
+        evictExcessEntries();
+    }
+
+    @Override
+    public synchronized HarEntry get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+
+        return ring[(head + index) % ring.length];
+    }
+
+    @Override
+    public synchronized int size() {
+        return count;
+    }
+
+    @Override
+    public Iterator<HarEntry> iterator() {
+        return Arrays.asList(snapshot()).iterator();
+    }
+
+    @Override
+    public Object[] toArray() {
+        return snapshot();
+    }
+
+    synchronized long getContentSize() {
+        return totalContentSize;
+    }
+
+    private synchronized HarEntry[] snapshot() {
+        HarEntry[] entries = new HarEntry[count];
+        for (int i = 0; i < count; i++) {
+            entries[i] = ring[(head + i) % ring.length];
+        }
+
+        return entries;
+    }
+
+    private void evictExcessEntries() {
+        while (count > 0 && isOverLimit()) {
+            evictOldest();
+        }
+    }
+
+    private boolean isOverLimit() {
+        return (limits.getMaxEntries() > 0 && count > limits.getMaxEntries())
+                || (limits.getMaxContentSize() > 0 && totalContentSize > limits.getMaxContentSize());
+    }
+
+    private void evictOldest() {
+        HarEntry evicted = ring[head];
+
+        totalContentSize -= contentSizes[head];
+        ring[head] = null;
+        contentSizes[head] = 0L;
+        head = (head + 1) % ring.length;
+        count--;
+
+        insertionNumbers.remove(evicted);
+
+        entryEvicted.accept(evicted);
+
+        String pageRef = evicted.getPageref();
+        if (pageRef != null) {
+            Integer remaining = pageEntryCounts.merge(pageRef, -1, Integer::sum);
+            if (remaining != null && remaining <= 0) {
+                pageEntryCounts.remove(pageRef);
+                pageEmptied.accept(pageRef);
+            }
+        }
+    }
+
+    /**
+     * Doubles the size of the ring, up to the maximum number of entries (if limited). Amortized over the additions that filled the
+     * ring, this keeps adding an entry a constant-time operation.
+     */
+    private void grow() {
+        int newCapacity = ring.length * 2;
+        if (limits.getMaxEntries() > 0) {
+            // one extra slot, since the newest entry is added before the oldest entry is evicted
+            newCapacity = Math.max(Math.min(newCapacity, limits.getMaxEntries() + 1), count + 1);
+        }
+
+        HarEntry[] newRing = new HarEntry[newCapacity];
+        long[] newContentSizes = new long[newCapacity];
+        for (int i = 0; i < count; i++) {
+            int position = (head + i) % ring.length;
+            newRing[i] = ring[position];
+            newContentSizes[i] = contentSizes[position];
+        }
+
+        ring = newRing;
+        contentSizes = newContentSizes;
+        head = 0;
+    }
+
+    /**
+     * Returns the amount of memory used by the captured request and response content of the entry. Raw captured content is
+     * measured in bytes, without converting it to text.
+     */
+    private static long measureContentSize(HarEntry entry) {
+        long size = 0L;
+
+        HarRequest request = entry.getRequest();
+        if (request != null && request.getPostData() != null) {
+            HarPostData postData = request.getPostData();
+            size += postData.getCapturedContent() != null ? postData.getCapturedContent().getLength() : textLength(postData.getText());
+        }
+
+        HarResponse response = entry.getResponse();
+        if (response != null && response.getContent() != null) {
+            HarContent content = response.getContent();
+            size += content.getCapturedContent() != null ? content.getCapturedContent().getLength() : textLength(content.getText());
+        }
+
+        return size;
+    }
+
+    private static long textLength(String text) {
+        return text == null ? 0L : text.length();
+    }
+}
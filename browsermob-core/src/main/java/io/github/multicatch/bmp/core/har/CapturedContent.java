@@ -0,0 +1,357 @@
+package io.github.multicatch.bmp.core.har;
+
+import com.google.common.io.BaseEncoding;
+import io.github.multicatch.bmp.util.BrowserMobHttpUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The raw bytes of a captured request or response body, along with the information needed to convert it to HAR text. Captured
+ * content is stored in {@link HarContent} and {@link HarPostData} as-is, and is only decompressed, decoded, or base64-encoded when
+ * the text is read (typically when the HAR is serialized). Since most captured HARs are never retrieved, this keeps the cost of
+ * converting content off the proxy's request processing threads, and text bodies are held in memory as bytes rather than as a String.
+ * <br>
+ * Gzipped content is decompressed chunk by chunk into a buffer sized from the gzip trailer. If a maximum decompressed size is set,
+ * decompression stops at the limit and the text is truncated at the last complete character, so reading the HAR never holds more
+ * than the limit per body.
+ * <br>
+ * Instances are immutable. The byte array passed to the constructor is not copied and must not be modified afterward.
+ */
+public final class CapturedContent {
+    private static final Logger log = LoggerFactory.getLogger(CapturedContent.class);
+
+    /**
+     * The only content encoding that can be decompressed when the text is read.
+     */
+    public static final String GZIP = "gzip";
+
+    private static final String BASE64 = "base64";
+
+    private static final int GZIP_TRAILER_LENGTH = 8;
+
+    private static final int DECOMPRESS_BUFFER_SIZE = 8192;
+
+    /**
+     * The most that deflate can expand its input, used to bound the size read from a possibly corrupt gzip trailer.
+     */
+    private static final long MAX_GZIP_EXPANSION = 1032L;
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final byte[] content;
+    private final Charset charset;
+    private final String compression;
+    private final boolean binary;
+    private final long maxDecompressedSize;
+
+    /**
+     * Set after the first attempt to decompress the content, if decompression failed. Compressed content that cannot be decompressed
+     * is base64-encoded instead.
+     */
+    private volatile Boolean decompressionFailed;
+
+    /**
+     * The HAR text and encoding of this content, converted the first time they are read. Conversion is idempotent, so concurrent
+     * readers may convert the content more than once, but all of them return equal text.
+     */
+    private volatile HarText harText;
+
+    /**
+     * Creates captured content.
+     *
+     * @param content raw bytes of the body, possibly compressed
+     * @param charset charset to decode the content with; ignored if the content is binary
+     * @param compression content encoding of the raw bytes (currently only {@link #GZIP} is supported), or null if the content is not compressed
+     * @param binary true if the content should be base64-encoded rather than decoded to text
+     */
+    public CapturedContent(byte[] content, Charset charset, String compression, boolean binary) {
+        this(content, charset, compression, binary, 0L);
+    }
+
+    /**
+     * Creates captured content whose decompressed text is truncated after the specified number of bytes.
+     *
+     * @param content raw bytes of the body, possibly compressed
+     * @param charset charset to decode the content with; ignored if the content is binary
+     * @param compression content encoding of the raw bytes (currently only {@link #GZIP} is supported), or null if the content is not compressed
+     * @param binary true if the content should be base64-encoded rather than decoded to text
+     * @param maxDecompressedSize maximum number of bytes to decompress, or 0 for no limit; ignored if the content is not compressed
+     */
+    public CapturedContent(byte[] content, Charset charset, String compression, boolean binary, long maxDecompressedSize) {
+        if (compression != null && !GZIP.equals(compression)) {
+            throw new IllegalArgumentException("Unsupported content compression: " + compression);
+        }
+
+        if (!binary && charset == null) {
+            throw new IllegalArgumentException("Charset cannot be null for textual content");
+        }
+
+        if (maxDecompressedSize < 0) {
+            throw new IllegalArgumentException("Maximum decompressed size cannot be negative: " + maxDecompressedSize);
+        }
+
+        this.content = content;
+        this.charset = charset;
+        this.compression = compression;
+        this.binary = binary;
+        this.maxDecompressedSize = maxDecompressedSize;
+    }
+
+    /**
+     * @return uncompressed content to be decoded to text using the specified charset
+     */
+    public static CapturedContent text(byte[] content, Charset charset) {
+        return new CapturedContent(content, charset, null, false);
+    }
+
+    /**
+     * @return uncompressed content to be base64-encoded
+     */
+    public static CapturedContent binary(byte[] content) {
+        return new CapturedContent(content, null, null, true);
+    }
+
+    /**
+     * Returns the HAR text of this content together with its encoding. The raw bytes are decompressed and decoded or base64-encoded
+     * the first time this method is called, and the result is kept for later calls.
+     *
+     * @return HAR text and encoding of this content
+     */
+    public HarText toHarText() {
+        HarText converted = harText;
+        if (converted == null) {
+            converted = convert();
+            harText = converted;
+        }
+
+        return converted;
+    }
+
+    private HarText convert() {
+        if (compression == null) {
+            return toHarText(content, content.length, false);
+        }
+
+        DecompressedContent decompressed = decompress();
+        if (decompressed == null) {
+            return new HarText(BaseEncoding.base64().encode(content), BASE64);
+        }
+
+        boolean truncated = maxDecompressedSize > 0 && decompressed.size() >= maxDecompressedSize;
+
+        return toHarText(decompressed.buffer(), decompressed.size(), truncated);
+    }
+
+    private HarText toHarText(byte[] bytes, int length, boolean truncated) {
+        if (binary) {
+            return new HarText(BaseEncoding.base64().encode(bytes, 0, length), BASE64);
+        }
+
+        if (truncated) {
+            // the limit may have cut a multibyte character in half
+            length = BrowserMobHttpUtil.getCompleteCharactersLength(bytes, length, charset);
+        }
+
+        return new HarText(new String(bytes, 0, length, charset), null);
+    }
+
+    /**
+     * Returns the HAR text of this content. See {@link #toHarText()}.
+     *
+     * @return HAR text of this content
+     */
+    public String getText() {
+        return toHarText().getText();
+    }
+
+    /**
+     * Returns the HAR encoding of the text returned by {@link #getText()}. If the content is compressed and has not been decompressed
+     * yet, the compressed stream is checked without keeping the decompressed bytes.
+     *
+     * @return "base64" for binary content and content that could not be decompressed, otherwise null
+     */
+    public String getEncoding() {
+        HarText converted = harText;
+        if (converted != null) {
+            return converted.getEncoding();
+        }
+
+        if (binary || isDecompressionFailed()) {
+            return BASE64;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the size of the content after decompression. The size of gzipped content is read from the gzip trailer, so the content
+     * does not need to be decompressed.
+     *
+     * @return uncompressed size of the content, in bytes
+     */
+    public long getSize() {
+        if (compression == null || content.length < GZIP_TRAILER_LENGTH) {
+            return content.length;
+        }
+
+        // the last four bytes of a gzip stream are the uncompressed length modulo 2^32, little-endian
+        int offset = content.length - 4;
+        return (content[offset] & 0xFFL)
+                | (content[offset + 1] & 0xFFL) << 8
+                | (content[offset + 2] & 0xFFL) << 16
+                | (content[offset + 3] & 0xFFL) << 24;
+    }
+
+    /**
+     * @return the raw bytes of the content, which must not be modified
+     */
+    public byte[] getContent() {
+        return content;
+    }
+
+    /**
+     * @return the number of raw bytes held by this content
+     */
+    public int getLength() {
+        return content.length;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * @return maximum number of bytes to decompress, or 0 if the decompressed text is not truncated
+     */
+    public long getMaxDecompressedSize() {
+        return maxDecompressedSize;
+    }
+
+    /**
+     * Returns the decompressed content, or null if the content could not be decompressed. Must only be called for compressed content.
+     */
+    private DecompressedContent decompress() {
+        if (Boolean.TRUE.equals(decompressionFailed)) {
+            return null;
+        }
+
+        try {
+            DecompressedContent decompressed = new DecompressedContent(getInitialDecompressedCapacity());
+            inflate(decompressed);
+            decompressionFailed = false;
+
+            return decompressed;
+        } catch (IOException e) {
+            log.warn("Unable to decompress content with encoding: {}. Contents will be encoded as base64 binary data.", compression, e);
+            decompressionFailed = true;
+
+            return null;
+        }
+    }
+
+    private boolean isDecompressionFailed() {
+        if (compression == null) {
+            return false;
+        }
+
+        if (decompressionFailed == null) {
+            // read through the stream to find out whether it is valid, discarding the decompressed bytes
+            try {
+                inflate(null);
+                decompressionFailed = false;
+            } catch (IOException e) {
+                log.warn("Unable to decompress content with encoding: {}. Contents will be encoded as base64 binary data.", compression, e);
+                decompressionFailed = true;
+            }
+        }
+
+        return decompressionFailed;
+    }
+
+    /**
+     * Decompresses the content chunk by chunk, stopping after maxDecompressedSize bytes if the size is limited.
+     *
+     * @param output stream to write the decompressed bytes to, or null to discard them
+     */
+    private void inflate(OutputStream output) throws IOException {
+        long remaining = maxDecompressedSize > 0 ? maxDecompressedSize : Long.MAX_VALUE;
+
+        try (InputStream gzipReader = new GZIPInputStream(new ByteArrayInputStream(content), DECOMPRESS_BUFFER_SIZE)) {
+            byte[] decompressBuffer = new byte[DECOMPRESS_BUFFER_SIZE];
+            int bytesRead;
+            while (remaining > 0 && (bytesRead = gzipReader.read(decompressBuffer, 0, (int) Math.min(decompressBuffer.length, remaining))) > -1) {
+                if (output != null) {
+                    output.write(decompressBuffer, 0, bytesRead);
+                }
+
+                remaining -= bytesRead;
+            }
+        }
+    }
+
+    /**
+     * Returns the capacity to allocate for the decompressed content: the size in the gzip trailer, bounded by the maximum
+     * decompressed size and by the most that gzip can expand the content, in case the trailer is corrupt.
+     */
+    private int getInitialDecompressedCapacity() {
+        long capacity = Math.min(getSize(), content.length * MAX_GZIP_EXPANSION);
+        if (maxDecompressedSize > 0) {
+            capacity = Math.min(capacity, maxDecompressedSize);
+        }
+
+        return (int) Math.max(DECOMPRESS_BUFFER_SIZE, Math.min(capacity, MAX_ARRAY_SIZE));
+    }
+
+    /**
+     * Decompressed bytes, exposed without copying them out of the stream's buffer.
+     */
+    private static class DecompressedContent extends ByteArrayOutputStream {
+        DecompressedContent(int initialCapacity) {
+            super(initialCapacity);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+    /**
+     * The HAR text and encoding of captured content. See {@link #toHarText()}.
+     */
+    public static final class HarText {
+        private final String text;
+        private final String encoding;
+
+        HarText(String text, String encoding) {
+            this.text = text;
+            this.encoding = encoding;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return "base64" if the text is base64-encoded, otherwise null
+         */
+        public String getEncoding() {
+            return encoding;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package io.github.multicatch.bmp.core.har;
+
+/**
+ * Limits on the number of entries and the amount of captured content retained by a {@link HarLog}. When a limit is exceeded,
+ * the oldest entries are evicted from the HAR, and pages that no longer have any entries are removed. This allows HAR capture
+ * to run indefinitely with a predictable memory footprint.
+ * <br>
+ * A limit of 0 means the corresponding dimension is unlimited. Content size is the total length of the captured request
+ * and response bodies of the retained entries.
+ * <br>
+ * Compressed response bodies are captured as-is and decompressed when the HAR is read. The maximum decompressed content size
+ * limits how much of each body is decompressed; text beyond the limit is truncated.
+ */
+public final class HarCaptureLimits {
+    /**
+     * No limits: every captured entry is retained.
+     */
+    public static final HarCaptureLimits UNLIMITED = new HarCaptureLimits(0, 0L);
+
+    private final int maxEntries;
+    private final long maxContentSize;
+    private final long maxDecompressedContentSize;
+
+    /**
+     * Creates limits on the number of entries and the captured content size of a HAR.
+     *
+     * @param maxEntries maximum number of entries to retain, or 0 to retain any number of entries
+     * @param maxContentSize maximum total size of captured request and response content to retain, or 0 for no content size limit
+     */
+    public HarCaptureLimits(int maxEntries, long maxContentSize) {
+        this(maxEntries, maxContentSize, 0L);
+    }
+
+    /**
+     * Creates limits on the number of entries and the captured content size of a HAR, and on the decompressed size of each
+     * compressed response body.
+     *
+     * @param maxEntries maximum number of entries to retain, or 0 to retain any number of entries
+     * @param maxContentSize maximum total size of captured request and response content to retain, or 0 for no content size limit
+     * @param maxDecompressedContentSize maximum number of bytes to decompress from each compressed response body when the HAR is
+     *                                   read, or 0 for no limit
+     */
+    public HarCaptureLimits(int maxEntries, long maxContentSize, long maxDecompressedContentSize) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Maximum number of HAR entries cannot be negative");
+        }
+
+        if (maxContentSize < 0) {
+            throw new IllegalArgumentException("Maximum HAR content size cannot be negative");
+        }
+
+        if (maxDecompressedContentSize < 0) {
+            throw new IllegalArgumentException("Maximum decompressed content size cannot be negative");
+        }
+
+        this.maxEntries = maxEntries;
+        this.maxContentSize = maxContentSize;
+        this.maxDecompressedContentSize = maxDecompressedContentSize;
+    }
+
+    /**
+     * Limits the HAR to the last maxEntries entries.
+     *
+     * @param maxEntries maximum number of entries to retain
+     * @return new limits
+     */
+    public static HarCaptureLimits maxEntries(int maxEntries) {
+        return new HarCaptureLimits(maxEntries, 0L);
+    }
+
+    /**
+     * Limits the HAR to the most recent entries whose captured content fits in maxContentSize.
+     *
+     * @param maxContentSize maximum total size of captured content to retain
+     * @return new limits
+     */
+    public static HarCaptureLimits maxContentSize(long maxContentSize) {
+        return new HarCaptureLimits(0, maxContentSize);
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getMaxContentSize() {
+        return maxContentSize;
+    }
+
+    /**
+     * @return maximum number of bytes to decompress from each compressed response body, or 0 for no limit
+     */
+    public long getMaxDecompressedContentSize() {
+        return maxDecompressedContentSize;
+    }
+
+    /**
+     * Returns a copy of these limits that also limits the decompressed size of each compressed response body.
+     *
+     * @param maxDecompressedContentSize maximum number of bytes to decompress from each compressed response body, or 0 for no limit
+     * @return new limits
+     */
+    public HarCaptureLimits withMaxDecompressedContentSize(long maxDecompressedContentSize) {
+        return new HarCaptureLimits(maxEntries, maxContentSize, maxDecompressedContentSize);
+    }
+
+    /**
+     * @return true if neither the number of entries nor the retained content size is limited. The decompressed content size
+     * limit does not cause entries to be evicted, so it is not considered.
+     */
+    public boolean isUnlimited() {
+        return maxEntries == 0 && maxContentSize == 0L;
+    }
+
+    @Override
+    public String toString() {
+        return "HarCaptureLimits{maxEntries=" + maxEntries + ", maxContentSize=" + maxContentSize
+                + ", maxDecompressedContentSize=" + maxDecompressedContentSize + '}';
+    }
+}
@@ -1,5 +1,6 @@
 package io.github.multicatch.bmp.core.har;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -15,6 +16,11 @@ public class HarContent {
     private volatile String encoding;
     private volatile String comment = "";
 
+    /**
+     * Raw captured content, converted to text only when the text is read. Null if the text was set explicitly.
+     */
+    private volatile CapturedContent capturedContent;
+
     public long getSize() {
         return size;
     }
@@ -39,22 +45,72 @@ public class HarContent {
         this.mimeType = mimeType;
     }
 
+    /**
+     * Returns the text of the content. If the content was captured as raw bytes (see {@link #setCapturedContent(CapturedContent)}),
+     * the bytes are converted to text the first time the text is read.
+     *
+     * @return text of the content
+     */
     public String getText() {
+        CapturedContent captured = capturedContent;
+        if (captured != null) {
+            return captured.getText();
+        }
+
         return text;
     }
 
     public void setText(String text) {
+        this.capturedContent = null;
         this.text = text;
     }
 
     public String getEncoding() {
+        CapturedContent captured = capturedContent;
+        if (captured != null) {
+            return captured.getEncoding();
+        }
+
         return encoding;
     }
 
+    /**
+     * Sets the encoding of the text. If the content was captured as raw bytes, the captured content is first replaced by its text,
+     * so the encoding applies to that text.
+     *
+     * @param encoding encoding of the text, or null if the text is not encoded
+     */
     public void setEncoding(String encoding) {
+        CapturedContent captured = capturedContent;
+        if (captured != null) {
+            this.text = captured.getText();
+            this.capturedContent = null;
+        }
+
         this.encoding = encoding;
     }
 
+    /**
+     * @return the raw captured content, or null if the content's text was set explicitly or no content was captured
+     */
+    @JsonIgnore
+    public CapturedContent getCapturedContent() {
+        return capturedContent;
+    }
+
+    /**
+     * Sets the raw captured content, replacing any text and encoding set explicitly. The text and encoding of this HarContent will
+     * be computed from the captured content when they are read.
+     *
+     * @param capturedContent raw captured content
+     */
+    @JsonIgnore
+    public void setCapturedContent(CapturedContent capturedContent) {
+        this.text = null;
+        this.encoding = null;
+        this.capturedContent = capturedContent;
+    }
+
     public String getComment() {
         return comment;
     }
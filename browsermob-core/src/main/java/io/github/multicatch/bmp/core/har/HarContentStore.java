@@ -0,0 +1,91 @@
+package io.github.multicatch.bmp.core.har;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A content-addressed store for captured HAR content. Bodies are keyed by a SHA-256 hash of their raw bytes, so when the same
+ * content is captured many times (for example, a large script loaded on every page), all {@link HarEntry}s share a single copy
+ * of the {@link CapturedContent}.
+ * <br>
+ * Stored content is reference-counted: every {@link #acquire(CapturedContent)} must be balanced by a call to
+ * {@link #release(StoredContent)}, and content is removed from the store when its last reference is released. This class is thread-safe.
+ */
+public class HarContentStore {
+    private final ConcurrentMap<HashCode, StoredContent> contents = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the stored copy of the specified content, adding the content to the store if identical content is not already
+     * present. Increments the reference count of the stored content. Content is only shared with content that is decoded the
+     * same way, i.e. that has the same charset, compression, binary flag, and maximum decompressed size.
+     *
+     * @param content captured content
+     * @return the stored content, which must be passed to {@link #release(StoredContent)} when it is no longer referenced
+     */
+    public StoredContent acquire(CapturedContent content) {
+        HashCode key = Hashing.sha256().newHasher()
+                .putString(content.getCharset() == null ? "" : content.getCharset().name(), StandardCharsets.UTF_8)
+                .putString(content.getCompression() == null ? "" : content.getCompression(), StandardCharsets.UTF_8)
+                .putBoolean(content.isBinary())
+                .putLong(content.getMaxDecompressedSize())
+                .putBytes(content.getContent())
+                .hash();
+
+        return contents.compute(key, (hash, stored) -> {
+            if (stored == null) {
+                stored = new StoredContent(hash, content);
+            }
+
+            stored.references++;
+
+            return stored;
+        });
+    }
+
+    /**
+     * Releases a reference to stored content. When the last reference is released, the content is removed from the store.
+     *
+     * @param storedContent content previously returned by {@link #acquire(CapturedContent)}
+     */
+    public void release(StoredContent storedContent) {
+        contents.computeIfPresent(storedContent.key, (hash, stored) -> {
+            stored.references--;
+
+            return stored.references > 0 ? stored : null;
+        });
+    }
+
+    /**
+     * @return the number of distinct bodies currently in the store
+     */
+    public int size() {
+        return contents.size();
+    }
+
+    /**
+     * Content shared through a {@link HarContentStore}.
+     */
+    public static final class StoredContent {
+        private final HashCode key;
+        private final CapturedContent content;
+
+        /**
+         * The number of references to this content. Only modified inside the store's map compute functions, which are atomic
+         * for the content's key.
+         */
+        private int references;
+
+        private StoredContent(HashCode key, CapturedContent content) {
+            this.key = key;
+            this.content = content;
+        }
+
+        public CapturedContent getContent() {
+            return content;
+        }
+    }
+}
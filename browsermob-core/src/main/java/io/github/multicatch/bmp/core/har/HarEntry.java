@@ -2,10 +2,12 @@ package io.github.multicatch.bmp.core.har;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.util.Date;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @JsonAutoDetect
@@ -20,6 +22,19 @@ public class HarEntry {
     private volatile String connection;
     private volatile String comment = "";
 
+    /**
+     * Sequence number assigned by the {@link HarLog} when the entry is completed. Not part of the HAR spec, so it is not serialized.
+     */
+    private volatile long sequence;
+
+    /**
+     * Response content this entry references in the proxy's {@link HarContentStore}. Set to {@link #CONTENT_RELEASED} once the
+     * reference has been released, so content captured after the entry was evicted or its HAR was replaced is released immediately.
+     */
+    private final AtomicReference<Object> storedContent = new AtomicReference<>();
+
+    private static final Object CONTENT_RELEASED = new Object();
+
     public HarEntry() {
     }
 
@@ -35,6 +50,42 @@ public class HarEntry {
         this.pageref = pageref;
     }
 
+    /**
+     * Returns the sequence number assigned to this entry when it was completed (see {@link HarLog#completeEntry(HarEntry)}). Sequence
+     * numbers increase monotonically in the order entries are completed, and can be used as a cursor to retrieve only new entries
+     * using {@link HarLog#getCompletedEntriesSince(long, int)}.
+     *
+     * @return sequence number of this entry, or 0 if the entry has not been completed
+     */
+    @JsonIgnore
+    public long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Associates stored content with this entry, so that it can be released when the entry is no longer retained.
+     *
+     * @return true if the content was associated with this entry, false if the entry's stored content was already released
+     */
+    boolean attachStoredContent(HarContentStore.StoredContent content) {
+        return storedContent.compareAndSet(null, content);
+    }
+
+    /**
+     * Detaches the stored content from this entry, and prevents any content from being attached later.
+     *
+     * @return the stored content associated with this entry, or null if there is none
+     */
+    HarContentStore.StoredContent detachStoredContent() {
+        Object content = storedContent.getAndSet(CONTENT_RELEASED);
+
+        return content instanceof HarContentStore.StoredContent ? (HarContentStore.StoredContent) content : null;
+    }
+
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX")
     public Date getStartedDateTime() {
         return startedDateTime;
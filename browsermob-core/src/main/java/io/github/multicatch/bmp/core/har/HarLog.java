@@ -1,7 +1,12 @@
 package io.github.multicatch.bmp.core.har;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import io.github.multicatch.bmp.util.ConcurrentAppendOnlyList;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -11,14 +16,112 @@ public class HarLog {
     private volatile HarNameVersion creator;
     private volatile HarNameVersion browser;
     private final List<HarPage> pages = new CopyOnWriteArrayList<HarPage>();
-    private final List<HarEntry> entries = new CopyOnWriteArrayList<HarEntry>();
+
+    /**
+     * Entries are only ever appended while the HAR is being captured, so they are stored in a lock-free, append-only list.
+     * Appending to a CopyOnWriteArrayList copies every existing entry, which makes capture cost grow with the size of the HAR.
+     * When capture limits are in effect, entries are stored in a {@link BoundedHarEntryList} instead.
+     */
+    private final List<HarEntry> entries;
+
+    /**
+     * The limits this log was created with.
+     */
+    private final HarCaptureLimits captureLimits;
+
+    /**
+     * The bounded entry list, if this log was created with capture limits. Null if the log is unbounded.
+     */
+    private final BoundedHarEntryList boundedEntries;
+
+    /**
+     * Completed entries, in sequence order. The entry at index i has sequence number initialSequence + i + 1. Only maintained for
+     * unbounded logs; bounded logs find completed entries in {@link #boundedEntries}, so evicted entries are not retained here.
+     */
+    private final List<HarEntry> completedEntries;
+
+    /**
+     * The sequence number preceding the first sequence number assigned by this log.
+     */
+    private final long initialSequence;
+
+    /**
+     * The sequence number most recently assigned to a completed entry. Only modified while holding the completionLock, so that
+     * completed entries are appended in sequence order.
+     */
+    private volatile long lastSequence;
+
+    private final Object completionLock = new Object();
+
+    /**
+     * Store used to share captured response content with other HARs created by the same proxy. Null if content is not shared.
+     */
+    private final HarContentStore contentStore;
+
+    /**
+     * True once this log's references to stored content have been released. Content captured after that is not shared.
+     */
+    private volatile boolean contentReleased;
+
     private volatile String comment = "";
 
     public HarLog() {
+        this(null, HarCaptureLimits.UNLIMITED);
     }
 
     public HarLog(HarNameVersion creator) {
+        this(creator, HarCaptureLimits.UNLIMITED);
+    }
+
+    /**
+     * Creates a HarLog that retains only the most recent entries allowed by the specified limits. Pages are removed from the
+     * log when their last entry is evicted, unless the page is the most recently added page.
+     *
+     * @param creator creator of the HAR
+     * @param limits limits on the entries and content to retain; null or {@link HarCaptureLimits#UNLIMITED} to retain all entries
+     */
+    public HarLog(HarNameVersion creator, HarCaptureLimits limits) {
+        this(creator, limits, 0L);
+    }
+
+    /**
+     * Creates a HarLog with the specified capture limits (see {@link #HarLog(HarNameVersion, HarCaptureLimits)}). Sequence numbers
+     * assigned to completed entries start after initialSequence, which allows a new log to continue the sequence of the log it replaces.
+     *
+     * @param creator creator of the HAR
+     * @param limits limits on the entries and content to retain; null or {@link HarCaptureLimits#UNLIMITED} to retain all entries
+     * @param initialSequence the sequence number preceding the first sequence number this log will assign
+     */
+    public HarLog(HarNameVersion creator, HarCaptureLimits limits, long initialSequence) {
+        this(creator, limits, initialSequence, null);
+    }
+
+    /**
+     * Creates a HarLog with the specified capture limits and initial sequence number (see {@link #HarLog(HarNameVersion, HarCaptureLimits, long)})
+     * that shares captured response content through the specified store. The log's references to stored content must be released
+     * using {@link #releaseStoredContent()} when the log is no longer being captured.
+     *
+     * @param creator creator of the HAR
+     * @param limits limits on the entries and content to retain; null or {@link HarCaptureLimits#UNLIMITED} to retain all entries
+     * @param initialSequence the sequence number preceding the first sequence number this log will assign
+     * @param contentStore store to share captured response content through, or null to store content in each entry
+     */
+    public HarLog(HarNameVersion creator, HarCaptureLimits limits, long initialSequence, HarContentStore contentStore) {
         this.creator = creator;
+        this.contentStore = contentStore;
+        this.initialSequence = initialSequence;
+        this.lastSequence = initialSequence;
+        this.captureLimits = limits == null ? HarCaptureLimits.UNLIMITED : limits;
+
+        if (limits == null || limits.isUnlimited()) {
+            this.boundedEntries = null;
+            this.entries = new ConcurrentAppendOnlyList<HarEntry>();
+            this.completedEntries = new ConcurrentAppendOnlyList<HarEntry>();
+        } else {
+            this.boundedEntries = new BoundedHarEntryList(limits, this::removeEmptyPage, this::releaseStoredContent);
+            this.entries = boundedEntries;
+            this.completedEntries = null;
+        }
     }
 
     public void addPage(HarPage page) {
@@ -29,6 +132,147 @@ public class HarLog {
         entries.add(entry);
     }
 
+    /**
+     * Notifies the log that request or response content was captured for an entry that was already added to the log. If the log
+     * limits the size of captured content, older entries will be evicted as necessary.
+     *
+     * @param entry entry whose content was captured
+     */
+    public void updateEntryContent(HarEntry entry) {
+        if (boundedEntries != null) {
+            boundedEntries.updateContentSize(entry);
+        }
+    }
+
+    /**
+     * Sets the captured content of the entry's response. If this log shares content through a {@link HarContentStore}, identical
+     * content captured by other entries is only held in memory once.
+     *
+     * @param entry entry in this log whose response content was captured
+     * @param content raw response content
+     */
+    public void setResponseContent(HarEntry entry, CapturedContent content) {
+        HarContent harContent = entry.getResponse().getContent();
+
+        if (contentStore == null || contentReleased) {
+            harContent.setCapturedContent(content);
+            return;
+        }
+
+        HarContentStore.StoredContent storedContent = contentStore.acquire(content);
+        harContent.setCapturedContent(storedContent.getContent());
+
+        if (!entry.attachStoredContent(storedContent)) {
+            // the entry was evicted, or the log was released, while the content was being stored
+            contentStore.release(storedContent);
+        } else if (contentReleased) {
+            // the log was released after the content was attached, and may not have seen this entry's content
+            releaseStoredContent(entry);
+        }
+    }
+
+    /**
+     * Releases this log's references to content in its {@link HarContentStore}, so the content can be freed once no other log
+     * references it. Entries in this log retain their content. Content captured after this method is called is not shared.
+     */
+    public void releaseStoredContent() {
+        if (contentStore == null) {
+            return;
+        }
+
+        contentReleased = true;
+
+        for (HarEntry entry : entries) {
+            releaseStoredContent(entry);
+        }
+    }
+
+    private void releaseStoredContent(HarEntry entry) {
+        HarContentStore.StoredContent storedContent = entry.detachStoredContent();
+        if (storedContent != null) {
+            contentStore.release(storedContent);
+        }
+    }
+
+    /**
+     * Marks an entry in this log as complete, and assigns it the next sequence number. Completed entries can be retrieved incrementally
+     * using {@link #getCompletedEntriesSince(long, int)}. Completing an entry more than once has no effect.
+     *
+     * @param entry entry whose request and response have been fully captured
+     * @return the sequence number of the entry
+     */
+    public long completeEntry(HarEntry entry) {
+        synchronized (completionLock) {
+            if (entry.getSequence() != 0L) {
+                return entry.getSequence();
+            }
+
+            long sequence = lastSequence + 1;
+            entry.setSequence(sequence);
+
+            if (completedEntries != null) {
+                completedEntries.add(entry);
+            }
+
+            lastSequence = sequence;
+
+            return sequence;
+        }
+    }
+
+    /**
+     * Returns the entries completed after the entry with the specified sequence number, in the order they were completed. Entries
+     * evicted from a bounded log are not returned.
+     *
+     * @param sequence sequence number of the last entry the caller has seen, or 0 to retrieve all completed entries
+     * @param limit maximum number of entries to return, or 0 to return all matching entries
+     * @return completed entries with a sequence number greater than the specified sequence number
+     */
+    public List<HarEntry> getCompletedEntriesSince(long sequence, int limit) {
+        int maxEntries = limit > 0 ? limit : Integer.MAX_VALUE;
+
+        if (completedEntries != null) {
+            int size = completedEntries.size();
+            long startIndex = Math.max(sequence - initialSequence, 0L);
+            if (startIndex >= size) {
+                return Collections.emptyList();
+            }
+
+            int endIndex = (int) Math.min(size, startIndex + maxEntries);
+
+            return new ArrayList<>(completedEntries.subList((int) startIndex, endIndex));
+        }
+
+        List<HarEntry> completed = new ArrayList<>();
+        for (HarEntry entry : boundedEntries) {
+            if (entry.getSequence() > sequence) {
+                completed.add(entry);
+            }
+        }
+
+        // bounded entries are in the order they were added, not the order they were completed
+        completed.sort(Comparator.comparingLong(HarEntry::getSequence));
+
+        return completed.size() > maxEntries ? new ArrayList<>(completed.subList(0, maxEntries)) : completed;
+    }
+
+    /**
+     * @return the sequence number most recently assigned to a completed entry, or the log's initial sequence number if no entries
+     * have been completed
+     */
+    @JsonIgnore
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return the limits this log was created with; {@link HarCaptureLimits#UNLIMITED} if it was created without limits
+     */
+    @JsonIgnore
+    public HarCaptureLimits getCaptureLimits() {
+        return captureLimits;
+    }
+
     public String getVersion() {
         return version;
     }
@@ -57,6 +301,21 @@ public class HarLog {
         return entries;
     }
 
+    /**
+     * Removes the page from the log after its last entry was evicted. The most recently added page is retained, since new
+     * entries may still be added to it.
+     */
+    private void removeEmptyPage(String pageRef) {
+        int lastPageIndex = pages.size() - 1;
+        for (int i = 0; i < lastPageIndex; i++) {
+            HarPage page = pages.get(i);
+            if (pageRef.equals(page.getId())) {
+                pages.remove(page);
+                return;
+            }
+        }
+    }
+
     public String getComment() {
         return comment;
     }
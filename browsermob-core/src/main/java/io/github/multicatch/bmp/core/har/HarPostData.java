@@ -1,5 +1,6 @@
 package io.github.multicatch.bmp.core.har;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.util.List;
@@ -11,6 +12,11 @@ public class HarPostData {
     private volatile String text;
     private volatile String comment = "";
 
+    /**
+     * Raw captured request body, decoded to text only when the text is read. Null if the text was set explicitly.
+     */
+    private volatile CapturedContent capturedContent;
+
     public String getMimeType() {
         return mimeType;
     }
@@ -27,14 +33,46 @@ public class HarPostData {
         this.params = params;
     }
 
+    /**
+     * Returns the text of the posted data. If the request body was captured as raw bytes (see {@link #setCapturedContent(CapturedContent)}),
+     * the bytes are decoded the first time the text is read.
+     *
+     * @return text of the posted data
+     */
     public String getText() {
+        CapturedContent captured = capturedContent;
+        if (captured != null) {
+            return captured.getText();
+        }
+
         return text;
     }
 
     public void setText(String text) {
+        this.capturedContent = null;
         this.text = text;
     }
 
+    /**
+     * @return the raw captured request body, or null if the text was set explicitly or no body was captured
+     */
+    @JsonIgnore
+    public CapturedContent getCapturedContent() {
+        return capturedContent;
+    }
+
+    /**
+     * Sets the raw captured request body, replacing any text set explicitly. The text will be decoded from the captured content
+     * when it is read.
+     *
+     * @param capturedContent raw captured request body
+     */
+    @JsonIgnore
+    public void setCapturedContent(CapturedContent capturedContent) {
+        this.text = null;
+        this.capturedContent = capturedContent;
+    }
+
     public String getComment() {
         return comment;
     }
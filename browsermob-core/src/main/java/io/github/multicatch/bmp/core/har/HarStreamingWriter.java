@@ -0,0 +1,167 @@
+package io.github.multicatch.bmp.core.har;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a {@link Har} as JSON directly to an output stream, one page and one entry at a time. Unlike serializing the entire
+ * {@link Har} object graph in a single call, the writer never holds more than a single serialized {@link HarEntry} in its buffers,
+ * so memory use while exporting stays flat regardless of the size of the HAR. The JSON produced is identical to the JSON produced
+ * by serializing the {@link Har} with the same {@link ObjectMapper}.
+ * <br>
+ * The writer is immutable and thread-safe; a single instance may be shared across threads.
+ */
+public class HarStreamingWriter {
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Writer used to serialize individual pages and entries. Flushing after every value is disabled, so the underlying stream
+     * receives data in generator-sized chunks rather than once per entry.
+     */
+    private final ObjectWriter valueWriter;
+
+    /**
+     * Creates a writer that uses a default {@link ObjectMapper} to serialize HAR pages and entries.
+     */
+    public HarStreamingWriter() {
+        this(new ObjectMapper());
+    }
+
+    /**
+     * Creates a writer that uses the specified {@link ObjectMapper} to serialize HAR pages and entries. Settings on the ObjectMapper
+     * (such as the time zone used to format dates) will be reflected in the output.
+     *
+     * @param objectMapper ObjectMapper to serialize HAR pages and entries with
+     */
+    public HarStreamingWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.valueWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Writes the HAR to the output stream as UTF-8 encoded JSON. The stream is flushed, but not closed.
+     *
+     * @param har HAR to write; may be null
+     * @param outputStream stream to write to
+     * @throws IOException if the HAR could not be written to the stream
+     */
+    public void write(Har har, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = createGenerator(outputStream)) {
+            write(har, generator);
+        }
+    }
+
+    /**
+     * Writes the HAR to the writer as JSON. The writer is flushed, but not closed.
+     *
+     * @param har HAR to write; may be null
+     * @param writer writer to write to
+     * @throws IOException if the HAR could not be written
+     */
+    public void write(Har har, Writer writer) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            write(har, generator);
+        }
+    }
+
+    /**
+     * Writes the HAR to the output stream as gzip-compressed, UTF-8 encoded JSON. The gzip stream is finished and the output stream
+     * is flushed, but not closed.
+     *
+     * @param har HAR to write; may be null
+     * @param outputStream stream to write the compressed HAR to
+     * @throws IOException if the HAR could not be written to the stream
+     */
+    public void writeGzipped(Har har, OutputStream outputStream) throws IOException {
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+
+        write(har, gzipOutputStream);
+
+        gzipOutputStream.finish();
+        outputStream.flush();
+    }
+
+    /**
+     * Writes the HAR using the specified generator. The generator is flushed, but not closed.
+     *
+     * @param har HAR to write; may be null
+     * @param generator generator to write to
+     * @throws IOException if the HAR could not be written
+     */
+    public void write(Har har, JsonGenerator generator) throws IOException {
+        if (har == null) {
+            generator.writeNull();
+            generator.flush();
+            return;
+        }
+
+        generator.writeStartObject();
+
+        HarLog log = har.getLog();
+        if (log == null) {
+            generator.writeNullField("log");
+        } else {
+            generator.writeFieldName("log");
+            writeLog(log, generator);
+        }
+
+        generator.writeEndObject();
+
+        generator.flush();
+    }
+
+    /**
+     * Writes the HarLog. Field order and null handling mirror the Jackson serialization of {@link HarLog}.
+     */
+    private void writeLog(HarLog log, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+
+        generator.writeStringField("version", log.getVersion());
+
+        if (log.getCreator() != null) {
+            generator.writeFieldName("creator");
+            valueWriter.writeValue(generator, log.getCreator());
+        }
+
+        if (log.getBrowser() != null) {
+            generator.writeFieldName("browser");
+            valueWriter.writeValue(generator, log.getBrowser());
+        }
+
+        generator.writeArrayFieldStart("pages");
+        for (HarPage page : log.getPages()) {
+            valueWriter.writeValue(generator, page);
+        }
+        generator.writeEndArray();
+
+        // getEntries() iterates over a snapshot, so entries added while the HAR is being written will not be included
+        generator.writeArrayFieldStart("entries");
+        for (HarEntry entry : log.getEntries()) {
+            valueWriter.writeValue(generator, entry);
+        }
+        generator.writeEndArray();
+
+        if (log.getComment() != null) {
+            generator.writeStringField("comment", log.getComment());
+        }
+
+        generator.writeEndObject();
+    }
+
+    private JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        return generator;
+    }
+}
@@ -15,6 +15,14 @@ import java.util.Map;
 public class AddHeadersFilter extends HttpFiltersAdapter {
     private final Map<String, String> additionalHeaders;
 
+    /**
+     * Creates a filter without an original request. The filter only reads the header map and keeps no per-request state, so a
+     * single instance can be added to every request, provided the map is safe for concurrent reads (such as a ConcurrentMap).
+     */
+    public AddHeadersFilter(Map<String, String> additionalHeaders) {
+        this(null, additionalHeaders);
+    }
+
     public AddHeadersFilter(HttpRequest originalRequest, Map<String, String> additionalHeaders) {
         super(originalRequest);
 
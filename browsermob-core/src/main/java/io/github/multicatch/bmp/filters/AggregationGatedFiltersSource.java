@@ -0,0 +1,62 @@
+package io.github.multicatch.bmp.filters;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpRequest;
+import org.littleshoot.proxy.HttpFilters;
+import org.littleshoot.proxy.HttpFiltersSource;
+
+/**
+ * A filter source that limits HTTP message aggregation to the messages matching an {@link AggregationPredicate}. By default, if any
+ * filter source has a maximum request or response buffer size greater than 0, the proxy aggregates every request or response, since
+ * it cannot tell which messages the filters need to see in full. When every filter source that buffers messages is an
+ * AggregationGatedFiltersSource, the proxy only aggregates the messages matching at least one of the sources' predicates, and streams
+ * every other message through unmodified.
+ * <br>
+ * The filters created by the delegate filter source are still invoked for every request. Messages that are not aggregated are passed
+ * to the filters as they are received, so a {@link ResponseFilter} or {@link RequestFilter} receives null {@link io.github.multicatch.bmp.util.HttpMessageContents}
+ * for those messages.
+ * <br>
+ * The proxy can only stop aggregating requests on a client connection once it has received the first request on that connection, so
+ * the first request on each connection is aggregated regardless of the predicate, unless it is a CONNECT. Responses are always gated
+ * by the predicate.
+ */
+public class AggregationGatedFiltersSource implements HttpFiltersSource {
+    private final HttpFiltersSource delegate;
+    private final AggregationPredicate aggregationPredicate;
+
+    /**
+     * @param delegate filter source that creates the filters and specifies the maximum buffer sizes
+     * @param aggregationPredicate predicate matching the messages the delegate's filters need to see in full
+     */
+    public AggregationGatedFiltersSource(HttpFiltersSource delegate, AggregationPredicate aggregationPredicate) {
+        if (delegate == null || aggregationPredicate == null) {
+            throw new IllegalArgumentException("Filter source and aggregation predicate cannot be null");
+        }
+
+        this.delegate = delegate;
+        this.aggregationPredicate = aggregationPredicate;
+    }
+
+    public HttpFiltersSource getDelegate() {
+        return delegate;
+    }
+
+    public AggregationPredicate getAggregationPredicate() {
+        return aggregationPredicate;
+    }
+
+    @Override
+    public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
+        return delegate.filterRequest(originalRequest, ctx);
+    }
+
+    @Override
+    public int getMaximumRequestBufferSizeInBytes() {
+        return delegate.getMaximumRequestBufferSizeInBytes();
+    }
+
+    @Override
+    public int getMaximumResponseBufferSizeInBytes() {
+        return delegate.getMaximumResponseBufferSizeInBytes();
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.multicatch.bmp.filters;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http.HttpRequest;
+
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether an HTTP message is aggregated into a {@link io.netty.handler.codec.http.FullHttpMessage} before it is passed to the
+ * filters. Filter sources registered with an {@link AggregationGatedFiltersSource} only cause the messages their predicate matches to
+ * be aggregated, so other messages, such as images and downloads, are streamed through the proxy without being buffered.
+ */
+@FunctionalInterface
+public interface AggregationPredicate {
+    /**
+     * Returns true if the message should be aggregated.
+     *
+     * @param request the request the message belongs to; for a request, the request itself, as received from the client; for a
+     *                response, the request as sent to the server
+     * @param url the full URL of the request
+     * @param message the message that may be aggregated: either the request or the response to the request
+     * @return true to aggregate the message
+     */
+    boolean shouldAggregate(HttpRequest request, String url, HttpMessage message);
+
+    /**
+     * Returns a predicate that matches messages by the request's URL and method, and by the message's content type.
+     *
+     * @param urlPattern regular expression the full URL of the request must match, or null to match any URL
+     * @param method HTTP method of the request, or null to match any method
+     * @param contentTypePattern regular expression the media type in the message's Content-Type header must match, ignoring case and
+     *                           parameters such as the charset, or null to match any message, including messages without a content type
+     * @return a predicate that matches messages meeting all the conditions
+     */
+    static AggregationPredicate matching(String urlPattern, String method, String contentTypePattern) {
+        Pattern compiledUrlPattern = urlPattern == null ? null : Pattern.compile(urlPattern);
+        Pattern compiledContentTypePattern = contentTypePattern == null ? null : Pattern.compile(contentTypePattern, Pattern.CASE_INSENSITIVE);
+
+        return (request, url, message) -> {
+            if (method != null && !method.equalsIgnoreCase(request.method().name())) {
+                return false;
+            }
+
+            if (compiledUrlPattern != null && !compiledUrlPattern.matcher(url).matches()) {
+                return false;
+            }
+
+            if (compiledContentTypePattern != null) {
+                String contentType = message.headers().get(HttpHeaderNames.CONTENT_TYPE);
+                if (contentType == null) {
+                    return false;
+                }
+
+                int parametersIndex = contentType.indexOf(';');
+                String mediaType = (parametersIndex < 0 ? contentType : contentType.substring(0, parametersIndex)).trim();
+
+                return compiledContentTypePattern.matcher(mediaType).matches();
+            }
+
+            return true;
+        };
+    }
+}
@@ -1,33 +1,37 @@
 package io.github.multicatch.bmp.filters;
 
+import io.github.multicatch.bmp.proxy.Blacklist;
 import io.github.multicatch.bmp.proxy.BlacklistEntry;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaders;
-import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpObject;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 
 import java.util.Collection;
-import java.util.Collections;
 
 /**
- * Applies blacklist entries to this request. The filter does not make a defensive copy of the blacklist entries, so there is no guarantee
- * that the blacklist at the time of construction will contain the same values when the filter is actually invoked, if the entries are modified concurrently.
+ * Applies a blacklist to this request. The first blacklist entry that matches the request URL and HTTP method determines the
+ * status code of the response.
  */
 public class BlacklistFilter extends HttpsAwareFiltersAdapter {
-    private final Collection<BlacklistEntry> blacklistedUrls;
+    private final Blacklist blacklist;
 
+    /**
+     * Creates a filter that applies the blacklist entries. The entries are compiled into a {@link Blacklist} for every filter
+     * instance, so when the same entries are applied to many requests, use {@link #BlacklistFilter(HttpRequest, ChannelHandlerContext, Blacklist)}
+     * with a Blacklist that is compiled once.
+     */
     public BlacklistFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, Collection<BlacklistEntry> blacklistedUrls) {
+        this(originalRequest, ctx, new Blacklist(blacklistedUrls, 0));
+    }
+
+    public BlacklistFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, Blacklist blacklist) {
         super(originalRequest, ctx);
 
-        if (blacklistedUrls != null) {
-            this.blacklistedUrls = blacklistedUrls;
-        } else {
-            this.blacklistedUrls = Collections.emptyList();
-        }
+        this.blacklist = blacklist != null ? blacklist : Blacklist.EMPTY;
     }
 
     @Override
@@ -35,21 +39,13 @@ public class BlacklistFilter extends HttpsAwareFiltersAdapter {
         if (httpObject instanceof HttpRequest) {
             HttpRequest httpRequest = (HttpRequest) httpObject;
 
-            String url = getFullUrl(httpRequest);
-
-            for (BlacklistEntry entry : blacklistedUrls) {
-                if (HttpMethod.CONNECT.equals(httpRequest.getMethod()) && entry.getHttpMethodPattern() == null) {
-                    // do not allow CONNECTs to be blacklisted unless a method pattern is explicitly specified
-                    continue;
-                }
-
-                if (entry.matches(url, httpRequest.getMethod().name())) {
-                    HttpResponseStatus status = HttpResponseStatus.valueOf(entry.getStatusCode());
-                    HttpResponse resp = new DefaultFullHttpResponse(httpRequest.getProtocolVersion(), status);
-                    HttpHeaders.setContentLength(resp, 0L);
+            BlacklistEntry entry = blacklist.findMatchingEntry(getFullUrl(httpRequest), httpRequest.getMethod().name());
+            if (entry != null) {
+                HttpResponseStatus status = HttpResponseStatus.valueOf(entry.getStatusCode());
+                HttpResponse resp = new DefaultFullHttpResponse(httpRequest.getProtocolVersion(), status);
+                HttpHeaders.setContentLength(resp, 0L);
 
-                    return resp;
-                }
+                return resp;
             }
         }
 
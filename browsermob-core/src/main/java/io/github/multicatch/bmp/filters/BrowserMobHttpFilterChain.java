@@ -1,6 +1,10 @@
 package io.github.multicatch.bmp.filters;
 
 import io.github.multicatch.bmp.BrowserMobProxyServer;
+import io.github.multicatch.bmp.filters.support.AggregationGate;
+import io.github.multicatch.bmp.filters.support.FilterLatencyRecorder;
+import io.github.multicatch.bmp.filters.support.HttpFiltersCallback;
+import io.github.multicatch.bmp.filters.support.RequestContext;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaders;
@@ -21,34 +25,156 @@ import java.util.List;
 
 /**
  * The filter "driver" that delegates to all chained filters specified by the proxy server.
+ * <br>
+ * When the filters for a request are created, the chain builds a dispatch table for each {@link HttpFiltersCallback}, containing
+ * only the filters that implement that callback, in the order the filters were added to the proxy. Callbacks that a filter inherits
+ * from {@link HttpFiltersAdapter} do nothing, so they are not invoked.
+ * <br>
+ * The chain also creates the {@link RequestContext} for the request and shares it with every {@link RequestContextAwareFiltersSource}
+ * and {@link HttpsAwareFiltersAdapter} in the chain, so the URL of the request is computed once per request, rather than once per filter.
  */
 public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
     private static final Logger log = LoggerFactory.getLogger(BrowserMobHttpFilterChain.class);
 
+    private static final HttpFilters[] NO_FILTERS = new HttpFilters[0];
+
+    private static final ModifiedRequestAwareFilter[] NO_MODIFIED_REQUEST_AWARE_FILTERS = new ModifiedRequestAwareFilter[0];
+
+    private static final HttpFiltersCallback[] CALLBACKS = HttpFiltersCallback.values();
+
     private final BrowserMobProxyServer proxyServer;
 
-    private final List<HttpFilters> filters;
+    /**
+     * The filters implementing each callback, indexed by the callback's ordinal.
+     */
+    private final HttpFilters[][] dispatchTable;
+
+    private final ModifiedRequestAwareFilter[] modifiedRequestAwareFilters;
+
+    /**
+     * Records the time spent in each filter callback, or null if filter latency statistics are disabled.
+     */
+    private final FilterLatencyRecorder latencyRecorder;
+
+    private final RequestContext requestContext;
 
     public BrowserMobHttpFilterChain(BrowserMobProxyServer proxyServer, HttpRequest originalRequest, ChannelHandlerContext ctx) {
         super(originalRequest, ctx);
 
         this.proxyServer = proxyServer;
+        this.latencyRecorder = proxyServer.getFilterLatencyRecorder();
+        this.requestContext = new RequestContext(originalRequest, ctx);
 
+        List<HttpFilters> filters;
         if (proxyServer.getFilterFactories() != null) {
             filters = new ArrayList<>(proxyServer.getFilterFactories().size());
 
             // instantiate all HttpFilters using the proxy's filter factories
             for (HttpFiltersSource filterFactory : proxyServer.getFilterFactories()) {
-                HttpFilters filter = filterFactory.filterRequest(originalRequest, ctx);
+                HttpFilters filter;
+                if (filterFactory instanceof RequestContextAwareFiltersSource) {
+                    filter = ((RequestContextAwareFiltersSource) filterFactory).filterRequest(originalRequest, ctx, requestContext);
+                } else {
+                    filter = filterFactory.filterRequest(originalRequest, ctx);
+                }
+
                 // allow filter factories to avoid adding a filter on a per-request basis by returning a null
                 // HttpFilters instance
                 if (filter != null) {
+                    if (filter instanceof HttpsAwareFiltersAdapter) {
+                        ((HttpsAwareFiltersAdapter) filter).setRequestContext(requestContext);
+                    }
+
                     filters.add(filter);
                 }
             }
         } else {
             filters = Collections.emptyList();
         }
+
+        this.dispatchTable = buildDispatchTable(filters);
+        this.modifiedRequestAwareFilters = findModifiedRequestAwareFilters(filters);
+
+        // requests that follow this one on the client connection are only aggregated if the filters need them
+        if (ctx != null) {
+            AggregationGate.install(ctx.pipeline(), proxyServer::getRequestAggregationPredicate, false);
+        }
+    }
+
+    private static HttpFilters[][] buildDispatchTable(List<HttpFilters> filters) {
+        HttpFilters[][] dispatchTable = new HttpFilters[CALLBACKS.length][];
+
+        int[] overriddenCallbacks = new int[filters.size()];
+        int[] filterCounts = new int[CALLBACKS.length];
+        for (int i = 0; i < overriddenCallbacks.length; i++) {
+            overriddenCallbacks[i] = HttpFiltersCallback.overriddenCallbacks(filters.get(i).getClass());
+
+            for (HttpFiltersCallback callback : CALLBACKS) {
+                if ((overriddenCallbacks[i] & callback.mask()) != 0) {
+                    filterCounts[callback.ordinal()]++;
+                }
+            }
+        }
+
+        for (HttpFiltersCallback callback : CALLBACKS) {
+            int filterCount = filterCounts[callback.ordinal()];
+            if (filterCount == 0) {
+                dispatchTable[callback.ordinal()] = NO_FILTERS;
+                continue;
+            }
+
+            HttpFilters[] callbackFilters = new HttpFilters[filterCount];
+            int index = 0;
+            for (int i = 0; i < overriddenCallbacks.length; i++) {
+                if ((overriddenCallbacks[i] & callback.mask()) != 0) {
+                    callbackFilters[index++] = filters.get(i);
+                }
+            }
+
+            dispatchTable[callback.ordinal()] = callbackFilters;
+        }
+
+        return dispatchTable;
+    }
+
+    private static ModifiedRequestAwareFilter[] findModifiedRequestAwareFilters(List<HttpFilters> filters) {
+        List<ModifiedRequestAwareFilter> modifiedRequestAwareFilters = null;
+        for (HttpFilters filter : filters) {
+            if (filter instanceof ModifiedRequestAwareFilter) {
+                if (modifiedRequestAwareFilters == null) {
+                    modifiedRequestAwareFilters = new ArrayList<>();
+                }
+
+                modifiedRequestAwareFilters.add((ModifiedRequestAwareFilter) filter);
+            }
+        }
+
+        if (modifiedRequestAwareFilters == null) {
+            return NO_MODIFIED_REQUEST_AWARE_FILTERS;
+        }
+
+        return modifiedRequestAwareFilters.toArray(NO_MODIFIED_REQUEST_AWARE_FILTERS);
+    }
+
+    /**
+     * @return the context shared by the filters in this chain
+     */
+    public RequestContext getRequestContext() {
+        return requestContext;
+    }
+
+    private HttpFilters[] filtersFor(HttpFiltersCallback callback) {
+        return dispatchTable[callback.ordinal()];
+    }
+
+    private long startTiming() {
+        return latencyRecorder == null ? 0L : System.nanoTime();
+    }
+
+    private void recordTiming(HttpFilters filter, HttpFiltersCallback callback, long start) {
+        if (latencyRecorder != null) {
+            latencyRecorder.record(filter, callback, System.nanoTime() - start);
+        }
     }
 
     @Override
@@ -60,7 +186,8 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
             return abortedResponse;
         }
 
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.CLIENT_TO_PROXY_REQUEST)) {
+            long start = startTiming();
             try {
                 HttpResponse filterResponse = filter.clientToProxyRequest(httpObject);
                 if (filterResponse != null) {
@@ -74,6 +201,8 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
                 }
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.CLIENT_TO_PROXY_REQUEST, start);
             }
         }
 
@@ -88,7 +217,8 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
 
     @Override
     public HttpResponse proxyToServerRequest(HttpObject httpObject) {
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.PROXY_TO_SERVER_REQUEST)) {
+            long start = startTiming();
             try {
                 HttpResponse filterResponse = filter.proxyToServerRequest(httpObject);
                 if (filterResponse != null) {
@@ -96,6 +226,8 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
                 }
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.PROXY_TO_SERVER_REQUEST, start);
             }
         }
 
@@ -104,11 +236,14 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
 
     @Override
     public void proxyToServerRequestSending() {
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.PROXY_TO_SERVER_REQUEST_SENDING)) {
+            long start = startTiming();
             try {
                 filter.proxyToServerRequestSending();
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.PROXY_TO_SERVER_REQUEST_SENDING, start);
             }
         }
     }
@@ -118,7 +253,8 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
     public HttpObject serverToProxyResponse(HttpObject httpObject) {
         HttpObject processedHttpObject = httpObject;
 
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.SERVER_TO_PROXY_RESPONSE)) {
+            long start = startTiming();
             try {
                 processedHttpObject = filter.serverToProxyResponse(processedHttpObject);
                 if (processedHttpObject == null) {
@@ -126,6 +262,8 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
                 }
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.SERVER_TO_PROXY_RESPONSE, start);
             }
         }
 
@@ -134,22 +272,28 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
 
     @Override
     public void serverToProxyResponseTimedOut() {
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.SERVER_TO_PROXY_RESPONSE_TIMED_OUT)) {
+            long start = startTiming();
             try {
                 filter.serverToProxyResponseTimedOut();
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.SERVER_TO_PROXY_RESPONSE_TIMED_OUT, start);
             }
         }
     }
 
     @Override
     public void serverToProxyResponseReceiving() {
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.SERVER_TO_PROXY_RESPONSE_RECEIVING)) {
+            long start = startTiming();
             try {
                 filter.serverToProxyResponseReceiving();
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.SERVER_TO_PROXY_RESPONSE_RECEIVING, start);
             }
         }
     }
@@ -159,7 +303,8 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
         InetSocketAddress overrideAddress = null;
         String newServerHostAndPort = resolvingServerHostAndPort;
 
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.PROXY_TO_SERVER_RESOLUTION_STARTED)) {
+            long start = startTiming();
             try {
                 InetSocketAddress filterResult = filter.proxyToServerResolutionStarted(newServerHostAndPort);
                 if (filterResult != null) {
@@ -168,6 +313,8 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
                 }
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.PROXY_TO_SERVER_RESOLUTION_STARTED, start);
             }
         }
 
@@ -176,22 +323,28 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
 
     @Override
     public void proxyToServerResolutionFailed(String hostAndPort) {
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.PROXY_TO_SERVER_RESOLUTION_FAILED)) {
+            long start = startTiming();
             try {
                 filter.proxyToServerResolutionFailed(hostAndPort);
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.PROXY_TO_SERVER_RESOLUTION_FAILED, start);
             }
         }
     }
 
     @Override
     public void proxyToServerResolutionSucceeded(String serverHostAndPort, InetSocketAddress resolvedRemoteAddress) {
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.PROXY_TO_SERVER_RESOLUTION_SUCCEEDED)) {
+            long start = startTiming();
             try {
                 filter.proxyToServerResolutionSucceeded(serverHostAndPort, resolvedRemoteAddress);
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.PROXY_TO_SERVER_RESOLUTION_SUCCEEDED, start);
             }
         }
 
@@ -200,66 +353,86 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
 
     @Override
     public void proxyToServerConnectionStarted() {
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.PROXY_TO_SERVER_CONNECTION_STARTED)) {
+            long start = startTiming();
             try {
                 filter.proxyToServerConnectionStarted();
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.PROXY_TO_SERVER_CONNECTION_STARTED, start);
             }
         }
     }
 
     @Override
     public void proxyToServerConnectionSSLHandshakeStarted() {
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.PROXY_TO_SERVER_CONNECTION_SSL_HANDSHAKE_STARTED)) {
+            long start = startTiming();
             try {
                 filter.proxyToServerConnectionSSLHandshakeStarted();
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.PROXY_TO_SERVER_CONNECTION_SSL_HANDSHAKE_STARTED, start);
             }
         }
     }
 
     @Override
     public void proxyToServerConnectionFailed() {
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.PROXY_TO_SERVER_CONNECTION_FAILED)) {
+            long start = startTiming();
             try {
                 filter.proxyToServerConnectionFailed();
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.PROXY_TO_SERVER_CONNECTION_FAILED, start);
             }
         }
     }
 
     @Override
     public void proxyToServerConnectionSucceeded(ChannelHandlerContext serverCtx) {
-        for (HttpFilters filter : filters) {
+        AggregationGate.install(serverCtx.pipeline(), proxyServer::getResponseAggregationPredicate, true);
+
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.PROXY_TO_SERVER_CONNECTION_SUCCEEDED)) {
+            long start = startTiming();
             try {
                 filter.proxyToServerConnectionSucceeded(serverCtx);
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.PROXY_TO_SERVER_CONNECTION_SUCCEEDED, start);
             }
         }
     }
 
     @Override
     public void proxyToServerRequestSent() {
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.PROXY_TO_SERVER_REQUEST_SENT)) {
+            long start = startTiming();
             try {
                 filter.proxyToServerRequestSent();
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.PROXY_TO_SERVER_REQUEST_SENT, start);
             }
         }
     }
 
     @Override
     public void serverToProxyResponseReceived() {
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.SERVER_TO_PROXY_RESPONSE_RECEIVED)) {
+            long start = startTiming();
             try {
                 filter.serverToProxyResponseReceived();
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.SERVER_TO_PROXY_RESPONSE_RECEIVED, start);
             }
         }
     }
@@ -267,7 +440,8 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
     @Override
     public HttpObject proxyToClientResponse(HttpObject httpObject) {
         HttpObject processedHttpObject = httpObject;
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.PROXY_TO_CLIENT_RESPONSE)) {
+            long start = startTiming();
             try {
                 processedHttpObject = filter.proxyToClientResponse(processedHttpObject);
                 if (processedHttpObject == null) {
@@ -275,6 +449,8 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
                 }
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.PROXY_TO_CLIENT_RESPONSE, start);
             }
         }
 
@@ -283,11 +459,14 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
 
     @Override
     public void proxyToServerConnectionQueued() {
-        for (HttpFilters filter : filters) {
+        for (HttpFilters filter : filtersFor(HttpFiltersCallback.PROXY_TO_SERVER_CONNECTION_QUEUED)) {
+            long start = startTiming();
             try {
                 filter.proxyToServerConnectionQueued();
             } catch (RuntimeException e) {
                 log.warn("Filter in filter chain threw exception. Filter method may have been aborted.", e);
+            } finally {
+                recordTiming(filter, HttpFiltersCallback.PROXY_TO_SERVER_CONNECTION_QUEUED, start);
             }
         }
     }
@@ -299,14 +478,11 @@ public class BrowserMobHttpFilterChain extends HttpFiltersAdapter {
      * @param modifiedRequest the modified HttpRequest after all filters have finished processing it
      */
     private void updateFiltersWithModifiedResponse(HttpRequest modifiedRequest) {
-        for (HttpFilters filter : filters) {
-            if (filter instanceof ModifiedRequestAwareFilter) {
-                ModifiedRequestAwareFilter requestCaptureFilter = (ModifiedRequestAwareFilter) filter;
-                try {
-                    requestCaptureFilter.setModifiedHttpRequest(modifiedRequest);
-                } catch (RuntimeException e) {
-                    log.warn("ModifiedRequestAwareFilter in filter chain threw exception while setting modified HTTP request.", e);
-                }
+        for (ModifiedRequestAwareFilter requestCaptureFilter : modifiedRequestAwareFilters) {
+            try {
+                requestCaptureFilter.setModifiedHttpRequest(modifiedRequest);
+            } catch (RuntimeException e) {
+                log.warn("ModifiedRequestAwareFilter in filter chain threw exception while setting modified HTTP request.", e);
             }
         }
     }
@@ -1,7 +1,9 @@
 package io.github.multicatch.bmp.filters;
 
-import io.github.multicatch.bmp.util.BrowserMobHttpUtil;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpHeaders;
@@ -11,15 +13,16 @@ import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.LastHttpContent;
 import org.littleshoot.proxy.HttpFiltersAdapter;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-
 /**
  * This filter captures requests from the client (headers and content).
  * <br>
  * The filter can be used in one of three ways: (1) directly, by adding the filter to the filter chain; (2) by subclassing
  * the filter and overriding its filter methods; or (3) by invoking the filter directly from within another filter (see
  * {@link HarCaptureFilter} for an example of the latter).
+ * <br>
+ * Like {@link ServerResponseCaptureFilter}, this filter copies each chunk of the request into a pooled buffer as it is received, so
+ * filters that later modify the request's buffers in place do not change the captured content, and copies the content out once when
+ * the full request has been received. If the request is never completed, the owner of this filter must call {@link #releaseContents()}.
  */
 public class ClientRequestCaptureFilter extends HttpFiltersAdapter {
     /**
@@ -30,9 +33,20 @@ public class ClientRequestCaptureFilter extends HttpFiltersAdapter {
 
     /**
      * Populated by clientToProxyRequest() when processing the HttpContent objects. If the request is chunked,
-     * it will be populated across multiple calls to clientToProxyRequest().
+     * it will be populated across multiple calls to clientToProxyRequest(). Holds pooled copies of the request's
+     * chunks until the full request is captured or the contents are released. Guarded by this filter's lock.
+     */
+    private CompositeByteBuf bufferedRequestContents;
+
+    /**
+     * Populated when processing the LastHttpContent.
+     */
+    private volatile byte[] requestContents;
+
+    /**
+     * Set when the buffered contents are released. Content received after that is not captured. Guarded by this filter's lock.
      */
-    private final ByteArrayOutputStream requestContents = new ByteArrayOutputStream();
+    private boolean contentsReleased;
 
     /**
      * Populated by clientToProxyRequest() when processing the LastHttpContent.
@@ -61,20 +75,41 @@ public class ClientRequestCaptureFilter extends HttpFiltersAdapter {
             if (httpContent instanceof LastHttpContent) {
                 LastHttpContent lastHttpContent = (LastHttpContent) httpContent;
                 trailingHeaders = lastHttpContent .trailingHeaders();
+
+                // copy the request out of the buffered chunks once, and release them
+                requestContents = getFullRequestContents();
+                releaseContents();
             }
         }
 
         return null;
     }
 
-    protected void storeRequestContent(HttpContent httpContent) {
-        ByteBuf bufferedContent = httpContent.content();
-        byte[] content = BrowserMobHttpUtil.extractReadableBytes(bufferedContent);
+    protected synchronized void storeRequestContent(HttpContent httpContent) {
+        ByteBuf content = httpContent.content();
+        if (contentsReleased || !content.isReadable()) {
+            return;
+        }
 
-        try {
-            requestContents.write(content);
-        } catch (IOException e) {
-            // can't happen
+        if (bufferedRequestContents == null) {
+            bufferedRequestContents = ByteBufAllocator.DEFAULT.compositeBuffer(Integer.MAX_VALUE);
+        }
+
+        // copy the chunk, since later filters may replace the contents of its buffer before it is sent to the server
+        int length = content.readableBytes();
+        bufferedRequestContents.addComponent(true, ByteBufAllocator.DEFAULT.buffer(length).writeBytes(content, content.readerIndex(), length));
+    }
+
+    /**
+     * Releases the request content buffered by this filter. Called automatically once the full request has been captured.
+     * Content received after the buffers are released will not be captured. Calling this method more than once has no effect.
+     */
+    public synchronized void releaseContents() {
+        contentsReleased = true;
+
+        if (bufferedRequestContents != null) {
+            bufferedRequestContents.release();
+            bufferedRequestContents = null;
         }
     }
 
@@ -82,8 +117,21 @@ public class ClientRequestCaptureFilter extends HttpFiltersAdapter {
         return httpRequest;
     }
 
-    public byte[] getFullRequestContents() {
-        return requestContents.toByteArray();
+    /**
+     * Returns the contents of the request. If the full request has not been received yet, returns the contents received so far.
+     *
+     * @return request contents
+     */
+    public synchronized byte[] getFullRequestContents() {
+        if (requestContents != null) {
+            return requestContents;
+        }
+
+        if (bufferedRequestContents == null) {
+            return new byte[0];
+        }
+
+        return ByteBufUtil.getBytes(bufferedRequestContents);
     }
 
     public HttpHeaders getTrailingHeaders() {
@@ -1,10 +1,15 @@
 package io.github.multicatch.bmp.filters;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.github.multicatch.bmp.util.BrowserMobHttpUtil;
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpObject;
@@ -15,6 +20,7 @@ import io.netty.handler.codec.http.QueryStringDecoder;
 import io.netty.handler.codec.http.cookie.ClientCookieDecoder;
 import io.netty.handler.codec.http.cookie.Cookie;
 import io.netty.handler.codec.http.cookie.ServerCookieDecoder;
+import io.github.multicatch.bmp.core.har.CapturedContent;
 import io.github.multicatch.bmp.core.har.Har;
 import io.github.multicatch.bmp.core.har.HarCookie;
 import io.github.multicatch.bmp.core.har.HarEntry;
@@ -24,8 +30,10 @@ import io.github.multicatch.bmp.core.har.HarPostDataParam;
 import io.github.multicatch.bmp.core.har.HarRequest;
 import io.github.multicatch.bmp.core.har.HarResponse;
 import io.github.multicatch.bmp.exception.UnsupportedCharsetException;
+import io.github.multicatch.bmp.filters.support.HarCaptureExecutor;
 import io.github.multicatch.bmp.filters.support.HttpConnectTiming;
 import io.github.multicatch.bmp.filters.util.HarCaptureUtil;
+import io.github.multicatch.bmp.proxy.CapturePolicy;
 import io.github.multicatch.bmp.proxy.CaptureType;
 import org.littleshoot.proxy.impl.ProxyUtils;
 import org.slf4j.Logger;
@@ -41,6 +49,7 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -71,11 +80,56 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
      */
     private final ServerResponseCaptureFilter responseCaptureFilter;
 
+    /**
+     * The close future of the client's channel, if a request or response capture filter is in use. Used to release buffered contents
+     * if the client's connection closes before the request completes.
+     */
+    private final ChannelFuture clientCloseFuture;
+
+    private final ChannelFutureListener releaseContentsOnClose = future -> releaseCapturedContents();
+
     /**
      * The CaptureType data types to capture in this request.
      */
     private final EnumSet<CaptureType> dataToCapture;
 
+    /**
+     * The capture policy that applies to this request, or null if the request does not match a policy. The policy may restrict the
+     * content type and size of the bodies that are captured.
+     */
+    private final CapturePolicy capturePolicy;
+
+    /**
+     * Executor that parses captured data into the HarEntry. Tasks run in the order they are submitted.
+     */
+    private final Executor captureExecutor;
+
+    /**
+     * True if captureExecutor runs tasks on another thread, in which case the request and response must be copied before they
+     * are handed to the executor, since they may be modified by other filters.
+     */
+    private final boolean asyncCapture;
+
+    /**
+     * A copy of the request received from the client, used to capture request data on the captureExecutor.
+     */
+    private volatile HttpRequest requestSnapshot;
+
+    /**
+     * A copy of the response received from the server, used to capture response data on the captureExecutor.
+     */
+    private volatile HttpResponse responseSnapshot;
+
+    /**
+     * Set when the request body will not be captured, because its content type or size is excluded by the capture policy.
+     */
+    private volatile boolean requestContentExcluded;
+
+    /**
+     * Set when the response body will not be captured, because its content type or size is excluded by the capture policy.
+     */
+    private volatile boolean responseContentExcluded;
+
     /**
      * Populated by proxyToServerResolutionStarted when DNS resolution starts. If any previous filters already resolved the address, their resolution time
      * will not be included in this time.
@@ -117,6 +171,11 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
      */
     private volatile boolean addressResolved = false;
 
+    /**
+     * True once the HarEntry has been added to the HAR. After that, the entry is only modified by tasks on the captureExecutor.
+     */
+    private volatile boolean entryAdded;
+
     /**
      * Create a new instance of the HarCaptureFilter that will capture request and response information. If no har is specified in the
      * constructor, this filter will do nothing.
@@ -135,6 +194,39 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
      *                      captured (see {@link CaptureType} for information on data collected for each CaptureType)
      */
     public HarCaptureFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, Har har, String currentPageRef, Set<CaptureType> dataToCapture) {
+        this(originalRequest, ctx, har, currentPageRef, dataToCapture, null);
+    }
+
+    /**
+     * Create a new instance of the HarCaptureFilter that captures request and response information, restricting the captured
+     * content according to the capture policy that matched this request (see {@link CapturePolicy}). The data types to capture
+     * should already reflect the policy's capture types.
+     *
+     * @param originalRequest the original HttpRequest from the HttpFiltersSource factory
+     * @param har a reference to the ProxyServer's current HAR file at the time this request is received
+     * @param currentPageRef the ProxyServer's currentPageRef at the time this request is received from the client
+     * @param dataToCapture the data types to capture for this request
+     * @param capturePolicy the capture policy that matched this request, or null if no policy applies
+     */
+    public HarCaptureFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, Har har, String currentPageRef, Set<CaptureType> dataToCapture, CapturePolicy capturePolicy) {
+        this(originalRequest, ctx, har, currentPageRef, dataToCapture, capturePolicy, null);
+    }
+
+    /**
+     * Create a new instance of the HarCaptureFilter that populates and completes the HarEntry on the specified executor instead of the
+     * thread invoking the filter. Values such as timings are measured on the invoking thread, but every change to the entry after it has
+     * been added to the HAR is made on the executor. The executor must run tasks one at a time, in the order they are submitted
+     * (see {@link HarCaptureExecutor#newSequentialExecutor()}).
+     *
+     * @param originalRequest the original HttpRequest from the HttpFiltersSource factory
+     * @param har a reference to the ProxyServer's current HAR file at the time this request is received
+     * @param currentPageRef the ProxyServer's currentPageRef at the time this request is received from the client
+     * @param dataToCapture the data types to capture for this request
+     * @param capturePolicy the capture policy that matched this request, or null if no policy applies
+     * @param captureExecutor sequential executor to populate the HarEntry on, or null to populate it on the calling thread
+     */
+    public HarCaptureFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, Har har, String currentPageRef, Set<CaptureType> dataToCapture,
+                            CapturePolicy capturePolicy, Executor captureExecutor) {
         super(originalRequest, ctx);
 
         if (har == null) {
@@ -153,6 +245,16 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
             this.dataToCapture = EnumSet.noneOf(CaptureType.class);
         }
 
+        this.capturePolicy = capturePolicy;
+
+        if (captureExecutor != null) {
+            this.captureExecutor = captureExecutor;
+            this.asyncCapture = true;
+        } else {
+            this.captureExecutor = MoreExecutors.directExecutor();
+            this.asyncCapture = false;
+        }
+
         // we may need to capture both the request and the response, so set up the request/response filters and delegate to them when
         // the corresponding filter methods are invoked. to save time and memory, only set up the capturing filters when
         // we actually need to capture the data.
@@ -163,7 +265,8 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
         }
 
         if (this.dataToCapture.contains(CaptureType.RESPONSE_CONTENT) || this.dataToCapture.contains(CaptureType.RESPONSE_BINARY_CONTENT)) {
-            responseCaptureFilter = new ServerResponseCaptureFilter(originalRequest, true);
+            // compressed content is captured as-is, since it is decompressed when the HAR is read
+            responseCaptureFilter = new ServerResponseCaptureFilter(originalRequest, false);
         } else {
             responseCaptureFilter = null;
         }
@@ -171,6 +274,17 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
         this.har = har;
 
         this.harEntry = new HarEntry(currentPageRef);
+
+        // the capture filters hold copies of the message's chunks until the message is complete. if the client disconnects before then,
+        // release the copies when the connection closes.
+        if (requestCaptureFilter != null || responseCaptureFilter != null) {
+            this.clientCloseFuture = ctx.channel().closeFuture();
+            if (clientCloseFuture != null) {
+                clientCloseFuture.addListener(releaseContentsOnClose);
+            }
+        } else {
+            this.clientCloseFuture = null;
+        }
     }
 
     @Override
@@ -184,12 +298,11 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
         if (httpObject instanceof HttpRequest) {
             // link the object up now, before we make the request, so that if we get cut off (ie: favicon.ico request and browser shuts down)
             // we still have the attempt associated, even if we never got a response
-            harEntry.setStartedDateTime(new Date());
-            har.getLog().addEntry(harEntry);
-
             HttpRequest httpRequest = (HttpRequest) httpObject;
             this.capturedOriginalRequest = httpRequest;
 
+            harEntry.setStartedDateTime(new Date());
+
             // associate this request's HarRequest object with the har entry
             HarRequest request = createHarRequestForHttpRequest(httpRequest);
             harEntry.setRequest(request);
@@ -200,18 +313,30 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
             defaultHarResponse.setError(HarCaptureUtil.getNoResponseReceivedErrorMessage());
             harEntry.setResponse(defaultHarResponse);
 
-            captureQueryParameters(httpRequest);
+            // the log publishes the entry to other threads. from now on, the entry is only modified by tasks on the captureExecutor.
+            har.getLog().addEntry(harEntry);
+            entryAdded = true;
+
+            HttpRequest requestSnapshot = snapshotRequest(httpRequest);
+            this.requestSnapshot = requestSnapshot;
+
+            captureLater(() -> captureQueryParameters(requestSnapshot));
             // not capturing user agent: in many cases, it doesn't make sense to capture at the HarLog level, since the proxy could be
             // serving requests from many different clients with various user agents. clients can turn on the REQUEST_HEADERS capture type
             // in order to capture the User-Agent header, if desired.
             captureRequestHeaderSize(httpRequest);
 
+            if (requestCaptureFilter != null && capturePolicy != null
+                    && !capturePolicy.matchesContentType(HttpHeaders.getHeader(httpRequest, HttpHeaders.Names.CONTENT_TYPE))) {
+                excludeRequestContent();
+            }
+
             if (dataToCapture.contains(CaptureType.REQUEST_COOKIES)) {
-                captureRequestCookies(httpRequest);
+                captureLater(() -> captureRequestCookies(requestSnapshot));
             }
 
             if (dataToCapture.contains(CaptureType.REQUEST_HEADERS)) {
-                captureRequestHeaders(httpRequest);
+                captureLater(() -> captureRequestHeaders(requestSnapshot));
             }
 
             // The HTTP CONNECT to the proxy server establishes the SSL connection to the remote server, but the
@@ -224,19 +349,40 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
             HttpContent httpContent = (HttpContent) httpObject;
 
             captureRequestSize(httpContent);
+
+            if (requestCaptureFilter != null && !requestContentExcluded && exceedsMaxContentSize(requestBodySize.get())) {
+                excludeRequestContent();
+
+                if (dataToCapture.contains(CaptureType.REQUEST_CONTENT)) {
+                    HarPostData postData = new HarPostData();
+                    postData.setMimeType(HttpHeaders.getHeader(requestCaptureFilter.getHttpRequest(), HttpHeaders.Names.CONTENT_TYPE, BrowserMobHttpUtil.UNKNOWN_CONTENT_TYPE));
+                    postData.setComment(getContentTooLargeMessage());
+                    captureLater(() -> harEntry.getRequest().setPostData(postData));
+                }
+            }
         }
 
         if (httpObject instanceof LastHttpContent) {
             LastHttpContent lastHttpContent = (LastHttpContent) httpObject;
             if (dataToCapture.contains(CaptureType.REQUEST_HEADERS)) {
-                captureTrailingHeaders(lastHttpContent);
+                LastHttpContent trailingHeadersSnapshot = snapshotTrailingHeaders(lastHttpContent);
+                captureLater(() -> captureTrailingHeaders(trailingHeadersSnapshot));
             }
 
-            if (dataToCapture.contains(CaptureType.REQUEST_CONTENT)) {
-                captureRequestContent(requestCaptureFilter.getHttpRequest(), requestCaptureFilter.getFullRequestContents());
+            if (dataToCapture.contains(CaptureType.REQUEST_CONTENT) && !requestContentExcluded) {
+                HttpRequest requestSnapshot = this.requestSnapshot;
+                byte[] requestContents = requestCaptureFilter.getFullRequestContents();
+
+                captureLater(() -> {
+                    captureRequestContent(requestSnapshot, requestContents);
+
+                    // content is captured after the entry was added to the log, so let the log account for its size
+                    har.getLog().updateEntryContent(harEntry);
+                });
             }
 
-            harEntry.getRequest().setBodySize(requestBodySize.get());
+            long bodySize = requestBodySize.get();
+            captureLater(() -> harEntry.getRequest().setBodySize(bodySize));
         }
 
         return null;
@@ -252,22 +398,45 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
 
         if (httpObject instanceof HttpResponse) {
             HttpResponse httpResponse = (HttpResponse) httpObject;
+            this.responseSnapshot = snapshotResponse(httpResponse);
 
             captureResponse(httpResponse);
+
+            if (responseCaptureFilter != null && capturePolicy != null
+                    && !capturePolicy.matchesContentType(HttpHeaders.getHeader(httpResponse, HttpHeaders.Names.CONTENT_TYPE))) {
+                excludeResponseContent();
+            }
         }
 
         if (httpObject instanceof HttpContent) {
             HttpContent httpContent = (HttpContent) httpObject;
 
             captureResponseSize(httpContent);
+
+            if (responseCaptureFilter != null && !responseContentExcluded && exceedsMaxContentSize(responseBodySize.get())) {
+                excludeResponseContent();
+
+                if (dataToCapture.contains(CaptureType.RESPONSE_CONTENT)) {
+                    String contentTooLargeMessage = getContentTooLargeMessage();
+                    captureLater(() -> harEntry.getResponse().getContent().setComment(contentTooLargeMessage));
+                }
+            }
         }
 
         if (httpObject instanceof LastHttpContent) {
-            if (dataToCapture.contains(CaptureType.RESPONSE_CONTENT)) {
-                captureResponseContent(responseCaptureFilter.getHttpResponse(), responseCaptureFilter.getFullResponseContents());
+            if (dataToCapture.contains(CaptureType.RESPONSE_CONTENT) && !responseContentExcluded) {
+                HttpResponse responseSnapshot = this.responseSnapshot;
+                byte[] responseContents = responseCaptureFilter.getFullResponseContents();
+
+                captureLater(() -> {
+                    captureResponseContent(responseSnapshot, responseContents);
+
+                    har.getLog().updateEntryContent(harEntry);
+                });
             }
 
-            harEntry.getResponse().setBodySize(responseBodySize.get());
+            long bodySize = responseBodySize.get();
+            captureLater(() -> harEntry.getResponse().setBodySize(bodySize));
         }
 
         return super.serverToProxyResponse(httpObject);
@@ -277,9 +446,8 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
     public void serverToProxyResponseTimedOut() {
         // replace any existing HarResponse that was created if the server sent a partial response
         HarResponse response = HarCaptureUtil.createHarResponseForFailure();
-        harEntry.setResponse(response);
-
         response.setError(HarCaptureUtil.getResponseTimedOutErrorMessage());
+        captureLater(() -> harEntry.setResponse(response));
 
 
         // include this timeout time in the HarTimings object
@@ -287,16 +455,21 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
 
         // if the proxy started to send the request but has not yet finished, we are currently "sending"
         if (sendStartedNanos > 0L && sendFinishedNanos == 0L) {
-            harEntry.getTimings().setSend(timeoutTimestampNanos - sendStartedNanos, TimeUnit.NANOSECONDS);
+            long sendNanos = timeoutTimestampNanos - sendStartedNanos;
+            captureLater(() -> harEntry.getTimings().setSend(sendNanos, TimeUnit.NANOSECONDS));
         }
         // if the entire request was sent but the proxy has not begun receiving the response, we are currently "waiting"
         else if (sendFinishedNanos > 0L && responseReceiveStartedNanos == 0L) {
-            harEntry.getTimings().setWait(timeoutTimestampNanos - sendFinishedNanos, TimeUnit.NANOSECONDS);
+            long waitNanos = timeoutTimestampNanos - sendFinishedNanos;
+            captureLater(() -> harEntry.getTimings().setWait(waitNanos, TimeUnit.NANOSECONDS));
         }
         // if the proxy has already begun to receive the response, we are currenting "receiving"
         else if (responseReceiveStartedNanos > 0L) {
-            harEntry.getTimings().setReceive(timeoutTimestampNanos - responseReceiveStartedNanos, TimeUnit.NANOSECONDS);
+            long receiveNanos = timeoutTimestampNanos - responseReceiveStartedNanos;
+            captureLater(() -> harEntry.getTimings().setReceive(receiveNanos, TimeUnit.NANOSECONDS));
         }
+
+        completeEntry();
     }
 
     /**
@@ -344,7 +517,8 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
         HttpHeaders headers = httpRequest.headers();
         requestHeadersSize += BrowserMobHttpUtil.getHeaderSize(headers);
 
-        harEntry.getRequest().setHeadersSize(requestHeadersSize);
+        long headersSize = requestHeadersSize;
+        captureLater(() -> harEntry.getRequest().setHeadersSize(headersSize));
     }
 
     protected void captureRequestCookies(HttpRequest httpRequest) {
@@ -437,9 +611,8 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
         } else {
             //TODO: implement capture of files and multipart form data
 
-            // not URL encoded, so let's grab the body of the POST and capture that
-            String postBody = BrowserMobHttpUtil.getContentAsString(fullMessage, charset);
-            harEntry.getRequest().getPostData().setText(postBody);
+            // not URL encoded, so let's grab the body of the POST and capture that. the body is decoded when the HAR is read.
+            harEntry.getRequest().getPostData().setCapturedContent(CapturedContent.text(fullMessage, charset));
         }
     }
 
@@ -453,10 +626,16 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
             contentType = BrowserMobHttpUtil.UNKNOWN_CONTENT_TYPE;
         }
 
-        if (responseCaptureFilter.isResponseCompressed() && !responseCaptureFilter.isDecompressionSuccessful()) {
-            log.warn("Unable to decompress content with encoding: {}. Contents will be encoded as base64 binary data.", responseCaptureFilter.getContentEncoding());
+        // gzipped content is stored compressed, and decompressed when the HAR is read. other encodings cannot be decompressed.
+        String compression = null;
+        if (responseCaptureFilter.isResponseCompressed()) {
+            if (CapturedContent.GZIP.equals(responseCaptureFilter.getContentEncoding())) {
+                compression = CapturedContent.GZIP;
+            } else {
+                log.warn("Unable to decompress content with encoding: {}. Contents will be encoded as base64 binary data.", responseCaptureFilter.getContentEncoding());
 
-            forceBinary = true;
+                forceBinary = true;
+            }
         }
 
         Charset charset;
@@ -473,31 +652,38 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
             log.debug("No charset specified; using charset {} to decode contents from {}", charset, originalRequest.getUri());
         }
 
-        if (!forceBinary && BrowserMobHttpUtil.hasTextualContent(contentType)) {
-            String text = BrowserMobHttpUtil.getContentAsString(fullMessage, charset);
-            harEntry.getResponse().getContent().setText(text);
-        } else if (dataToCapture.contains(CaptureType.RESPONSE_BINARY_CONTENT)) {
-            harEntry.getResponse().getContent().setText(BaseEncoding.base64().encode(fullMessage));
-            harEntry.getResponse().getContent().setEncoding("base64");
+        // the raw content is stored in the HAR, and is only decompressed and decoded or base64-encoded when the HAR is read
+        CapturedContent capturedContent;
+        if (forceBinary) {
+            capturedContent = CapturedContent.binary(fullMessage);
+        } else {
+            capturedContent = new CapturedContent(fullMessage, charset, compression, !BrowserMobHttpUtil.hasTextualContent(contentType),
+                    har.getLog().getCaptureLimits().getMaxDecompressedContentSize());
         }
 
-        harEntry.getResponse().getContent().setSize(fullMessage.length);
+        if (!capturedContent.isBinary() || dataToCapture.contains(CaptureType.RESPONSE_BINARY_CONTENT)) {
+            har.getLog().setResponseContent(harEntry, capturedContent);
+        }
+
+        harEntry.getResponse().getContent().setSize(capturedContent.getSize());
     }
 
     protected void captureResponse(HttpResponse httpResponse) {
         HarResponse response = new HarResponse(httpResponse.getStatus().code(), httpResponse.getStatus().reasonPhrase(), httpResponse.getProtocolVersion().text());
-        harEntry.setResponse(response);
+        captureLater(() -> harEntry.setResponse(response));
 
         captureResponseHeaderSize(httpResponse);
 
         captureResponseMimeType(httpResponse);
 
+        HttpResponse responseSnapshot = this.responseSnapshot != null ? this.responseSnapshot : snapshotResponse(httpResponse);
+
         if (dataToCapture.contains(CaptureType.RESPONSE_COOKIES)) {
-            captureResponseCookies(httpResponse);
+            captureLater(() -> captureResponseCookies(responseSnapshot));
         }
 
         if (dataToCapture.contains(CaptureType.RESPONSE_HEADERS)) {
-            captureResponseHeaders(httpResponse);
+            captureLater(() -> captureResponseHeaders(responseSnapshot));
         }
 
         if (BrowserMobHttpUtil.isRedirect(httpResponse)) {
@@ -509,7 +695,7 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
         String contentType = HttpHeaders.getHeader(httpResponse, HttpHeaders.Names.CONTENT_TYPE);
         // don't set the mimeType to null, since mimeType is a required field
         if (contentType != null) {
-            harEntry.getResponse().getContent().setMimeType(contentType);
+            captureLater(() -> harEntry.getResponse().getContent().setMimeType(contentType));
         }
     }
 
@@ -558,7 +744,8 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
         HttpHeaders headers = httpResponse.headers();
         responseHeadersSize += BrowserMobHttpUtil.getHeaderSize(headers);
 
-        harEntry.getResponse().setHeadersSize(responseHeadersSize);
+        long headersSize = responseHeadersSize;
+        captureLater(() -> harEntry.getResponse().setHeadersSize(headersSize));
     }
 
     protected void captureResponseHeaders(HttpResponse httpResponse) {
@@ -571,7 +758,7 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
     protected void captureRedirectUrl(HttpResponse httpResponse) {
         String locationHeaderValue = HttpHeaders.getHeader(httpResponse, HttpHeaders.Names.LOCATION);
         if (locationHeaderValue != null) {
-            harEntry.getResponse().setRedirectURL(locationHeaderValue);
+            captureLater(() -> harEntry.getResponse().setRedirectURL(locationHeaderValue));
         }
     }
 
@@ -597,16 +784,42 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
         responseBodySize.addAndGet(contentSize);
     }
 
+    /**
+     * Stops capturing the request body, and releases the content buffered so far.
+     */
+    protected void excludeRequestContent() {
+        requestContentExcluded = true;
+        requestCaptureFilter.releaseContents();
+    }
+
+    /**
+     * Stops capturing the response body, and releases the content buffered so far.
+     */
+    protected void excludeResponseContent() {
+        responseContentExcluded = true;
+        responseCaptureFilter.releaseContents();
+    }
+
+    private boolean exceedsMaxContentSize(long bodySize) {
+        return capturePolicy != null && capturePolicy.getMaxContentSize() > 0 && bodySize > capturePolicy.getMaxContentSize();
+    }
+
+    private String getContentTooLargeMessage() {
+        return "Content not captured: body exceeds the maximum captured content size of " + capturePolicy.getMaxContentSize() + " bytes";
+    }
+
     /**
      * Populates ssl and connect timing info in the HAR if an entry for this client and server exist in the cache.
      */
     protected void captureConnectTiming() {
         HttpConnectTiming httpConnectTiming = HttpConnectHarCaptureFilter.consumeConnectTimingForConnection(clientAddress);
         if (httpConnectTiming != null) {
-            harEntry.getTimings().setSsl(httpConnectTiming.getSslHandshakeTimeNanos(), TimeUnit.NANOSECONDS);
-            harEntry.getTimings().setConnect(httpConnectTiming.getConnectTimeNanos(), TimeUnit.NANOSECONDS);
-            harEntry.getTimings().setBlocked(httpConnectTiming.getBlockedTimeNanos(), TimeUnit.NANOSECONDS);
-            harEntry.getTimings().setDns(httpConnectTiming.getDnsTimeNanos(), TimeUnit.NANOSECONDS);
+            captureLater(() -> {
+                harEntry.getTimings().setSsl(httpConnectTiming.getSslHandshakeTimeNanos(), TimeUnit.NANOSECONDS);
+                harEntry.getTimings().setConnect(httpConnectTiming.getConnectTimeNanos(), TimeUnit.NANOSECONDS);
+                harEntry.getTimings().setBlocked(httpConnectTiming.getBlockedTimeNanos(), TimeUnit.NANOSECONDS);
+                harEntry.getTimings().setDns(httpConnectTiming.getDnsTimeNanos(), TimeUnit.NANOSECONDS);
+            });
         }
     }
 
@@ -621,7 +834,7 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
         if (serverHost != null && !serverHost.isEmpty()) {
             String resolvedAddress = ResolvedHostnameCacheFilter.getPreviouslyResolvedAddressForHost(serverHost);
             if (resolvedAddress != null) {
-                harEntry.setServerIPAddress(resolvedAddress);
+                captureLater(() -> harEntry.setServerIPAddress(resolvedAddress));
             } else {
                 // the resolvedAddress may be null if the ResolvedHostnameCacheFilter has expired the entry (which is unlikely),
                 // or in the far more common case that the proxy is using a chained proxy to connect to connect to the
@@ -638,11 +851,8 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
         dnsResolutionStartedNanos = System.nanoTime();
 
         // resolution started means the connection is no longer queued, so populate 'blocked' time
-        if (connectionQueuedNanos > 0L) {
-            harEntry.getTimings().setBlocked(dnsResolutionStartedNanos - connectionQueuedNanos, TimeUnit.NANOSECONDS);
-        } else {
-            harEntry.getTimings().setBlocked(0L, TimeUnit.NANOSECONDS);
-        }
+        long blockedNanos = connectionQueuedNanos > 0L ? dnsResolutionStartedNanos - connectionQueuedNanos : 0L;
+        captureLater(() -> harEntry.getTimings().setBlocked(blockedNanos, TimeUnit.NANOSECONDS));
 
         return null;
     }
@@ -650,32 +860,32 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
     @Override
     public void proxyToServerResolutionFailed(String hostAndPort) {
         HarResponse response = HarCaptureUtil.createHarResponseForFailure();
-        harEntry.setResponse(response);
-
         response.setError(HarCaptureUtil.getResolutionFailedErrorMessage(hostAndPort));
+        captureLater(() -> harEntry.setResponse(response));
 
         // record the amount of time we attempted to resolve the hostname in the HarTimings object
         if (dnsResolutionStartedNanos > 0L) {
-            harEntry.getTimings().setDns(System.nanoTime() - dnsResolutionStartedNanos, TimeUnit.NANOSECONDS);
+            long dnsNanos = System.nanoTime() - dnsResolutionStartedNanos;
+            captureLater(() -> harEntry.getTimings().setDns(dnsNanos, TimeUnit.NANOSECONDS));
         }
+
+        completeEntry();
     }
 
     @Override
     public void proxyToServerResolutionSucceeded(String serverHostAndPort, InetSocketAddress resolvedRemoteAddress) {
         long dnsResolutionFinishedNanos = System.nanoTime();
 
-        if (dnsResolutionStartedNanos > 0L) {
-            harEntry.getTimings().setDns(dnsResolutionFinishedNanos - dnsResolutionStartedNanos, TimeUnit.NANOSECONDS);
-        } else {
-            harEntry.getTimings().setDns(0L, TimeUnit.NANOSECONDS);
-        }
+        long dnsNanos = dnsResolutionStartedNanos > 0L ? dnsResolutionFinishedNanos - dnsResolutionStartedNanos : 0L;
+        captureLater(() -> harEntry.getTimings().setDns(dnsNanos, TimeUnit.NANOSECONDS));
 
         // the address *should* always be resolved at this point
         InetAddress resolvedAddress = resolvedRemoteAddress.getAddress();
         if (resolvedAddress != null) {
             addressResolved = true;
 
-            harEntry.setServerIPAddress(resolvedAddress.getHostAddress());
+            String serverIPAddress = resolvedAddress.getHostAddress();
+            captureLater(() -> harEntry.setServerIPAddress(serverIPAddress));
         }
     }
 
@@ -692,14 +902,16 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
     @Override
     public void proxyToServerConnectionFailed() {
         HarResponse response = HarCaptureUtil.createHarResponseForFailure();
-        harEntry.setResponse(response);
-
         response.setError(HarCaptureUtil.getConnectionFailedErrorMessage());
+        captureLater(() -> harEntry.setResponse(response));
 
         // record the amount of time we attempted to connect in the HarTimings object
         if (connectionStartedNanos > 0L) {
-            harEntry.getTimings().setConnect(System.nanoTime() - connectionStartedNanos, TimeUnit.NANOSECONDS);
+            long connectNanos = System.nanoTime() - connectionStartedNanos;
+            captureLater(() -> harEntry.getTimings().setConnect(connectNanos, TimeUnit.NANOSECONDS));
         }
+
+        completeEntry();
     }
 
     @Override
@@ -707,11 +919,8 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
         long connectionSucceededTimeNanos = System.nanoTime();
 
         // make sure the previous timestamp was captured, to avoid setting an absurd value in the har (see serverToProxyResponseReceiving())
-        if (connectionStartedNanos > 0L) {
-            harEntry.getTimings().setConnect(connectionSucceededTimeNanos - connectionStartedNanos, TimeUnit.NANOSECONDS);
-        } else {
-            harEntry.getTimings().setConnect(0L, TimeUnit.NANOSECONDS);
-        }
+        long connectNanos = connectionStartedNanos > 0L ? connectionSucceededTimeNanos - connectionStartedNanos : 0L;
+        captureLater(() -> harEntry.getTimings().setConnect(connectNanos, TimeUnit.NANOSECONDS));
     }
 
     @Override
@@ -729,11 +938,8 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
         this.sendFinishedNanos = System.nanoTime();
 
         // make sure the previous timestamp was captured, to avoid setting an absurd value in the har (see serverToProxyResponseReceiving())
-        if (sendStartedNanos > 0L) {
-            harEntry.getTimings().setSend(sendFinishedNanos - sendStartedNanos, TimeUnit.NANOSECONDS);
-        } else {
-            harEntry.getTimings().setSend(0L, TimeUnit.NANOSECONDS);
-        }
+        long sendNanos = sendStartedNanos > 0L ? sendFinishedNanos - sendStartedNanos : 0L;
+        captureLater(() -> harEntry.getTimings().setSend(sendNanos, TimeUnit.NANOSECONDS));
     }
 
     @Override
@@ -743,11 +949,8 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
         // started to receive response, so populate the 'wait' time. if we started receiving a response from the server before we finished
         // sending (for example, the server replied with a 404 while we were uploading a large file), there was no wait time, so
         // make sure the wait is set to 0.
-        if (sendFinishedNanos > 0L && sendFinishedNanos < responseReceiveStartedNanos) {
-            harEntry.getTimings().setWait(responseReceiveStartedNanos - sendFinishedNanos, TimeUnit.NANOSECONDS);
-        } else {
-            harEntry.getTimings().setWait(0L, TimeUnit.NANOSECONDS);
-        }
+        long waitNanos = sendFinishedNanos > 0L && sendFinishedNanos < responseReceiveStartedNanos ? responseReceiveStartedNanos - sendFinishedNanos : 0L;
+        captureLater(() -> harEntry.getTimings().setWait(waitNanos, TimeUnit.NANOSECONDS));
     }
 
     @Override
@@ -757,10 +960,98 @@ public class HarCaptureFilter extends HttpsAwareFiltersAdapter {
         // like the wait time, the receive time requires that the serverToProxyResponseReceiving() method be called before this method is invoked.
         // typically that should happen, but it has been reported (https://github.com/lightbody/browsermob-proxy/issues/288) that it
         // sometimes does not. therefore, to be safe, make sure responseReceiveStartedNanos is populated before setting the receive time.
-        if (responseReceiveStartedNanos > 0L) {
-            harEntry.getTimings().setReceive(responseReceivedNanos - responseReceiveStartedNanos, TimeUnit.NANOSECONDS);
+        long receiveNanos = responseReceiveStartedNanos > 0L ? responseReceivedNanos - responseReceiveStartedNanos : 0L;
+        captureLater(() -> harEntry.getTimings().setReceive(receiveNanos, TimeUnit.NANOSECONDS));
+
+        completeEntry();
+    }
+
+    /**
+     * Marks the HarEntry for this request as complete in the HAR, once the response has been received or the request has failed.
+     * Does nothing if the entry was never added to the HAR.
+     */
+    protected void completeEntry() {
+        releaseCapturedContents();
+
+        if (entryAdded) {
+            // the entry is complete once the data captured so far has been parsed into it
+            captureLater(() -> har.getLog().completeEntry(harEntry));
+        }
+    }
+
+    /**
+     * Parses captured data into the HarEntry on the captureExecutor. Once the entry has been added to the HAR, every change to the
+     * entry is made by a task on the captureExecutor, which runs the tasks for this entry one at a time, so the entry is never modified
+     * by two threads at once and each task sees the changes of the tasks before it. Tasks that read the request or response must use the
+     * snapshots, since the original objects may be modified by other filters before the task runs.
+     *
+     * @param captureTask task that populates the HarEntry
+     */
+    protected void captureLater(Runnable captureTask) {
+        captureExecutor.execute(captureTask);
+    }
+
+    /**
+     * Returns a copy of the request line of the request, if capture tasks run on another thread. The headers are only copied if
+     * they will be captured.
+     */
+    private HttpRequest snapshotRequest(HttpRequest httpRequest) {
+        if (!asyncCapture) {
+            return httpRequest;
+        }
+
+        if (dataToCapture.contains(CaptureType.REQUEST_HEADERS) || dataToCapture.contains(CaptureType.REQUEST_COOKIES) || requestCaptureFilter != null) {
+            return new DefaultHttpRequest(httpRequest.getProtocolVersion(), httpRequest.getMethod(), httpRequest.getUri(), httpRequest.headers().copy());
+        } else {
+            return new DefaultHttpRequest(httpRequest.getProtocolVersion(), httpRequest.getMethod(), httpRequest.getUri());
+        }
+    }
+
+    /**
+     * Returns a copy of the status line and headers of the response, if capture tasks run on another thread. Returns null if
+     * no response data is captured on the captureExecutor.
+     */
+    private HttpResponse snapshotResponse(HttpResponse httpResponse) {
+        if (!asyncCapture) {
+            return httpResponse;
+        }
+
+        if (dataToCapture.contains(CaptureType.RESPONSE_HEADERS) || dataToCapture.contains(CaptureType.RESPONSE_COOKIES) || responseCaptureFilter != null) {
+            return new DefaultHttpResponse(httpResponse.getProtocolVersion(), httpResponse.getStatus(), httpResponse.headers().copy());
         } else {
-            harEntry.getTimings().setReceive(0L, TimeUnit.NANOSECONDS);
+            return null;
+        }
+    }
+
+    /**
+     * Returns a copy of the trailing headers of the LastHttpContent, without its content, if capture tasks run on another thread.
+     */
+    private LastHttpContent snapshotTrailingHeaders(LastHttpContent lastHttpContent) {
+        if (!asyncCapture) {
+            return lastHttpContent;
+        }
+
+        LastHttpContent snapshot = new DefaultLastHttpContent();
+        snapshot.trailingHeaders().set(lastHttpContent.trailingHeaders());
+
+        return snapshot;
+    }
+
+    /**
+     * Releases the copies of message chunks held by the request and response capture filters. Contents that have already been captured are
+     * not affected. Called when the request completes or fails, and when the client's connection closes.
+     */
+    protected void releaseCapturedContents() {
+        if (requestCaptureFilter != null) {
+            requestCaptureFilter.releaseContents();
+        }
+
+        if (responseCaptureFilter != null) {
+            responseCaptureFilter.releaseContents();
+        }
+
+        if (clientCloseFuture != null) {
+            clientCloseFuture.removeListener(releaseContentsOnClose);
         }
     }
 }
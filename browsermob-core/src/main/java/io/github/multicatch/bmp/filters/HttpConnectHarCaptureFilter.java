@@ -159,6 +159,8 @@ public class HttpConnectHarCaptureFilter extends HttpsAwareFiltersAdapter implem
             harEntry.getTimings().setDns(System.nanoTime() - dnsResolutionStartedNanos, TimeUnit.NANOSECONDS);
         }
 
+        har.getLog().completeEntry(harEntry);
+
         httpConnectTimes.remove(clientAddress);
     }
 
@@ -174,6 +176,8 @@ public class HttpConnectHarCaptureFilter extends HttpsAwareFiltersAdapter implem
             harEntry.getTimings().setConnect(System.nanoTime() - connectionStartedNanos, TimeUnit.NANOSECONDS);
         }
 
+        har.getLog().completeEntry(harEntry);
+
         httpConnectTimes.remove(clientAddress);
     }
 
@@ -219,6 +223,8 @@ public class HttpConnectHarCaptureFilter extends HttpsAwareFiltersAdapter implem
         else if (responseReceiveStartedNanos > 0L) {
             harEntry.getTimings().setReceive(timeoutTimestampNanos - responseReceiveStartedNanos, TimeUnit.NANOSECONDS);
         }
+
+        har.getLog().completeEntry(harEntry);
     }
 
     @Override
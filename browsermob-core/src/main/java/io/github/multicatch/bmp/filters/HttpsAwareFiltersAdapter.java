@@ -1,45 +1,66 @@
 package io.github.multicatch.bmp.filters;
 
-import com.google.common.net.HostAndPort;
-import io.github.multicatch.bmp.util.BrowserMobHttpUtil;
-import io.github.multicatch.bmp.util.HttpUtil;
+import io.github.multicatch.bmp.filters.support.RequestContext;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.util.Attribute;
 import io.netty.util.AttributeKey;
 import org.littleshoot.proxy.HttpFiltersAdapter;
-import org.littleshoot.proxy.impl.ProxyUtils;
 
 /**
  * The HttpsAwareFiltersAdapter exposes the original host and the "real" host (after filter modifications) to filters for HTTPS
  * requets. HTTPS requests do not normally contain the host in the URI, and the Host header may be missing or spoofed.
  * <br>
- * <b>Note:</b> The {@link #getHttpsRequestHostAndPort()} and {@link #getHttpsOriginalRequestHostAndPort()} methods can only be
- * called when the request is an HTTPS request. Otherwise they will throw an IllegalStateException.
+ * <b>Note:</b> The {@link #getHttpsOriginalRequestHostAndPort()} method can only be called when the request is an HTTPS request.
+ * Otherwise it will throw an IllegalStateException.
+ * <br>
+ * The URL and host of the request are cached in a {@link RequestContext} shared by all filters in the filter chain, so they are
+ * only computed again when a filter modifies the request.
  */
 public class HttpsAwareFiltersAdapter extends HttpFiltersAdapter {
     public static final String IS_HTTPS_ATTRIBUTE_NAME = "isHttps";
     public static final String HOST_ATTRIBUTE_NAME = "host";
     public static final String ORIGINAL_HOST_ATTRIBUTE_NAME = "originalHost";
 
+    /**
+     * The context shared by the filters handling this request. Set by the {@link BrowserMobHttpFilterChain} when the filter is
+     * added to the chain, or created when first needed if this filter is used outside of a filter chain.
+     */
+    private volatile RequestContext requestContext;
+
     public HttpsAwareFiltersAdapter(HttpRequest originalRequest, ChannelHandlerContext ctx) {
         super(originalRequest, ctx);
     }
 
+    /**
+     * Returns the context shared by all filters handling this request, which caches the URL and host of the request.
+     *
+     * @return context of this request
+     */
+    public RequestContext getRequestContext() {
+        RequestContext context = requestContext;
+        if (context == null) {
+            context = new RequestContext(originalRequest, ctx);
+            requestContext = context;
+        }
+
+        return context;
+    }
+
+    /**
+     * Sets the context shared by the filters in the filter chain handling this request.
+     */
+    void setRequestContext(RequestContext requestContext) {
+        this.requestContext = requestContext;
+    }
+
     /**
      * Returns true if this is an HTTPS request.
      *
      * @return true if https, false if http
      */
     public boolean isHttps() {
-        Attribute<Boolean> isHttpsAttr = ctx.attr(AttributeKey.<Boolean>valueOf(IS_HTTPS_ATTRIBUTE_NAME));
-
-        Boolean isHttps = isHttpsAttr.get();
-        if (isHttps == null) {
-            return false;
-        } else {
-            return isHttps;
-        }
+        return getRequestContext().isHttps();
     }
 
     /**
@@ -51,33 +72,7 @@ public class HttpsAwareFiltersAdapter extends HttpFiltersAdapter {
      * @return the full URL of the request, including scheme, host, port, path, and query parameters
      */
     public String getFullUrl(HttpRequest modifiedRequest) {
-        // special case: for HTTPS requests, the full URL is scheme (https://) + the URI of this request
-        if (ProxyUtils.isCONNECT(modifiedRequest)) {
-            // CONNECT requests contain the default port, even if it isn't specified on the request.
-            String hostNoDefaultPort = BrowserMobHttpUtil.removeMatchingPort(modifiedRequest.getUri(), 443);
-            return "https://" + hostNoDefaultPort;
-        }
-
-        // To get the full URL, we need to retrieve the Scheme, Host + Port, Path, and Query Params from the request.
-        // If the request URI starts with http:// or https://, it is already a full URL and can be returned directly.
-        if (HttpUtil.startsWithHttpOrHttps(modifiedRequest.getUri())) {
-            return modifiedRequest.getUri();
-        }
-
-        // The URI did not include the scheme and host, so examine the request to obtain them:
-        // Scheme: the scheme (HTTP/HTTPS) are based on the type of connection, obtained from isHttps()
-        // Host and Port: available for HTTP and HTTPS requests using the getHostAndPort() helper method.
-        // Path + Query Params: since the request URI doesn't start with the scheme, we can safely assume that the URI
-        //    contains only the path and query params.
-        String hostAndPort = getHostAndPort(modifiedRequest);
-        String path = modifiedRequest.getUri();
-        String url;
-        if (isHttps()) {
-            url = "https://" + hostAndPort + path;
-        } else {
-            url = "http://" + hostAndPort + path;
-        }
-        return url;
+        return getRequestContext().getUrl(modifiedRequest).getUrl();
     }
 
     /**
@@ -87,7 +82,7 @@ public class HttpsAwareFiltersAdapter extends HttpFiltersAdapter {
      * @return the full URL of the original request, including scheme, host, port, path, and query parameters
      */
     public String getOriginalUrl() {
-        return getFullUrl(originalRequest);
+        return getRequestContext().getOriginalUrl().getUrl();
     }
 
     /**
@@ -99,14 +94,7 @@ public class HttpsAwareFiltersAdapter extends HttpFiltersAdapter {
      * @return hostname of the specified request, without the port
      */
     public String getHost(HttpRequest modifiedRequest) {
-        String serverHost;
-        if (isHttps()) {
-            HostAndPort hostAndPort = HostAndPort.fromString(getHttpsRequestHostAndPort());
-            serverHost = hostAndPort.getHost();
-        } else {
-            serverHost = HttpUtil.getHostFromRequest(modifiedRequest);
-        }
-        return serverHost;
+        return getRequestContext().getUrl(modifiedRequest).getHost();
     }
 
     /**
@@ -119,28 +107,9 @@ public class HttpsAwareFiltersAdapter extends HttpFiltersAdapter {
      */
     public String getHostAndPort(HttpRequest modifiedRequest) {
         // For HTTP requests, the host and port can be read from the request itself using the URI and/or
-        //   Host header. for HTTPS requests, the host and port are not available in the request. by using the
-        //   getHttpsRequestHostAndPort() helper method, we can retrieve the host and port for HTTPS requests.
-        if (isHttps()) {
-            return getHttpsRequestHostAndPort();
-        } else {
-            return HttpUtil.getHostAndPortFromRequest(modifiedRequest);
-        }
-    }
-
-    /**
-     * Returns the host and port of this HTTPS request, including any modifications by other filters.
-     *
-     * @return host and port of this HTTPS request
-     * @throws IllegalStateException if this is not an HTTPS request
-     */
-    private String getHttpsRequestHostAndPort() throws IllegalStateException {
-        if (!isHttps()) {
-            throw new IllegalStateException("Request is not HTTPS. Cannot get host and port on non-HTTPS request using this method.");
-        }
-
-        Attribute<String> hostnameAttr = ctx.attr(AttributeKey.<String>valueOf(HOST_ATTRIBUTE_NAME));
-        return hostnameAttr.get();
+        //   Host header. for HTTPS requests, the host and port are not available in the request, so the request
+        //   context retrieves them from the connection.
+        return getRequestContext().getUrl(modifiedRequest).getHostAndPort();
     }
 
     /**
@@ -1,9 +1,12 @@
 package io.github.multicatch.bmp.filters;
 
+import io.github.multicatch.bmp.filters.support.ResponseLatencyHandler;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.HttpObject;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import org.littleshoot.proxy.HttpFiltersAdapter;
+import org.littleshoot.proxy.impl.ProxyUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,6 +15,11 @@ import java.util.concurrent.TimeUnit;
 /**
  * Adds latency to a response before sending it to the client. This filter always adds the specified latency, even if the latency
  * between the proxy and the remote server already exceeds this value.
+ * <br>
+ * When the filter is created with the client's {@link ChannelHandlerContext}, the response is delayed by a
+ * {@link ResponseLatencyHandler} in the client channel's pipeline, which schedules the write on the channel's event loop instead of
+ * blocking it. Filters created without a ChannelHandlerContext have no channel to schedule the write on, so they block the thread
+ * sending the response for the duration of the latency.
  */
 public class LatencyFilter extends HttpFiltersAdapter {
     private static final Logger log = LoggerFactory.getLogger(HttpFiltersAdapter.class);
@@ -19,14 +27,28 @@ public class LatencyFilter extends HttpFiltersAdapter {
     private final int latencyMs;
 
     public LatencyFilter(HttpRequest originalRequest, int latencyMs) {
-        super(originalRequest);
+        this(originalRequest, null, latencyMs);
+    }
+
+    public LatencyFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, int latencyMs) {
+        super(originalRequest, ctx);
 
         this.latencyMs = latencyMs;
     }
 
+    @Override
+    public HttpResponse clientToProxyRequest(HttpObject httpObject) {
+        // the response to a CONNECT is not delayed, since the proxy starts the TLS handshake with the client as soon as it is written
+        if (ctx != null && latencyMs > 0 && httpObject instanceof HttpRequest && !ProxyUtils.isCONNECT((HttpRequest) httpObject)) {
+            ResponseLatencyHandler.install(ctx).delayNextResponse(latencyMs);
+        }
+
+        return null;
+    }
+
     @Override
     public HttpObject proxyToClientResponse(HttpObject httpObject) {
-        if (httpObject instanceof HttpResponse) {
+        if (ctx == null && httpObject instanceof HttpResponse) {
             if (latencyMs > 0) {
                 try {
                     TimeUnit.MILLISECONDS.sleep(latencyMs);
@@ -0,0 +1,116 @@
+package io.github.multicatch.bmp.filters;
+
+import com.google.common.net.HostAndPort;
+import io.github.multicatch.bmp.filters.support.NetworkConditionsShaper;
+import io.github.multicatch.bmp.filters.support.ResponseLatencyHandler;
+import io.github.multicatch.bmp.proxy.NetworkConditions;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.util.AttributeKey;
+import org.littleshoot.proxy.impl.ProxyUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Emulates the {@link NetworkConditions} of a {@link NetworkConditionsShaper}'s profile for a single request. The response is
+ * delayed by a latency drawn from the profile's latency distribution, plus the profile's connection setup delay if the request
+ * opened a new connection to the upstream server, using a {@link ResponseLatencyHandler} on the client channel's event loop.
+ * When the upstream connection is opened by a CONNECT (as when the proxy man-in-the-middles HTTPS), the connection setup delay is
+ * recorded on the client channel and added to the first response sent through the tunnel instead.
+ * New upstream connections are shaped to the profile's bandwidth limits.
+ */
+public class NetworkConditionsFilter extends HttpsAwareFiltersAdapter {
+    private static final Logger log = LoggerFactory.getLogger(NetworkConditionsFilter.class);
+
+    /**
+     * Connection setup delay, in milliseconds, of an upstream connection opened by a CONNECT, not yet added to a response.
+     */
+    private static final AttributeKey<Integer> PENDING_CONNECTION_SETUP_DELAY = AttributeKey.valueOf("browsermob-pending-connection-setup-delay");
+
+    private final NetworkConditionsShaper shaper;
+
+    /**
+     * The request as sent to the upstream server, captured when the request is received. Null for CONNECT requests.
+     */
+    private volatile HttpRequest modifiedRequest;
+
+    /**
+     * The host the proxy resolved when connecting to the upstream server, or null if the proxy did not resolve the host.
+     */
+    private volatile String resolvedHost;
+
+    public NetworkConditionsFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, NetworkConditionsShaper shaper) {
+        super(originalRequest, ctx);
+
+        this.shaper = shaper;
+    }
+
+    @Override
+    public HttpResponse clientToProxyRequest(HttpObject httpObject) {
+        if (httpObject instanceof HttpRequest) {
+            HttpRequest httpRequest = (HttpRequest) httpObject;
+
+            // the response to a CONNECT is not delayed, since the proxy starts the TLS handshake with the client as soon as it is written
+            if (!ProxyUtils.isCONNECT(httpRequest)) {
+                modifiedRequest = httpRequest;
+
+                long latencyMs = 0;
+
+                NetworkConditions networkConditions = shaper.getNetworkConditions();
+                if (networkConditions.addsLatency()) {
+                    latencyMs = networkConditions.sampleResponseLatencyMs(ThreadLocalRandom.current());
+                }
+
+                // the first request in a CONNECT tunnel is delayed by the setup of the upstream connection the CONNECT opened
+                Integer pendingConnectionSetupDelayMs = ctx.channel().attr(PENDING_CONNECTION_SETUP_DELAY).getAndSet(null);
+                if (pendingConnectionSetupDelayMs != null) {
+                    latencyMs += pendingConnectionSetupDelayMs;
+                }
+
+                if (latencyMs > 0) {
+                    ResponseLatencyHandler.install(ctx).delayNextResponse(latencyMs);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress proxyToServerResolutionStarted(String resolvingServerHostAndPort) {
+        try {
+            resolvedHost = HostAndPort.fromString(resolvingServerHostAndPort).getHost();
+        } catch (IllegalArgumentException e) {
+            log.debug("Unable to parse host and port of upstream server: {}", resolvingServerHostAndPort, e);
+        }
+
+        return null;
+    }
+
+    @Override
+    public void proxyToServerConnectionSucceeded(ChannelHandlerContext serverCtx) {
+        String host = resolvedHost;
+        if (host == null && modifiedRequest != null) {
+            host = getHost(modifiedRequest);
+        }
+
+        shaper.shapeServerConnection(serverCtx, host);
+
+        int connectionSetupDelayMs = shaper.getNetworkConditions().getConnectionSetupDelayMs();
+        if (connectionSetupDelayMs > 0) {
+            if (modifiedRequest != null) {
+                // this callback runs on the upstream connection's event loop, so delay the response on the client channel's event loop.
+                // the response is written to the client channel after this task runs, since it is written later from this thread.
+                ctx.executor().execute(() -> ResponseLatencyHandler.install(ctx).delayNextResponse(connectionSetupDelayMs));
+            } else {
+                // the response to the CONNECT is not delayed, so delay the first response sent through the tunnel instead
+                ctx.channel().attr(PENDING_CONNECTION_SETUP_DELAY).set(connectionSetupDelayMs);
+            }
+        }
+    }
+}
@@ -13,6 +13,14 @@ import org.littleshoot.proxy.HttpFiltersAdapter;
 public class RegisterRequestFilter extends HttpFiltersAdapter {
     private final ActivityMonitor activityMonitor;
 
+    /**
+     * Creates a filter without an original request. The filter only increments the {@link ActivityMonitor}'s atomic counters, so
+     * a single instance can be added to every request.
+     */
+    public RegisterRequestFilter(ActivityMonitor activityMonitor) {
+        this(null, null, activityMonitor);
+    }
+
     public RegisterRequestFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, ActivityMonitor activityMonitor) {
         super(originalRequest, ctx);
 
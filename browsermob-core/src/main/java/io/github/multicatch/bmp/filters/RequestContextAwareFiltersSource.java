@@ -0,0 +1,25 @@
+package io.github.multicatch.bmp.filters;
+
+import io.github.multicatch.bmp.filters.support.RequestContext;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpRequest;
+import org.littleshoot.proxy.HttpFilters;
+import org.littleshoot.proxy.HttpFiltersSource;
+
+/**
+ * Indicates that a filter source needs the URL or host of a request to decide which filters to create for it.
+ * {@link BrowserMobHttpFilterChain} invokes {@link #filterRequest(HttpRequest, ChannelHandlerContext, RequestContext)} with the
+ * {@link RequestContext} it shares with the request's filters, instead of {@link #filterRequest(HttpRequest, ChannelHandlerContext)},
+ * so the URL of the request is not computed again by the filter source.
+ */
+public interface RequestContextAwareFiltersSource extends HttpFiltersSource {
+    /**
+     * Creates the filters for the request, like {@link #filterRequest(HttpRequest, ChannelHandlerContext)}.
+     *
+     * @param originalRequest the original request from the client
+     * @param ctx the client channel's context
+     * @param requestContext the context shared by the filters handling the request
+     * @return filters for the request, or null to not filter the request
+     */
+    HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx, RequestContext requestContext);
+}
@@ -23,6 +23,13 @@ public class RequestFilterAdapter extends HttpsAwareFiltersAdapter {
         this.requestFilter = requestFilter;
     }
 
+    /**
+     * @return the RequestFilter this adapter executes
+     */
+    public RequestFilter getRequestFilter() {
+        return requestFilter;
+    }
+
     @Override
     public HttpResponse clientToProxyRequest(HttpObject httpObject) {
         // only filter when the original HttpRequest comes through. the RequestFilterAdapter is not designed to filter
@@ -41,6 +41,14 @@ public class ResolvedHostnameCacheFilter extends HttpFiltersAdapter {
                     .concurrencyLevel(RESOLVED_ADDRESSES_CONCURRENCY_LEVEL)
                     .build();
 
+    /**
+     * Creates a filter without an original request. Resolved addresses are recorded in a static, thread-safe cache keyed by
+     * hostname, and the filter keeps no state of its own, so a single instance can be added to every request.
+     */
+    public ResolvedHostnameCacheFilter() {
+        this(null, null);
+    }
+
     public ResolvedHostnameCacheFilter(HttpRequest originalRequest, ChannelHandlerContext ctx) {
         super(originalRequest, ctx);
     }
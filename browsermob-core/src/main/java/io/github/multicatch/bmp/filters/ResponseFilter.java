@@ -12,7 +12,8 @@ public interface ResponseFilter {
      * Implement this method to filter an HTTP response. The URI, headers, status line, etc. are available in the {@code response} parameter,
      * while the contents of the message are available in the {@code contents} parameter. The response can be modified directly, while the
      * contents may be modified using the {@link HttpMessageContents#setTextContents(String)} or {@link HttpMessageContents#setBinaryContents(byte[])}
-     * methods.
+     * methods. Filters that only inspect the contents, or append to them, should prefer {@link HttpMessageContents#getTextContentsAsCharSequence()}
+     * and {@link HttpMessageContents#appendTextContents(CharSequence)}, which avoid copying the entire entity body.
      *
      * @param response The response object, including URI, headers, status line, etc. Modifications to the response object will be reflected in the client response.
      * @param contents The response contents.
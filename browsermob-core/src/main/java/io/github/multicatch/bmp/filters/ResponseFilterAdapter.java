@@ -28,6 +28,13 @@ public class ResponseFilterAdapter extends HttpsAwareFiltersAdapter implements M
         this.responseFilter = responseFilter;
     }
 
+    /**
+     * @return the ResponseFilter this adapter executes
+     */
+    public ResponseFilter getResponseFilter() {
+        return responseFilter;
+    }
+
     @Override
     public HttpObject serverToProxyResponse(HttpObject httpObject) {
         // only filter when the original HttpResponse comes through. the ResponseFilterAdapter is not designed to filter
@@ -0,0 +1,164 @@
+package io.github.multicatch.bmp.filters;
+
+import io.github.multicatch.bmp.exception.UnsupportedCharsetException;
+import io.github.multicatch.bmp.filters.support.RequestContext;
+import io.github.multicatch.bmp.proxy.FilterRule;
+import io.github.multicatch.bmp.proxy.FilterRuleAction;
+import io.github.multicatch.bmp.proxy.FilterRules;
+import io.github.multicatch.bmp.proxy.UrlRewriter;
+import io.github.multicatch.bmp.util.BrowserMobHttpUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import org.littleshoot.proxy.impl.ProxyUtils;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Applies declarative {@link FilterRule}s to the request. Rules are matched against the request after the proxy's URL rewrite rules,
+ * which {@link RewriteUrlFilter} applies first, but before any of the rules' own actions are applied. Every matching rule applies its
+ * actions in order: request header and URL rewrite actions are applied to the request immediately, and response header actions are
+ * applied to the response from the server. If a rule responds to the request, no further rules are applied, and the response header
+ * actions of the rules applied so far are applied to the short-circuit response. Rules are never applied to CONNECTs.
+ * <br>
+ * Unlike {@link RequestFilter}s and {@link ResponseFilter}s, rules never cause the proxy to aggregate requests or responses.
+ */
+public class RuleFilter extends HttpsAwareFiltersAdapter {
+    private final FilterRules filterRules;
+
+    /**
+     * The rules applied to the request, whose response header actions are applied to the response.
+     */
+    private List<FilterRule> appliedRules = Collections.emptyList();
+
+    public RuleFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, FilterRules filterRules) {
+        super(originalRequest, ctx);
+
+        this.filterRules = filterRules != null ? filterRules : FilterRules.EMPTY;
+    }
+
+    @Override
+    public HttpResponse clientToProxyRequest(HttpObject httpObject) {
+        if (httpObject instanceof HttpRequest) {
+            HttpRequest httpRequest = (HttpRequest) httpObject;
+
+            if (ProxyUtils.isCONNECT(httpRequest) || filterRules.isEmpty()) {
+                return null;
+            }
+
+            RequestContext.RequestUrl url = getRequestContext().getUrl(httpRequest);
+            List<FilterRule> matchingRules = filterRules.findMatchingRules(httpRequest.method().name(), url.getHost(), url.getPath(),
+                    httpRequest.headers()::getAll);
+
+            // set before the actions are applied, so the response actions still apply if a request action fails
+            appliedRules = matchingRules;
+
+            for (int i = 0; i < matchingRules.size(); i++) {
+                FilterRule rule = matchingRules.get(i);
+                for (FilterRuleAction action : rule.getActions()) {
+                    HttpResponse response = applyRequestAction(action, httpRequest);
+                    if (response != null) {
+                        appliedRules = matchingRules.subList(0, i + 1);
+                        applyResponseActions(response);
+
+                        return response;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public HttpObject serverToProxyResponse(HttpObject httpObject) {
+        if (httpObject instanceof HttpResponse) {
+            applyResponseActions((HttpResponse) httpObject);
+        }
+
+        return httpObject;
+    }
+
+    /**
+     * Applies the action to the request, returning the short-circuit response if the action responds to the request.
+     */
+    private HttpResponse applyRequestAction(FilterRuleAction action, HttpRequest httpRequest) {
+        switch (action.getType()) {
+            case SET_REQUEST_HEADER:
+                httpRequest.headers().set(action.getName(), action.getValue());
+                break;
+
+            case REMOVE_REQUEST_HEADER:
+                httpRequest.headers().remove(action.getName());
+                break;
+
+            case REWRITE_URL:
+                String originalUrl = getFullUrl(httpRequest);
+                UrlRewriter.RewrittenUrl rewritten = action.getUrlRewriter().rewrite(originalUrl);
+                if (rewritten != null) {
+                    RewriteUrlFilter.applyRewrittenUrl(httpRequest, originalUrl, rewritten, isHttps());
+                }
+                break;
+
+            case RESPOND:
+                return createResponse(action, httpRequest);
+
+            default:
+                // response actions are applied to the response
+                break;
+        }
+
+        return null;
+    }
+
+    private void applyResponseActions(HttpResponse response) {
+        for (FilterRule rule : appliedRules) {
+            for (FilterRuleAction action : rule.getActions()) {
+                if (action.getType() == FilterRuleAction.Type.SET_RESPONSE_HEADER) {
+                    response.headers().set(action.getName(), action.getValue());
+                } else if (action.getType() == FilterRuleAction.Type.REMOVE_RESPONSE_HEADER) {
+                    response.headers().remove(action.getName());
+                }
+            }
+        }
+    }
+
+    private static HttpResponse createResponse(FilterRuleAction action, HttpRequest httpRequest) {
+        ByteBuf content;
+        if (action.getBody() == null || action.getBody().isEmpty()) {
+            content = Unpooled.EMPTY_BUFFER;
+        } else {
+            content = Unpooled.copiedBuffer(action.getBody(), getCharset(action.getContentType()));
+        }
+
+        HttpResponse response = new DefaultFullHttpResponse(httpRequest.protocolVersion(), HttpResponseStatus.valueOf(action.getStatusCode()), content);
+        if (action.getContentType() != null) {
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, action.getContentType());
+        }
+        HttpUtil.setContentLength(response, content.readableBytes());
+
+        return response;
+    }
+
+    /**
+     * Returns the charset declared in the Content-Type, or UTF-8 if the Content-Type does not declare a supported charset.
+     */
+    private static Charset getCharset(String contentType) {
+        try {
+            Charset charset = BrowserMobHttpUtil.readCharsetInContentTypeHeader(contentType);
+            return charset != null ? charset : StandardCharsets.UTF_8;
+        } catch (UnsupportedCharsetException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+}
@@ -1,8 +1,15 @@
 package io.github.multicatch.bmp.filters;
 
+import io.github.multicatch.bmp.exception.UnsupportedCharsetException;
 import io.github.multicatch.bmp.util.BrowserMobHttpUtil;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpObject;
@@ -13,8 +20,8 @@ import org.littleshoot.proxy.HttpFiltersAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 
 /**
  * This filter captures responses from the server (headers and content). The filter can also decompress contents if desired.
@@ -22,6 +29,16 @@ import java.io.IOException;
  * The filter can be used in one of three ways: (1) directly, by adding the filter to the filter chain; (2) by subclassing
  * the filter and overriding its filter methods; or (3) by invoking the filter directly from within another filter (see
  * {@link HarCaptureFilter} for an example of the latter).
+ * <br>
+ * Each chunk of the response is copied into a pooled buffer as it is received, and the chunks are kept in a {@link CompositeByteBuf}
+ * until the full response has been received. The chunks are copied rather than retained, since filters that run later may replace the
+ * contents of a chunk's buffer in place. The content is copied out once when the full response has been received, after which the
+ * pooled buffers are released. If the response is never completed, the owner of this filter must call {@link #releaseContents()}.
+ * <br>
+ * When decompression is enabled, gzipped content is decompressed incrementally as each chunk is received, using a decoder that is
+ * kept for the duration of the response. An optional limit on the decompressed size truncates the decompressed contents once the
+ * limit is reached; text is truncated at the last complete character. Each buffer is released as soon as its content has been copied
+ * out, so a large response is not held in both a buffer and an array for longer than the copy takes.
  */
 public class ServerResponseCaptureFilter extends HttpFiltersAdapter {
     private static final Logger log = LoggerFactory.getLogger(ServerResponseCaptureFilter.class);
@@ -33,9 +50,20 @@ public class ServerResponseCaptureFilter extends HttpFiltersAdapter {
 
     /**
      * Populated by serverToProxyResponse() as it receives HttpContent responses. If the response is chunked, it will
-     * be populated across multiple calls to proxyToServerResponse().
+     * be populated across multiple calls to proxyToServerResponse(). Holds pooled copies of the response's chunks
+     * until the full response is captured or the contents are released. Guarded by this filter's lock.
+     */
+    private CompositeByteBuf bufferedResponseContents;
+
+    /**
+     * Populated when processing the LastHttpContent. Contains the raw, possibly compressed, response.
+     */
+    private volatile byte[] rawResponseContents;
+
+    /**
+     * Set when the buffered contents are released. Content received after that is not captured. Guarded by this filter's lock.
      */
-    private final ByteArrayOutputStream rawResponseContents = new ByteArrayOutputStream();
+    private boolean contentsReleased;
 
     /**
      * Populated when processing the LastHttpContent. If the response is compressed and decompression is requested,
@@ -63,21 +91,75 @@ public class ServerResponseCaptureFilter extends HttpFiltersAdapter {
      */
     private volatile String contentEncoding;
 
+    /**
+     * Set to true if the decompressed contents were truncated because they exceeded maxDecompressedContentSize.
+     */
+    private volatile boolean decompressedContentTruncated;
+
+    /**
+     * Decoder that decompresses the response as it is received. Created when the first chunk of gzipped content is received,
+     * and closed when the response is complete, decompression fails, or the decompressed size limit is reached. Guarded by this filter's lock.
+     */
+    private EmbeddedChannel decompressor;
+
+    /**
+     * The decompressed contents received so far. Guarded by this filter's lock.
+     */
+    private CompositeByteBuf decompressedContents;
+
+    /**
+     * Set if the incremental decompression failed. Guarded by this filter's lock.
+     */
+    private boolean streamingDecompressionFailed;
+
     /**
      * User option indicating compressed content should be uncompressed.
      */
     private final boolean decompressEncodedContent;
 
+    /**
+     * Maximum size of the decompressed contents, in bytes. 0 indicates no limit.
+     */
+    private final long maxDecompressedContentSize;
+
     public ServerResponseCaptureFilter(HttpRequest originalRequest, boolean decompressEncodedContent) {
+        this(originalRequest, decompressEncodedContent, 0L);
+    }
+
+    /**
+     * Creates a filter that decompresses contents, if requested, and truncates the decompressed contents after the specified number of bytes.
+     *
+     * @param originalRequest the original HttpRequest from the HttpFiltersSource factory
+     * @param decompressEncodedContent true if gzipped content should be decompressed
+     * @param maxDecompressedContentSize maximum size of the decompressed contents, in bytes, or 0 for no limit
+     */
+    public ServerResponseCaptureFilter(HttpRequest originalRequest, boolean decompressEncodedContent, long maxDecompressedContentSize) {
         super(originalRequest);
 
         this.decompressEncodedContent = decompressEncodedContent;
+        this.maxDecompressedContentSize = validateMaxDecompressedContentSize(maxDecompressedContentSize);
     }
 
     public ServerResponseCaptureFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, boolean decompressEncodedContent) {
+        this(originalRequest, ctx, decompressEncodedContent, 0L);
+    }
+
+    /**
+     * See {@link #ServerResponseCaptureFilter(HttpRequest, boolean, long)}.
+     */
+    public ServerResponseCaptureFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, boolean decompressEncodedContent, long maxDecompressedContentSize) {
         super(originalRequest, ctx);
 
         this.decompressEncodedContent = decompressEncodedContent;
+        this.maxDecompressedContentSize = validateMaxDecompressedContentSize(maxDecompressedContentSize);
+    }
+
+    private static long validateMaxDecompressedContentSize(long maxDecompressedContentSize) {
+        if (maxDecompressedContentSize < 0) {
+            throw new IllegalArgumentException("Maximum decompressed content size cannot be negative: " + maxDecompressedContentSize);
+        }
+
+        return maxDecompressedContentSize;
     }
 
     @Override
@@ -92,6 +174,10 @@ public class ServerResponseCaptureFilter extends HttpFiltersAdapter {
 
             storeResponseContent(httpContent);
 
+            if (decompressEncodedContent) {
+                decompressResponseContent(httpContent);
+            }
+
             if (httpContent instanceof LastHttpContent) {
                 LastHttpContent lastContent = (LastHttpContent) httpContent;
                 captureTrailingHeaders(lastContent);
@@ -104,9 +190,13 @@ public class ServerResponseCaptureFilter extends HttpFiltersAdapter {
     }
 
     protected void captureFullResponseContents() {
+        // copy the response out of the buffered chunks once, and release the chunks before decompressing
+        rawResponseContents = getRawResponseContents();
+        releaseBufferedResponseContents();
+
         // start by setting fullResponseContent to the raw, (possibly) compressed byte stream. replace it
         // with the decompressed bytes if decompression is successful.
-        fullResponseContents = getRawResponseContents();
+        fullResponseContents = rawResponseContents;
 
         // if the content is compressed, we need to decompress it. but don't use
         // the netty HttpContentCompressor/Decompressor in the pipeline because we don't actually want it to
@@ -123,12 +213,23 @@ public class ServerResponseCaptureFilter extends HttpFiltersAdapter {
             // no compression
             responseCompressed = false;
         }
+
+        releaseContents();
     }
 
     protected void decompressContents() {
         if (contentEncoding.equals(HttpHeaders.Values.GZIP)) {
+            synchronized (this) {
+                if (decompressedContents != null || streamingDecompressionFailed) {
+                    finishStreamingDecompression();
+                    return;
+                }
+            }
+
+            // the content was not decompressed as it was received, most likely because the Content-Encoding was only present in
+            // the trailing headers. decompress the entire response.
             try {
-                fullResponseContents = BrowserMobHttpUtil.decompressContents(getRawResponseContents());
+                fullResponseContents = BrowserMobHttpUtil.decompressContents(rawResponseContents);
                 decompressionSuccessful = true;
             } catch (RuntimeException e) {
                 log.warn("Failed to decompress response with encoding type " + contentEncoding + " when decoding request from " + originalRequest.getUri(), e);
@@ -138,6 +239,138 @@ public class ServerResponseCaptureFilter extends HttpFiltersAdapter {
         }
     }
 
+    /**
+     * Feeds a chunk of gzipped content to this response's decoder, and adds the decompressed output to the decompressed contents.
+     */
+    protected synchronized void decompressResponseContent(HttpContent httpContent) {
+        ByteBuf content = httpContent.content();
+        if (contentsReleased || streamingDecompressionFailed || decompressedContentTruncated || !content.isReadable()
+                || !HttpHeaders.Values.GZIP.equals(contentEncoding)) {
+            return;
+        }
+
+        if (decompressor == null) {
+            decompressor = new EmbeddedChannel(ZlibCodecFactory.newZlibDecoder(ZlibWrapper.GZIP));
+            decompressedContents = ByteBufAllocator.DEFAULT.compositeBuffer(Integer.MAX_VALUE);
+        }
+
+        try {
+            // the decoder may keep part of its input until the next chunk arrives, so give it a copy of the chunk
+            int length = content.readableBytes();
+            decompressor.writeInbound(ByteBufAllocator.DEFAULT.buffer(length).writeBytes(content, content.readerIndex(), length));
+        } catch (RuntimeException e) {
+            log.warn("Failed to decompress response with encoding type " + contentEncoding + " when decoding request from " + originalRequest.getUri(), e);
+            streamingDecompressionFailed = true;
+            closeDecompressor();
+
+            return;
+        }
+
+        readDecompressedContent();
+    }
+
+    /**
+     * Flushes the decoder and sets the full response contents to the decompressed contents, if decompression succeeded.
+     */
+    private synchronized void finishStreamingDecompression() {
+        if (decompressor != null) {
+            try {
+                decompressor.finish();
+                readDecompressedContent();
+            } catch (RuntimeException e) {
+                log.warn("Failed to decompress response with encoding type " + contentEncoding + " when decoding request from " + originalRequest.getUri(), e);
+                streamingDecompressionFailed = true;
+            }
+
+            closeDecompressor();
+        }
+
+        if (streamingDecompressionFailed || decompressedContents == null) {
+            return;
+        }
+
+        byte[] decompressed = ByteBufUtil.getBytes(decompressedContents);
+        decompressedContents.release();
+        decompressedContents = null;
+
+        if (decompressedContentTruncated) {
+            decompressed = truncateToCompleteCharacters(decompressed);
+        }
+
+        fullResponseContents = decompressed;
+        decompressionSuccessful = true;
+    }
+
+    /**
+     * Removes a partial character from the end of truncated text content. Content that is not text, or whose charset is not
+     * supported, is returned unchanged.
+     */
+    private byte[] truncateToCompleteCharacters(byte[] truncatedContents) {
+        String contentType = httpResponse == null ? null : HttpHeaders.getHeader(httpResponse, HttpHeaders.Names.CONTENT_TYPE);
+        if (!BrowserMobHttpUtil.hasTextualContent(contentType)) {
+            return truncatedContents;
+        }
+
+        Charset charset;
+        try {
+            charset = BrowserMobHttpUtil.readCharsetInContentTypeHeader(contentType);
+        } catch (UnsupportedCharsetException e) {
+            log.warn("Found unsupported character set in Content-Type header '{}'. Truncated contents may end with a partial character.", contentType, e);
+            return truncatedContents;
+        }
+
+        if (charset == null) {
+            charset = BrowserMobHttpUtil.DEFAULT_HTTP_CHARSET;
+        }
+
+        int length = BrowserMobHttpUtil.getCompleteCharactersLength(truncatedContents, truncatedContents.length, charset);
+
+        return length == truncatedContents.length ? truncatedContents : Arrays.copyOf(truncatedContents, length);
+    }
+
+    /**
+     * Moves the decoder's output to the decompressed contents, truncating the contents if they exceed the maximum decompressed size.
+     * Must be called while holding this filter's lock.
+     */
+    private void readDecompressedContent() {
+        ByteBuf decompressedChunk;
+        while (decompressor != null && (decompressedChunk = decompressor.readInbound()) != null) {
+            if (maxDecompressedContentSize > 0) {
+                long remaining = maxDecompressedContentSize - decompressedContents.readableBytes();
+                if (decompressedChunk.readableBytes() > remaining) {
+                    decompressedChunk.writerIndex(decompressedChunk.readerIndex() + (int) remaining);
+                    decompressedContentTruncated = true;
+                }
+            }
+
+            if (decompressedChunk.isReadable()) {
+                decompressedContents.addComponent(true, decompressedChunk);
+            } else {
+                decompressedChunk.release();
+            }
+
+            if (decompressedContentTruncated) {
+                // no need to decompress the rest of the response
+                closeDecompressor();
+            }
+        }
+    }
+
+    /**
+     * Closes the decoder and releases any output it still holds. Must be called while holding this filter's lock.
+     */
+    private void closeDecompressor() {
+        if (decompressor != null) {
+            try {
+                decompressor.finishAndReleaseAll();
+            } catch (RuntimeException e) {
+                // the decoder already failed or was closed, and the failure has been logged
+            }
+
+            decompressor = null;
+        }
+    }
+
     protected void captureContentEncoding(HttpResponse httpResponse) {
         contentEncoding = HttpHeaders.getHeader(httpResponse, HttpHeaders.Names.CONTENT_ENCODING);
     }
@@ -155,14 +388,42 @@ public class ServerResponseCaptureFilter extends HttpFiltersAdapter {
 
     }
 
-    protected void storeResponseContent(HttpContent httpContent) {
-        ByteBuf bufferedContent = httpContent.content();
-        byte[] content = BrowserMobHttpUtil.extractReadableBytes(bufferedContent);
+    protected synchronized void storeResponseContent(HttpContent httpContent) {
+        ByteBuf content = httpContent.content();
+        if (contentsReleased || !content.isReadable()) {
+            return;
+        }
 
-        try {
-            rawResponseContents.write(content);
-        } catch (IOException e) {
-            // can't happen
+        if (bufferedResponseContents == null) {
+            bufferedResponseContents = ByteBufAllocator.DEFAULT.compositeBuffer(Integer.MAX_VALUE);
+        }
+
+        // copy the chunk, since later filters may replace the contents of its buffer before it is written to the client
+        int length = content.readableBytes();
+        bufferedResponseContents.addComponent(true, ByteBufAllocator.DEFAULT.buffer(length).writeBytes(content, content.readerIndex(), length));
+    }
+
+    /**
+     * Releases the response content buffered by this filter. Called automatically once the full response has been captured.
+     * Content received after the buffers are released will not be captured. Calling this method more than once has no effect.
+     */
+    public synchronized void releaseContents() {
+        contentsReleased = true;
+
+        releaseBufferedResponseContents();
+
+        closeDecompressor();
+
+        if (decompressedContents != null) {
+            decompressedContents.release();
+            decompressedContents = null;
+        }
+    }
+
+    private synchronized void releaseBufferedResponseContents() {
+        if (bufferedResponseContents != null) {
+            bufferedResponseContents.release();
+            bufferedResponseContents = null;
         }
     }
 
@@ -185,8 +446,16 @@ public class ServerResponseCaptureFilter extends HttpFiltersAdapter {
      *
      * @return entire response contents, without decompression
      */
-    public byte[] getRawResponseContents() {
-        return rawResponseContents.toByteArray();
+    public synchronized byte[] getRawResponseContents() {
+        if (rawResponseContents != null) {
+            return rawResponseContents;
+        }
+
+        if (bufferedResponseContents == null) {
+            return new byte[0];
+        }
+
+        return ByteBufUtil.getBytes(bufferedResponseContents);
     }
 
     public HttpHeaders getTrailingHeaders() {
@@ -208,6 +477,13 @@ public class ServerResponseCaptureFilter extends HttpFiltersAdapter {
         return decompressionSuccessful;
     }
 
+    /**
+     * @return true if the decompressed contents were truncated because they exceeded the maximum decompressed content size
+     */
+    public boolean isDecompressedContentTruncated() {
+        return decompressedContentTruncated;
+    }
+
     public String getContentEncoding() {
         return contentEncoding;
     }
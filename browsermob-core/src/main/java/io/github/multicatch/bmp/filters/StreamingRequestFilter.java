@@ -0,0 +1,46 @@
+package io.github.multicatch.bmp.filters;
+
+import io.github.multicatch.bmp.util.HttpMessageInfo;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+
+/**
+ * A filter that examines and manipulates a request body as it streams through the proxy, one chunk at a time, instead of after the
+ * entire request has been buffered. Unlike a {@link RequestFilter}, a streaming filter does not enable HTTP message aggregation, so it
+ * applies to uploads of any size while the proxy holds only one chunk of the request in memory at a time.
+ * <br>
+ * For each request, {@link #filterRequestHeaders(HttpRequest, HttpMessageInfo)} is invoked once, followed by
+ * {@link #filterRequestContent(HttpRequest, HttpContent, HttpMessageInfo)} for each chunk of the request body if the filter requested
+ * it. If another filter enables aggregation, the entire body is passed as a single {@link LastHttpContent}.
+ * <br>
+ * The same filter instance is used for every request. Filters that keep state for the duration of a request should be registered
+ * with a {@link StreamingRequestFilterAdapter.FilterSource} that creates a new filter for each request.
+ */
+public interface StreamingRequestFilter {
+    /**
+     * Implement this method to filter the request line and headers of an HTTP request and to decide whether the request's content
+     * should be filtered. The request can be modified directly. If the content is filtered, the request's Content-Length header is
+     * replaced by chunked transfer encoding, since the filter may change the length of the content.
+     *
+     * @param request the request object, including method, URI and headers
+     * @param messageInfo additional information relating to the HTTP message
+     * @return true to filter the content of this request, false to send it to the server unmodified
+     */
+    boolean filterRequestHeaders(HttpRequest request, HttpMessageInfo messageInfo);
+
+    /**
+     * Implement this method to filter a chunk of the request's content. The filter can return the chunk, modified in place or not,
+     * return a different chunk to replace it, or return null to drop it. The last chunk of the request is a {@link LastHttpContent};
+     * if it is dropped or replaced by a chunk that is not a LastHttpContent, the request is still terminated.
+     * <br>
+     * The filter must not release the chunk it receives. A replacement chunk must hold its own reference to its buffer, so a
+     * replacement that shares the original chunk's buffer must be created with a retained duplicate or slice of that buffer.
+     *
+     * @param request the request object the chunk belongs to
+     * @param content a chunk of the request's content
+     * @param messageInfo additional information relating to the HTTP message
+     * @return the chunk to send to the server, or null to drop the chunk
+     */
+    HttpContent filterRequestContent(HttpRequest request, HttpContent content, HttpMessageInfo messageInfo);
+}
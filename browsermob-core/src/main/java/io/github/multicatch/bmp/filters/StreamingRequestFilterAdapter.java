@@ -0,0 +1,119 @@
+package io.github.multicatch.bmp.filters;
+
+import io.github.multicatch.bmp.filters.support.StreamingRequestFilterHandler;
+import io.github.multicatch.bmp.util.HttpMessageInfo;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.littleshoot.proxy.HttpFilters;
+import org.littleshoot.proxy.HttpFiltersSourceAdapter;
+import org.littleshoot.proxy.impl.ProxyUtils;
+
+import java.util.function.Supplier;
+
+/**
+ * A filter adapter for {@link StreamingRequestFilter} implementations. Executes the filter's header callback when the
+ * {@link HttpFilters#clientToProxyRequest(HttpObject)} method is invoked with the request, and applies the filter to the request's
+ * chunks using a {@link StreamingRequestFilterHandler} in the client channel's pipeline.
+ */
+public class StreamingRequestFilterAdapter extends HttpsAwareFiltersAdapter {
+    private final StreamingRequestFilter streamingRequestFilter;
+
+    public StreamingRequestFilterAdapter(HttpRequest originalRequest, ChannelHandlerContext ctx, StreamingRequestFilter streamingRequestFilter) {
+        super(originalRequest, ctx);
+
+        this.streamingRequestFilter = streamingRequestFilter;
+    }
+
+    /**
+     * @return the StreamingRequestFilter this adapter executes
+     */
+    public StreamingRequestFilter getStreamingRequestFilter() {
+        return streamingRequestFilter;
+    }
+
+    @Override
+    public HttpResponse clientToProxyRequest(HttpObject httpObject) {
+        // the chunks that follow the request are filtered by the StreamingRequestFilterHandler, before they reach this filter
+        if (httpObject instanceof HttpRequest && !ProxyUtils.isCONNECT(httpObject)) {
+            HttpRequest httpRequest = (HttpRequest) httpObject;
+
+            HttpMessageInfo messageInfo = new HttpMessageInfo(originalRequest, ctx, isHttps(), getFullUrl(httpRequest), getOriginalUrl());
+
+            if (!streamingRequestFilter.filterRequestHeaders(httpRequest, messageInfo) || !hasContent(httpRequest)) {
+                return null;
+            }
+
+            if (httpRequest instanceof FullHttpRequest) {
+                // the request was aggregated by another filter, so the filter sees the entire content at once
+                filterFullRequest((FullHttpRequest) httpRequest, messageInfo);
+            } else if (ctx != null) {
+                // the length of the filtered content is not known until the last chunk has been filtered
+                HttpUtil.setTransferEncodingChunked(httpRequest, true);
+
+                StreamingRequestFilterHandler.install(ctx).filterContent(streamingRequestFilter, httpRequest, messageInfo);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Filters the content of an aggregated request. The proxy sends the request object it passed to the filters, so the filtered content
+     * replaces the request's content in place.
+     */
+    private void filterFullRequest(FullHttpRequest fullRequest, HttpMessageInfo messageInfo) {
+        HttpContent filtered = streamingRequestFilter.filterRequestContent(fullRequest, fullRequest, messageInfo);
+        if (filtered != fullRequest) {
+            // the replacement may share the request's buffer, so copy it before the buffer is cleared
+            byte[] filteredBytes = filtered == null ? new byte[0] : ByteBufUtil.getBytes(filtered.content());
+            ReferenceCountUtil.release(filtered);
+
+            fullRequest.content().clear().writeBytes(filteredBytes);
+        }
+
+        HttpUtil.setContentLength(fullRequest, fullRequest.content().readableBytes());
+    }
+
+    private static boolean hasContent(HttpRequest request) {
+        return HttpUtil.isTransferEncodingChunked(request) || HttpUtil.getContentLength(request, 0L) > 0;
+    }
+
+    /**
+     * A {@link HttpFiltersSourceAdapter} for {@link StreamingRequestFilterAdapter}s. This FilterSource does not enable HTTP message
+     * aggregation.
+     */
+    public static class FilterSource extends HttpFiltersSourceAdapter {
+        private final Supplier<? extends StreamingRequestFilter> filterSupplier;
+
+        /**
+         * Creates a new filter source that will invoke the specified filter for every request.
+         *
+         * @param filter StreamingRequestFilter to invoke
+         */
+        public FilterSource(StreamingRequestFilter filter) {
+            this.filterSupplier = () -> filter;
+        }
+
+        /**
+         * Creates a new filter source that will invoke a new filter for each request, created by the filterSupplier. Use this
+         * constructor for filters that keep state for the duration of a request.
+         *
+         * @param filterSupplier supplier of the StreamingRequestFilter to invoke for each request
+         */
+        public FilterSource(Supplier<? extends StreamingRequestFilter> filterSupplier) {
+            this.filterSupplier = filterSupplier;
+        }
+
+        @Override
+        public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
+            return new StreamingRequestFilterAdapter(originalRequest, ctx, filterSupplier.get());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.multicatch.bmp.filters;
+
+import io.github.multicatch.bmp.util.HttpMessageInfo;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+
+/**
+ * A filter that examines and manipulates a response as it streams through the proxy, one chunk at a time, instead of after the
+ * entire response has been buffered. Unlike a {@link ResponseFilter}, a streaming filter does not enable HTTP message aggregation,
+ * so it applies to responses of any size and does not delay the response until the last byte has been received from the server.
+ * <br>
+ * For each response, {@link #filterResponseHeaders(HttpResponse, HttpMessageInfo)} is invoked once, followed by
+ * {@link #filterResponseContent(HttpResponse, HttpContent, HttpMessageInfo)} for each chunk of the response body if the filter
+ * requested it. If another filter enables aggregation, the entire body is passed as a single {@link LastHttpContent}.
+ * <br>
+ * The same filter instance is used for every response. Filters that keep state for the duration of a response, for example to
+ * match text that spans chunk boundaries, should be registered with a {@link StreamingResponseFilterAdapter.FilterSource} that
+ * creates a new filter for each request.
+ * <br>
+ * The content is passed to the filter exactly as received from the server. If the response has a Content-Encoding, such as gzip,
+ * the chunks are encoded.
+ */
+public interface StreamingResponseFilter {
+    /**
+     * Implement this method to filter the status line and headers of an HTTP response and to decide whether the response's content
+     * should be filtered. The response can be modified directly. If the content is filtered, the response's Content-Length header is
+     * replaced by chunked transfer encoding, since the filter may change the length of the content.
+     *
+     * @param response the response object, including headers and status line
+     * @param messageInfo additional information relating to the HTTP message
+     * @return true to filter the content of this response, false to send it to the client unmodified
+     */
+    boolean filterResponseHeaders(HttpResponse response, HttpMessageInfo messageInfo);
+
+    /**
+     * Implement this method to filter a chunk of the response's content. The filter can return the chunk, modified in place or not,
+     * return a different chunk to replace it, or return null to drop it. The last chunk of the response is a {@link LastHttpContent};
+     * if it is dropped or replaced by a chunk that is not a LastHttpContent, the response is still terminated.
+     * <br>
+     * The filter must not release the chunk it receives. A replacement chunk must hold its own reference to its buffer, so a
+     * replacement that shares the original chunk's buffer must be created with a retained duplicate or slice of that buffer.
+     *
+     * @param response the response object the chunk belongs to
+     * @param content a chunk of the response's content
+     * @param messageInfo additional information relating to the HTTP message
+     * @return the chunk to send to the client, or null to drop the chunk
+     */
+    HttpContent filterResponseContent(HttpResponse response, HttpContent content, HttpMessageInfo messageInfo);
+}
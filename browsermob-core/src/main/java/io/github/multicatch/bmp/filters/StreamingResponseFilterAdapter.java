@@ -0,0 +1,215 @@
+package io.github.multicatch.bmp.filters;
+
+import io.github.multicatch.bmp.util.HttpMessageInfo;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+import org.littleshoot.proxy.HttpFilters;
+import org.littleshoot.proxy.HttpFiltersSourceAdapter;
+
+import java.util.function.Supplier;
+
+/**
+ * A filter adapter for {@link StreamingResponseFilter} implementations. Executes the filter each time the
+ * {@link HttpFilters#serverToProxyResponse(HttpObject)} method is invoked with the response or one of its chunks.
+ */
+public class StreamingResponseFilterAdapter extends HttpsAwareFiltersAdapter implements ModifiedRequestAwareFilter {
+    private final StreamingResponseFilter streamingResponseFilter;
+
+    /**
+     * The final HttpRequest sent to the server, reflecting all modifications from request filters.
+     */
+    private volatile HttpRequest modifiedHttpRequest;
+
+    private HttpResponse response;
+    private HttpMessageInfo messageInfo;
+
+    /**
+     * True if the filter requested the content of the current response.
+     */
+    private boolean filterContent;
+
+    /**
+     * A replacement chunk returned to the proxy, which has not been released yet. The proxy retains the objects it writes to the
+     * client and releases only the objects it read from the server, so the adapter releases its own reference to a replacement once
+     * the proxy has written it, when the next chunk or the end of the response is processed.
+     */
+    private ReferenceCounted pendingRelease;
+
+    public StreamingResponseFilterAdapter(HttpRequest originalRequest, ChannelHandlerContext ctx, StreamingResponseFilter streamingResponseFilter) {
+        super(originalRequest, ctx);
+
+        this.streamingResponseFilter = streamingResponseFilter;
+    }
+
+    /**
+     * @return the StreamingResponseFilter this adapter executes
+     */
+    public StreamingResponseFilter getStreamingResponseFilter() {
+        return streamingResponseFilter;
+    }
+
+    @Override
+    public HttpObject serverToProxyResponse(HttpObject httpObject) {
+        releasePendingReplacement();
+
+        if (httpObject instanceof HttpResponse) {
+            response = (HttpResponse) httpObject;
+            messageInfo = new HttpMessageInfo(originalRequest, ctx, isHttps(), getFullUrl(modifiedHttpRequest), getOriginalUrl());
+
+            filterContent = streamingResponseFilter.filterResponseHeaders(response, messageInfo) && mayHaveContent(response);
+
+            if (!filterContent) {
+                return httpObject;
+            }
+
+            if (httpObject instanceof FullHttpResponse) {
+                // the response was aggregated by another filter, so the filter sees the entire content at once
+                return filterFullResponse((FullHttpResponse) httpObject);
+            }
+
+            // the length of the filtered content is not known until the last chunk has been filtered
+            HttpUtil.setTransferEncodingChunked(response, true);
+
+            return httpObject;
+        }
+
+        if (filterContent && httpObject instanceof HttpContent) {
+            return filterContent((HttpContent) httpObject);
+        }
+
+        return httpObject;
+    }
+
+    @Override
+    public void serverToProxyResponseReceived() {
+        releasePendingReplacement();
+    }
+
+    @Override
+    public void serverToProxyResponseTimedOut() {
+        releasePendingReplacement();
+    }
+
+    @Override
+    public void setModifiedHttpRequest(HttpRequest modifiedHttpRequest) {
+        this.modifiedHttpRequest = modifiedHttpRequest;
+    }
+
+    private HttpObject filterFullResponse(FullHttpResponse fullResponse) {
+        HttpContent filtered = streamingResponseFilter.filterResponseContent(response, fullResponse, messageInfo);
+        if (filtered == fullResponse) {
+            HttpUtil.setContentLength(fullResponse, fullResponse.content().readableBytes());
+
+            return fullResponse;
+        }
+
+        FullHttpResponse replacement = fullResponse.replace(filtered == null ? Unpooled.EMPTY_BUFFER : filtered.content());
+        HttpUtil.setContentLength(replacement, replacement.content().readableBytes());
+
+        pendingRelease = replacement;
+
+        return replacement;
+    }
+
+    private HttpObject filterContent(HttpContent content) {
+        HttpContent filtered = streamingResponseFilter.filterResponseContent(response, content, messageInfo);
+        if (filtered == content) {
+            return content;
+        }
+
+        boolean lastContent = content instanceof LastHttpContent;
+
+        if (filtered == null) {
+            // a dropped chunk is replaced by an empty chunk, which the encoder does not send
+            if (lastContent) {
+                return emptyLastContent((LastHttpContent) content);
+            } else {
+                return new DefaultHttpContent(Unpooled.EMPTY_BUFFER);
+            }
+        }
+
+        if (lastContent && !(filtered instanceof LastHttpContent)) {
+            // the last chunk terminates the response, so its replacement must terminate it as well
+            DefaultLastHttpContent lastReplacement = new DefaultLastHttpContent(filtered.content());
+            lastReplacement.trailingHeaders().set(((LastHttpContent) content).trailingHeaders());
+            filtered = lastReplacement;
+        }
+
+        pendingRelease = filtered;
+
+        return filtered;
+    }
+
+    private void releasePendingReplacement() {
+        if (pendingRelease != null) {
+            ReferenceCountUtil.release(pendingRelease);
+            pendingRelease = null;
+        }
+    }
+
+    private boolean mayHaveContent(HttpResponse response) {
+        if (HttpMethod.HEAD.equals(originalRequest.method())) {
+            return false;
+        }
+
+        int status = response.status().code();
+
+        return status >= 200 && status != HttpResponseStatus.NO_CONTENT.code() && status != HttpResponseStatus.NOT_MODIFIED.code();
+    }
+
+    private static LastHttpContent emptyLastContent(LastHttpContent content) {
+        if (content.trailingHeaders().isEmpty()) {
+            return LastHttpContent.EMPTY_LAST_CONTENT;
+        }
+
+        DefaultLastHttpContent emptyLastContent = new DefaultLastHttpContent(Unpooled.EMPTY_BUFFER);
+        emptyLastContent.trailingHeaders().set(content.trailingHeaders());
+
+        return emptyLastContent;
+    }
+
+    /**
+     * A {@link HttpFiltersSourceAdapter} for {@link StreamingResponseFilterAdapter}s. This FilterSource does not enable HTTP message
+     * aggregation.
+     */
+    public static class FilterSource extends HttpFiltersSourceAdapter {
+        private final Supplier<? extends StreamingResponseFilter> filterSupplier;
+
+        /**
+         * Creates a new filter source that will invoke the specified filter for every response.
+         *
+         * @param filter StreamingResponseFilter to invoke
+         */
+        public FilterSource(StreamingResponseFilter filter) {
+            this.filterSupplier = () -> filter;
+        }
+
+        /**
+         * Creates a new filter source that will invoke a new filter for each request, created by the filterSupplier. Use this
+         * constructor for filters that keep state for the duration of a response.
+         *
+         * @param filterSupplier supplier of the StreamingResponseFilter to invoke for each request
+         */
+        public FilterSource(Supplier<? extends StreamingResponseFilter> filterSupplier) {
+            this.filterSupplier = filterSupplier;
+        }
+
+        @Override
+        public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
+            return new StreamingResponseFilterAdapter(originalRequest, ctx, filterSupplier.get());
+        }
+    }
+}
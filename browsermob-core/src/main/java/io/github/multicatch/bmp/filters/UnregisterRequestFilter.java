@@ -13,6 +13,14 @@ import org.littleshoot.proxy.HttpFiltersAdapter;
 public class UnregisterRequestFilter extends HttpFiltersAdapter {
     private final ActivityMonitor activityMonitor;
 
+    /**
+     * Creates a filter without an original request. The filter only reacts to the last chunk of each response, by reporting it to
+     * the thread-safe {@link ActivityMonitor}, so a single instance can be added to every request.
+     */
+    public UnregisterRequestFilter(ActivityMonitor activityMonitor) {
+        this(null, null, activityMonitor);
+    }
+
     public UnregisterRequestFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, ActivityMonitor activityMonitor) {
         super(originalRequest, ctx);
 
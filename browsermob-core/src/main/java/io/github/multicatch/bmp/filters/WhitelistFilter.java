@@ -1,5 +1,6 @@
 package io.github.multicatch.bmp.filters;
 
+import io.github.multicatch.bmp.proxy.Whitelist;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaders;
@@ -14,21 +15,30 @@ import java.util.Collections;
 import java.util.regex.Pattern;
 
 /**
- * Checks this request against the whitelist, and returns the modified response if the request is not in the whitelist. The filter does not
- * make a defensive copy of the whitelist URLs, so there is no guarantee that the whitelist URLs at the time of construction will contain the
- * same values when the filter is actually invoked, if the URL collection is modified concurrently.
+ * Checks this request against the whitelist, and returns the modified response if the request is not in the whitelist.
  */
 public class WhitelistFilter extends HttpsAwareFiltersAdapter {
     private final boolean whitelistEnabled;
     private final int whitelistResponseCode;
+
+    /**
+     * The whitelist to match requests against, or null if this filter matches the {@link #whitelistUrls} in turn.
+     */
+    private final Whitelist whitelist;
     private final Collection<Pattern> whitelistUrls;
 
+    /**
+     * Creates a filter that checks the request against each of the whitelist URL patterns in turn. The filter does not make a defensive
+     * copy of the whitelist URLs, so there is no guarantee that the whitelist URLs at the time of construction will contain the same values
+     * when the filter is actually invoked, if the URL collection is modified concurrently.
+     */
     public WhitelistFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, boolean whitelistEnabled,int whitelistResponseCode,
                            Collection<Pattern> whitelistUrls) {
         super(originalRequest, ctx);
 
         this.whitelistEnabled = whitelistEnabled;
         this.whitelistResponseCode = whitelistResponseCode;
+        this.whitelist = null;
         if (whitelistUrls != null) {
             this.whitelistUrls = whitelistUrls;
         } else {
@@ -36,6 +46,18 @@ public class WhitelistFilter extends HttpsAwareFiltersAdapter {
         }
     }
 
+    /**
+     * Creates a filter that checks the request against the whitelist, using the whitelist's index of URL patterns.
+     */
+    public WhitelistFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, Whitelist whitelist) {
+        super(originalRequest, ctx);
+
+        this.whitelistEnabled = whitelist.isEnabled();
+        this.whitelistResponseCode = whitelist.getStatusCode();
+        this.whitelist = whitelist;
+        this.whitelistUrls = whitelist.getPatterns();
+    }
+
     @Override
     public HttpResponse clientToProxyRequest(HttpObject httpObject) {
         if (!whitelistEnabled) {
@@ -50,18 +72,7 @@ public class WhitelistFilter extends HttpsAwareFiltersAdapter {
                 return null;
             }
 
-            boolean urlWhitelisted = false;
-
-            String url = getFullUrl(httpRequest);
-
-            for (Pattern pattern : whitelistUrls) {
-                if (pattern.matcher(url).matches()) {
-                    urlWhitelisted = true;
-                    break;
-                }
-            }
-
-            if (!urlWhitelisted) {
+            if (!isWhitelisted(getFullUrl(httpRequest))) {
                 HttpResponseStatus status = HttpResponseStatus.valueOf(whitelistResponseCode);
                 HttpResponse resp = new DefaultFullHttpResponse(httpRequest.getProtocolVersion(), status);
                 HttpHeaders.setContentLength(resp, 0L);
@@ -72,4 +83,18 @@ public class WhitelistFilter extends HttpsAwareFiltersAdapter {
 
         return null;
     }
+
+    private boolean isWhitelisted(String url) {
+        if (whitelist != null) {
+            return whitelist.matches(url);
+        }
+
+        for (Pattern pattern : whitelistUrls) {
+            if (pattern.matcher(url).matches()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
 }
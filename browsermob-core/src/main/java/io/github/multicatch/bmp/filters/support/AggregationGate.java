@@ -0,0 +1,184 @@
+package io.github.multicatch.bmp.filters.support;
+
+import io.github.multicatch.bmp.filters.AggregationPredicate;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpContentDecompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.ssl.SslHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.function.Supplier;
+
+/**
+ * Limits HTTP message aggregation in a connection's pipeline to the messages matching an {@link AggregationPredicate}. When filters
+ * buffer messages, the proxy adds a decompressor and an {@link HttpObjectAggregator} to every connection's pipeline, which decompress and
+ * aggregate every message. {@link #install(ChannelPipeline, Supplier, boolean)} replaces them with versions that only handle the
+ * messages this gate selects, and adds the gate immediately after the HTTP decoder, where it evaluates the predicate once for each
+ * message. Messages that are not selected pass through the pipeline as they were decoded.
+ * <br>
+ * The predicate is obtained for each message, so changes to the proxy's filters apply to connections that are already open. If the
+ * supplier returns null, every message is aggregated.
+ * <br>
+ * All methods except {@link #install(ChannelPipeline, Supplier, boolean)} are called on the channel's event loop.
+ */
+public class AggregationGate extends ChannelDuplexHandler {
+    private static final Logger log = LoggerFactory.getLogger(AggregationGate.class);
+
+    /**
+     * Name of this handler in the connection's pipeline.
+     */
+    public static final String HANDLER_NAME = "browsermob-aggregation-gate";
+
+    // names of the handlers the proxy adds to its pipelines
+    private static final String DECODER_NAME = "decoder";
+    private static final String DECOMPRESSOR_NAME = "inflater";
+    private static final String AGGREGATOR_NAME = "aggregator";
+
+    private final Supplier<AggregationPredicate> predicateSupplier;
+
+    /**
+     * Requests written to the server whose responses have not been received yet, or null for client connections, where the gate
+     * reads the requests themselves.
+     */
+    private final Queue<HttpRequest> pendingRequests;
+
+    /**
+     * True if the message currently being read is aggregated.
+     */
+    private boolean aggregating = true;
+
+    private AggregationGate(Supplier<AggregationPredicate> predicateSupplier, boolean serverConnection) {
+        this.predicateSupplier = predicateSupplier;
+        this.pendingRequests = serverConnection ? new ArrayDeque<>() : null;
+    }
+
+    /**
+     * Gates the aggregation of the messages read from a connection, if the proxy added an aggregator to the connection's pipeline and
+     * the gate is not already installed. Messages that have already been aggregated are not affected.
+     *
+     * @param pipeline pipeline of a connection from a client or to a server
+     * @param predicateSupplier supplies the predicate that selects the messages to aggregate, or null to aggregate every message
+     * @param serverConnection true if the pipeline belongs to a connection to a server, which reads responses; false if it belongs to a
+     *                         connection from a client, which reads requests
+     */
+    public static void install(ChannelPipeline pipeline, Supplier<AggregationPredicate> predicateSupplier, boolean serverConnection) {
+        if (pipeline.get(HANDLER_NAME) != null || pipeline.get(DECODER_NAME) == null) {
+            return;
+        }
+
+        ChannelHandler aggregator = pipeline.get(AGGREGATOR_NAME);
+        if (!(aggregator instanceof HttpObjectAggregator)) {
+            return;
+        }
+
+        AggregationGate gate = new AggregationGate(predicateSupplier, serverConnection);
+        pipeline.addAfter(DECODER_NAME, HANDLER_NAME, gate);
+
+        if (pipeline.get(DECOMPRESSOR_NAME) instanceof HttpContentDecompressor) {
+            pipeline.replace(DECOMPRESSOR_NAME, DECOMPRESSOR_NAME, new GatedHttpContentDecompressor(gate));
+        }
+
+        pipeline.replace(AGGREGATOR_NAME, AGGREGATOR_NAME, new GatedHttpObjectAggregator(((HttpObjectAggregator) aggregator).maxContentLength(), gate));
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpMessage) {
+            HttpRequest request;
+            if (pendingRequests == null) {
+                request = msg instanceof HttpRequest ? (HttpRequest) msg : null;
+            } else if (msg instanceof HttpResponse && ((HttpResponse) msg).status().codeClass() == HttpStatusClass.INFORMATIONAL) {
+                // an informational response is followed by the final response to the same request
+                request = pendingRequests.peek();
+            } else {
+                request = pendingRequests.poll();
+            }
+
+            aggregating = shouldAggregate(ctx, request, (HttpMessage) msg);
+        }
+
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (pendingRequests != null && msg instanceof HttpRequest) {
+            pendingRequests.add((HttpRequest) msg);
+        }
+
+        super.write(ctx, msg, promise);
+    }
+
+    private boolean shouldAggregate(ChannelHandlerContext ctx, HttpRequest request, HttpMessage message) {
+        AggregationPredicate predicate = predicateSupplier.get();
+        if (predicate == null || request == null) {
+            return true;
+        }
+
+        try {
+            return predicate.shouldAggregate(request, getUrl(ctx, request), message);
+        } catch (RuntimeException e) {
+            log.warn("Aggregation predicate threw an exception. Aggregating message.", e);
+
+            return true;
+        }
+    }
+
+    private static String getUrl(ChannelHandlerContext ctx, HttpRequest request) {
+        String uri = request.uri();
+        if (uri.regionMatches(true, 0, "http://", 0, 7) || uri.regionMatches(true, 0, "https://", 0, 8)) {
+            return uri;
+        }
+
+        String scheme = ctx.pipeline().get(SslHandler.class) == null ? "http://" : "https://";
+        String host = request.headers().get(HttpHeaderNames.HOST, "");
+
+        return scheme + host + uri;
+    }
+
+    /**
+     * Decompresses the content of the messages the gate aggregates. Other messages are passed on with their content encoding intact.
+     */
+    private static class GatedHttpContentDecompressor extends HttpContentDecompressor {
+        private final AggregationGate gate;
+
+        GatedHttpContentDecompressor(AggregationGate gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public boolean acceptInboundMessage(Object msg) throws Exception {
+            return gate.aggregating && super.acceptInboundMessage(msg);
+        }
+    }
+
+    /**
+     * Aggregates the messages the gate selects.
+     */
+    private static class GatedHttpObjectAggregator extends HttpObjectAggregator {
+        private final AggregationGate gate;
+
+        GatedHttpObjectAggregator(int maxContentLength, AggregationGate gate) {
+            super(maxContentLength);
+
+            this.gate = gate;
+        }
+
+        @Override
+        public boolean acceptInboundMessage(Object msg) throws Exception {
+            return gate.aggregating && super.acceptInboundMessage(msg);
+        }
+    }
+}
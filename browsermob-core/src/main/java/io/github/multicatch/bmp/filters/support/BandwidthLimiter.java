@@ -0,0 +1,63 @@
+package io.github.multicatch.bmp.filters.support;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bandwidth limit shared by any number of connections. Each transfer reserves the time it takes to send its bytes at the limit,
+ * after every transfer that reserved time before it, so the combined rate of all transfers never exceeds the limit. Unused
+ * bandwidth does not accumulate while the connections are idle. This class is thread-safe.
+ */
+public class BandwidthLimiter {
+    private volatile long bytesPerSecond;
+
+    /**
+     * The time at which all transfers that have reserved bandwidth will have completed, in {@link System#nanoTime()} units.
+     */
+    private long nextAvailableNanos;
+
+    /**
+     * @param bytesPerSecond bandwidth limit in bytes per second, or 0 for no limit
+     */
+    public BandwidthLimiter(long bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Bandwidth limit cannot be negative: " + bytesPerSecond);
+        }
+
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Reserves the bandwidth to transfer the specified number of bytes.
+     *
+     * @param bytes number of bytes to transfer
+     * @return the time at which the transfer completes, in {@link System#nanoTime()} units, or 0 if bandwidth is not limited
+     */
+    public long reserve(long bytes) {
+        long limit = bytesPerSecond;
+        if (limit == 0) {
+            return 0;
+        }
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (nextAvailableNanos - now < 0) {
+                nextAvailableNanos = now;
+            }
+
+            nextAvailableNanos += bytes * TimeUnit.SECONDS.toNanos(1) / limit;
+
+            return nextAvailableNanos;
+        }
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Removes the limit. Transfers that have already reserved bandwidth are not affected.
+     */
+    public void disable() {
+        this.bytesPerSecond = 0;
+    }
+}
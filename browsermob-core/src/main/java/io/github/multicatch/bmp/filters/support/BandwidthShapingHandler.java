@@ -0,0 +1,316 @@
+package io.github.multicatch.bmp.filters.support;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate at which data is read from and written to a channel, using {@link BandwidthLimiter}s that may be shared with
+ * other channels. Data that exceeds the limit is queued and passed on by a task scheduled on the channel's event loop, so the
+ * event loop is never blocked.
+ * <br>
+ * As in Netty's traffic shaping handlers, the queues are kept short by pushing back on the other end of the connection. While
+ * reads are queued, the handler stops reading from the channel: it turns off auto-read and holds back read requests, including
+ * the ones the proxy makes when it turns auto-read back on, until the queue is empty. While more than the channel's write buffer
+ * high water mark is queued for writing, the handler marks the channel as unwritable using a user-defined writability flag, so
+ * the proxy stops reading from the other side of the connection until the queue drains below the low water mark. Events that
+ * follow queued data, such as the end of a read or the channel becoming inactive, are queued behind it. This handler must be the
+ * first handler in the pipeline, so it sees the bytes on the wire.
+ */
+public class BandwidthShapingHandler extends ChannelDuplexHandler {
+    private static final Object READ_COMPLETE = new Object();
+    private static final Object CHANNEL_INACTIVE = new Object();
+
+    private final BandwidthLimiter readLimiter;
+    private final BandwidthLimiter writeLimiter;
+
+    private final Queue<DelayedEvent> pendingReads = new ArrayDeque<>();
+    private final Queue<DelayedEvent> pendingWrites = new ArrayDeque<>();
+
+    /**
+     * Index of the user-defined writability flag this handler uses to mark the channel as unwritable.
+     */
+    private final int userDefinedWritabilityIndex;
+
+    private boolean flushPending;
+
+    /**
+     * Number of bytes in pendingWrites.
+     */
+    private long pendingWriteBytes;
+
+    /**
+     * True if this handler has marked the channel as unwritable.
+     */
+    private boolean writeSuspended;
+
+    /**
+     * True if this handler has turned off auto-read on the channel.
+     */
+    private boolean autoReadSuspended;
+
+    /**
+     * True if a read was requested while reads were queued.
+     */
+    private boolean readRequested;
+
+    /**
+     * @param readLimiter limit on the rate of data read from the channel, or null for no limit
+     * @param writeLimiter limit on the rate of data written to the channel, or null for no limit
+     * @param userDefinedWritabilityIndex index of the user-defined writability flag used to mark the channel as unwritable, from
+     *                                    1 to 31, which must be unique among the handlers in the channel's pipeline
+     */
+    public BandwidthShapingHandler(BandwidthLimiter readLimiter, BandwidthLimiter writeLimiter, int userDefinedWritabilityIndex) {
+        if (userDefinedWritabilityIndex < 1 || userDefinedWritabilityIndex > 31) {
+            throw new IllegalArgumentException("User-defined writability index must be between 1 and 31");
+        }
+
+        this.readLimiter = readLimiter;
+        this.writeLimiter = writeLimiter;
+        this.userDefinedWritabilityIndex = userDefinedWritabilityIndex;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        long releaseAtNanos = readLimiter == null ? 0 : readLimiter.reserve(sizeOf(msg));
+        if (pendingReads.isEmpty() && isDue(releaseAtNanos)) {
+            ctx.fireChannelRead(msg);
+        } else {
+            queueRead(ctx, msg, releaseAtNanos);
+        }
+    }
+
+    @Override
+    public void read(ChannelHandlerContext ctx) throws Exception {
+        if (pendingReads.isEmpty()) {
+            ctx.read();
+        } else {
+            // requested again when the queued reads have been released
+            readRequested = true;
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        if (pendingReads.isEmpty()) {
+            ctx.fireChannelReadComplete();
+        } else {
+            queueRead(ctx, READ_COMPLETE, 0);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (pendingReads.isEmpty()) {
+            ctx.fireChannelInactive();
+        } else {
+            queueRead(ctx, CHANNEL_INACTIVE, 0);
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        long releaseAtNanos = writeLimiter == null ? 0 : writeLimiter.reserve(sizeOf(msg));
+        if (pendingWrites.isEmpty() && isDue(releaseAtNanos)) {
+            ctx.write(msg, promise);
+        } else {
+            boolean scheduleRelease = pendingWrites.isEmpty();
+            pendingWrites.add(new DelayedEvent(msg, promise, releaseAtNanos));
+            pendingWriteBytes += sizeOf(msg);
+
+            if (!writeSuspended && pendingWriteBytes > ctx.channel().config().getWriteBufferHighWaterMark()) {
+                setWriteSuspended(ctx, true);
+            }
+
+            if (scheduleRelease) {
+                ctx.executor().schedule(() -> releaseWrites(ctx), delayUntil(releaseAtNanos), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (pendingWrites.isEmpty()) {
+            ctx.flush();
+        } else {
+            flushPending = true;
+        }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        if (pendingWrites.isEmpty()) {
+            ctx.close(promise);
+        } else {
+            pendingWrites.add(new DelayedEvent(null, promise, 0));
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        DelayedEvent event;
+        while ((event = pendingReads.poll()) != null) {
+            ReferenceCountUtil.release(event.msg);
+        }
+
+        while ((event = pendingWrites.poll()) != null) {
+            if (event.msg != null) {
+                ReferenceCountUtil.release(event.msg);
+            }
+
+            event.promise.tryFailure(new ClosedChannelException());
+        }
+        pendingWriteBytes = 0;
+
+        // the shaping is being removed from an open connection, so stop holding back reads and writes
+        if (writeSuspended) {
+            setWriteSuspended(ctx, false);
+        }
+        resumeReading(ctx);
+    }
+
+    private void queueRead(ChannelHandlerContext ctx, Object msg, long releaseAtNanos) {
+        boolean scheduleRelease = pendingReads.isEmpty();
+        pendingReads.add(new DelayedEvent(msg, null, releaseAtNanos));
+
+        if (scheduleRelease) {
+            suspendReading(ctx);
+            ctx.executor().schedule(() -> releaseReads(ctx), delayUntil(releaseAtNanos), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stops reading from the channel until the queued reads have been released. Turning off auto-read stops the channel from
+     * reading on its own; read requests, including the one made when auto-read is turned back on, are held back by {@link #read}.
+     */
+    private void suspendReading(ChannelHandlerContext ctx) {
+        ChannelConfig config = ctx.channel().config();
+        if (config.isAutoRead()) {
+            autoReadSuspended = true;
+            config.setAutoRead(false);
+        }
+    }
+
+    private void resumeReading(ChannelHandlerContext ctx) {
+        if (autoReadSuspended) {
+            autoReadSuspended = false;
+
+            ChannelConfig config = ctx.channel().config();
+            if (!config.isAutoRead()) {
+                // turning auto-read back on also requests a read
+                readRequested = false;
+                config.setAutoRead(true);
+                return;
+            }
+        }
+
+        if (readRequested) {
+            readRequested = false;
+            ctx.read();
+        }
+    }
+
+    private void setWriteSuspended(ChannelHandlerContext ctx, boolean suspended) {
+        writeSuspended = suspended;
+
+        ChannelOutboundBuffer outboundBuffer = ctx.channel().unsafe().outboundBuffer();
+        if (outboundBuffer != null) {
+            outboundBuffer.setUserDefinedWritability(userDefinedWritabilityIndex, !suspended);
+        }
+    }
+
+    private void releaseReads(ChannelHandlerContext ctx) {
+        DelayedEvent event;
+        while ((event = pendingReads.peek()) != null) {
+            if (!isDue(event.releaseAtNanos)) {
+                ctx.executor().schedule(() -> releaseReads(ctx), delayUntil(event.releaseAtNanos), TimeUnit.NANOSECONDS);
+                return;
+            }
+
+            pendingReads.remove();
+
+            if (event.msg == READ_COMPLETE) {
+                ctx.fireChannelReadComplete();
+            } else if (event.msg == CHANNEL_INACTIVE) {
+                ctx.fireChannelInactive();
+            } else {
+                ctx.fireChannelRead(event.msg);
+            }
+        }
+
+        resumeReading(ctx);
+    }
+
+    private void releaseWrites(ChannelHandlerContext ctx) {
+        DelayedEvent event;
+        while ((event = pendingWrites.peek()) != null) {
+            if (!isDue(event.releaseAtNanos)) {
+                ctx.flush();
+                ctx.executor().schedule(() -> releaseWrites(ctx), delayUntil(event.releaseAtNanos), TimeUnit.NANOSECONDS);
+                return;
+            }
+
+            pendingWrites.remove();
+            pendingWriteBytes -= sizeOf(event.msg);
+
+            if (writeSuspended && pendingWriteBytes < ctx.channel().config().getWriteBufferLowWaterMark()) {
+                setWriteSuspended(ctx, false);
+            }
+
+            if (event.msg == null) {
+                ctx.flush();
+                ctx.close(event.promise);
+            } else {
+                ctx.write(event.msg, event.promise);
+            }
+        }
+
+        if (flushPending) {
+            flushPending = false;
+            ctx.flush();
+        }
+    }
+
+    private static long sizeOf(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        } else if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        } else {
+            return 0;
+        }
+    }
+
+    private static boolean isDue(long releaseAtNanos) {
+        return releaseAtNanos == 0 || releaseAtNanos - System.nanoTime() <= 0;
+    }
+
+    private static long delayUntil(long releaseAtNanos) {
+        return releaseAtNanos == 0 ? 0 : Math.max(0, releaseAtNanos - System.nanoTime());
+    }
+
+    /**
+     * A queued inbound message or event, or a queued write. A queued write with a null msg is a close.
+     */
+    private static class DelayedEvent {
+        private final Object msg;
+        private final ChannelPromise promise;
+        private final long releaseAtNanos;
+
+        DelayedEvent(Object msg, ChannelPromise promise, long releaseAtNanos) {
+            this.msg = msg;
+            this.promise = promise;
+            this.releaseAtNanos = releaseAtNanos;
+        }
+    }
+}
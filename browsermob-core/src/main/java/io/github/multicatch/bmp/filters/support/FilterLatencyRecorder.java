@@ -0,0 +1,158 @@
+package io.github.multicatch.bmp.filters.support;
+
+import io.github.multicatch.bmp.filters.RequestFilterAdapter;
+import io.github.multicatch.bmp.filters.ResponseFilterAdapter;
+import io.github.multicatch.bmp.proxy.FilterLatency;
+import org.littleshoot.proxy.HttpFilters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the time each filter spends in each {@link HttpFiltersCallback}, in a histogram per filter class and callback.
+ * Recording a sample only increments a few counters, so it is cheap enough to use on the proxy's event loop threads.
+ * <br>
+ * Filters added as {@link io.github.multicatch.bmp.filters.RequestFilter}s and {@link io.github.multicatch.bmp.filters.ResponseFilter}s
+ * are recorded under the class of the RequestFilter or ResponseFilter, rather than the adapter that wraps them.
+ */
+public class FilterLatencyRecorder {
+    private final Map<Class<?>, LatencyHistogram[]> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Records the time the filter spent in the callback.
+     *
+     * @param filter filter that was invoked
+     * @param callback callback that was invoked
+     * @param elapsedNanos time spent in the callback, in nanoseconds
+     */
+    public void record(HttpFilters filter, HttpFiltersCallback callback, long elapsedNanos) {
+        Class<?> filterClass = getFilterClass(filter);
+
+        LatencyHistogram[] filterHistograms = histograms.get(filterClass);
+        if (filterHistograms == null) {
+            filterHistograms = histograms.computeIfAbsent(filterClass, key -> newHistograms());
+        }
+
+        filterHistograms[callback.ordinal()].record(elapsedNanos);
+    }
+
+    /**
+     * Returns the latency of every filter class and callback that has recorded at least one sample.
+     *
+     * @return filter latency statistics
+     */
+    public List<FilterLatency> getFilterLatencies() {
+        List<FilterLatency> latencies = new ArrayList<>();
+
+        histograms.forEach((filterClass, filterHistograms) -> {
+            for (HttpFiltersCallback callback : HttpFiltersCallback.values()) {
+                FilterLatency latency = filterHistograms[callback.ordinal()].toFilterLatency(filterClass.getName(), callback.getMethodName());
+                if (latency.getCount() > 0) {
+                    latencies.add(latency);
+                }
+            }
+        });
+
+        return latencies;
+    }
+
+    /**
+     * Discards all recorded samples.
+     */
+    public void reset() {
+        histograms.clear();
+    }
+
+    private static Class<?> getFilterClass(HttpFilters filter) {
+        if (filter instanceof RequestFilterAdapter) {
+            return ((RequestFilterAdapter) filter).getRequestFilter().getClass();
+        }
+
+        if (filter instanceof ResponseFilterAdapter) {
+            return ((ResponseFilterAdapter) filter).getResponseFilter().getClass();
+        }
+
+        return filter.getClass();
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] filterHistograms = new LatencyHistogram[HttpFiltersCallback.values().length];
+        for (int i = 0; i < filterHistograms.length; i++) {
+            filterHistograms[i] = new LatencyHistogram();
+        }
+
+        return filterHistograms;
+    }
+
+    /**
+     * A histogram with one bucket per power of two nanoseconds. Bucket <code>i</code> counts samples in the range
+     * [2<sup>i-1</sup>, 2<sup>i</sup>), and bucket 0 counts samples of 0 ns.
+     */
+    static class LatencyHistogram {
+        private static final int BUCKETS = 64;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        LatencyHistogram() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long elapsedNanos) {
+            if (elapsedNanos < 0) {
+                elapsedNanos = 0;
+            }
+
+            buckets[BUCKETS - Long.numberOfLeadingZeros(elapsedNanos)].increment();
+            totalNanos.add(elapsedNanos);
+
+            if (elapsedNanos > maxNanos.get()) {
+                maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+            }
+        }
+
+        FilterLatency toFilterLatency(String filter, String phase) {
+            long[] bucketCounts = new long[BUCKETS];
+            long sampleCount = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                bucketCounts[i] = buckets[i].sum();
+                sampleCount += bucketCounts[i];
+            }
+
+            long max = maxNanos.get();
+
+            return new FilterLatency(filter, phase, sampleCount, totalNanos.sum(), max,
+                    percentile(bucketCounts, sampleCount, 0.50, max),
+                    percentile(bucketCounts, sampleCount, 0.90, max),
+                    percentile(bucketCounts, sampleCount, 0.99, max));
+        }
+
+        /**
+         * Returns the upper bound of the bucket containing the percentile, limited to the maximum recorded value.
+         */
+        private static long percentile(long[] bucketCounts, long sampleCount, double percentile, long max) {
+            if (sampleCount == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(sampleCount * percentile);
+            long samples = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                samples += bucketCounts[i];
+                if (samples >= rank) {
+                    long upperBound = i == 0 ? 0 : (1L << i) - 1;
+                    return Math.min(upperBound, max);
+                }
+            }
+
+            return max;
+        }
+    }
+}
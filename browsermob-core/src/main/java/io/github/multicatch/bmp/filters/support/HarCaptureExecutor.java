@@ -0,0 +1,198 @@
+package io.github.multicatch.bmp.filters.support;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the expensive parts of HAR capture (parsing headers, cookies, query strings and form data, and storing captured content)
+ * on a small pool of worker threads, so they do not add latency to requests on the proxy's event loop threads.
+ * <br>
+ * Each request uses its own sequential executor, obtained from {@link #newSequentialExecutor()}, so the tasks for a single HAR
+ * entry run in the order they were submitted, while tasks for different entries run concurrently. The pool's queue is bounded:
+ * when it is full, new tasks are dropped and counted (see {@link #getDroppedTaskCount()}), rather than letting the backlog grow without
+ * limit or running the tasks on the submitting thread, which is usually one of the proxy's event loop threads. An entry whose tasks
+ * were dropped is missing the data those tasks would have captured.
+ * <br>
+ * {@link #awaitPending(long, TimeUnit)} waits for all tasks submitted before it was called, which allows a HAR to be returned only
+ * after the entries captured so far have been fully populated.
+ */
+public class HarCaptureExecutor {
+    private static final Logger log = LoggerFactory.getLogger(HarCaptureExecutor.class);
+
+    /**
+     * Default number of worker threads.
+     */
+    public static final int DEFAULT_THREADS = 2;
+
+    /**
+     * Default maximum number of queued tasks before new tasks are dropped.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    /**
+     * Idle worker threads are stopped after this many seconds, so a proxy that is not capturing a HAR does not keep idle threads.
+     */
+    private static final int WORKER_KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * A warning is logged for the first dropped task, and then once per this many dropped tasks.
+     */
+    private static final int DROPPED_TASK_LOG_INTERVAL = 1000;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Tasks that have been submitted but have not finished running.
+     */
+    private final Set<FutureTask<?>> pendingTasks = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong droppedTaskCount = new AtomicLong();
+
+    public HarCaptureExecutor() {
+        this(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates an executor with the specified number of worker threads and task queue capacity. Worker threads are only started
+     * when tasks are submitted.
+     *
+     * @param threads number of worker threads
+     * @param queueCapacity maximum number of queued tasks
+     */
+    public HarCaptureExecutor(int threads, int queueCapacity) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("HAR capture executor requires at least one thread");
+        }
+
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("HAR capture executor queue capacity must be positive");
+        }
+
+        this.executor = new ThreadPoolExecutor(threads, threads, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("har-capture-%d").setDaemon(true).build(),
+                // when the queue is full, or the executor has been shut down, reject the task so it is dropped
+                new ThreadPoolExecutor.AbortPolicy());
+
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns an executor that runs tasks on this executor's worker threads, one at a time, in the order they were submitted.
+     * Tasks that throw an exception are logged and do not prevent subsequent tasks from running. Tasks that cannot be queued are dropped.
+     *
+     * @return a new sequential executor
+     */
+    public Executor newSequentialExecutor() {
+        Executor sequentialExecutor = MoreExecutors.newSequentialExecutor(executor);
+
+        return task -> {
+            PendingTask pendingTask = new PendingTask(task);
+            pendingTasks.add(pendingTask);
+
+            try {
+                sequentialExecutor.execute(pendingTask);
+            } catch (RejectedExecutionException e) {
+                // cancelling the task removes it from the pending tasks
+                pendingTask.cancel(false);
+
+                long dropped = droppedTaskCount.incrementAndGet();
+                if (dropped == 1 || dropped % DROPPED_TASK_LOG_INTERVAL == 0) {
+                    log.warn("HAR capture queue is full or shut down. Dropped {} HAR capture tasks so far; HAR entries may be incomplete.", dropped);
+                }
+            }
+        };
+    }
+
+    /**
+     * Waits for the tasks that were submitted before this method was called to finish running.
+     *
+     * @param timeout maximum time to wait
+     * @param timeUnit unit of the timeout
+     * @return true if all tasks finished, false if the timeout elapsed first
+     */
+    public boolean awaitPending(long timeout, TimeUnit timeUnit) {
+        List<FutureTask<?>> tasks = new ArrayList<>(pendingTasks);
+        if (tasks.isEmpty()) {
+            return true;
+        }
+
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+
+        for (FutureTask<?> task : tasks) {
+            try {
+                task.get(Math.max(deadline - System.nanoTime(), 0L), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                // already logged when the task finished
+            } catch (CancellationException e) {
+                // the task was dropped
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the number of submitted tasks that have not finished running
+     */
+    public int getPendingTaskCount() {
+        return pendingTasks.size();
+    }
+
+    /**
+     * @return the number of tasks that were dropped because the queue was full or the executor was shut down
+     */
+    public long getDroppedTaskCount() {
+        return droppedTaskCount.get();
+    }
+
+    /**
+     * Stops the worker threads after the queued tasks have run. Tasks submitted after this method is called are dropped.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private class PendingTask extends FutureTask<Void> {
+        PendingTask(Runnable task) {
+            super(task, null);
+        }
+
+        @Override
+        protected void done() {
+            pendingTasks.remove(this);
+
+            if (!isCancelled()) {
+                try {
+                    get();
+                } catch (ExecutionException e) {
+                    log.warn("Error while capturing HAR entry", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.multicatch.bmp.filters.support;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpObject;
+import org.littleshoot.proxy.HttpFilters;
+import org.littleshoot.proxy.HttpFiltersAdapter;
+
+import java.net.InetSocketAddress;
+
+/**
+ * The {@link HttpFilters} callbacks that {@link io.github.multicatch.bmp.filters.BrowserMobHttpFilterChain} dispatches to its filters.
+ * <br>
+ * Most filters extend {@link HttpFiltersAdapter} and override only one or two callbacks; the adapter's implementations of the
+ * remaining callbacks do nothing (or return the HttpObject unmodified). {@link #overriddenCallbacks(Class)} determines which
+ * callbacks a filter class actually implements, so the filter chain only needs to invoke those callbacks. The result is computed
+ * once per filter class and cached.
+ */
+public enum HttpFiltersCallback {
+    CLIENT_TO_PROXY_REQUEST("clientToProxyRequest", HttpObject.class),
+    PROXY_TO_SERVER_REQUEST("proxyToServerRequest", HttpObject.class),
+    PROXY_TO_SERVER_REQUEST_SENDING("proxyToServerRequestSending"),
+    PROXY_TO_SERVER_REQUEST_SENT("proxyToServerRequestSent"),
+    SERVER_TO_PROXY_RESPONSE("serverToProxyResponse", HttpObject.class),
+    SERVER_TO_PROXY_RESPONSE_TIMED_OUT("serverToProxyResponseTimedOut"),
+    SERVER_TO_PROXY_RESPONSE_RECEIVING("serverToProxyResponseReceiving"),
+    SERVER_TO_PROXY_RESPONSE_RECEIVED("serverToProxyResponseReceived"),
+    PROXY_TO_CLIENT_RESPONSE("proxyToClientResponse", HttpObject.class),
+    PROXY_TO_SERVER_CONNECTION_QUEUED("proxyToServerConnectionQueued"),
+    PROXY_TO_SERVER_RESOLUTION_STARTED("proxyToServerResolutionStarted", String.class),
+    PROXY_TO_SERVER_RESOLUTION_FAILED("proxyToServerResolutionFailed", String.class),
+    PROXY_TO_SERVER_RESOLUTION_SUCCEEDED("proxyToServerResolutionSucceeded", String.class, InetSocketAddress.class),
+    PROXY_TO_SERVER_CONNECTION_STARTED("proxyToServerConnectionStarted"),
+    PROXY_TO_SERVER_CONNECTION_SSL_HANDSHAKE_STARTED("proxyToServerConnectionSSLHandshakeStarted"),
+    PROXY_TO_SERVER_CONNECTION_FAILED("proxyToServerConnectionFailed"),
+    PROXY_TO_SERVER_CONNECTION_SUCCEEDED("proxyToServerConnectionSucceeded", ChannelHandlerContext.class);
+
+    /**
+     * Bit mask with a bit set for every callback, in the format returned by {@link #overriddenCallbacks(Class)}.
+     */
+    public static final int ALL_CALLBACKS = (1 << values().length) - 1;
+
+    private static final ClassValue<Integer> OVERRIDDEN_CALLBACKS = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> filterClass) {
+            int callbacks = 0;
+
+            for (HttpFiltersCallback callback : values()) {
+                if (callback.isOverriddenBy(filterClass)) {
+                    callbacks |= callback.mask();
+                }
+            }
+
+            return callbacks;
+        }
+    };
+
+    private final String methodName;
+    private final Class<?>[] parameterTypes;
+
+    HttpFiltersCallback(String methodName, Class<?>... parameterTypes) {
+        this.methodName = methodName;
+        this.parameterTypes = parameterTypes;
+    }
+
+    /**
+     * @return name of the HttpFilters method for this callback
+     */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * @return the bit that represents this callback in the mask returned by {@link #overriddenCallbacks(Class)}
+     */
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Returns a bit mask of the callbacks that the filter class implements itself, rather than inheriting the no-op implementation
+     * from {@link HttpFiltersAdapter}. Every callback of a class that does not extend HttpFiltersAdapter is considered implemented.
+     *
+     * @param filterClass HttpFilters implementation
+     * @return bit mask of the {@link #mask()}s of the callbacks the class implements
+     */
+    public static int overriddenCallbacks(Class<? extends HttpFilters> filterClass) {
+        return OVERRIDDEN_CALLBACKS.get(filterClass);
+    }
+
+    private boolean isOverriddenBy(Class<?> filterClass) {
+        try {
+            return filterClass.getMethod(methodName, parameterTypes).getDeclaringClass() != HttpFiltersAdapter.class;
+        } catch (NoSuchMethodException | SecurityException e) {
+            // not expected for an HttpFilters implementation; always invoke the callback to be safe
+            return true;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.github.multicatch.bmp.filters.support;
+
+import io.github.multicatch.bmp.proxy.HostBandwidthLimit;
+import io.github.multicatch.bmp.proxy.NetworkConditions;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+
+import java.util.List;
+
+/**
+ * Applies the bandwidth limits of a {@link NetworkConditions} profile to connections to upstream hosts. The limits are enforced by
+ * {@link BandwidthShapingHandler}s at the head of the pipelines of the proxy's connections to upstream servers, which delay reads
+ * and writes on the connection's event loop rather than blocking it. The profile's overall limits are shared by every upstream
+ * connection; each {@link HostBandwidthLimit}'s limits are shared by every connection to a matching host.
+ * <br>
+ * A shaper belongs to a single profile. When the profile is replaced, {@link #release()} removes the limits from connections that
+ * are still open.
+ */
+public class NetworkConditionsShaper {
+    /**
+     * Name of the handler enforcing the profile's overall bandwidth limits in an upstream connection's pipeline.
+     */
+    public static final String PROFILE_SHAPING_HANDLER_NAME = "browsermob-network-shaping";
+
+    /**
+     * Name of the handler enforcing a host bandwidth limit in an upstream connection's pipeline.
+     */
+    public static final String HOST_SHAPING_HANDLER_NAME = "browsermob-host-shaping";
+
+    /**
+     * Indexes of the user-defined writability flags used by the profile and host shaping handlers, which may share a pipeline.
+     */
+    private static final int PROFILE_WRITABILITY_INDEX = 1;
+    private static final int HOST_WRITABILITY_INDEX = 2;
+
+    private final NetworkConditions networkConditions;
+
+    private final BandwidthLimiter downstreamLimiter;
+    private final BandwidthLimiter upstreamLimiter;
+
+    private final BandwidthLimiter[] hostDownstreamLimiters;
+    private final BandwidthLimiter[] hostUpstreamLimiters;
+
+    public NetworkConditionsShaper(NetworkConditions networkConditions) {
+        this.networkConditions = networkConditions;
+
+        this.downstreamLimiter = createLimiter(networkConditions.getDownstreamBytesPerSecond());
+        this.upstreamLimiter = createLimiter(networkConditions.getUpstreamBytesPerSecond());
+
+        List<HostBandwidthLimit> hostBandwidthLimits = networkConditions.getHostBandwidthLimits();
+        this.hostDownstreamLimiters = new BandwidthLimiter[hostBandwidthLimits.size()];
+        this.hostUpstreamLimiters = new BandwidthLimiter[hostBandwidthLimits.size()];
+        for (int i = 0; i < hostBandwidthLimits.size(); i++) {
+            hostDownstreamLimiters[i] = createLimiter(hostBandwidthLimits.get(i).getDownstreamBytesPerSecond());
+            hostUpstreamLimiters[i] = createLimiter(hostBandwidthLimits.get(i).getUpstreamBytesPerSecond());
+        }
+    }
+
+    public NetworkConditions getNetworkConditions() {
+        return networkConditions;
+    }
+
+    /**
+     * Adds the traffic shaping handlers for the host to a new connection to an upstream server.
+     *
+     * @param serverCtx a ChannelHandlerContext of the connection to the upstream server
+     * @param host name of the upstream host, without the port
+     */
+    public void shapeServerConnection(ChannelHandlerContext serverCtx, String host) {
+        if (!networkConditions.limitsBandwidth()) {
+            return;
+        }
+
+        ChannelPipeline pipeline = serverCtx.pipeline();
+
+        // data read from the server travels downstream to the client, data written to the server travels upstream
+        if (downstreamLimiter != null || upstreamLimiter != null) {
+            addFirst(pipeline, PROFILE_SHAPING_HANDLER_NAME, new BandwidthShapingHandler(downstreamLimiter, upstreamLimiter, PROFILE_WRITABILITY_INDEX));
+        }
+
+        // only the first matching host limit applies to a connection
+        List<HostBandwidthLimit> hostBandwidthLimits = networkConditions.getHostBandwidthLimits();
+        for (int i = 0; i < hostBandwidthLimits.size(); i++) {
+            if (hostBandwidthLimits.get(i).matches(host)) {
+                if (hostDownstreamLimiters[i] != null || hostUpstreamLimiters[i] != null) {
+                    addFirst(pipeline, HOST_SHAPING_HANDLER_NAME, new BandwidthShapingHandler(hostDownstreamLimiters[i], hostUpstreamLimiters[i],
+                            HOST_WRITABILITY_INDEX));
+                }
+
+                break;
+            }
+        }
+    }
+
+    /**
+     * Removes the bandwidth limits from every connection shaped by this shaper. Data that is already queued is still sent at the
+     * limited rate.
+     */
+    public void release() {
+        disable(downstreamLimiter);
+        disable(upstreamLimiter);
+
+        for (int i = 0; i < hostDownstreamLimiters.length; i++) {
+            disable(hostDownstreamLimiters[i]);
+            disable(hostUpstreamLimiters[i]);
+        }
+    }
+
+    private static BandwidthLimiter createLimiter(long bytesPerSecond) {
+        return bytesPerSecond > 0 ? new BandwidthLimiter(bytesPerSecond) : null;
+    }
+
+    private static void disable(BandwidthLimiter limiter) {
+        if (limiter != null) {
+            limiter.disable();
+        }
+    }
+
+    private static void addFirst(ChannelPipeline pipeline, String name, BandwidthShapingHandler handler) {
+        // a connection is only shaped once, when it is established
+        if (pipeline.get(name) == null) {
+            pipeline.addFirst(name, handler);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package io.github.multicatch.bmp.filters.support;
+
+import com.google.common.net.HostAndPort;
+import io.github.multicatch.bmp.filters.HttpsAwareFiltersAdapter;
+import io.github.multicatch.bmp.util.BrowserMobHttpUtil;
+import io.github.multicatch.bmp.util.HttpUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import org.littleshoot.proxy.impl.ProxyUtils;
+
+import java.util.Locale;
+
+/**
+ * State shared by all filters handling a single request. The {@link io.github.multicatch.bmp.filters.BrowserMobHttpFilterChain} creates
+ * one RequestContext per request and passes it to every {@link HttpsAwareFiltersAdapter}, so the full URL, host and port of the
+ * request are computed once per request, rather than once per filter.
+ * <br>
+ * Every value is computed lazily, the first time a filter asks for it. The values for the request as modified by filters are
+ * recomputed only when a filter changes the request's URI or Host header, or replaces the request. This class is thread-safe;
+ * request and response filters may run on different threads.
+ */
+public class RequestContext {
+    private static final AttributeKey<Boolean> IS_HTTPS_ATTRIBUTE = AttributeKey.valueOf(HttpsAwareFiltersAdapter.IS_HTTPS_ATTRIBUTE_NAME);
+    private static final AttributeKey<String> HOST_ATTRIBUTE = AttributeKey.valueOf(HttpsAwareFiltersAdapter.HOST_ATTRIBUTE_NAME);
+
+    private final HttpRequest originalRequest;
+    private final ChannelHandlerContext ctx;
+
+    /**
+     * True if the original request is a CONNECT. The HTTPS attributes of the connection are set while a CONNECT is filtered,
+     * so they are never cached for CONNECT requests.
+     */
+    private final boolean connect;
+
+    /**
+     * Whether the connection is HTTPS, or null if it has not been determined yet.
+     */
+    private volatile Boolean https;
+
+    private volatile RequestUrl originalUrl;
+
+    /**
+     * The URL of the request as most recently modified by filters.
+     */
+    private volatile RequestUrl currentUrl;
+
+    public RequestContext(HttpRequest originalRequest, ChannelHandlerContext ctx) {
+        this.originalRequest = originalRequest;
+        this.ctx = ctx;
+        this.connect = originalRequest != null && ProxyUtils.isCONNECT(originalRequest);
+    }
+
+    /**
+     * @return the original request from the client, which does not reflect modifications from filters
+     */
+    public HttpRequest getOriginalRequest() {
+        return originalRequest;
+    }
+
+    /**
+     * Returns true if this is an HTTPS request.
+     *
+     * @return true if https, false if http
+     */
+    public boolean isHttps() {
+        Boolean isHttps = https;
+        if (isHttps != null) {
+            return isHttps;
+        }
+
+        isHttps = readHttpsAttribute();
+        if (!connect) {
+            https = isHttps;
+        }
+
+        return isHttps;
+    }
+
+    /**
+     * Returns the URL of the original request from the client. The URL does not reflect modifications from filters.
+     *
+     * @return URL of the original request
+     */
+    public RequestUrl getOriginalUrl() {
+        RequestUrl url = originalUrl;
+        if (url == null || !url.isCurrent(originalRequest)) {
+            url = new RequestUrl(originalRequest);
+            originalUrl = url;
+        }
+
+        return url;
+    }
+
+    /**
+     * Returns the URL of the specified request, which may reflect modifications from filters. The URL is only recomputed if the
+     * request's URI or Host header changed since the URL was last requested.
+     *
+     * @param modifiedRequest a possibly-modified version of the request currently being processed
+     * @return URL of the request
+     */
+    public RequestUrl getUrl(HttpRequest modifiedRequest) {
+        if (modifiedRequest == originalRequest) {
+            return getOriginalUrl();
+        }
+
+        RequestUrl url = currentUrl;
+        if (url == null || !url.isCurrent(modifiedRequest)) {
+            url = new RequestUrl(modifiedRequest);
+            currentUrl = url;
+        }
+
+        return url;
+    }
+
+    private boolean readHttpsAttribute() {
+        if (ctx == null) {
+            return false;
+        }
+
+        Boolean isHttps = ctx.attr(IS_HTTPS_ATTRIBUTE).get();
+        return isHttps != null && isHttps;
+    }
+
+    private String readHttpsHostAndPort() {
+        if (ctx == null) {
+            return null;
+        }
+
+        Attribute<String> hostnameAttr = ctx.attr(HOST_ATTRIBUTE);
+        return hostnameAttr.get();
+    }
+
+    /**
+     * The URL of a request and its components. The components are parsed from the URL the first time they are needed.
+     */
+    public class RequestUrl {
+        private final HttpRequest request;
+        private final String uri;
+        private final String hostHeader;
+        private final boolean https;
+
+        private final String url;
+
+        private volatile String hostAndPort;
+        private volatile String host;
+        private volatile UrlComponents components;
+
+        private RequestUrl(HttpRequest request) {
+            this.request = request;
+            this.uri = request.getUri();
+            this.hostHeader = request.headers().get(HttpHeaders.Names.HOST);
+            this.https = isHttps();
+            this.url = buildUrl();
+        }
+
+        /**
+         * Returns true if this URL still reflects the request: the request has not been replaced, and its URI and Host header have
+         * not been modified.
+         */
+        private boolean isCurrent(HttpRequest currentRequest) {
+            // the URI is compared by identity, since filters change it by setting a new String
+            return currentRequest == request
+                    && currentRequest.getUri() == uri
+                    && https == isHttps()
+                    && (HttpUtil.startsWithHttpOrHttps(uri) || equal(hostHeader, currentRequest.headers().get(HttpHeaders.Names.HOST)));
+        }
+
+        private String buildUrl() {
+            // special case: for HTTPS requests, the full URL is scheme (https://) + the URI of this request
+            if (ProxyUtils.isCONNECT(request)) {
+                // CONNECT requests contain the default port, even if it isn't specified on the request.
+                String hostNoDefaultPort = BrowserMobHttpUtil.removeMatchingPort(uri, 443);
+                return "https://" + hostNoDefaultPort;
+            }
+
+            // To get the full URL, we need to retrieve the Scheme, Host + Port, Path, and Query Params from the request.
+            // If the request URI starts with http:// or https://, it is already a full URL and can be returned directly.
+            if (HttpUtil.startsWithHttpOrHttps(uri)) {
+                return uri;
+            }
+
+            // The URI did not include the scheme and host, so examine the request to obtain them:
+            // Scheme: the scheme (HTTP/HTTPS) are based on the type of connection, obtained from isHttps()
+            // Host and Port: available for HTTP and HTTPS requests using the getHostAndPort() helper method.
+            // Path + Query Params: since the request URI doesn't start with the scheme, we can safely assume that the URI
+            //    contains only the path and query params.
+            if (https) {
+                return "https://" + getHostAndPort() + uri;
+            } else {
+                return "http://" + getHostAndPort() + uri;
+            }
+        }
+
+        /**
+         * @return the full URL of the request, including scheme, host, port, path, and query parameters
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * Returns the host and port of the request. For HTTP requests, the host and port are taken from the URI or the Host
+         * header; for HTTPS requests, they are taken from the CONNECT that established the connection.
+         *
+         * @return host and port of the request
+         */
+        public String getHostAndPort() {
+            String value = hostAndPort;
+            if (value == null) {
+                if (https) {
+                    value = readHttpsHostAndPort();
+                } else {
+                    value = HttpUtil.getHostAndPortFromRequest(request);
+                }
+
+                hostAndPort = value;
+            }
+
+            return value;
+        }
+
+        /**
+         * @return hostname of the request, without the port
+         */
+        public String getHost() {
+            String value = host;
+            if (value == null) {
+                if (https) {
+                    String httpsHostAndPort = getHostAndPort();
+                    value = httpsHostAndPort == null ? null : HostAndPort.fromString(httpsHostAndPort).getHost();
+                } else {
+                    value = HttpUtil.getHostFromRequest(request);
+                }
+
+                host = value;
+            }
+
+            return value;
+        }
+
+        /**
+         * @return scheme of the URL, in lower case
+         */
+        public String getScheme() {
+            return getComponents().scheme;
+        }
+
+        /**
+         * @return port of the URL, or the default port of the scheme if the URL does not specify a port
+         */
+        public int getPort() {
+            return getComponents().port;
+        }
+
+        /**
+         * @return path of the URL, without query parameters
+         */
+        public String getPath() {
+            return getComponents().path;
+        }
+
+        /**
+         * @return raw query string of the URL, without the leading '?', or null if the URL has no query string
+         */
+        public String getQuery() {
+            return getComponents().query;
+        }
+
+        private UrlComponents getComponents() {
+            UrlComponents value = components;
+            if (value == null) {
+                value = new UrlComponents(url);
+                components = value;
+            }
+
+            return value;
+        }
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * The components of a URL, parsed without java.net.URI, which would reject many URLs that clients actually send.
+     */
+    static class UrlComponents {
+        final String scheme;
+        final int port;
+        final String path;
+        final String query;
+
+        UrlComponents(String url) {
+            int schemeEnd = url.indexOf("://");
+            int authorityStart;
+            if (schemeEnd >= 0) {
+                scheme = url.substring(0, schemeEnd).toLowerCase(Locale.US);
+                authorityStart = schemeEnd + 3;
+            } else {
+                scheme = null;
+                authorityStart = 0;
+            }
+
+            int authorityEnd = url.length();
+            for (int i = authorityStart; i < url.length(); i++) {
+                char c = url.charAt(i);
+                if (c == '/' || c == '?' || c == '#') {
+                    authorityEnd = i;
+                    break;
+                }
+            }
+
+            // ignore the user info, if any
+            int userInfoEnd = url.lastIndexOf('@', authorityEnd - 1);
+            String authority = url.substring(userInfoEnd >= authorityStart ? userInfoEnd + 1 : authorityStart, authorityEnd);
+            port = parsePort(authority, scheme);
+
+            int fragmentStart = url.indexOf('#', authorityEnd);
+            int end = fragmentStart < 0 ? url.length() : fragmentStart;
+            int queryStart = url.indexOf('?', authorityEnd);
+            if (queryStart >= 0 && queryStart < end) {
+                path = queryStart == authorityEnd ? "/" : url.substring(authorityEnd, queryStart);
+                query = url.substring(queryStart + 1, end);
+            } else {
+                path = end == authorityEnd ? "/" : url.substring(authorityEnd, end);
+                query = null;
+            }
+        }
+
+        private static int parsePort(String authority, String scheme) {
+            int defaultPort = "https".equals(scheme) ? 443 : 80;
+
+            try {
+                return HostAndPort.fromString(authority).getPortOrDefault(defaultPort);
+            } catch (IllegalArgumentException e) {
+                return defaultPort;
+            }
+        }
+    }
+}
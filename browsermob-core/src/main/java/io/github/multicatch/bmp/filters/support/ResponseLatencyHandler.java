@@ -0,0 +1,174 @@
+package io.github.multicatch.bmp.filters.support;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delays responses written to a client connection without blocking the connection's event loop. Instead of holding the thread
+ * until the latency has elapsed, the handler queues the response and every write that follows it, and writes them when a task
+ * scheduled on the event loop runs. Other connections served by the same event loop are not affected by the latency.
+ * <br>
+ * The latency is applied to the next {@link HttpResponse} written to the channel, as added by {@link #delayNextResponse(long)}. Writes
+ * (and a close) that follow a delayed response are queued behind it, so the order of messages on the channel is preserved.
+ * <br>
+ * All methods must be called on the channel's event loop.
+ */
+public class ResponseLatencyHandler extends ChannelDuplexHandler {
+    /**
+     * Name of this handler in the client channel's pipeline.
+     */
+    public static final String HANDLER_NAME = "browsermob-response-latency";
+
+    /**
+     * Latency to add to the next response, in nanoseconds.
+     */
+    private long nextResponseLatencyNanos;
+
+    private final Queue<PendingWrite> pendingWrites = new ArrayDeque<>();
+
+    /**
+     * Returns the ResponseLatencyHandler in the client channel's pipeline, adding it immediately before the specified handler
+     * if it is not present.
+     *
+     * @param ctx context of the handler that writes responses to the client, typically the proxy's connection handler
+     * @return the pipeline's ResponseLatencyHandler
+     */
+    public static ResponseLatencyHandler install(ChannelHandlerContext ctx) {
+        ChannelPipeline pipeline = ctx.pipeline();
+
+        ResponseLatencyHandler handler = (ResponseLatencyHandler) pipeline.get(HANDLER_NAME);
+        if (handler == null) {
+            handler = new ResponseLatencyHandler();
+            pipeline.addBefore(ctx.name(), HANDLER_NAME, handler);
+        }
+
+        return handler;
+    }
+
+    /**
+     * Adds latency to the next response written to the channel. Latencies added by several filters handling the same request
+     * are combined.
+     *
+     * @param latencyMs latency to add, in milliseconds
+     */
+    public void delayNextResponse(long latencyMs) {
+        this.nextResponseLatencyNanos += TimeUnit.NANOSECONDS.convert(latencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        long releaseAtNanos;
+        if (msg instanceof HttpResponse && nextResponseLatencyNanos > 0) {
+            releaseAtNanos = System.nanoTime() + nextResponseLatencyNanos;
+            nextResponseLatencyNanos = 0;
+        } else if (!pendingWrites.isEmpty()) {
+            // send this message after the delayed response it follows
+            releaseAtNanos = 0;
+        } else {
+            super.write(ctx, msg, promise);
+            return;
+        }
+
+        boolean scheduleRelease = pendingWrites.isEmpty();
+        pendingWrites.add(new PendingWrite(msg, promise, releaseAtNanos));
+
+        if (scheduleRelease) {
+            scheduleRelease(ctx, releaseAtNanos);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        // queued writes are flushed when they are released
+        if (pendingWrites.isEmpty()) {
+            super.flush(ctx);
+        }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        if (pendingWrites.isEmpty()) {
+            super.close(ctx, promise);
+        } else {
+            pendingWrites.add(new PendingWrite(null, promise, 0));
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        PendingWrite pendingWrite;
+        while ((pendingWrite = pendingWrites.poll()) != null) {
+            if (pendingWrite.msg != null) {
+                ReferenceCountUtil.release(pendingWrite.msg);
+            }
+
+            pendingWrite.promise.tryFailure(new ClosedChannelException());
+        }
+    }
+
+    private void scheduleRelease(ChannelHandlerContext ctx, long releaseAtNanos) {
+        ctx.executor().schedule(() -> releaseWrites(ctx), releaseAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Writes every queued message whose latency has elapsed, stopping at the next delayed response that is not yet due.
+     */
+    private void releaseWrites(ChannelHandlerContext ctx) {
+        long now = System.nanoTime();
+
+        boolean released = false;
+        PendingWrite pendingWrite;
+        while ((pendingWrite = pendingWrites.peek()) != null) {
+            if (pendingWrite.releaseAtNanos != 0 && pendingWrite.releaseAtNanos - now > 0) {
+                scheduleRelease(ctx, pendingWrite.releaseAtNanos);
+                break;
+            }
+
+            pendingWrites.remove();
+
+            if (pendingWrite.msg == null) {
+                if (released) {
+                    ctx.flush();
+                    released = false;
+                }
+
+                ctx.close(pendingWrite.promise);
+            } else {
+                ctx.write(pendingWrite.msg, pendingWrite.promise);
+                released = true;
+            }
+        }
+
+        if (released) {
+            ctx.flush();
+        }
+    }
+
+    /**
+     * A queued write, or a queued close if msg is null.
+     */
+    private static class PendingWrite {
+        private final Object msg;
+        private final ChannelPromise promise;
+
+        /**
+         * The time at which the message can be written, or 0 if it is written as soon as the writes before it have been released.
+         */
+        private final long releaseAtNanos;
+
+        PendingWrite(Object msg, ChannelPromise promise, long releaseAtNanos) {
+            this.msg = msg;
+            this.promise = promise;
+            this.releaseAtNanos = releaseAtNanos;
+        }
+    }
+}
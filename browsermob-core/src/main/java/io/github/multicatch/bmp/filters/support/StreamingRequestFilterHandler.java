@@ -0,0 +1,122 @@
+package io.github.multicatch.bmp.filters.support;
+
+import io.github.multicatch.bmp.filters.StreamingRequestFilter;
+import io.github.multicatch.bmp.util.HttpMessageInfo;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies {@link StreamingRequestFilter}s to the chunks of a request body as they are read from the client connection, before they
+ * reach the proxy's connection handler. The proxy's filter callbacks can only modify the chunks they receive in place, so chunks are
+ * replaced or dropped by this handler instead, which owns each chunk it reads.
+ * <br>
+ * Filters are registered for the content of the current request by {@link #filterContent(StreamingRequestFilter, HttpRequest, HttpMessageInfo)},
+ * and are discarded at the end of the request.
+ * <br>
+ * All methods must be called on the channel's event loop.
+ */
+public class StreamingRequestFilterHandler extends ChannelInboundHandlerAdapter {
+    /**
+     * Name of this handler in the client channel's pipeline.
+     */
+    public static final String HANDLER_NAME = "browsermob-streaming-request-filter";
+
+    private final List<RegisteredFilter> filters = new ArrayList<>();
+
+    /**
+     * Returns the StreamingRequestFilterHandler in the client channel's pipeline, adding it immediately before the specified handler
+     * if it is not present.
+     *
+     * @param ctx context of the handler that reads requests from the client, typically the proxy's connection handler
+     * @return the pipeline's StreamingRequestFilterHandler
+     */
+    public static StreamingRequestFilterHandler install(ChannelHandlerContext ctx) {
+        ChannelPipeline pipeline = ctx.pipeline();
+
+        StreamingRequestFilterHandler handler = (StreamingRequestFilterHandler) pipeline.get(HANDLER_NAME);
+        if (handler == null) {
+            handler = new StreamingRequestFilterHandler();
+            pipeline.addBefore(ctx.name(), HANDLER_NAME, handler);
+        }
+
+        return handler;
+    }
+
+    /**
+     * Applies the filter to the remaining chunks of the current request. Filters are applied in the order in which they are registered.
+     *
+     * @param filter filter to apply
+     * @param request the request the chunks belong to
+     * @param messageInfo information to pass to the filter
+     */
+    public void filterContent(StreamingRequestFilter filter, HttpRequest request, HttpMessageInfo messageInfo) {
+        filters.add(new RegisteredFilter(filter, request, messageInfo));
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest) {
+            // a new request; filters for the previous request no longer apply, even if it did not complete
+            filters.clear();
+        } else if (msg instanceof HttpContent && !filters.isEmpty()) {
+            HttpContent content = (HttpContent) msg;
+
+            boolean lastContent = content instanceof LastHttpContent;
+            HttpHeaders trailingHeaders = lastContent ? ((LastHttpContent) content).trailingHeaders() : null;
+
+            for (RegisteredFilter registeredFilter : filters) {
+                HttpContent filtered = registeredFilter.filter.filterRequestContent(registeredFilter.request, content, registeredFilter.messageInfo);
+                if (filtered != content) {
+                    ReferenceCountUtil.release(content);
+                    content = filtered;
+                }
+
+                if (content == null) {
+                    break;
+                }
+            }
+
+            if (lastContent) {
+                filters.clear();
+
+                // the last chunk terminates the request, so its replacement must terminate it as well
+                if (!(content instanceof LastHttpContent)) {
+                    DefaultLastHttpContent lastContentReplacement = new DefaultLastHttpContent(content == null ? Unpooled.EMPTY_BUFFER : content.content());
+                    lastContentReplacement.trailingHeaders().set(trailingHeaders);
+                    content = lastContentReplacement;
+                }
+            }
+
+            if (content != null) {
+                ctx.fireChannelRead(content);
+            }
+
+            return;
+        }
+
+        ctx.fireChannelRead(msg);
+    }
+
+    private static class RegisteredFilter {
+        private final StreamingRequestFilter filter;
+        private final HttpRequest request;
+        private final HttpMessageInfo messageInfo;
+
+        RegisteredFilter(StreamingRequestFilter filter, HttpRequest request, HttpMessageInfo messageInfo) {
+            this.filter = filter;
+            this.request = request;
+            this.messageInfo = messageInfo;
+        }
+    }
+}
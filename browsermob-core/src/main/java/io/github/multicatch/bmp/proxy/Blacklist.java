@@ -0,0 +1,130 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled blacklist, which finds the first {@link BlacklistEntry} matching a request without evaluating every entry's regular
+ * expression. This object is immutable; modifying the blacklist is accomplished by compiling a new Blacklist.
+ * <br>
+ * When the blacklist is compiled, the URL patterns of the entries are indexed by host, domain and literal prefix (see
+ * {@link UrlPatternIndex}). Patterns that cannot be indexed are evaluated for every request, but a pattern that requires a literal
+ * string, such as the <code>/pixel.gif</code> in <code>.*&#47;pixel\.gif.*</code>, is only evaluated when the URL contains that string.
+ * The entries that may match a request are evaluated in the order they were added to the blacklist, so the first matching entry
+ * determines the status code, exactly as if every entry were evaluated in turn. The results for recently requested URLs are cached.
+ */
+public class Blacklist {
+    /**
+     * Default number of recent URL verdicts to cache.
+     */
+    public static final int DEFAULT_VERDICT_CACHE_SIZE = 4096;
+
+    /**
+     * An empty Blacklist.
+     */
+    public static final Blacklist EMPTY = new Blacklist(null, 0);
+
+    private final List<BlacklistEntry> entries;
+
+    private final UrlPatternIndex urlPatternIndex;
+
+    /**
+     * Index of the first matching entry for recently requested URLs, keyed by HTTP method and URL, or -1 if no entry matched.
+     * Null if verdicts are not cached.
+     */
+    private final Cache<String, Integer> verdictCache;
+
+    /**
+     * Compiles a blacklist from the specified entries, caching the default number of URL verdicts.
+     *
+     * @param entries blacklist entries, in evaluation order
+     */
+    public Blacklist(Collection<BlacklistEntry> entries) {
+        this(entries, DEFAULT_VERDICT_CACHE_SIZE);
+    }
+
+    /**
+     * Compiles a blacklist from the specified entries. A null or empty collection will result in an empty blacklist.
+     *
+     * @param entries blacklist entries, in evaluation order
+     * @param verdictCacheSize number of recent URL verdicts to cache, or 0 to disable caching
+     */
+    public Blacklist(Collection<BlacklistEntry> entries, int verdictCacheSize) {
+        if (verdictCacheSize < 0) {
+            throw new IllegalArgumentException("Verdict cache size cannot be negative: " + verdictCacheSize);
+        }
+
+        this.entries = entries == null ? ImmutableList.of() : ImmutableList.copyOf(entries);
+
+        List<Pattern> urlPatterns = new ArrayList<>(this.entries.size());
+        for (BlacklistEntry entry : this.entries) {
+            urlPatterns.add(entry.getUrlPattern());
+        }
+
+        this.urlPatternIndex = new UrlPatternIndex(urlPatterns);
+
+        if (verdictCacheSize > 0 && !this.entries.isEmpty()) {
+            this.verdictCache = CacheBuilder.newBuilder()
+                    .maximumSize(verdictCacheSize)
+                    .build();
+        } else {
+            this.verdictCache = null;
+        }
+    }
+
+    /**
+     * @return the blacklist entries, in evaluation order
+     */
+    public List<BlacklistEntry> getEntries() {
+        return entries;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Returns the first entry in the blacklist that matches the URL and HTTP method. Entries without an HTTP method pattern
+     * never match CONNECT requests.
+     *
+     * @param url full URL of the request
+     * @param httpMethod HTTP method of the request
+     * @return the first matching entry, or null if the request is not blacklisted
+     */
+    public BlacklistEntry findMatchingEntry(String url, String httpMethod) {
+        if (entries.isEmpty()) {
+            return null;
+        }
+
+        String cacheKey = null;
+        if (verdictCache != null) {
+            cacheKey = httpMethod + ' ' + url;
+
+            Integer cachedIndex = verdictCache.getIfPresent(cacheKey);
+            if (cachedIndex != null) {
+                return cachedIndex < 0 ? null : entries.get(cachedIndex);
+            }
+        }
+
+        boolean connect = "CONNECT".equals(httpMethod);
+
+        int matchingIndex = urlPatternIndex.findFirstMatch(url, index -> {
+            BlacklistEntry entry = entries.get(index);
+
+            // do not allow CONNECTs to be blacklisted unless a method pattern is explicitly specified
+            return !(connect && entry.getHttpMethodPattern() == null) && entry.matches(url, httpMethod);
+        });
+
+        if (verdictCache != null) {
+            verdictCache.put(cacheKey, matchingIndex);
+        }
+
+        return matchingIndex < 0 ? null : entries.get(matchingIndex);
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled list of HAR capture policies, which finds the first {@link CapturePolicy} matching a request without evaluating every
+ * policy's regular expression. This object is immutable; modifying the policies is accomplished by compiling a new CapturePolicies.
+ * <br>
+ * When the policies are compiled, their URL patterns are indexed by host, domain and literal prefix (see {@link UrlPatternIndex}).
+ * Policies without a URL pattern, and policies whose pattern cannot be indexed, are evaluated for every request. The policies that may
+ * match a request are evaluated in order, so the first matching policy is the same as if every policy were evaluated in turn.
+ */
+public class CapturePolicies {
+    /**
+     * An empty CapturePolicies.
+     */
+    public static final CapturePolicies EMPTY = new CapturePolicies(null);
+
+    /**
+     * Stands in for the URL pattern of policies that match every URL. It is never indexed, so those policies are always evaluated.
+     */
+    private static final Pattern MATCH_ALL = Pattern.compile(".*");
+
+    private final ImmutableList<CapturePolicy> policies;
+
+    private final UrlPatternIndex urlPatternIndex;
+
+    /**
+     * Compiles the specified policies. A null or empty collection will result in an empty CapturePolicies.
+     *
+     * @param policies capture policies, in evaluation order
+     */
+    public CapturePolicies(Collection<CapturePolicy> policies) {
+        this.policies = policies == null ? ImmutableList.of() : ImmutableList.copyOf(policies);
+
+        List<Pattern> urlPatterns = new ArrayList<>(this.policies.size());
+        for (CapturePolicy policy : this.policies) {
+            urlPatterns.add(policy.getUrlPattern() != null ? policy.getUrlPattern() : MATCH_ALL);
+        }
+
+        this.urlPatternIndex = new UrlPatternIndex(urlPatterns);
+    }
+
+    /**
+     * @return the capture policies, in evaluation order
+     */
+    public List<CapturePolicy> getPolicies() {
+        return policies;
+    }
+
+    public boolean isEmpty() {
+        return policies.isEmpty();
+    }
+
+    /**
+     * Returns the first policy that matches the URL and HTTP method.
+     *
+     * @param url full URL of the request
+     * @param httpMethod HTTP method of the request
+     * @return the first matching policy, or null if no policy matches
+     */
+    public CapturePolicy findMatchingPolicy(String url, String httpMethod) {
+        if (policies.isEmpty()) {
+            return null;
+        }
+
+        int matchingIndex = urlPatternIndex.findFirstMatch(url, index -> policies.get(index).matches(url, httpMethod));
+
+        return matchingIndex < 0 ? null : policies.get(matchingIndex);
+    }
+}
@@ -0,0 +1,160 @@
+package io.github.multicatch.bmp.proxy;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * A HAR capture policy, which overrides the proxy's HAR capture types for requests whose URL and HTTP method match the policy.
+ * Policies allow content capture to be enabled for a few URLs of interest, or HAR capture to be reduced or disabled for
+ * high-volume URLs, without changing the capture types for every request.
+ * <br>
+ * A policy can also:
+ * <ul>
+ *     <li>restrict request and response content capture to bodies whose Content-Type matches a regular expression,</li>
+ *     <li>capture only a sample of the matching requests (requests that are not sampled are not recorded in the HAR at all), and</li>
+ *     <li>limit the size of the request and response bodies that are captured. Bodies larger than the limit are not captured.</li>
+ * </ul>
+ * Regular expressions are compiled when the policy is created. This object is immutable.
+ */
+public class CapturePolicy {
+    private final Pattern urlPattern;
+    private final Pattern httpMethodPattern;
+    private final Pattern contentTypePattern;
+    private final Set<CaptureType> captureTypes;
+    private final double sampleRate;
+    private final long maxContentSize;
+
+    /**
+     * Creates a policy that captures the specified data for every request whose URL matches the urlPattern.
+     *
+     * @param urlPattern URL-matching regular expression
+     * @param captureTypes data to capture for matching requests, or null to capture the proxy's HAR capture types
+     */
+    public CapturePolicy(String urlPattern, Set<CaptureType> captureTypes) {
+        this(urlPattern, null, null, captureTypes, 1.0, 0L);
+    }
+
+    /**
+     * Creates a new CapturePolicy.
+     *
+     * @param urlPattern URL-matching regular expression, or null to match all URLs
+     * @param httpMethodPattern HTTP method-matching regular expression (e.g. GET, PUT, PATCH, etc.), or null to match all methods
+     * @param contentTypePattern regular expression matching the Content-Type of request and response bodies to capture, or null to
+     *                           capture content of any type
+     * @param captureTypes data to capture for matching requests, or null to capture the proxy's HAR capture types
+     * @param sampleRate fraction of matching requests to capture, from 0.0 (capture none) to 1.0 (capture all)
+     * @param maxContentSize maximum size of a request or response body to capture, in bytes, or 0 for no limit
+     */
+    public CapturePolicy(String urlPattern,
+                         String httpMethodPattern,
+                         String contentTypePattern,
+                         Set<CaptureType> captureTypes,
+                         double sampleRate,
+                         long maxContentSize) {
+        if (!(sampleRate >= 0.0 && sampleRate <= 1.0)) {
+            throw new IllegalArgumentException("Sample rate must be between 0.0 and 1.0: " + sampleRate);
+        }
+
+        if (maxContentSize < 0) {
+            throw new IllegalArgumentException("Maximum captured content size cannot be negative: " + maxContentSize);
+        }
+
+        this.urlPattern = compile(urlPattern);
+        this.httpMethodPattern = compile(httpMethodPattern);
+        this.contentTypePattern = compile(contentTypePattern);
+        this.sampleRate = sampleRate;
+        this.maxContentSize = maxContentSize;
+
+        if (captureTypes == null) {
+            this.captureTypes = null;
+        } else if (captureTypes.isEmpty()) {
+            this.captureTypes = Collections.unmodifiableSet(EnumSet.noneOf(CaptureType.class));
+        } else {
+            this.captureTypes = Collections.unmodifiableSet(EnumSet.copyOf(captureTypes));
+        }
+    }
+
+    private static Pattern compile(String pattern) {
+        if (pattern == null || pattern.isEmpty()) {
+            return null;
+        }
+
+        return Pattern.compile(pattern);
+    }
+
+    /**
+     * Determines if this policy applies to the given request.
+     *
+     * @param url full URL of the request
+     * @param httpMethod HTTP method of the request
+     * @return true if the URL and HTTP method match this policy
+     */
+    public boolean matches(String url, String httpMethod) {
+        if (httpMethodPattern != null && !httpMethodPattern.matcher(httpMethod).matches()) {
+            return false;
+        }
+
+        return urlPattern == null || urlPattern.matcher(url).matches();
+    }
+
+    /**
+     * Determines if a body with the specified Content-Type should be captured under this policy.
+     *
+     * @param contentType Content-Type of the request or response, possibly null
+     * @return true if content of this type should be captured
+     */
+    public boolean matchesContentType(String contentType) {
+        if (contentTypePattern == null) {
+            return true;
+        }
+
+        return contentType != null && contentTypePattern.matcher(contentType).matches();
+    }
+
+    /**
+     * Randomly determines if a request matching this policy should be captured, according to the policy's sample rate.
+     *
+     * @return true if the request should be captured
+     */
+    public boolean sample() {
+        if (sampleRate >= 1.0) {
+            return true;
+        }
+
+        if (sampleRate <= 0.0) {
+            return false;
+        }
+
+        return ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    public Pattern getUrlPattern() {
+        return urlPattern;
+    }
+
+    public Pattern getHttpMethodPattern() {
+        return httpMethodPattern;
+    }
+
+    public Pattern getContentTypePattern() {
+        return contentTypePattern;
+    }
+
+    /**
+     * @return data to capture for matching requests, or null if the proxy's HAR capture types are captured
+     */
+    public Set<CaptureType> getCaptureTypes() {
+        return captureTypes;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getMaxContentSize() {
+        return maxContentSize;
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.multicatch.bmp.proxy;
+
+/**
+ * The time spent by one filter class in one {@link org.littleshoot.proxy.HttpFilters} callback, as recorded by the proxy's
+ * filter latency statistics. Percentiles are estimated from a histogram with power-of-two buckets, so they are accurate to within
+ * a factor of two and never exceed the maximum. This object is immutable.
+ */
+public class FilterLatency {
+    private final String filter;
+    private final String phase;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+
+    public FilterLatency(String filter, String phase, long count, long totalNanos, long maxNanos, long p50Nanos, long p90Nanos, long p99Nanos) {
+        this.filter = filter;
+        this.phase = phase;
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+    }
+
+    /**
+     * @return class name of the filter. For filters added using {@link io.github.multicatch.bmp.BrowserMobProxy#addRequestFilter} or
+     * {@link io.github.multicatch.bmp.BrowserMobProxy#addResponseFilter}, this is the class of the RequestFilter or ResponseFilter.
+     */
+    public String getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return name of the HttpFilters callback, e.g. clientToProxyRequest
+     */
+    public String getPhase() {
+        return phase;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMeanNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+}
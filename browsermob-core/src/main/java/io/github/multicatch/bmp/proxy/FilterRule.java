@@ -0,0 +1,164 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * A declarative filter rule, consisting of the conditions a request must meet and the actions to apply to matching requests. Every
+ * condition is optional; a rule without conditions matches every request except CONNECTs. This object is immutable.
+ * <br>
+ * Rules are compiled into {@link FilterRules}, which only evaluates the rules that may match a request's host.
+ */
+public class FilterRule {
+    private final String method;
+    private final String host;
+    private final Pattern pathPattern;
+    private final String headerName;
+    private final Pattern headerValuePattern;
+    private final List<FilterRuleAction> actions;
+
+    /**
+     * The domain whose subdomains this rule matches, if the host condition is a wildcard such as <code>*.example.com</code>.
+     */
+    private final String domain;
+
+    /**
+     * Creates a new rule.
+     *
+     * @param method HTTP method the request must use, ignoring case, or null to match any method
+     * @param host host the request must be sent to, ignoring case, or null to match any host. A host starting with <code>*.</code>
+     *             matches every subdomain of the domain that follows, but not the domain itself.
+     * @param pathPattern regular expression the path of the request, without the query string, must match, or null to match any path
+     * @param headerName header the request must have, or null if the request's headers are not matched
+     * @param headerValuePattern regular expression a value of the header must match, or null to match any value. Ignored if headerName is null.
+     * @param actions actions to apply to matching requests, in order
+     */
+    public FilterRule(String method, String host, String pathPattern, String headerName, String headerValuePattern, List<FilterRuleAction> actions) {
+        if (actions == null || actions.isEmpty()) {
+            throw new IllegalArgumentException("A filter rule must have at least one action");
+        }
+
+        this.method = method == null || method.isEmpty() ? null : method.toUpperCase(Locale.US);
+        this.host = host == null || host.isEmpty() ? null : host.toLowerCase(Locale.US);
+        this.pathPattern = pathPattern == null || pathPattern.isEmpty() ? null : Pattern.compile(pathPattern);
+        this.headerName = headerName == null || headerName.isEmpty() ? null : headerName;
+        this.headerValuePattern = this.headerName == null || headerValuePattern == null || headerValuePattern.isEmpty() ? null : Pattern.compile(headerValuePattern);
+        this.actions = ImmutableList.copyOf(actions);
+
+        if (this.host != null && this.host.startsWith("*.")) {
+            this.domain = this.host.substring(2);
+            if (domain.isEmpty() || domain.contains("*")) {
+                throw new IllegalArgumentException("Invalid host wildcard: " + host);
+            }
+        } else if (this.host != null && this.host.contains("*")) {
+            throw new IllegalArgumentException("Host wildcards are only supported at the start of the host, such as *.example.com: " + host);
+        } else {
+            this.domain = null;
+        }
+    }
+
+    /**
+     * Determines if this rule matches the request.
+     *
+     * @param method HTTP method of the request
+     * @param host host of the request, without the port
+     * @param path path of the request, without the query string
+     * @param headers request header lookup
+     * @return true if the request meets every condition of this rule
+     */
+    public boolean matches(String method, String host, String path, HeaderLookup headers) {
+        if (this.method != null && !this.method.equalsIgnoreCase(method)) {
+            return false;
+        }
+
+        if (this.host != null && !matchesHost(host)) {
+            return false;
+        }
+
+        if (pathPattern != null && (path == null || !pathPattern.matcher(path).matches())) {
+            return false;
+        }
+
+        if (headerName != null) {
+            List<String> values = headers.getAll(headerName);
+            if (values.isEmpty()) {
+                return false;
+            }
+
+            if (headerValuePattern != null) {
+                for (String value : values) {
+                    if (headerValuePattern.matcher(value).matches()) {
+                        return true;
+                    }
+                }
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean matchesHost(String host) {
+        if (host == null) {
+            return false;
+        }
+
+        if (domain == null) {
+            return this.host.equalsIgnoreCase(host);
+        }
+
+        // the host must be a subdomain, i.e. end with "." followed by the domain
+        int domainStart = host.length() - domain.length();
+        return domainStart > 1 && host.charAt(domainStart - 1) == '.' && host.regionMatches(true, domainStart, domain, 0, domain.length());
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return the domain whose subdomains this rule matches, or null if the rule does not have a wildcard host
+     */
+    String getDomain() {
+        return domain;
+    }
+
+    public Pattern getPathPattern() {
+        return pathPattern;
+    }
+
+    public String getHeaderName() {
+        return headerName;
+    }
+
+    public Pattern getHeaderValuePattern() {
+        return headerValuePattern;
+    }
+
+    /**
+     * @return the actions of this rule, in the order they are applied
+     */
+    public List<FilterRuleAction> getActions() {
+        return actions;
+    }
+
+    /**
+     * Looks up the values of a request header, so rules can be matched without depending on a particular request representation.
+     */
+    @FunctionalInterface
+    public interface HeaderLookup {
+        /**
+         * @param name header name, matched ignoring case
+         * @return the header's values, or an empty list if the header is not present
+         */
+        List<String> getAll(String name);
+    }
+}
@@ -0,0 +1,215 @@
+package io.github.multicatch.bmp.proxy;
+
+import io.netty.handler.codec.http.HttpHeaderValidationUtil;
+
+import java.util.Collections;
+
+/**
+ * An action that a {@link FilterRule} applies to the requests it matches, or to the responses to those requests. Actions are created
+ * using the static factory methods. This object is immutable.
+ */
+public class FilterRuleAction {
+    /**
+     * The kinds of actions a rule can apply.
+     */
+    public enum Type {
+        /**
+         * Sets a header on the request, replacing any existing values.
+         */
+        SET_REQUEST_HEADER,
+
+        /**
+         * Removes a header from the request.
+         */
+        REMOVE_REQUEST_HEADER,
+
+        /**
+         * Sets a header on the response, replacing any existing values.
+         */
+        SET_RESPONSE_HEADER,
+
+        /**
+         * Removes a header from the response.
+         */
+        REMOVE_RESPONSE_HEADER,
+
+        /**
+         * Rewrites the URL of the request using a regular expression and replacement, like {@link RewriteRule}.
+         */
+        REWRITE_URL,
+
+        /**
+         * Responds to the request immediately, without sending it to the server.
+         */
+        RESPOND
+    }
+
+    private final Type type;
+    private final String name;
+    private final String value;
+    private final RewriteRule rewriteRule;
+    private final UrlRewriter urlRewriter;
+    private final int statusCode;
+    private final String contentType;
+    private final String body;
+
+    private FilterRuleAction(Type type, String name, String value, RewriteRule rewriteRule, int statusCode, String contentType, String body) {
+        this.type = type;
+        this.name = name;
+        this.value = value;
+        this.rewriteRule = rewriteRule;
+        this.urlRewriter = rewriteRule == null ? null : new UrlRewriter(Collections.singletonList(rewriteRule), 0);
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.body = body;
+    }
+
+    /**
+     * @param name header name
+     * @param value header value
+     * @return an action that sets the request header
+     */
+    public static FilterRuleAction setRequestHeader(String name, String value) {
+        return new FilterRuleAction(Type.SET_REQUEST_HEADER, requireHeaderName(name), requireHeaderValue(value), null, 0, null, null);
+    }
+
+    /**
+     * @param name header name
+     * @return an action that removes the request header
+     */
+    public static FilterRuleAction removeRequestHeader(String name) {
+        return new FilterRuleAction(Type.REMOVE_REQUEST_HEADER, requireHeaderName(name), null, null, 0, null, null);
+    }
+
+    /**
+     * @param name header name
+     * @param value header value
+     * @return an action that sets the response header
+     */
+    public static FilterRuleAction setResponseHeader(String name, String value) {
+        return new FilterRuleAction(Type.SET_RESPONSE_HEADER, requireHeaderName(name), requireHeaderValue(value), null, 0, null, null);
+    }
+
+    /**
+     * @param name header name
+     * @return an action that removes the response header
+     */
+    public static FilterRuleAction removeResponseHeader(String name) {
+        return new FilterRuleAction(Type.REMOVE_RESPONSE_HEADER, requireHeaderName(name), null, null, 0, null, null);
+    }
+
+    /**
+     * Creates an action that rewrites the full URL of the request, if it matches the URL pattern. The host and port of HTTPS requests
+     * cannot be rewritten. See {@link io.github.multicatch.bmp.BrowserMobProxy#rewriteUrl(String, String)}.
+     *
+     * @param urlPattern URL-matching regular expression
+     * @param replacementExpression replacement for the URL, which may contain capture groups
+     * @return an action that rewrites the URL
+     */
+    public static FilterRuleAction rewriteUrl(String urlPattern, String replacementExpression) {
+        if (urlPattern == null || replacementExpression == null) {
+            throw new IllegalArgumentException("URL pattern and replacement expression cannot be null");
+        }
+
+        return new FilterRuleAction(Type.REWRITE_URL, null, null, new RewriteRule(urlPattern, replacementExpression), 0, null, null);
+    }
+
+    /**
+     * Creates an action that responds to the request immediately. No further rules are applied to the request, and the request is not
+     * sent to the server.
+     *
+     * @param statusCode HTTP status code of the response
+     * @param contentType Content-Type of the response, or null for none
+     * @param body body of the response, encoded as UTF-8 if the content type does not declare a charset, or null for an empty body
+     * @return an action that responds to the request
+     */
+    public static FilterRuleAction respond(int statusCode, String contentType, String body) {
+        if (statusCode < 100 || statusCode > 999) {
+            throw new IllegalArgumentException("Invalid HTTP status code: " + statusCode);
+        }
+
+        return new FilterRuleAction(Type.RESPOND, null, null, null, statusCode, contentType == null ? null : requireHeaderValue(contentType), body);
+    }
+
+    /**
+     * Validates the header name when the action is created, since an invalid header cannot be set on a request or response.
+     */
+    private static String requireHeaderName(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Header name cannot be null or empty");
+        }
+
+        int invalidIndex = HttpHeaderValidationUtil.validateToken(name);
+        if (invalidIndex >= 0) {
+            throw new IllegalArgumentException("Invalid character at index " + invalidIndex + " of header name: " + name);
+        }
+
+        return name;
+    }
+
+    private static String requireHeaderValue(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Header value cannot be null");
+        }
+
+        int invalidIndex = HttpHeaderValidationUtil.validateValidHeaderValue(value);
+        if (invalidIndex >= 0) {
+            throw new IllegalArgumentException("Invalid character at index " + invalidIndex + " of header value: " + value);
+        }
+
+        return value;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the header name, for header actions
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the header value, for actions that set a header
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return the rewrite rule, for {@link Type#REWRITE_URL} actions
+     */
+    public RewriteRule getRewriteRule() {
+        return rewriteRule;
+    }
+
+    /**
+     * @return the compiled rewrite rule, for {@link Type#REWRITE_URL} actions
+     */
+    public UrlRewriter getUrlRewriter() {
+        return urlRewriter;
+    }
+
+    /**
+     * @return the status code, for {@link Type#RESPOND} actions
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the Content-Type, for {@link Type#RESPOND} actions
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the response body, for {@link Type#RESPOND} actions
+     */
+    public String getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,192 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A compiled set of {@link FilterRule}s, which finds the rules matching a request without evaluating every rule. This object is
+ * immutable; modifying the rules is accomplished by compiling a new FilterRules.
+ * <br>
+ * When the rules are compiled, rules that match a single host are indexed by that host, and rules that match the subdomains of a
+ * domain are indexed by the domain, so finding the rules that may match a request takes time proportional to the number of labels in
+ * the request's host, plus the number of rules without a host condition. The matching rules are returned in the order they were added.
+ */
+public class FilterRules {
+    /**
+     * An empty FilterRules.
+     */
+    public static final FilterRules EMPTY = new FilterRules(null);
+
+    private static final int[] NO_RULES = new int[0];
+
+    private final List<FilterRule> rules;
+
+    /**
+     * Indexes of the rules matching a single host, keyed by host.
+     */
+    private final Map<String, int[]> hostIndex;
+
+    /**
+     * Indexes of the rules matching the subdomains of a domain, keyed by domain.
+     */
+    private final Map<String, int[]> domainIndex;
+
+    /**
+     * Indexes of the rules without a host condition, which may match every request.
+     */
+    private final int[] unindexedRules;
+
+    /**
+     * Compiles the specified rules. A null or empty collection will result in an empty FilterRules.
+     *
+     * @param rules filter rules, in evaluation order
+     */
+    public FilterRules(Collection<FilterRule> rules) {
+        this.rules = rules == null ? ImmutableList.of() : ImmutableList.copyOf(rules);
+
+        Map<String, List<Integer>> hosts = new HashMap<>();
+        Map<String, List<Integer>> domains = new HashMap<>();
+        List<Integer> unindexed = new ArrayList<>();
+
+        for (int i = 0; i < this.rules.size(); i++) {
+            FilterRule rule = this.rules.get(i);
+            if (rule.getDomain() != null) {
+                domains.computeIfAbsent(rule.getDomain(), key -> new ArrayList<>()).add(i);
+            } else if (rule.getHost() != null) {
+                hosts.computeIfAbsent(rule.getHost(), key -> new ArrayList<>()).add(i);
+            } else {
+                unindexed.add(i);
+            }
+        }
+
+        this.hostIndex = toIndex(hosts);
+        this.domainIndex = toIndex(domains);
+        this.unindexedRules = toArray(unindexed);
+    }
+
+    /**
+     * @return the rules, in evaluation order
+     */
+    public List<FilterRule> getRules() {
+        return rules;
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * Returns the rules that match the request, in the order they were added.
+     *
+     * @param method HTTP method of the request
+     * @param host host of the request, without the port
+     * @param path path of the request, without the query string
+     * @param headers request header lookup
+     * @return the matching rules, or an empty list if no rule matches
+     */
+    public List<FilterRule> findMatchingRules(String method, String host, String path, FilterRule.HeaderLookup headers) {
+        if (rules.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        int[] candidates = getCandidates(host);
+
+        List<FilterRule> matchingRules = null;
+        for (int index : candidates) {
+            FilterRule rule = rules.get(index);
+            if (rule.matches(method, host, path, headers)) {
+                if (matchingRules == null) {
+                    matchingRules = new ArrayList<>(2);
+                }
+
+                matchingRules.add(rule);
+            }
+        }
+
+        return matchingRules == null ? Collections.emptyList() : matchingRules;
+    }
+
+    /**
+     * Returns the indexes of the rules that may match the host, in ascending order.
+     */
+    private int[] getCandidates(String host) {
+        if (host == null || (hostIndex.isEmpty() && domainIndex.isEmpty())) {
+            return unindexedRules;
+        }
+
+        String lowerCaseHost = host.toLowerCase(Locale.US);
+
+        List<int[]> candidateLists = new ArrayList<>(4);
+        if (unindexedRules.length > 0) {
+            candidateLists.add(unindexedRules);
+        }
+
+        int[] hostRules = hostIndex.get(lowerCaseHost);
+        if (hostRules != null) {
+            candidateLists.add(hostRules);
+        }
+
+        if (!domainIndex.isEmpty()) {
+            // a wildcard rule matches every domain the host is a subdomain of
+            for (int dot = lowerCaseHost.indexOf('.'); dot >= 0; dot = lowerCaseHost.indexOf('.', dot + 1)) {
+                int[] domainRules = domainIndex.get(lowerCaseHost.substring(dot + 1));
+                if (domainRules != null) {
+                    candidateLists.add(domainRules);
+                }
+            }
+        }
+
+        if (candidateLists.isEmpty()) {
+            return NO_RULES;
+        }
+
+        if (candidateLists.size() == 1) {
+            return candidateLists.get(0);
+        }
+
+        // every rule is in exactly one list, so the merged list has no duplicates
+        int length = 0;
+        for (int[] candidateList : candidateLists) {
+            length += candidateList.length;
+        }
+
+        int[] candidates = new int[length];
+        int position = 0;
+        for (int[] candidateList : candidateLists) {
+            System.arraycopy(candidateList, 0, candidates, position, candidateList.length);
+            position += candidateList.length;
+        }
+
+        Arrays.sort(candidates);
+
+        return candidates;
+    }
+
+    private static Map<String, int[]> toIndex(Map<String, List<Integer>> lists) {
+        Map<String, int[]> index = new HashMap<>(lists.size() * 2);
+        lists.forEach((key, list) -> index.put(key, toArray(list)));
+
+        return index;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        if (list.isEmpty()) {
+            return NO_RULES;
+        }
+
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+
+        return array;
+    }
+}
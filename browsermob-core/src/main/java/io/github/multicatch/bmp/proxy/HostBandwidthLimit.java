@@ -0,0 +1,57 @@
+package io.github.multicatch.bmp.proxy;
+
+import java.util.regex.Pattern;
+
+/**
+ * A bandwidth limit for connections to upstream hosts whose name matches a regular expression, used by {@link NetworkConditions}.
+ * The limit is shared by all connections to all matching hosts, so a pattern that matches a single host, such as
+ * <code>cdn\.example\.com</code>, limits that host, and a pattern such as <code>.*\.example\.com</code> limits the combined
+ * traffic of every matching host. This object is immutable.
+ */
+public class HostBandwidthLimit {
+    private final Pattern hostPattern;
+    private final long downstreamBytesPerSecond;
+    private final long upstreamBytesPerSecond;
+
+    /**
+     * Creates a new HostBandwidthLimit.
+     *
+     * @param hostPattern regular expression matching the names of the upstream hosts to limit
+     * @param downstreamBytesPerSecond maximum rate at which the proxy reads responses from matching hosts, or 0 for no limit
+     * @param upstreamBytesPerSecond maximum rate at which the proxy sends requests to matching hosts, or 0 for no limit
+     */
+    public HostBandwidthLimit(String hostPattern, long downstreamBytesPerSecond, long upstreamBytesPerSecond) {
+        if (hostPattern == null) {
+            throw new IllegalArgumentException("Host pattern cannot be null");
+        }
+
+        if (downstreamBytesPerSecond < 0 || upstreamBytesPerSecond < 0) {
+            throw new IllegalArgumentException("Bandwidth limits cannot be negative: downstream " + downstreamBytesPerSecond
+                    + ", upstream " + upstreamBytesPerSecond);
+        }
+
+        this.hostPattern = Pattern.compile(hostPattern);
+        this.downstreamBytesPerSecond = downstreamBytesPerSecond;
+        this.upstreamBytesPerSecond = upstreamBytesPerSecond;
+    }
+
+    public Pattern getHostPattern() {
+        return hostPattern;
+    }
+
+    public long getDownstreamBytesPerSecond() {
+        return downstreamBytesPerSecond;
+    }
+
+    public long getUpstreamBytesPerSecond() {
+        return upstreamBytesPerSecond;
+    }
+
+    /**
+     * @param host name of an upstream host, without the port
+     * @return true if this limit applies to connections to the host
+     */
+    public boolean matches(String host) {
+        return host != null && hostPattern.matcher(host).matches();
+    }
+}
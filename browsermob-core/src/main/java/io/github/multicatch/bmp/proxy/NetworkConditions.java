@@ -0,0 +1,246 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A network condition profile, which emulates the latency, packet loss and bandwidth of a network such as a mobile network.
+ * Set the profile using {@link io.github.multicatch.bmp.BrowserMobProxy#setNetworkConditions(NetworkConditions)}. The profile can
+ * be changed at any time; new requests use the new profile immediately.
+ * <br>
+ * A profile consists of:
+ * <ul>
+ *     <li>a latency added to every response, drawn from a {@link LatencyDistribution} with a mean latency and a jitter,</li>
+ *     <li>a connection setup delay, added to the response to a request that opened a new connection to the upstream host,</li>
+ *     <li>a packet loss rate: the fraction of responses that are delayed by a simulated retransmission timeout,</li>
+ *     <li>downstream and upstream bandwidth limits shared by all connections to upstream hosts, and</li>
+ *     <li>{@link HostBandwidthLimit}s that apply additional limits to connections to particular hosts.</li>
+ * </ul>
+ * A latency, delay, rate or bandwidth of 0 disables that part of the profile. Presets for common networks are available by name
+ * from {@link #getPreset(String)}. This object is immutable.
+ */
+public class NetworkConditions {
+    /**
+     * The minimum simulated retransmission timeout for a lost packet, in milliseconds.
+     */
+    public static final int MIN_RETRANSMISSION_TIMEOUT_MS = 200;
+
+    public static final NetworkConditions GPRS = new NetworkConditions("GPRS", 500, 100, LatencyDistribution.NORMAL, 500, 0.01, 6_250, 2_500, null);
+    public static final NetworkConditions EDGE = new NetworkConditions("2G", 300, 60, LatencyDistribution.NORMAL, 300, 0.01, 31_250, 6_250, null);
+    public static final NetworkConditions UMTS = new NetworkConditions("3G", 100, 30, LatencyDistribution.NORMAL, 200, 0.005, 93_750, 31_250, null);
+    public static final NetworkConditions LTE = new NetworkConditions("LTE", 40, 10, LatencyDistribution.NORMAL, 60, 0.001, 1_500_000, 500_000, null);
+    public static final NetworkConditions WIFI = new NetworkConditions("WIFI", 10, 3, LatencyDistribution.NORMAL, 10, 0.0, 3_750_000, 1_875_000, null);
+
+    private static final Map<String, NetworkConditions> PRESETS = ImmutableMap.<String, NetworkConditions>builder()
+            .put(GPRS.getName(), GPRS)
+            .put(EDGE.getName(), EDGE)
+            .put(UMTS.getName(), UMTS)
+            .put(LTE.getName(), LTE)
+            .put(WIFI.getName(), WIFI)
+            .build();
+
+    /**
+     * The shape of the distribution from which the latency of each response is drawn.
+     */
+    public enum LatencyDistribution {
+        /**
+         * Every response is delayed by the latency. The jitter is ignored.
+         */
+        CONSTANT,
+
+        /**
+         * Latencies are uniformly distributed between latency - jitter and latency + jitter.
+         */
+        UNIFORM,
+
+        /**
+         * Latencies are normally distributed, with a mean of latency and a standard deviation of jitter.
+         */
+        NORMAL,
+
+        /**
+         * Latencies are the latency plus an exponentially distributed delay with a mean of jitter, which produces the long tail
+         * of delays typical of congested networks.
+         */
+        EXPONENTIAL
+    }
+
+    private final String name;
+    private final int latencyMs;
+    private final int jitterMs;
+    private final LatencyDistribution latencyDistribution;
+    private final int connectionSetupDelayMs;
+    private final double packetLossRate;
+    private final long downstreamBytesPerSecond;
+    private final long upstreamBytesPerSecond;
+    private final List<HostBandwidthLimit> hostBandwidthLimits;
+
+    /**
+     * Creates a profile that only adds a constant latency and limits bandwidth.
+     *
+     * @param name name of the profile
+     * @param latencyMs latency to add to every response, in milliseconds
+     * @param downstreamBytesPerSecond maximum rate at which the proxy reads responses from upstream hosts, or 0 for no limit
+     * @param upstreamBytesPerSecond maximum rate at which the proxy sends requests to upstream hosts, or 0 for no limit
+     */
+    public NetworkConditions(String name, int latencyMs, long downstreamBytesPerSecond, long upstreamBytesPerSecond) {
+        this(name, latencyMs, 0, LatencyDistribution.CONSTANT, 0, 0.0, downstreamBytesPerSecond, upstreamBytesPerSecond, null);
+    }
+
+    /**
+     * Creates a new NetworkConditions profile.
+     *
+     * @param name name of the profile
+     * @param latencyMs mean latency to add to every response, in milliseconds
+     * @param jitterMs variation of the latency, in milliseconds; see {@link LatencyDistribution}
+     * @param latencyDistribution distribution of the latency, or null for {@link LatencyDistribution#CONSTANT}
+     * @param connectionSetupDelayMs delay to add to responses to requests that opened a new upstream connection, in milliseconds
+     * @param packetLossRate fraction of responses delayed by a simulated retransmission timeout, from 0.0 to 1.0
+     * @param downstreamBytesPerSecond maximum rate at which the proxy reads responses from upstream hosts, or 0 for no limit
+     * @param upstreamBytesPerSecond maximum rate at which the proxy sends requests to upstream hosts, or 0 for no limit
+     * @param hostBandwidthLimits additional bandwidth limits for particular hosts, or null for none
+     */
+    public NetworkConditions(String name,
+                             int latencyMs,
+                             int jitterMs,
+                             LatencyDistribution latencyDistribution,
+                             int connectionSetupDelayMs,
+                             double packetLossRate,
+                             long downstreamBytesPerSecond,
+                             long upstreamBytesPerSecond,
+                             List<HostBandwidthLimit> hostBandwidthLimits) {
+        if (latencyMs < 0 || jitterMs < 0 || connectionSetupDelayMs < 0) {
+            throw new IllegalArgumentException("Latency, jitter and connection setup delay cannot be negative: latency " + latencyMs
+                    + ", jitter " + jitterMs + ", connection setup delay " + connectionSetupDelayMs);
+        }
+
+        if (!(packetLossRate >= 0.0 && packetLossRate <= 1.0)) {
+            throw new IllegalArgumentException("Packet loss rate must be between 0.0 and 1.0: " + packetLossRate);
+        }
+
+        if (downstreamBytesPerSecond < 0 || upstreamBytesPerSecond < 0) {
+            throw new IllegalArgumentException("Bandwidth limits cannot be negative: downstream " + downstreamBytesPerSecond
+                    + ", upstream " + upstreamBytesPerSecond);
+        }
+
+        this.name = name;
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.latencyDistribution = latencyDistribution == null ? LatencyDistribution.CONSTANT : latencyDistribution;
+        this.connectionSetupDelayMs = connectionSetupDelayMs;
+        this.packetLossRate = packetLossRate;
+        this.downstreamBytesPerSecond = downstreamBytesPerSecond;
+        this.upstreamBytesPerSecond = upstreamBytesPerSecond;
+        this.hostBandwidthLimits = hostBandwidthLimits == null ? Collections.emptyList() : ImmutableList.copyOf(hostBandwidthLimits);
+    }
+
+    /**
+     * Returns the preset profile with the specified name: GPRS, 2G, 3G, LTE or WIFI. Names are case-insensitive.
+     *
+     * @param name name of the preset
+     * @return the preset, or null if there is no preset with the name
+     */
+    public static NetworkConditions getPreset(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        return PRESETS.get(name.toUpperCase(Locale.US));
+    }
+
+    /**
+     * @return the preset profiles, keyed by name
+     */
+    public static Map<String, NetworkConditions> getPresets() {
+        return PRESETS;
+    }
+
+    /**
+     * Draws the latency to add to a response from the latency distribution, including the delay of a simulated packet loss.
+     *
+     * @param random source of randomness
+     * @return latency to add to the response, in milliseconds
+     */
+    public long sampleResponseLatencyMs(Random random) {
+        double latency;
+        switch (latencyDistribution) {
+            case UNIFORM:
+                latency = latencyMs + (random.nextDouble() * 2 - 1) * jitterMs;
+                break;
+            case NORMAL:
+                latency = latencyMs + random.nextGaussian() * jitterMs;
+                break;
+            case EXPONENTIAL:
+                latency = latencyMs - Math.log(1 - random.nextDouble()) * jitterMs;
+                break;
+            default:
+                latency = latencyMs;
+                break;
+        }
+
+        long sampledLatencyMs = Math.max(0L, Math.round(latency));
+
+        if (packetLossRate > 0.0 && random.nextDouble() < packetLossRate) {
+            // a lost packet is resent after a retransmission timeout of about twice the round-trip time
+            sampledLatencyMs += Math.max(MIN_RETRANSMISSION_TIMEOUT_MS, 2 * sampledLatencyMs);
+        }
+
+        return sampledLatencyMs;
+    }
+
+    /**
+     * @return true if this profile adds latency to responses
+     */
+    public boolean addsLatency() {
+        return latencyMs > 0 || (jitterMs > 0 && latencyDistribution != LatencyDistribution.CONSTANT) || packetLossRate > 0.0;
+    }
+
+    /**
+     * @return true if this profile limits the bandwidth of any upstream connection
+     */
+    public boolean limitsBandwidth() {
+        return downstreamBytesPerSecond > 0 || upstreamBytesPerSecond > 0 || !hostBandwidthLimits.isEmpty();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLatencyMs() {
+        return latencyMs;
+    }
+
+    public int getJitterMs() {
+        return jitterMs;
+    }
+
+    public LatencyDistribution getLatencyDistribution() {
+        return latencyDistribution;
+    }
+
+    public int getConnectionSetupDelayMs() {
+        return connectionSetupDelayMs;
+    }
+
+    public double getPacketLossRate() {
+        return packetLossRate;
+    }
+
+    public long getDownstreamBytesPerSecond() {
+        return downstreamBytesPerSecond;
+    }
+
+    public long getUpstreamBytesPerSecond() {
+        return upstreamBytesPerSecond;
+    }
+
+    public List<HostBandwidthLimit> getHostBandwidthLimits() {
+        return hostBandwidthLimits;
+    }
+}
@@ -0,0 +1,629 @@
+package io.github.multicatch.bmp.proxy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+
+/**
+ * An index of URL-matching regular expressions, which finds the patterns that may match a URL without evaluating every pattern.
+ * When the index is built, each pattern is examined:
+ * <ul>
+ *     <li>Patterns that can only match a single host, such as <code>https?://ads\.example\.com/.*</code>, are indexed by that host.</li>
+ *     <li>Patterns that can only match a domain and its subdomains, such as <code>https?://[^/]*\.example\.com/.*</code>, are indexed
+ *     in a trie of reversed domain names.</li>
+ *     <li>Patterns that start with a literal string, such as <code>http://intranet.*</code>, are indexed in a trie of prefixes.</li>
+ *     <li>All other patterns are candidates for every URL, but a pattern that requires a literal string, such as the
+ *     <code>/pixel.gif</code> in <code>.*&#47;pixel\.gif.*</code>, is only a candidate when the URL contains that string.</li>
+ * </ul>
+ * Finding the candidates for a URL takes time proportional to the length of the URL, plus the number of unindexed patterns.
+ * Candidates are evaluated in the order of the patterns, so the first matching pattern is the same as if every pattern were
+ * evaluated in turn. This object is immutable.
+ */
+class UrlPatternIndex {
+    /**
+     * Regular expressions matching the scheme of a URL, which are followed by the host in URL patterns that can be indexed by host.
+     */
+    private static final String[] SCHEME_PREFIXES = {
+            "https?://", "http://", "https://", "(http|https)://", "(https|http)://", "(?:http|https)://", "(?:https|http)://",
+            "https?:\\/\\/", "http:\\/\\/", "https:\\/\\/"
+    };
+
+    /**
+     * Regular expressions matching the subdomains of a domain, which may precede the host in URL patterns that can be indexed by
+     * domain. None of these can match a '/', so they cannot match beyond the authority of the URL.
+     */
+    private static final String[] SUBDOMAIN_PREFIXES = {
+            "[^/]*\\.", "[^/]+\\.", "([^/]*\\.)?", "([^/]+\\.)?", "(?:[^/]*\\.)?", "(?:[^/]+\\.)?",
+            "([^/]*\\.)*", "([^/]+\\.)*", "([^/]*\\.)+", "([^/]+\\.)+",
+            "([a-z0-9-]+\\.)*", "([a-zA-Z0-9-]+\\.)*", "([a-z0-9-]+\\.)+", "([a-zA-Z0-9-]+\\.)+"
+    };
+
+    private static final int[] NO_PATTERNS = new int[0];
+
+    /**
+     * Letters that form a complete escape sequence on their own: predefined character classes, boundary matchers and control characters.
+     */
+    private static final String SINGLE_LETTER_ESCAPES = "dDsSwWhHvVbBAGZzRXtnrfae";
+
+    private final int patternCount;
+
+    /**
+     * Indexes of patterns that can only match a host, keyed by host.
+     */
+    private final Map<String, int[]> hostIndex;
+
+    /**
+     * Indexes of patterns that can only match a domain or its subdomains, keyed by reversed domain.
+     */
+    private final CharTrie domainTrie;
+
+    /**
+     * Indexes of patterns that start with a literal string, keyed by that string.
+     */
+    private final CharTrie prefixTrie;
+
+    /**
+     * Indexes of the patterns that are candidates for every URL.
+     */
+    private final int[] unindexedPatterns;
+
+    /**
+     * A literal string that a URL must contain to match each unindexed or prefix-indexed pattern, or null if the pattern does not
+     * require a literal string beyond its prefix. A short prefix such as "http" matches nearly every URL, so the required literal
+     * is still checked before evaluating the pattern.
+     */
+    private final String[] requiredLiterals;
+
+    UrlPatternIndex(List<Pattern> patterns) {
+        this.patternCount = patterns.size();
+
+        Map<String, List<Integer>> hosts = new HashMap<>();
+        CharTrie.Builder domains = new CharTrie.Builder();
+        CharTrie.Builder prefixes = new CharTrie.Builder();
+        List<Integer> unindexed = new ArrayList<>();
+        this.requiredLiterals = new String[patterns.size()];
+
+        for (int i = 0; i < patterns.size(); i++) {
+            Pattern pattern = patterns.get(i);
+            if (pattern.flags() != 0) {
+                // flags such as CASE_INSENSITIVE change what the literal characters in the pattern match
+                unindexed.add(i);
+                continue;
+            }
+
+            HostConstraint hostConstraint = getHostConstraint(pattern.pattern());
+            if (hostConstraint != null) {
+                if (hostConstraint.domain) {
+                    domains.add(new StringBuilder(hostConstraint.host).reverse(), i);
+                } else {
+                    hosts.computeIfAbsent(hostConstraint.host, key -> new ArrayList<>()).add(i);
+                }
+
+                continue;
+            }
+
+            String requiredLiteral = getRequiredLiteral(pattern.pattern());
+
+            String literalPrefix = getLiteralPrefix(pattern.pattern());
+            if (literalPrefix != null) {
+                prefixes.add(literalPrefix, i);
+                if (requiredLiteral != null && !literalPrefix.contains(requiredLiteral)) {
+                    requiredLiterals[i] = requiredLiteral;
+                }
+
+                continue;
+            }
+
+            unindexed.add(i);
+            requiredLiterals[i] = requiredLiteral;
+        }
+
+        this.hostIndex = new HashMap<>(hosts.size() * 2);
+        hosts.forEach((host, hostPatterns) -> hostIndex.put(host, toArray(hostPatterns)));
+
+        this.domainTrie = domains.build();
+        this.prefixTrie = prefixes.build();
+        this.unindexedPatterns = toArray(unindexed);
+    }
+
+    /**
+     * Returns the index of the first pattern for which the matcher returns true, evaluating only the patterns that may match the URL.
+     *
+     * @param url URL to match
+     * @param matcher tests whether the pattern at the given index matches the URL
+     * @return index of the first matching pattern, or -1 if no pattern matched
+     */
+    int findFirstMatch(String url, IntPredicate matcher) {
+        return findFirstMatch(url, 0, matcher);
+    }
+
+    /**
+     * Returns the index of the first pattern, at or after fromIndex, for which the matcher returns true, evaluating only the patterns
+     * that may match the URL.
+     *
+     * @param url URL to match
+     * @param fromIndex index of the first pattern to evaluate
+     * @param matcher tests whether the pattern at the given index matches the URL
+     * @return index of the first matching pattern, or -1 if no pattern matched
+     */
+    int findFirstMatch(String url, int fromIndex, IntPredicate matcher) {
+        if (fromIndex >= patternCount) {
+            return -1;
+        }
+
+        List<int[]> candidateLists = new ArrayList<>(4);
+        if (unindexedPatterns.length > 0) {
+            candidateLists.add(unindexedPatterns);
+        }
+
+        prefixTrie.collectPrefixes(url, candidateLists);
+
+        int authorityStart = url.indexOf("://");
+        if (authorityStart >= 0) {
+            authorityStart += 3;
+
+            int authorityEnd = url.indexOf('/', authorityStart);
+            if (authorityEnd < 0) {
+                authorityEnd = url.length();
+            }
+
+            if (!hostIndex.isEmpty()) {
+                int hostEnd = url.indexOf(':', authorityStart);
+                if (hostEnd < 0 || hostEnd > authorityEnd) {
+                    hostEnd = authorityEnd;
+                }
+
+                int[] candidates = hostIndex.get(url.substring(authorityStart, hostEnd));
+                if (candidates != null) {
+                    candidateLists.add(candidates);
+                }
+            }
+
+            // the domain of a matching pattern is a suffix of the authority
+            domainTrie.collectReversedSuffixes(url, authorityStart, authorityEnd, candidateLists);
+        }
+
+        // evaluate the candidates in pattern order, merging the sorted candidate lists
+        int[] positions = new int[candidateLists.size()];
+        if (fromIndex > 0) {
+            for (int i = 0; i < positions.length; i++) {
+                int position = Arrays.binarySearch(candidateLists.get(i), fromIndex);
+                positions[i] = position >= 0 ? position : -position - 1;
+            }
+        }
+
+        while (true) {
+            int next = Integer.MAX_VALUE;
+            for (int i = 0; i < positions.length; i++) {
+                int[] candidates = candidateLists.get(i);
+                if (positions[i] < candidates.length && candidates[positions[i]] < next) {
+                    next = candidates[positions[i]];
+                }
+            }
+
+            if (next == Integer.MAX_VALUE) {
+                return -1;
+            }
+
+            for (int i = 0; i < positions.length; i++) {
+                int[] candidates = candidateLists.get(i);
+                if (positions[i] < candidates.length && candidates[positions[i]] == next) {
+                    positions[i]++;
+                }
+            }
+
+            String requiredLiteral = requiredLiterals[next];
+            if (requiredLiteral != null && !url.contains(requiredLiteral)) {
+                continue;
+            }
+
+            if (matcher.test(next)) {
+                return next;
+            }
+        }
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        if (list.isEmpty()) {
+            return NO_PATTERNS;
+        }
+
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+
+        return array;
+    }
+
+    /**
+     * The host or domain that a URL pattern is restricted to.
+     */
+    static class HostConstraint {
+        final String host;
+
+        /**
+         * True if the pattern may match subdomains of the host.
+         */
+        final boolean domain;
+
+        HostConstraint(String host, boolean domain) {
+            this.host = host;
+            this.domain = domain;
+        }
+    }
+
+    /**
+     * Determines if the URL pattern can only match URLs with a particular host, or a particular domain and its subdomains.
+     * Only patterns that start with a scheme, followed by a literal host name, optionally preceded by a subdomain wildcard,
+     * are recognized.
+     *
+     * @param urlPattern URL-matching regular expression
+     * @return the host or domain that the pattern is restricted to, or null if the pattern is not restricted to a host
+     */
+    static HostConstraint getHostConstraint(String urlPattern) {
+        String remaining = urlPattern.startsWith("^") ? urlPattern.substring(1) : urlPattern;
+
+        String scheme = findPrefix(remaining, SCHEME_PREFIXES);
+        if (scheme == null) {
+            return null;
+        }
+        remaining = remaining.substring(scheme.length());
+
+        String subdomains = findPrefix(remaining, SUBDOMAIN_PREFIXES);
+        boolean domain = subdomains != null;
+        if (domain) {
+            remaining = remaining.substring(subdomains.length());
+        }
+
+        StringBuilder host = new StringBuilder();
+        int i = 0;
+        while (i < remaining.length()) {
+            char c = remaining.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '-' || c == '_') {
+                host.append(c);
+                i++;
+            } else if (c == '\\' && i + 1 < remaining.length() && remaining.charAt(i + 1) == '.') {
+                host.append('.');
+                i += 2;
+            } else {
+                break;
+            }
+        }
+
+        // a host name cannot be empty or end with a dot
+        if (host.length() == 0 || host.charAt(host.length() - 1) == '.') {
+            return null;
+        }
+
+        String rest = remaining.substring(i);
+        if (!endsHost(rest, domain)) {
+            return null;
+        }
+
+        return new HostConstraint(host.toString(), domain);
+    }
+
+    /**
+     * Determines if the remainder of a URL pattern, following a literal host name, requires that the host name ends there.
+     * Domain patterns must be followed by the path, so that they cannot match a port, since the subdomain wildcard may
+     * also match a ':'.
+     */
+    private static boolean endsHost(String rest, boolean domain) {
+        if (rest.isEmpty() || rest.equals("$") || rest.startsWith("/") || rest.startsWith("\\/")) {
+            return true;
+        }
+
+        if (domain) {
+            return false;
+        }
+
+        return rest.startsWith(":") || rest.startsWith("\\:") || rest.startsWith("(:\\d+)?/") || rest.startsWith("(:[0-9]+)?/");
+    }
+
+    private static String findPrefix(String pattern, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (pattern.startsWith(prefix)) {
+                return prefix;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the literal string that every URL matching the pattern must start with, or null if the pattern does not start with a
+     * literal string or is too complex to analyze.
+     *
+     * @param urlPattern URL-matching regular expression
+     * @return the literal prefix of the pattern, or null
+     */
+    static String getLiteralPrefix(String urlPattern) {
+        // an alternation may allow a match that does not start with the literal characters
+        if (urlPattern.indexOf('|') >= 0 || urlPattern.contains("\\Q")) {
+            return null;
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        int i = urlPattern.startsWith("^") ? 1 : 0;
+        while (i < urlPattern.length()) {
+            char c = urlPattern.charAt(i);
+
+            char literal;
+            if (c == '\\') {
+                if (i + 1 >= urlPattern.length() || Character.isLetterOrDigit(urlPattern.charAt(i + 1))) {
+                    break;
+                }
+
+                literal = urlPattern.charAt(i + 1);
+                i += 2;
+            } else if (isMetaCharacter(c)) {
+                break;
+            } else {
+                literal = c;
+                i++;
+            }
+
+            if (isOptional(urlPattern, i)) {
+                break;
+            }
+
+            prefix.append(literal);
+
+            if (i < urlPattern.length() && urlPattern.charAt(i) == '+') {
+                break;
+            }
+        }
+
+        return prefix.length() == 0 ? null : prefix.toString();
+    }
+
+    /**
+     * Returns the longest literal string that every URL matching the pattern must contain, or null if no literal string is required
+     * or the pattern is too complex to analyze. Only literal characters outside of groups and character classes are considered.
+     *
+     * @param urlPattern URL-matching regular expression
+     * @return a required literal string, or null
+     */
+    static String getRequiredLiteral(String urlPattern) {
+        // alternation and inline flags (e.g. case insensitivity) change what the literal characters match
+        if (urlPattern.indexOf('|') >= 0 || urlPattern.contains("(?") || urlPattern.contains("\\Q")) {
+            return null;
+        }
+
+        String longestLiteral = "";
+        StringBuilder literal = new StringBuilder();
+        int depth = 0;
+
+        int i = 0;
+        while (i < urlPattern.length()) {
+            char c = urlPattern.charAt(i);
+
+            if (c == '\\') {
+                if (i + 1 >= urlPattern.length()) {
+                    return null;
+                }
+
+                char escaped = urlPattern.charAt(i + 1);
+                i += 2;
+
+                if (Character.isLetterOrDigit(escaped)) {
+                    // hexadecimal, unicode and octal escapes, control characters, named groups and unicode properties are followed by
+                    // characters that are not literals, so only escapes that consist of a single letter are analyzed
+                    if (SINGLE_LETTER_ESCAPES.indexOf(escaped) < 0) {
+                        return null;
+                    }
+
+                    // a predefined character class, boundary matcher, or control character
+                    longestLiteral = longer(longestLiteral, literal);
+                    literal.setLength(0);
+                    continue;
+                }
+
+                if (depth == 0) {
+                    if (isOptional(urlPattern, i)) {
+                        longestLiteral = longer(longestLiteral, literal);
+                        literal.setLength(0);
+                    } else {
+                        literal.append(escaped);
+                    }
+                }
+
+                continue;
+            }
+
+            if (c == '[') {
+                longestLiteral = longer(longestLiteral, literal);
+                literal.setLength(0);
+                i = skipCharacterClass(urlPattern, i);
+                if (i < 0) {
+                    return null;
+                }
+                continue;
+            }
+
+            if (c == '(' || c == ')') {
+                longestLiteral = longer(longestLiteral, literal);
+                literal.setLength(0);
+                depth += c == '(' ? 1 : -1;
+                i++;
+                continue;
+            }
+
+            if (c == '{') {
+                // skip the bounds of the quantifier
+                longestLiteral = longer(longestLiteral, literal);
+                literal.setLength(0);
+                i = urlPattern.indexOf('}', i);
+                if (i < 0) {
+                    return null;
+                }
+                i++;
+                continue;
+            }
+
+            if (isMetaCharacter(c)) {
+                longestLiteral = longer(longestLiteral, literal);
+                literal.setLength(0);
+                i++;
+                continue;
+            }
+
+            i++;
+            if (depth == 0) {
+                if (isOptional(urlPattern, i)) {
+                    longestLiteral = longer(longestLiteral, literal);
+                    literal.setLength(0);
+                } else {
+                    literal.append(c);
+                }
+            }
+        }
+
+        longestLiteral = longer(longestLiteral, literal);
+
+        return longestLiteral.isEmpty() ? null : longestLiteral;
+    }
+
+    private static boolean isMetaCharacter(char c) {
+        return c == '.' || c == '^' || c == '$' || c == '*' || c == '+' || c == '?' || c == '{' || c == '}'
+                || c == '[' || c == ']' || c == '(' || c == ')' || c == '|';
+    }
+
+    /**
+     * Determines if the character preceding the specified position is made optional by a quantifier. A character followed by '+'
+     * is required; the '+' ends the run of literal characters, since the character may be repeated.
+     */
+    private static boolean isOptional(String urlPattern, int next) {
+        if (next >= urlPattern.length()) {
+            return false;
+        }
+
+        char quantifier = urlPattern.charAt(next);
+        return quantifier == '?' || quantifier == '*' || quantifier == '{';
+    }
+
+    private static int skipCharacterClass(String urlPattern, int start) {
+        int i = start + 1;
+        if (i < urlPattern.length() && urlPattern.charAt(i) == '^') {
+            i++;
+        }
+
+        // a ']' immediately after the opening bracket is a literal
+        if (i < urlPattern.length() && urlPattern.charAt(i) == ']') {
+            i++;
+        }
+
+        while (i < urlPattern.length()) {
+            char c = urlPattern.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '[') {
+                // nested classes and intersections are not analyzed
+                return -1;
+            } else if (c == ']') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+
+        return -1;
+    }
+
+    private static String longer(String longestLiteral, CharSequence literal) {
+        return literal.length() > longestLiteral.length() ? literal.toString() : longestLiteral;
+    }
+
+    /**
+     * An immutable character trie, which maps strings to the indexes of the patterns that were added with that string.
+     */
+    static class CharTrie {
+        private static final CharTrie EMPTY = new CharTrie(new char[0], new CharTrie[0], NO_PATTERNS);
+
+        private final char[] keys;
+        private final CharTrie[] children;
+        private final int[] patterns;
+
+        private CharTrie(char[] keys, CharTrie[] children, int[] patterns) {
+            this.keys = keys;
+            this.children = children;
+            this.patterns = patterns;
+        }
+
+        private CharTrie child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        /**
+         * Adds the patterns of every string in the trie that is a prefix of the specified string.
+         */
+        void collectPrefixes(String string, List<int[]> candidateLists) {
+            CharTrie node = this;
+            for (int i = 0; i < string.length() && node.keys.length > 0; i++) {
+                node = node.child(string.charAt(i));
+                if (node == null) {
+                    return;
+                }
+
+                if (node.patterns.length > 0) {
+                    candidateLists.add(node.patterns);
+                }
+            }
+        }
+
+        /**
+         * Adds the patterns of every string in the trie that is the reverse of a suffix of the specified substring.
+         */
+        void collectReversedSuffixes(String string, int start, int end, List<int[]> candidateLists) {
+            CharTrie node = this;
+            for (int i = end - 1; i >= start && node.keys.length > 0; i--) {
+                node = node.child(string.charAt(i));
+                if (node == null) {
+                    return;
+                }
+
+                if (node.patterns.length > 0) {
+                    candidateLists.add(node.patterns);
+                }
+            }
+        }
+
+        static class Builder {
+            private final TreeMap<Character, Builder> children = new TreeMap<>();
+            private final List<Integer> patterns = new ArrayList<>();
+
+            void add(CharSequence key, int pattern) {
+                Builder node = this;
+                for (int i = 0; i < key.length(); i++) {
+                    node = node.children.computeIfAbsent(key.charAt(i), c -> new Builder());
+                }
+
+                node.patterns.add(pattern);
+            }
+
+            CharTrie build() {
+                if (children.isEmpty() && patterns.isEmpty()) {
+                    return EMPTY;
+                }
+
+                char[] keys = new char[children.size()];
+                CharTrie[] childNodes = new CharTrie[children.size()];
+                int i = 0;
+                for (Map.Entry<Character, Builder> child : children.entrySet()) {
+                    keys[i] = child.getKey();
+                    childNodes[i] = child.getValue().build();
+                    i++;
+                }
+
+                return new CharTrie(keys, childNodes, toArray(patterns));
+            }
+        }
+    }
+}
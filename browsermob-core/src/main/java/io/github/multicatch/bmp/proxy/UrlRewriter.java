@@ -0,0 +1,228 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import io.github.multicatch.bmp.util.BrowserMobHttpUtil;
+import io.github.multicatch.bmp.util.HttpUtil;
+
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled set of {@link RewriteRule}s. This object is immutable; modifying the rewrite rules is accomplished by compiling a new
+ * UrlRewriter.
+ * <br>
+ * Rewrite rules are applied in the order they were added: every rule that matches the URL, as rewritten by the preceding rules,
+ * replaces it. When the rules are compiled, their patterns are indexed by host, domain and literal prefix (see {@link UrlPatternIndex}),
+ * so a rule is only evaluated if it may match the URL. The results for recently requested URLs are cached, including the host and
+ * port of the original and rewritten URLs and the path of the rewritten URL, so repeated requests for the same URL do not evaluate
+ * any regular expressions or parse any URLs.
+ */
+public class UrlRewriter {
+    /**
+     * Default number of recent URL rewrites to cache.
+     */
+    public static final int DEFAULT_REWRITE_CACHE_SIZE = 4096;
+
+    /**
+     * A UrlRewriter without any rewrite rules.
+     */
+    public static final UrlRewriter EMPTY = new UrlRewriter(null, 0);
+
+    /**
+     * Cached result for URLs that no rule matched.
+     */
+    private static final RewrittenUrl NOT_REWRITTEN = new RewrittenUrl(null, null, null, null);
+
+    private final List<RewriteRule> rewriteRules;
+
+    private final UrlPatternIndex urlPatternIndex;
+
+    /**
+     * Results for recently requested URLs, keyed by the original URL. Null if results are not cached.
+     */
+    private final Cache<String, RewrittenUrl> rewriteCache;
+
+    /**
+     * Compiles the specified rewrite rules, caching the default number of URL rewrites.
+     *
+     * @param rewriteRules rewrite rules, in the order they should be applied
+     */
+    public UrlRewriter(Collection<RewriteRule> rewriteRules) {
+        this(rewriteRules, DEFAULT_REWRITE_CACHE_SIZE);
+    }
+
+    /**
+     * Compiles the specified rewrite rules. A null or empty collection will result in a UrlRewriter that never rewrites URLs.
+     *
+     * @param rewriteRules rewrite rules, in the order they should be applied
+     * @param rewriteCacheSize number of recent URL rewrites to cache, or 0 to disable caching
+     */
+    public UrlRewriter(Collection<RewriteRule> rewriteRules, int rewriteCacheSize) {
+        if (rewriteCacheSize < 0) {
+            throw new IllegalArgumentException("Rewrite cache size cannot be negative: " + rewriteCacheSize);
+        }
+
+        this.rewriteRules = rewriteRules == null ? ImmutableList.of() : ImmutableList.copyOf(rewriteRules);
+
+        List<Pattern> urlPatterns = new ArrayList<>(this.rewriteRules.size());
+        for (RewriteRule rule : this.rewriteRules) {
+            urlPatterns.add(rule.getPattern());
+        }
+
+        this.urlPatternIndex = new UrlPatternIndex(urlPatterns);
+
+        if (rewriteCacheSize > 0 && !this.rewriteRules.isEmpty()) {
+            this.rewriteCache = CacheBuilder.newBuilder()
+                    .maximumSize(rewriteCacheSize)
+                    .build();
+        } else {
+            this.rewriteCache = null;
+        }
+    }
+
+    /**
+     * @return the rewrite rules, in the order they are applied
+     */
+    public List<RewriteRule> getRewriteRules() {
+        return rewriteRules;
+    }
+
+    public boolean isEmpty() {
+        return rewriteRules.isEmpty();
+    }
+
+    /**
+     * Applies the rewrite rules to the URL.
+     *
+     * @param url full URL of the request
+     * @return the rewritten URL, or null if no rewrite rule matched the URL
+     */
+    public RewrittenUrl rewrite(String url) {
+        if (rewriteRules.isEmpty()) {
+            return null;
+        }
+
+        if (rewriteCache != null) {
+            RewrittenUrl cachedResult = rewriteCache.getIfPresent(url);
+            if (cachedResult != null) {
+                return cachedResult == NOT_REWRITTEN ? null : cachedResult;
+            }
+        }
+
+        RewrittenUrl result = applyRewriteRules(url);
+
+        if (rewriteCache != null) {
+            rewriteCache.put(url, result == null ? NOT_REWRITTEN : result);
+        }
+
+        return result;
+    }
+
+    private RewrittenUrl applyRewriteRules(String originalUrl) {
+        String rewrittenUrl = originalUrl;
+        boolean rewroteUrl = false;
+
+        // each rule is applied to the URL as rewritten by the preceding rules
+        int nextRule = 0;
+        while (nextRule < rewriteRules.size()) {
+            String currentUrl = rewrittenUrl;
+            Matcher[] matchingMatcher = new Matcher[1];
+            int matchingRule = urlPatternIndex.findFirstMatch(currentUrl, nextRule, index -> {
+                Matcher matcher = rewriteRules.get(index).getPattern().matcher(currentUrl);
+                if (matcher.matches()) {
+                    matchingMatcher[0] = matcher;
+                    return true;
+                }
+
+                return false;
+            });
+
+            if (matchingRule < 0) {
+                break;
+            }
+
+            rewrittenUrl = matchingMatcher[0].replaceAll(rewriteRules.get(matchingRule).getReplace());
+            rewroteUrl = true;
+            nextRule = matchingRule + 1;
+        }
+
+        if (!rewroteUrl) {
+            return null;
+        }
+
+        String originalHostAndPort;
+        try {
+            originalHostAndPort = HttpUtil.getHostAndPortFromUri(originalUrl);
+        } catch (URISyntaxException e) {
+            originalHostAndPort = null;
+        }
+
+        String rewrittenHostAndPort;
+        try {
+            rewrittenHostAndPort = HttpUtil.getHostAndPortFromUri(rewrittenUrl);
+        } catch (URISyntaxException e) {
+            rewrittenHostAndPort = null;
+        }
+
+        String rewrittenPathAndParams;
+        try {
+            rewrittenPathAndParams = BrowserMobHttpUtil.getRawPathAndParamsFromUri(rewrittenUrl);
+        } catch (URISyntaxException e) {
+            rewrittenPathAndParams = null;
+        }
+
+        return new RewrittenUrl(rewrittenUrl, rewrittenPathAndParams, originalHostAndPort, rewrittenHostAndPort);
+    }
+
+    /**
+     * The result of applying rewrite rules to a URL. The URLs are parsed when the result is created, so the result can be cached and
+     * reused without parsing them again. This object is immutable.
+     */
+    public static class RewrittenUrl {
+        private final String url;
+        private final String pathAndParams;
+        private final String originalHostAndPort;
+        private final String hostAndPort;
+
+        public RewrittenUrl(String url, String pathAndParams, String originalHostAndPort, String hostAndPort) {
+            this.url = url;
+            this.pathAndParams = pathAndParams;
+            this.originalHostAndPort = originalHostAndPort;
+            this.hostAndPort = hostAndPort;
+        }
+
+        /**
+         * @return the full rewritten URL
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * @return the raw path and query parameters of the rewritten URL, or null if the rewritten URL could not be parsed
+         */
+        public String getPathAndParams() {
+            return pathAndParams;
+        }
+
+        /**
+         * @return the host and port of the original URL, or null if the original URL could not be parsed
+         */
+        public String getOriginalHostAndPort() {
+            return originalHostAndPort;
+        }
+
+        /**
+         * @return the host and port of the rewritten URL, or null if the rewritten URL could not be parsed
+         */
+        public String getHostAndPort() {
+            return hostAndPort;
+        }
+    }
+}
@@ -6,18 +6,21 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * A URL whitelist. This object is immutable and the list of matching patterns and the HTTP status code is unmodifiable
  * after creation. Enabling, disabling, or modifying the whitelist can be safely and easily accomplished by updating the
  * whitelist reference to a new whitelist.
+ * <br>
+ * The patterns are indexed by host, domain and literal prefix when the whitelist is created (see {@link UrlPatternIndex}), so
+ * matching a URL only evaluates the patterns that may match it, rather than every pattern in the whitelist.
  */
 public class Whitelist {
     private final List<Pattern> patterns;
     private final int statusCode;
     private final boolean enabled;
+    private final UrlPatternIndex urlPatternIndex;
 
     /**
      * A disabled Whitelist.
@@ -31,6 +34,7 @@ public class Whitelist {
         this.patterns = Collections.emptyList();
         this.statusCode = -1;
         this.enabled = false;
+        this.urlPatternIndex = new UrlPatternIndex(patterns);
     }
 
     /**
@@ -42,6 +46,7 @@ public class Whitelist {
         this.patterns = Collections.emptyList();
         this.statusCode = statusCode;
         this.enabled = true;
+        this.urlPatternIndex = new UrlPatternIndex(patterns);
     }
 
     /**
@@ -74,6 +79,8 @@ public class Whitelist {
         this.statusCode = statusCode;
 
         this.enabled = true;
+
+        this.urlPatternIndex = new UrlPatternIndex(this.patterns);
     }
 
     /**
@@ -117,13 +124,6 @@ public class Whitelist {
             return false;
         }
 
-        for (Pattern pattern : getPatterns()) {
-            Matcher matcher = pattern.matcher(url);
-            if (matcher.matches()) {
-                return true;
-            }
-        }
-
-        return false;
+        return urlPatternIndex.findFirstMatch(url, index -> patterns.get(index).matcher(url).matches()) >= 0;
     }
 }
@@ -17,7 +17,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
@@ -169,6 +173,33 @@ public class BrowserMobHttpUtil {
         return new String(content, charset);
     }
 
+    /**
+     * Returns the number of leading bytes of the content that decode to complete characters in the specified charset. Content that
+     * was truncated after a fixed number of bytes may end in the middle of a multibyte character; cutting the content at the returned
+     * length removes the partial character. Malformed and unmappable bytes before the end of the content count as complete characters,
+     * since they are decoded to replacement characters.
+     *
+     * @param content bytes to examine
+     * @param length number of bytes of the content to examine
+     * @param charset the character set of the content
+     * @return length of the content up to the end of its last complete character
+     */
+    public static int getCompleteCharactersLength(byte[] content, int length, Charset charset) {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        ByteBuffer input = ByteBuffer.wrap(content, 0, length);
+        CharBuffer output = CharBuffer.allocate(DECOMPRESS_BUFFER_SIZE);
+
+        // the decoded characters are discarded. the decoder stops before a trailing partial character, since more input may follow.
+        while (decoder.decode(input, output, false).isOverflow()) {
+            output.clear();
+        }
+
+        return input.position();
+    }
+
     /**
      * Reads the charset directly from the Content-Type header string. If the Content-Type header does not contain a charset,
      * is malformed or unparsable, or if the header is null or empty, this method returns null.
@@ -0,0 +1,167 @@
+package io.github.multicatch.bmp.util;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A thread-safe, lock-free list that only supports appending elements. Elements are stored in segments that double in size, so
+ * appending never copies existing elements (unlike {@link java.util.concurrent.CopyOnWriteArrayList}, which copies the entire
+ * backing array on every add). Null elements are not permitted.
+ * <br>
+ * Appending an element is a constant-time operation: the writer reserves a slot, stores the element, and then advances the
+ * published size past every contiguous stored element. Readers only see elements below the published size, so {@link #size()}
+ * and {@link #get(int)} never expose a reserved slot that has not been written yet.
+ * <br>
+ * Iterators are weakly consistent "snapshots": an iterator returns the elements that were published when it was created, and will
+ * never throw {@link java.util.ConcurrentModificationException}. Removing or replacing elements is not supported.
+ *
+ * @param <E> type of element in the list
+ */
+public class ConcurrentAppendOnlyList<E> extends AbstractList<E> implements RandomAccess {
+    /**
+     * The first segment holds 2^FIRST_SEGMENT_SHIFT elements. Every subsequent segment is twice as large as the previous one.
+     */
+    private static final int FIRST_SEGMENT_SHIFT = 4;
+
+    private static final int FIRST_SEGMENT_SIZE = 1 << FIRST_SEGMENT_SHIFT;
+
+    /**
+     * Enough segments to address Integer.MAX_VALUE elements.
+     */
+    private static final int MAX_SEGMENTS = 32 - FIRST_SEGMENT_SHIFT;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<E>> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+
+    /**
+     * The number of slots that have been reserved by writers. Slots below this index may not have been written yet.
+     */
+    private final AtomicInteger reserved = new AtomicInteger();
+
+    /**
+     * The number of contiguous, fully-written elements visible to readers.
+     */
+    private final AtomicInteger published = new AtomicInteger();
+
+    public ConcurrentAppendOnlyList() {
+    }
+
+    public ConcurrentAppendOnlyList(Collection<? extends E> elements) {
+        addAll(elements);
+    }
+
+    @Override
+    public boolean add(E element) {
+        if (element == null) {
+            throw new NullPointerException("ConcurrentAppendOnlyList does not permit null elements");
+        }
+
+        int index = reserved.getAndIncrement();
+        if (index < 0) {
+            reserved.decrementAndGet();
+            throw new IllegalStateException("ConcurrentAppendOnlyList is full");
+        }
+
+        segmentFor(index, true).set(offsetInSegment(index), element);
+
+        publish();
+
+        return true;
+    }
+
+    @Override
+    public E get(int index) {
+        if (index < 0 || index >= published.get()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + published.get());
+        }
+
+        return segmentFor(index, false).get(offsetInSegment(index));
+    }
+
+    @Override
+    public int size() {
+        return published.get();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        final int snapshotSize = published.get();
+
+        return new Iterator<E>() {
+            private int cursor;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < snapshotSize;
+            }
+
+            @Override
+            public E next() {
+                if (cursor >= snapshotSize) {
+                    throw new NoSuchElementException();
+                }
+
+                return segmentFor(cursor, false).get(offsetInSegment(cursor++));
+            }
+        };
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Elements cannot be removed from a ConcurrentAppendOnlyList");
+    }
+
+    /**
+     * Advances the published size over every slot that has been written. Every writer calls this method after storing its
+     * element, so the writer of the lowest unwritten slot always advances the published size past its own slot and any
+     * slots that were written out of order after it.
+     */
+    private void publish() {
+        while (true) {
+            int currentSize = published.get();
+            if (currentSize >= reserved.get()) {
+                return;
+            }
+
+            AtomicReferenceArray<E> segment = segmentFor(currentSize, false);
+            if (segment == null || segment.get(offsetInSegment(currentSize)) == null) {
+                // the slot has been reserved but not written yet. the writer of that slot will continue publishing.
+                return;
+            }
+
+            published.compareAndSet(currentSize, currentSize + 1);
+        }
+    }
+
+    private AtomicReferenceArray<E> segmentFor(int index, boolean create) {
+        int segmentIndex = segmentIndex(index);
+
+        AtomicReferenceArray<E> segment = segments.get(segmentIndex);
+        if (segment == null && create) {
+            AtomicReferenceArray<E> newSegment = new AtomicReferenceArray<>(FIRST_SEGMENT_SIZE << segmentIndex);
+            if (segments.compareAndSet(segmentIndex, null, newSegment)) {
+                segment = newSegment;
+            } else {
+                // another writer allocated the segment first
+                segment = segments.get(segmentIndex);
+            }
+        }
+
+        return segment;
+    }
+
+    private static int segmentIndex(int index) {
+        // offsetting the index by the first segment's size makes the highest set bit identify the segment
+        long position = (long) index + FIRST_SEGMENT_SIZE;
+        return (63 - Long.numberOfLeadingZeros(position)) - FIRST_SEGMENT_SHIFT;
+    }
+
+    private static int offsetInSegment(int index) {
+        long position = (long) index + FIRST_SEGMENT_SIZE;
+        return (int) (position - Long.highestOneBit(position));
+    }
+}
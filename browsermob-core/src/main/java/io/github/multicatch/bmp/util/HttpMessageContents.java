@@ -1,5 +1,6 @@
 package io.github.multicatch.bmp.util;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.FullHttpMessage;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.github.multicatch.bmp.exception.UnsupportedCharsetException;
@@ -42,6 +43,21 @@ public class HttpMessageContents {
         binaryContents = null;
     }
 
+    /**
+     * Appends the specified text to the contents of the wrapped HttpMessage, encoding it in the character set specified by the message's
+     * Content-Type header. The existing contents are neither decoded nor copied, so this is considerably cheaper than calling
+     * {@link #setTextContents(String)} with the concatenated text.
+     *
+     * @param additionalContents text to append to the message contents
+     */
+    public void appendTextContents(CharSequence additionalContents) {
+        HttpObjectUtil.appendTextHttpEntityBody(httpMessage, additionalContents);
+
+        // modified the contents, so clear the local cache
+        textContents = null;
+        binaryContents = null;
+    }
+
     /**
      * Replaces the contents of the wrapped HttpMessage with the specified binary contents. Note that this method does not update the
      * Content-Type header, so if the content type will change as a result of this call, the Content-Type header should be updated before
@@ -57,6 +73,21 @@ public class HttpMessageContents {
         textContents = null;
     }
 
+    /**
+     * Replaces the contents of the wrapped HttpMessage with the readable bytes of the specified buffer. The buffer is not released by this
+     * method. Note that this method does not update the Content-Type header, so if the content type will change as a result of this call,
+     * the Content-Type header should be updated before calling this method.
+     *
+     * @param newBinaryContents new message contents
+     */
+    public void setBinaryContents(ByteBuf newBinaryContents) {
+        HttpObjectUtil.replaceBinaryHttpEntityBody(httpMessage, newBinaryContents);
+
+        // replaced the contents, so clear the local cache
+        binaryContents = null;
+        textContents = null;
+    }
+
     /**
      * Retrieves the contents of this message as a String, decoded according to the message's Content-Type header. This method caches
      * the contents, so repeated calls to this method should not incur a penalty; however, modifications to the message contents
@@ -74,6 +105,25 @@ public class HttpMessageContents {
         return textContents;
     }
 
+    /**
+     * Returns a read-only view of the contents of this message, decoded according to the message's Content-Type header. This method is
+     * intended for filters that only inspect the contents, such as searching for a string or matching a regular expression: it does not copy
+     * the contents into a String, and ISO-8859-1 or ASCII-only contents are read directly from the message. Since the view may read from the message,
+     * it must not be used after the contents are modified or after the filter returns.
+     *
+     * @return read-only view of the entity body
+     * @throws java.nio.charset.UnsupportedCharsetException if the character set declared in the message is not supported on this platform
+     */
+    public CharSequence getTextContentsAsCharSequence() throws java.nio.charset.UnsupportedCharsetException {
+        // reuse the decoded contents, if they are already available
+        String cachedTextContents = textContents;
+        if (cachedTextContents != null) {
+            return cachedTextContents;
+        }
+
+        return HttpObjectUtil.getHttpEntityBodyAsCharSequence(httpMessage);
+    }
+
     /**
      * Retrieves the binary contents of this message. This method caches the contents, so repeated calls to this method should not incur a
      * penalty; however, modifications to the message contents outside of this class will result in stale data returned from this method.
@@ -1,5 +1,7 @@
 package io.github.multicatch.bmp.util;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.handler.codec.http.FullHttpMessage;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpHeaders;
@@ -8,7 +10,13 @@ import io.github.multicatch.bmp.exception.UnsupportedCharsetException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Utility class to assist with manipulation of {@link io.netty.handler.codec.http.HttpObject} instances, including
@@ -19,7 +27,8 @@ public class HttpObjectUtil {
 
     /**
      * Replaces the entity body of the message with the specified contents. Encodes the message contents according to charset in the message's
-     * Content-Type header, or uses {@link BrowserMobHttpUtil#DEFAULT_HTTP_CHARSET} if none is specified.
+     * Content-Type header, or uses {@link BrowserMobHttpUtil#DEFAULT_HTTP_CHARSET} if none is specified. The contents are encoded directly
+     * into the message's existing buffer, without creating an intermediate byte array.
      * <b>Note:</b> If the charset of the message is not supported on this platform, this will throw an {@link java.nio.charset.UnsupportedCharsetException}.
      *
      * TODO: Currently this method only works for FullHttpMessages, since it must modify the Content-Length header; determine if this may be applied to chunked messages as well
@@ -28,7 +37,73 @@ public class HttpObjectUtil {
      * @param newContents the new entity body contents
      * @throws java.nio.charset.UnsupportedCharsetException if the charset in the message is not supported on this platform
      */
-    public static void replaceTextHttpEntityBody(FullHttpMessage message, String newContents) {
+    public static void replaceTextHttpEntityBody(FullHttpMessage message, CharSequence newContents) {
+        Charset messageCharset = getCharsetForReplacement(message);
+
+        ByteBuf content = message.content();
+        content.clear();
+        writeText(content, newContents, messageCharset);
+
+        // update the Content-Length header, since the size may have changed
+        message.headers().set(HttpHeaders.Names.CONTENT_LENGTH, content.readableBytes());
+    }
+
+    /**
+     * Appends the specified contents to the entity body of the message, encoded according to the charset in the message's Content-Type header,
+     * or {@link BrowserMobHttpUtil#DEFAULT_HTTP_CHARSET} if none is specified. The existing entity body is not copied or re-encoded.
+     * <b>Note:</b> If the charset of the message is not supported on this platform, this will throw an {@link java.nio.charset.UnsupportedCharsetException}.
+     *
+     * @param message the HTTP message to manipulate
+     * @param additionalContents the contents to append to the entity body
+     * @throws java.nio.charset.UnsupportedCharsetException if the charset in the message is not supported on this platform
+     */
+    public static void appendTextHttpEntityBody(FullHttpMessage message, CharSequence additionalContents) {
+        Charset messageCharset = getCharsetForReplacement(message);
+
+        ByteBuf content = message.content();
+        writeText(content, additionalContents, messageCharset);
+
+        message.headers().set(HttpHeaders.Names.CONTENT_LENGTH, content.readableBytes());
+    }
+
+    /**
+     * Replaces an HTTP entity body with the specified binary contents.
+     * TODO: Currently this method only works for FullHttpMessages, since it must modify the Content-Length header; determine if this may be applied to chunked messages as well
+     *
+     * @param message the HTTP message to manipulate
+     * @param newBinaryContents the new entity body contents
+     */
+    public static void replaceBinaryHttpEntityBody(FullHttpMessage message, byte[] newBinaryContents) {
+        ByteBuf content = message.content();
+        content.clear();
+        content.writeBytes(newBinaryContents);
+
+        // update the Content-Length header, since the size may have changed
+        message.headers().set(HttpHeaders.Names.CONTENT_LENGTH, newBinaryContents.length);
+    }
+
+    /**
+     * Replaces an HTTP entity body with the readable bytes of the specified buffer. The bytes are copied directly into the message's existing
+     * buffer. The indexes and reference count of the new contents are not modified, so the caller remains responsible for releasing the
+     * buffer.
+     *
+     * @param message the HTTP message to manipulate
+     * @param newBinaryContents the new entity body contents
+     */
+    public static void replaceBinaryHttpEntityBody(FullHttpMessage message, ByteBuf newBinaryContents) {
+        int length = newBinaryContents.readableBytes();
+
+        ByteBuf content = message.content();
+        content.clear();
+        content.writeBytes(newBinaryContents, newBinaryContents.readerIndex(), length);
+
+        message.headers().set(HttpHeaders.Names.CONTENT_LENGTH, length);
+    }
+
+    /**
+     * Returns the charset to encode new contents of the message with, logging and rethrowing the cause of an {@link UnsupportedCharsetException}.
+     */
+    private static Charset getCharsetForReplacement(HttpMessage message) {
         // get the content type for this message so we can encode the newContents into a byte stream appropriately
         String contentTypeHeader = message.headers().get(HttpHeaders.Names.CONTENT_TYPE);
 
@@ -47,26 +122,25 @@ public class HttpObjectUtil {
             log.warn("No character set declared in HTTP message. Replacing text using default charset {}.", messageCharset);
         }
 
-        byte[] contentBytes = newContents.getBytes(messageCharset);
-
-        replaceBinaryHttpEntityBody(message, contentBytes);
+        return messageCharset;
     }
 
     /**
-     * Replaces an HTTP entity body with the specified binary contents.
-     * TODO: Currently this method only works for FullHttpMessages, since it must modify the Content-Length header; determine if this may be applied to chunked messages as well
-     *
-     * @param message the HTTP message to manipulate
-     * @param newBinaryContents the new entity body contents
+     * Encodes the text into the buffer, after its writer index. UTF-8 is written directly into the buffer; other charsets are encoded into
+     * a pooled buffer first, since a CharsetEncoder cannot write into every kind of buffer the message may have.
      */
-    public static void replaceBinaryHttpEntityBody(FullHttpMessage message, byte[] newBinaryContents) {
-        message.content().resetWriterIndex();
-        // resize the buffer if needed, since the new message may be longer than the old one
-        message.content().ensureWritable(newBinaryContents.length, true);
-        message.content().writeBytes(newBinaryContents);
+    private static void writeText(ByteBuf buffer, CharSequence text, Charset charset) {
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            ByteBufUtil.writeUtf8(buffer, text);
+            return;
+        }
 
-        // update the Content-Length header, since the size may have changed
-        message.headers().set(HttpHeaders.Names.CONTENT_LENGTH, newBinaryContents.length);
+        ByteBuf encoded = ByteBufUtil.encodeString(buffer.alloc(), CharBuffer.wrap(text), charset);
+        try {
+            buffer.writeBytes(encoded);
+        } finally {
+            encoded.release();
+        }
     }
 
     /**
@@ -83,9 +157,46 @@ public class HttpObjectUtil {
             throw new IllegalArgumentException("No charset specified when extracting the contents of an HTTP message");
         }
 
-        byte[] contentBytes = BrowserMobHttpUtil.extractReadableBytes(httpContent.content());
+        return httpContent.content().toString(charset);
+    }
 
-        return new String(contentBytes, charset);
+    /**
+     * Returns a read-only view of the entity body of an HTTP content object, decoded according to the specified character set. Unlike
+     * {@link #extractHttpEntityBody(HttpContent, Charset)}, this method does not copy the entity body into a String. ISO-8859-1 content, and UTF-8 or US-ASCII content
+     * consisting only of ASCII characters, is read directly from the content's buffer. Other content is decoded once into a character buffer.
+     * <b>Note:</b> Since the view may read from the content's buffer, it is only valid as long as the buffer is neither modified nor released.
+     *
+     * @param httpContent HTTP content object to extract the entity body from
+     * @param charset character set of the entity body
+     * @return read-only view of the entity body
+     * @throws IllegalArgumentException if the charset is null
+     */
+    public static CharSequence getHttpEntityBodyAsCharSequence(HttpContent httpContent, Charset charset) {
+        if (charset == null) {
+            throw new IllegalArgumentException("No charset specified when extracting the contents of an HTTP message");
+        }
+
+        ByteBuf content = httpContent.content();
+        if (StandardCharsets.ISO_8859_1.equals(charset) || (isAsciiCompatible(charset) && isAscii(content))) {
+            return new Latin1CharSequence(content, content.readerIndex(), content.readableBytes());
+        }
+
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        ByteBuffer bytes = content.nioBuffer();
+        CharBuffer chars = CharBuffer.allocate((int) Math.ceil(bytes.remaining() * (double) decoder.maxCharsPerByte()));
+
+        CoderResult result = decoder.decode(bytes, chars, true);
+        if (!result.isUnderflow() || !decoder.flush(chars).isUnderflow()) {
+            // the decoder produced more characters than it declared it could; fall back to decoding into a String
+            return content.toString(charset);
+        }
+
+        chars.flip();
+
+        return chars.asReadOnlyBuffer();
     }
 
     /**
@@ -97,6 +208,39 @@ public class HttpObjectUtil {
      * @throws java.nio.charset.UnsupportedCharsetException if there is a charset specified in the content-type header, but it is not supported
      */
     public static String extractHttpEntityBody(FullHttpMessage httpMessage) {
+        return extractHttpEntityBody(httpMessage, getCharsetForExtraction(httpMessage));
+    }
+
+    /**
+     * Returns a read-only view of the entity body of a FullHttpMessage, decoded according to the character set in the message's Content-Type
+     * header. See {@link #getHttpEntityBodyAsCharSequence(HttpContent, Charset)} for details.
+     *
+     * @param httpMessage HTTP message to extract entity body from
+     * @return read-only view of the entity body
+     * @throws java.nio.charset.UnsupportedCharsetException if there is a charset specified in the content-type header, but it is not supported
+     */
+    public static CharSequence getHttpEntityBodyAsCharSequence(FullHttpMessage httpMessage) {
+        return getHttpEntityBodyAsCharSequence(httpMessage, getCharsetForExtraction(httpMessage));
+    }
+
+    /**
+     * Returns true if the charset encodes every ASCII character as the same single byte, and never uses bytes in the ASCII range for other characters.
+     */
+    private static boolean isAsciiCompatible(Charset charset) {
+        return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset);
+    }
+
+    /**
+     * Returns true if every readable byte in the buffer is an ASCII character.
+     */
+    private static boolean isAscii(ByteBuf buffer) {
+        return buffer.forEachByte(value -> value >= 0) == -1;
+    }
+
+    /**
+     * Returns the charset to decode the contents of the message with, logging and rethrowing the cause of an {@link UnsupportedCharsetException}.
+     */
+    private static Charset getCharsetForExtraction(HttpMessage httpMessage) {
         Charset charset;
         try {
             charset = getCharsetFromMessage(httpMessage);
@@ -111,7 +255,7 @@ public class HttpObjectUtil {
             throw cause;
         }
 
-        return extractHttpEntityBody(httpMessage, charset);
+        return charset;
     }
 
     /**
@@ -143,4 +287,48 @@ public class HttpObjectUtil {
     public static byte[] extractBinaryHttpEntityBody(HttpContent httpContent) {
         return BrowserMobHttpUtil.extractReadableBytes(httpContent.content());
     }
+
+    /**
+     * A read-only view of ISO-8859-1 text in a buffer. Every byte maps to the character with the same value, so characters are read from the
+     * buffer on demand.
+     */
+    private static class Latin1CharSequence implements CharSequence {
+        private final ByteBuf buffer;
+        private final int offset;
+        private final int length;
+
+        Latin1CharSequence(ByteBuf buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", length: " + length);
+            }
+
+            return (char) (buffer.getByte(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("Start: " + start + ", end: " + end + ", length: " + length);
+            }
+
+            return new Latin1CharSequence(buffer, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return buffer.toString(offset, length, StandardCharsets.ISO_8859_1);
+        }
+    }
 }
@@ -0,0 +1,164 @@
+package io.github.multicatch.bmp.core.har;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CapturedContentTest {
+    @Test
+    public void testTextIsDecodedWithCharset() {
+        CapturedContent content = CapturedContent.text("héllo".getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1);
+
+        assertEquals("héllo", content.getText());
+        assertNull(content.getEncoding());
+        assertEquals(5L, content.getSize());
+    }
+
+    @Test
+    public void testBinaryIsBase64Encoded() {
+        CapturedContent content = CapturedContent.binary(new byte[]{0, 1, 2, (byte) 0xFF});
+
+        assertEquals("AAEC/w==", content.getText());
+        assertEquals("base64", content.getEncoding());
+    }
+
+    @Test
+    public void testGzippedTextIsDecompressedWhenRead() throws IOException {
+        String text = "{\"message\": \"this is a compressed response body\"}";
+        byte[] gzipped = gzip(text.getBytes(StandardCharsets.UTF_8));
+
+        CapturedContent content = new CapturedContent(gzipped, StandardCharsets.UTF_8, CapturedContent.GZIP, false);
+
+        assertEquals("Expected raw content to remain compressed", gzipped.length, content.getLength());
+        assertEquals("Expected size to be read from the gzip trailer", text.length(), content.getSize());
+        assertEquals(text, content.getText());
+        assertNull(content.getEncoding());
+    }
+
+    @Test
+    public void testDecompressedTextIsTruncatedAtLimit() throws IOException {
+        String text = "0123456789abcdefghij";
+        byte[] gzipped = gzip(text.getBytes(StandardCharsets.UTF_8));
+
+        CapturedContent content = new CapturedContent(gzipped, StandardCharsets.UTF_8, CapturedContent.GZIP, false, 10L);
+
+        assertEquals("0123456789", content.getText());
+        assertNull(content.getEncoding());
+        assertEquals("Expected size to be the full decompressed size", text.length(), content.getSize());
+    }
+
+    @Test
+    public void testTruncatedTextEndsWithCompleteCharacter() throws IOException {
+        // each euro sign is three bytes in UTF-8, so the limit falls inside the first one
+        byte[] gzipped = gzip("0123456789\u20ac\u20ac".getBytes(StandardCharsets.UTF_8));
+
+        CapturedContent content = new CapturedContent(gzipped, StandardCharsets.UTF_8, CapturedContent.GZIP, false, 12L);
+
+        assertEquals("Expected the partial character to be removed", "0123456789", content.getText());
+    }
+
+    @Test
+    public void testCorruptGzipIsBase64Encoded() {
+        byte[] notGzipped = "not really gzipped".getBytes(StandardCharsets.UTF_8);
+
+        CapturedContent content = new CapturedContent(notGzipped, StandardCharsets.UTF_8, CapturedContent.GZIP, false);
+
+        assertEquals("base64", content.getEncoding());
+        assertEquals("bm90IHJlYWxseSBnemlwcGVk", content.getText());
+    }
+
+    @Test
+    public void testHarContentJsonMatchesExplicitText() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        HarContent captured = new HarContent();
+        captured.setMimeType("text/plain");
+        captured.setCapturedContent(new CapturedContent(gzip("body".getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8, CapturedContent.GZIP, false));
+
+        HarContent explicit = new HarContent();
+        explicit.setMimeType("text/plain");
+        explicit.setText("body");
+
+        assertEquals(objectMapper.writeValueAsString(explicit), objectMapper.writeValueAsString(captured));
+    }
+
+    @Test
+    public void testCorruptGzipTextAndEncodingAreConvertedTogether() throws IOException {
+        CapturedContent content = new CapturedContent("not really gzipped".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, CapturedContent.GZIP, false);
+
+        CapturedContent.HarText harText = content.toHarText();
+        assertEquals("bm90IHJlYWxseSBnemlwcGVk", harText.getText());
+        assertEquals("base64", harText.getEncoding());
+
+        HarContent harContent = new HarContent();
+        harContent.setMimeType("text/plain");
+        harContent.setCapturedContent(content);
+
+        assertEquals("{\"size\":0,\"mimeType\":\"text/plain\",\"text\":\"bm90IHJlYWxseSBnemlwcGVk\",\"encoding\":\"base64\",\"comment\":\"\"}",
+                new ObjectMapper().writeValueAsString(harContent));
+    }
+
+    @Test
+    public void testTextIsConvertedOnce() throws IOException {
+        CapturedContent content = new CapturedContent(gzip("body".getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8, CapturedContent.GZIP, false);
+
+        HarContent harContent = new HarContent();
+        harContent.setCapturedContent(content);
+
+        assertEquals("body", harContent.getText());
+        assertSame("Expected the converted text to be reused", harContent.getText(), harContent.getText());
+        assertSame(content.toHarText(), content.toHarText());
+    }
+
+    @Test
+    public void testSettingEncodingReplacesCapturedContent() {
+        HarContent harContent = new HarContent();
+        harContent.setCapturedContent(CapturedContent.text("Ym9keQ==".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+
+        harContent.setEncoding("base64");
+
+        assertEquals("base64", harContent.getEncoding());
+        assertEquals("Ym9keQ==", harContent.getText());
+        assertNull(harContent.getCapturedContent());
+    }
+
+    @Test
+    public void testHarContentJsonUsesObjectMapperConfiguration() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategies.UPPER_CAMEL_CASE);
+
+        HarContent harContent = new HarContent();
+        harContent.setMimeType("text/plain");
+        harContent.setCapturedContent(CapturedContent.text("body".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+
+        assertEquals("{\"Size\":0,\"MimeType\":\"text/plain\",\"Text\":\"body\",\"Comment\":\"\"}", objectMapper.writeValueAsString(harContent));
+    }
+
+    @Test
+    public void testSettingTextReplacesCapturedContent() {
+        HarPostData postData = new HarPostData();
+        postData.setCapturedContent(CapturedContent.text("a=b".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+        assertEquals("a=b", postData.getText());
+
+        postData.setText("c=d");
+        assertEquals("c=d", postData.getText());
+        assertNull(postData.getCapturedContent());
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed)) {
+            gzipOutputStream.write(content);
+        }
+
+        return compressed.toByteArray();
+    }
+}
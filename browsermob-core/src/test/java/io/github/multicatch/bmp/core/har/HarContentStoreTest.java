@@ -0,0 +1,123 @@
+package io.github.multicatch.bmp.core.har;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class HarContentStoreTest {
+    @Test
+    public void testIdenticalContentIsShared() {
+        HarContentStore store = new HarContentStore();
+        HarLog log = new HarLog(new HarNameVersion("test", "1.0"), HarCaptureLimits.UNLIMITED, 0L, store);
+
+        HarEntry first = newEntry(log);
+        HarEntry second = newEntry(log);
+
+        log.setResponseContent(first, CapturedContent.text("console.log('hello');".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+        log.setResponseContent(second, CapturedContent.text("console.log('hello');".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+
+        assertEquals("console.log('hello');", first.getResponse().getContent().getText());
+        assertSame("Expected identical content to share a single copy", first.getResponse().getContent().getCapturedContent(), second.getResponse().getContent().getCapturedContent());
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testContentIsNotSharedAcrossEncodings() {
+        HarContentStore store = new HarContentStore();
+        HarLog log = new HarLog(new HarNameVersion("test", "1.0"), HarCaptureLimits.UNLIMITED, 0L, store);
+
+        HarEntry text = newEntry(log);
+        HarEntry binary = newEntry(log);
+
+        byte[] content = "abc".getBytes(StandardCharsets.UTF_8);
+        log.setResponseContent(text, CapturedContent.text(content, StandardCharsets.UTF_8));
+        log.setResponseContent(binary, CapturedContent.binary(content));
+
+        assertEquals("abc", text.getResponse().getContent().getText());
+        assertEquals(null, text.getResponse().getContent().getEncoding());
+        assertEquals("YWJj", binary.getResponse().getContent().getText());
+        assertEquals("base64", binary.getResponse().getContent().getEncoding());
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    public void testContentIsNotSharedAcrossDecompressionLimits() {
+        HarContentStore store = new HarContentStore();
+
+        byte[] content = "gzipped".getBytes(StandardCharsets.UTF_8);
+        HarContentStore.StoredContent unlimited = store.acquire(new CapturedContent(content, StandardCharsets.UTF_8, CapturedContent.GZIP, false, 0L));
+        HarContentStore.StoredContent limited = store.acquire(new CapturedContent(content, StandardCharsets.UTF_8, CapturedContent.GZIP, false, 100L));
+
+        assertNotSame("Expected content decompressed with different limits not to be shared", unlimited.getContent(), limited.getContent());
+        assertEquals(0L, unlimited.getContent().getMaxDecompressedSize());
+        assertEquals(100L, limited.getContent().getMaxDecompressedSize());
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    public void testContentIsReleasedWhenAllLogsAreReleased() {
+        HarContentStore store = new HarContentStore();
+        HarLog oldLog = new HarLog(new HarNameVersion("test", "1.0"), HarCaptureLimits.UNLIMITED, 0L, store);
+        HarLog newLog = new HarLog(new HarNameVersion("test", "1.0"), HarCaptureLimits.UNLIMITED, 0L, store);
+
+        byte[] content = "shared".getBytes(StandardCharsets.UTF_8);
+        HarEntry oldEntry = newEntry(oldLog);
+        oldLog.setResponseContent(oldEntry, CapturedContent.text(content, StandardCharsets.UTF_8));
+        newLog.setResponseContent(newEntry(newLog), CapturedContent.text(content, StandardCharsets.UTF_8));
+
+        oldLog.releaseStoredContent();
+        assertEquals("Expected content still referenced by another log to remain in the store", 1, store.size());
+        assertEquals("Expected released log to retain its content", "shared", oldEntry.getResponse().getContent().getText());
+
+        newLog.releaseStoredContent();
+        assertEquals(0, store.size());
+
+        // content captured after the log is released is not added to the store
+        HarEntry lateEntry = newEntry(oldLog);
+        oldLog.setResponseContent(lateEntry, CapturedContent.text(content, StandardCharsets.UTF_8));
+        assertEquals("shared", lateEntry.getResponse().getContent().getText());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testEvictedEntriesReleaseContent() {
+        HarContentStore store = new HarContentStore();
+        HarLog log = new HarLog(new HarNameVersion("test", "1.0"), HarCaptureLimits.maxEntries(1), 0L, store);
+        log.addPage(new HarPage("page1"));
+
+        log.setResponseContent(newEntry(log), CapturedContent.text("first".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+        log.setResponseContent(newEntry(log), CapturedContent.text("second".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testJsonIsUnchanged() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        HarLog sharedLog = new HarLog(new HarNameVersion("test", "1.0"), HarCaptureLimits.UNLIMITED, 0L, new HarContentStore());
+        HarLog plainLog = new HarLog(new HarNameVersion("test", "1.0"));
+
+        HarEntry sharedEntry = newEntry(sharedLog);
+        sharedLog.setResponseContent(sharedEntry, CapturedContent.text("body".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+
+        HarEntry plainEntry = newEntry(plainLog);
+        plainEntry.getResponse().getContent().setText(new String("body".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+
+        assertNotSame(sharedEntry, plainEntry);
+        assertEquals(objectMapper.writeValueAsString(plainLog), objectMapper.writeValueAsString(sharedLog));
+    }
+
+    private static HarEntry newEntry(HarLog log) {
+        HarEntry entry = new HarEntry("page1");
+        entry.setResponse(new HarResponse(200, "OK", "HTTP/1.1"));
+        log.addEntry(entry);
+
+        return entry;
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.multicatch.bmp.core.har;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HarLogCaptureLimitsTest {
+    @Test
+    public void testUnlimitedLogRetainsAllEntries() {
+        HarLog log = new HarLog(new HarNameVersion("test", "1.0"), HarCaptureLimits.UNLIMITED);
+        log.addPage(new HarPage("page1"));
+
+        for (int i = 0; i < 100; i++) {
+            log.addEntry(newEntry("page1", i));
+        }
+
+        assertEquals(100, log.getEntries().size());
+    }
+
+    @Test
+    public void testMaxEntriesEvictsOldestEntries() {
+        HarLog log = new HarLog(new HarNameVersion("test", "1.0"), HarCaptureLimits.maxEntries(10));
+        log.addPage(new HarPage("page1"));
+
+        for (int i = 0; i < 100; i++) {
+            log.addEntry(newEntry("page1", i));
+        }
+
+        List<HarEntry> entries = log.getEntries();
+        assertEquals(10, entries.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Expected the most recent entries to be retained in order", "http://localhost/" + (90 + i), entries.get(i).getComment());
+        }
+    }
+
+    @Test
+    public void testMaxContentSizeEvictsOldestEntries() {
+        HarLog log = new HarLog(new HarNameVersion("test", "1.0"), HarCaptureLimits.maxContentSize(100));
+        log.addPage(new HarPage("page1"));
+
+        for (int i = 0; i < 10; i++) {
+            HarEntry entry = newEntry("page1", i);
+            log.addEntry(entry);
+
+            // content is captured after the entry is added to the log
+            entry.getResponse().getContent().setText(repeat('x', 30));
+            log.updateEntryContent(entry);
+        }
+
+        List<HarEntry> entries = log.getEntries();
+        assertEquals("Expected only the entries whose content fits in 100 bytes to be retained", 3, entries.size());
+        assertEquals("http://localhost/7", entries.get(0).getComment());
+        assertEquals("http://localhost/9", entries.get(2).getComment());
+    }
+
+    @Test
+    public void testEmptyPagesArePruned() {
+        HarLog log = new HarLog(new HarNameVersion("test", "1.0"), HarCaptureLimits.maxEntries(5));
+
+        for (int page = 0; page < 4; page++) {
+            log.addPage(new HarPage("page" + page));
+
+            for (int i = 0; i < 5; i++) {
+                log.addEntry(newEntry("page" + page, page * 5 + i));
+            }
+        }
+
+        List<String> pageRefs = log.getPages().stream().map(HarPage::getId).collect(Collectors.toList());
+        assertEquals("Expected only the page with retained entries to remain", 1, pageRefs.size());
+        assertEquals("page3", pageRefs.get(0));
+    }
+
+    @Test
+    public void testCurrentPageIsNotPrunedWhenItsEntriesAreEvicted() {
+        HarLog log = new HarLog(new HarNameVersion("test", "1.0"), HarCaptureLimits.maxContentSize(10));
+        log.addPage(new HarPage("page1"));
+
+        HarEntry entry = newEntry("page1", 0);
+        log.addEntry(entry);
+        entry.getResponse().getContent().setText(repeat('x', 20));
+        log.updateEntryContent(entry);
+
+        assertTrue(log.getEntries().isEmpty());
+        assertEquals("Expected the most recent page to be retained", 1, log.getPages().size());
+    }
+
+    private static HarEntry newEntry(String pageRef, int index) {
+        HarEntry entry = new HarEntry(pageRef);
+        entry.setComment("http://localhost/" + index);
+        entry.setResponse(new HarResponse(200, "OK", "HTTP/1.1"));
+
+        return entry;
+    }
+
+    private static String repeat(char c, int count) {
+        return new String(new char[count]).replace('\0', c);
+    }
+}
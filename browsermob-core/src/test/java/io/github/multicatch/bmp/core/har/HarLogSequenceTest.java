@@ -0,0 +1,97 @@
+package io.github.multicatch.bmp.core.har;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HarLogSequenceTest {
+    @Test
+    public void testEntriesAreReturnedInCompletionOrder() {
+        HarLog log = new HarLog(new HarNameVersion("test", "1.0"));
+
+        HarEntry first = new HarEntry("page1");
+        HarEntry second = new HarEntry("page1");
+        log.addEntry(first);
+        log.addEntry(second);
+
+        assertTrue("Expected incomplete entries not to be returned", log.getCompletedEntriesSince(0, 0).isEmpty());
+
+        assertEquals(1L, log.completeEntry(second));
+        assertEquals(2L, log.completeEntry(first));
+
+        List<HarEntry> completed = log.getCompletedEntriesSince(0, 0);
+        assertEquals(2, completed.size());
+        assertSame(second, completed.get(0));
+        assertSame(first, completed.get(1));
+
+        assertEquals(2L, log.getLastSequence());
+    }
+
+    @Test
+    public void testCompletingEntryTwiceDoesNotChangeSequence() {
+        HarLog log = new HarLog(new HarNameVersion("test", "1.0"));
+
+        HarEntry entry = new HarEntry("page1");
+        log.addEntry(entry);
+
+        assertEquals(1L, log.completeEntry(entry));
+        assertEquals(1L, log.completeEntry(entry));
+
+        assertEquals(1, log.getCompletedEntriesSince(0, 0).size());
+    }
+
+    @Test
+    public void testSinceAndLimit() {
+        HarLog log = new HarLog(new HarNameVersion("test", "1.0"));
+        for (int i = 0; i < 10; i++) {
+            HarEntry entry = new HarEntry("page1");
+            log.addEntry(entry);
+            log.completeEntry(entry);
+        }
+
+        List<HarEntry> completed = log.getCompletedEntriesSince(4, 3);
+        assertEquals(3, completed.size());
+        assertEquals(5L, completed.get(0).getSequence());
+        assertEquals(7L, completed.get(2).getSequence());
+
+        assertTrue(log.getCompletedEntriesSince(10, 0).isEmpty());
+    }
+
+    @Test
+    public void testSequenceContinuesFromInitialSequence() {
+        HarLog log = new HarLog(new HarNameVersion("test", "1.0"), HarCaptureLimits.UNLIMITED, 100L);
+
+        HarEntry entry = new HarEntry("page1");
+        log.addEntry(entry);
+        log.completeEntry(entry);
+
+        assertEquals(101L, entry.getSequence());
+        assertEquals(1, log.getCompletedEntriesSince(50, 0).size());
+        assertTrue(log.getCompletedEntriesSince(101, 0).isEmpty());
+    }
+
+    @Test
+    public void testBoundedLogDoesNotReturnEvictedEntries() {
+        HarLog log = new HarLog(new HarNameVersion("test", "1.0"), HarCaptureLimits.maxEntries(3));
+        log.addPage(new HarPage("page1"));
+
+        for (int i = 0; i < 10; i++) {
+            HarEntry entry = new HarEntry("page1");
+            log.addEntry(entry);
+            log.completeEntry(entry);
+        }
+
+        List<HarEntry> completed = log.getCompletedEntriesSince(0, 0);
+        assertEquals(3, completed.size());
+        assertEquals(8L, completed.get(0).getSequence());
+        assertEquals(10L, completed.get(2).getSequence());
+
+        List<HarEntry> limited = log.getCompletedEntriesSince(8, 1);
+        assertEquals(1, limited.size());
+        assertEquals(9L, limited.get(0).getSequence());
+    }
+}
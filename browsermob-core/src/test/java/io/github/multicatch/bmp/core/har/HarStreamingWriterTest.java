@@ -0,0 +1,81 @@
+package io.github.multicatch.bmp.core.har;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class HarStreamingWriterTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testStreamedHarMatchesObjectMapperOutput() throws IOException {
+        Har har = createHar();
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        new HarStreamingWriter(objectMapper).write(har, streamed);
+
+        assertEquals("Streamed HAR JSON did not match HAR serialized by ObjectMapper",
+                objectMapper.writeValueAsString(har), new String(streamed.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testStreamedHarWithBrowserAndNoEntriesMatchesObjectMapperOutput() throws IOException {
+        Har har = new Har(new HarLog(new HarNameVersion("creator", "1.0")));
+        har.getLog().setBrowser(new HarNameVersion("browser", "2.0"));
+
+        StringWriter streamed = new StringWriter();
+        new HarStreamingWriter(objectMapper).write(har, streamed);
+
+        assertEquals("Streamed HAR JSON did not match HAR serialized by ObjectMapper", objectMapper.writeValueAsString(har), streamed.toString());
+    }
+
+    @Test
+    public void testGzippedHarDecompressesToJson() throws IOException {
+        Har har = createHar();
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new HarStreamingWriter(objectMapper).writeGzipped(har, compressed);
+
+        byte[] decompressed = ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+
+        assertEquals("Decompressed HAR JSON did not match HAR serialized by ObjectMapper",
+                objectMapper.writeValueAsString(har), new String(decompressed, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testNullHarWritesJsonNull() throws IOException {
+        StringWriter streamed = new StringWriter();
+        new HarStreamingWriter(objectMapper).write(null, streamed);
+
+        assertEquals("null", streamed.toString());
+    }
+
+    private static Har createHar() {
+        Har har = new Har(new HarLog(new HarNameVersion("BrowserMob Proxy", "test")));
+        har.getLog().addPage(new HarPage("Page 0", "first page"));
+        har.getLog().addPage(new HarPage("Page 1", "second page"));
+
+        for (int i = 0; i < 10; i++) {
+            HarEntry entry = new HarEntry(i < 5 ? "Page 0" : "Page 1");
+            entry.setStartedDateTime(new Date());
+            entry.setRequest(new HarRequest("GET", "http://www.example.com/resource/" + i, "HTTP/1.1"));
+            entry.setResponse(new HarResponse(200, "OK", "HTTP/1.1"));
+            entry.getResponse().getContent().setText("body " + i);
+            entry.getResponse().getContent().setMimeType("text/plain");
+
+            har.getLog().addEntry(entry);
+        }
+
+        return har;
+    }
+}
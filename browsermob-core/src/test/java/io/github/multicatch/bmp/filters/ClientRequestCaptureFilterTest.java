@@ -0,0 +1,58 @@
+package io.github.multicatch.bmp.filters;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ClientRequestCaptureFilterTest {
+    @Test
+    public void testChunkedRequestIsCapturedWithoutRetainingChunks() {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "http://localhost/upload");
+        ClientRequestCaptureFilter filter = new ClientRequestCaptureFilter(request);
+
+        ByteBuf firstChunk = Unpooled.copiedBuffer("a=1&", StandardCharsets.UTF_8);
+        ByteBuf lastChunk = Unpooled.copiedBuffer("b=2", StandardCharsets.UTF_8);
+
+        filter.clientToProxyRequest(request);
+        filter.clientToProxyRequest(new DefaultHttpContent(firstChunk));
+
+        assertEquals("Expected the filter to copy the chunk instead of retaining it", 1, firstChunk.refCnt());
+
+        // a later filter replaces the chunk's contents in place, as HttpObjectUtil does
+        firstChunk.clear().writeBytes("c=3&".getBytes(StandardCharsets.UTF_8));
+
+        filter.clientToProxyRequest(new DefaultLastHttpContent(lastChunk));
+
+        assertEquals(1, lastChunk.refCnt());
+        assertArrayEquals("a=1&b=2".getBytes(StandardCharsets.UTF_8), filter.getFullRequestContents());
+    }
+
+    @Test
+    public void testIncompleteRequestIsReleased() {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "http://localhost/upload");
+        ClientRequestCaptureFilter filter = new ClientRequestCaptureFilter(request);
+
+        ByteBuf chunk = Unpooled.copiedBuffer("partial", StandardCharsets.UTF_8);
+
+        filter.clientToProxyRequest(request);
+        filter.clientToProxyRequest(new DefaultHttpContent(chunk));
+
+        assertArrayEquals("partial".getBytes(StandardCharsets.UTF_8), filter.getFullRequestContents());
+
+        filter.releaseContents();
+
+        assertEquals(1, chunk.refCnt());
+        assertEquals(0, filter.getFullRequestContents().length);
+    }
+}
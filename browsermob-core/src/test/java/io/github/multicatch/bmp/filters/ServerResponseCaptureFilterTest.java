@@ -0,0 +1,168 @@
+package io.github.multicatch.bmp.filters;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ServerResponseCaptureFilterTest {
+    @Test
+    public void testChunkedResponseIsCapturedWithoutRetainingChunks() {
+        ServerResponseCaptureFilter filter = new ServerResponseCaptureFilter(newRequest(), false);
+
+        ByteBuf firstChunk = Unpooled.copiedBuffer("first chunk, ", StandardCharsets.UTF_8);
+        ByteBuf lastChunk = Unpooled.copiedBuffer("last chunk", StandardCharsets.UTF_8);
+
+        filter.serverToProxyResponse(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+        filter.serverToProxyResponse(new DefaultHttpContent(firstChunk));
+
+        assertEquals("Expected the filter to copy the chunk instead of retaining it", 1, firstChunk.refCnt());
+        assertArrayEquals("first chunk, ".getBytes(StandardCharsets.UTF_8), filter.getRawResponseContents());
+
+        // a later filter replaces the chunk's contents in place, as HttpObjectUtil does
+        firstChunk.clear().writeBytes("FIRST CHUNK, ".getBytes(StandardCharsets.UTF_8));
+
+        filter.serverToProxyResponse(new DefaultLastHttpContent(lastChunk));
+
+        assertEquals(1, lastChunk.refCnt());
+        assertArrayEquals("first chunk, last chunk".getBytes(StandardCharsets.UTF_8), filter.getFullResponseContents());
+        assertArrayEquals("first chunk, last chunk".getBytes(StandardCharsets.UTF_8), filter.getRawResponseContents());
+    }
+
+    @Test
+    public void testIncompleteResponseIsReleased() {
+        ServerResponseCaptureFilter filter = new ServerResponseCaptureFilter(newRequest(), false);
+
+        ByteBuf chunk = Unpooled.copiedBuffer("partial", StandardCharsets.UTF_8);
+
+        filter.serverToProxyResponse(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+        filter.serverToProxyResponse(new DefaultHttpContent(chunk));
+
+        filter.releaseContents();
+        filter.releaseContents();
+
+        assertEquals(1, chunk.refCnt());
+
+        // content received after the buffers are released is not retained
+        ByteBuf lateChunk = Unpooled.copiedBuffer("late", StandardCharsets.UTF_8);
+        filter.serverToProxyResponse(new DefaultLastHttpContent(lateChunk));
+
+        assertEquals(1, lateChunk.refCnt());
+        assertEquals(0, filter.getFullResponseContents().length);
+    }
+
+    @Test
+    public void testGzippedResponseIsDecompressedIncrementally() throws IOException {
+        byte[] uncompressed = newTextContent(256 * 1024);
+        byte[] gzipped = gzip(uncompressed);
+
+        ServerResponseCaptureFilter filter = new ServerResponseCaptureFilter(newRequest(), true);
+        sendInChunks(filter, gzipped, 1000);
+
+        assertTrue(filter.isResponseCompressed());
+        assertTrue(filter.isDecompressionSuccessful());
+        assertFalse(filter.isDecompressedContentTruncated());
+        assertArrayEquals(uncompressed, filter.getFullResponseContents());
+        assertArrayEquals(gzipped, filter.getRawResponseContents());
+    }
+
+    @Test
+    public void testDecompressedContentIsTruncatedAtLimit() throws IOException {
+        byte[] uncompressed = newTextContent(256 * 1024);
+
+        ServerResponseCaptureFilter filter = new ServerResponseCaptureFilter(newRequest(), true, 10000L);
+        sendInChunks(filter, gzip(uncompressed), 1000);
+
+        assertTrue(filter.isDecompressionSuccessful());
+        assertTrue(filter.isDecompressedContentTruncated());
+        assertArrayEquals(Arrays.copyOf(uncompressed, 10000), filter.getFullResponseContents());
+    }
+
+    @Test
+    public void testTruncatedTextEndsWithCompleteCharacter() throws IOException {
+        // each euro sign is three bytes in UTF-8, so the limit falls inside the first one
+        byte[] uncompressed = "0123456789\u20ac\u20ac".getBytes(StandardCharsets.UTF_8);
+
+        ServerResponseCaptureFilter filter = new ServerResponseCaptureFilter(newRequest(), true, 12L);
+
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        response.headers().set(HttpHeaders.Names.CONTENT_ENCODING, HttpHeaders.Values.GZIP);
+        response.headers().set(HttpHeaders.Names.CONTENT_TYPE, "text/plain; charset=UTF-8");
+        filter.serverToProxyResponse(response);
+        filter.serverToProxyResponse(new DefaultLastHttpContent(Unpooled.wrappedBuffer(gzip(uncompressed))));
+
+        assertTrue(filter.isDecompressedContentTruncated());
+        assertArrayEquals("Expected the partial character to be removed", "0123456789".getBytes(StandardCharsets.UTF_8), filter.getFullResponseContents());
+    }
+
+    @Test
+    public void testCorruptGzipIsCapturedRaw() {
+        byte[] notGzipped = "not really gzipped".getBytes(StandardCharsets.UTF_8);
+
+        ServerResponseCaptureFilter filter = new ServerResponseCaptureFilter(newRequest(), true);
+        sendInChunks(filter, notGzipped, 5);
+
+        assertTrue(filter.isResponseCompressed());
+        assertFalse(filter.isDecompressionSuccessful());
+        assertArrayEquals(notGzipped, filter.getFullResponseContents());
+    }
+
+    private static void sendInChunks(ServerResponseCaptureFilter filter, byte[] content, int chunkSize) {
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        response.headers().set(HttpHeaders.Names.CONTENT_ENCODING, HttpHeaders.Values.GZIP);
+        filter.serverToProxyResponse(response);
+
+        for (int offset = 0; offset < content.length; offset += chunkSize) {
+            ByteBuf chunk = Unpooled.wrappedBuffer(content, offset, Math.min(chunkSize, content.length - offset));
+            filter.serverToProxyResponse(new DefaultHttpContent(chunk));
+            assertEquals("Expected the filter not to consume the chunk", Math.min(chunkSize, content.length - offset), chunk.readableBytes());
+            chunk.release();
+        }
+
+        filter.serverToProxyResponse(LastHttpContent.EMPTY_LAST_CONTENT);
+    }
+
+    private static byte[] newTextContent(int length) {
+        Random random = new Random(42);
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) ('a' + random.nextInt(8));
+        }
+
+        return content;
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed)) {
+            gzipOutputStream.write(content);
+        }
+
+        return compressed.toByteArray();
+    }
+
+    private static DefaultFullHttpRequest newRequest() {
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "http://localhost/");
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.multicatch.bmp.filters.support;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BandwidthShapingHandlerTest {
+    private static final String HANDLER_NAME = "shaping";
+
+    @Test
+    public void testChannelIsUnwritableWhileWritesAreQueued() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        channel.pipeline().addFirst(HANDLER_NAME, new BandwidthShapingHandler(null, new BandwidthLimiter(1024), 1));
+
+        int highWaterMark = channel.config().getWriteBufferHighWaterMark();
+        ByteBuf first = Unpooled.buffer().writeZero(highWaterMark);
+        ByteBuf second = Unpooled.buffer().writeZero(1);
+
+        channel.write(first);
+        assertTrue("Expected channel to remain writable until the high water mark is exceeded", channel.isWritable());
+
+        channel.write(second);
+        assertFalse("Expected channel to be unwritable while writes are queued", channel.isWritable());
+        assertNull("Expected writes to be delayed", channel.readOutbound());
+
+        channel.pipeline().remove(HANDLER_NAME);
+        assertTrue("Expected channel to be writable when the shaping is removed", channel.isWritable());
+        assertEquals(0, first.refCnt());
+        assertEquals(0, second.refCnt());
+
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testReadingStopsWhileReadsAreQueued() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        channel.pipeline().addFirst(HANDLER_NAME, new BandwidthShapingHandler(new BandwidthLimiter(1024), null, 1));
+
+        ByteBuf data = Unpooled.buffer().writeZero(4096);
+        channel.writeInbound(data);
+
+        assertNull("Expected reads to be delayed", channel.readInbound());
+        assertFalse("Expected auto-read to be turned off while reads are queued", channel.config().isAutoRead());
+
+        channel.pipeline().remove(HANDLER_NAME);
+        assertTrue("Expected auto-read to be restored when the shaping is removed", channel.config().isAutoRead());
+        assertEquals(0, data.refCnt());
+
+        channel.finishAndReleaseAll();
+    }
+}
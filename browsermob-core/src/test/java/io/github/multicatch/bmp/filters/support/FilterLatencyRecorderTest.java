@@ -0,0 +1,63 @@
+package io.github.multicatch.bmp.filters.support;
+
+import io.github.multicatch.bmp.filters.RequestFilter;
+import io.github.multicatch.bmp.filters.RequestFilterAdapter;
+import io.github.multicatch.bmp.proxy.FilterLatency;
+import org.junit.Test;
+import org.littleshoot.proxy.HttpFiltersAdapter;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FilterLatencyRecorderTest {
+    @Test
+    public void testHistogramPercentiles() {
+        FilterLatencyRecorder recorder = new FilterLatencyRecorder();
+        HttpFiltersAdapter filter = new HttpFiltersAdapter(null);
+
+        for (int i = 0; i < 90; i++) {
+            recorder.record(filter, HttpFiltersCallback.CLIENT_TO_PROXY_REQUEST, 1000);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            recorder.record(filter, HttpFiltersCallback.CLIENT_TO_PROXY_REQUEST, 1_000_000);
+        }
+
+        List<FilterLatency> latencies = recorder.getFilterLatencies();
+        assertEquals(1, latencies.size());
+
+        FilterLatency latency = latencies.get(0);
+        assertEquals(HttpFiltersAdapter.class.getName(), latency.getFilter());
+        assertEquals("clientToProxyRequest", latency.getPhase());
+        assertEquals(100, latency.getCount());
+        assertEquals(90 * 1000L + 10 * 1_000_000L, latency.getTotalNanos());
+        assertEquals(1_000_000L, latency.getMaxNanos());
+
+        // percentiles are the upper bound of a power-of-two bucket
+        assertTrue(latency.getP50Nanos() >= 1000 && latency.getP50Nanos() < 2000);
+        assertTrue(latency.getP90Nanos() >= 1000 && latency.getP90Nanos() < 2000);
+        assertEquals(1_000_000L, latency.getP99Nanos());
+    }
+
+    @Test
+    public void testRequestFiltersRecordedUnderFilterClass() {
+        FilterLatencyRecorder recorder = new FilterLatencyRecorder();
+        RequestFilter requestFilter = (request, contents, messageInfo) -> null;
+
+        recorder.record(new RequestFilterAdapter(null, null, requestFilter), HttpFiltersCallback.CLIENT_TO_PROXY_REQUEST, 10);
+
+        assertEquals(requestFilter.getClass().getName(), recorder.getFilterLatencies().get(0).getFilter());
+    }
+
+    @Test
+    public void testReset() {
+        FilterLatencyRecorder recorder = new FilterLatencyRecorder();
+        recorder.record(new HttpFiltersAdapter(null), HttpFiltersCallback.SERVER_TO_PROXY_RESPONSE, 10);
+
+        recorder.reset();
+
+        assertTrue(recorder.getFilterLatencies().isEmpty());
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.multicatch.bmp.filters.support;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HarCaptureExecutorTest {
+    private final HarCaptureExecutor harCaptureExecutor = new HarCaptureExecutor(4, 100);
+
+    @After
+    public void tearDown() {
+        harCaptureExecutor.shutdown();
+    }
+
+    @Test
+    public void testSequentialExecutorRunsTasksInOrder() {
+        Executor executor = harCaptureExecutor.newSequentialExecutor();
+
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 1000; i++) {
+            int task = i;
+            executor.execute(() -> results.add(task));
+        }
+
+        assertTrue(harCaptureExecutor.awaitPending(5, TimeUnit.SECONDS));
+
+        assertEquals(1000, results.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.valueOf(i), results.get(i));
+        }
+    }
+
+    @Test
+    public void testFailedTaskDoesNotStopSubsequentTasks() {
+        Executor executor = harCaptureExecutor.newSequentialExecutor();
+
+        AtomicBoolean ran = new AtomicBoolean();
+        executor.execute(() -> {
+            throw new RuntimeException("expected exception thrown by test");
+        });
+        executor.execute(() -> ran.set(true));
+
+        assertTrue(harCaptureExecutor.awaitPending(5, TimeUnit.SECONDS));
+        assertTrue(ran.get());
+    }
+
+    @Test
+    public void testAwaitPendingTimesOutWhileTaskIsRunning() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        harCaptureExecutor.newSequentialExecutor().execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertFalse(harCaptureExecutor.awaitPending(50, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+
+        assertTrue(harCaptureExecutor.awaitPending(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTasksAreDroppedAfterShutdown() {
+        harCaptureExecutor.shutdown();
+
+        AtomicBoolean ran = new AtomicBoolean();
+        harCaptureExecutor.newSequentialExecutor().execute(() -> ran.set(true));
+
+        assertFalse("Expected task not to run on the submitting thread", ran.get());
+        assertEquals(1, harCaptureExecutor.getDroppedTaskCount());
+        assertEquals(0, harCaptureExecutor.getPendingTaskCount());
+        assertTrue(harCaptureExecutor.awaitPending(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTasksAreDroppedWhenQueueIsFull() throws InterruptedException {
+        HarCaptureExecutor singleThreadExecutor = new HarCaptureExecutor(1, 1);
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch started = new CountDownLatch(1);
+            singleThreadExecutor.newSequentialExecutor().execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // the worker is busy, so the first task fills the queue and the second is dropped
+            AtomicBoolean droppedTaskRan = new AtomicBoolean();
+            singleThreadExecutor.newSequentialExecutor().execute(() -> { });
+            singleThreadExecutor.newSequentialExecutor().execute(() -> droppedTaskRan.set(true));
+
+            assertEquals(1, singleThreadExecutor.getDroppedTaskCount());
+
+            release.countDown();
+
+            assertTrue(singleThreadExecutor.awaitPending(5, TimeUnit.SECONDS));
+            assertFalse("Expected dropped task not to run", droppedTaskRan.get());
+        } finally {
+            singleThreadExecutor.shutdown();
+        }
+    }
+}
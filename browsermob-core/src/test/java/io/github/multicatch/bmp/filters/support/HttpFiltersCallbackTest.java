@@ -0,0 +1,58 @@
+package io.github.multicatch.bmp.filters.support;
+
+import io.github.multicatch.bmp.filters.ResponseFilterAdapter;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponse;
+import org.junit.Test;
+import org.littleshoot.proxy.HttpFilters;
+import org.littleshoot.proxy.HttpFiltersAdapter;
+
+import static org.junit.Assert.assertEquals;
+
+public class HttpFiltersCallbackTest {
+    @Test
+    public void testAdapterOverridesNoCallbacks() {
+        assertEquals(0, HttpFiltersCallback.overriddenCallbacks(HttpFiltersAdapter.class));
+    }
+
+    @Test
+    public void testOnlyOverriddenCallbacksAreReported() {
+        assertEquals(HttpFiltersCallback.CLIENT_TO_PROXY_REQUEST.mask() | HttpFiltersCallback.PROXY_TO_SERVER_REQUEST_SENT.mask(),
+                HttpFiltersCallback.overriddenCallbacks(RequestFilter.class));
+
+        assertEquals(HttpFiltersCallback.SERVER_TO_PROXY_RESPONSE.mask(),
+                HttpFiltersCallback.overriddenCallbacks(ResponseFilterAdapter.class));
+    }
+
+    @Test
+    public void testInheritedOverridesAreReported() {
+        assertEquals(HttpFiltersCallback.CLIENT_TO_PROXY_REQUEST.mask() | HttpFiltersCallback.PROXY_TO_SERVER_REQUEST_SENT.mask(),
+                HttpFiltersCallback.overriddenCallbacks(RequestFilterSubclass.class));
+    }
+
+    @Test
+    public void testFiltersNotExtendingAdapterImplementAllCallbacks() {
+        HttpFilters filter = (HttpFilters) java.lang.reflect.Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpFilters.class}, (proxy, method, args) -> null);
+
+        assertEquals(HttpFiltersCallback.ALL_CALLBACKS, HttpFiltersCallback.overriddenCallbacks(filter.getClass()));
+    }
+
+    private static class RequestFilter extends HttpFiltersAdapter {
+        RequestFilter() {
+            super(null);
+        }
+
+        @Override
+        public HttpResponse clientToProxyRequest(HttpObject httpObject) {
+            return null;
+        }
+
+        @Override
+        public void proxyToServerRequestSent() {
+        }
+    }
+
+    private static class RequestFilterSubclass extends RequestFilter {
+    }
+}
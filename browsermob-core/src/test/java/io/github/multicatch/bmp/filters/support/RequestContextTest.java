@@ -0,0 +1,118 @@
+package io.github.multicatch.bmp.filters.support;
+
+import io.github.multicatch.bmp.filters.HttpsAwareFiltersAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.AttributeKey;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RequestContextTest {
+    private ChannelHandlerContext ctx;
+
+    @Before
+    public void setUp() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        ctx = channel.pipeline().firstContext();
+    }
+
+    @Test
+    public void testUrlIsCachedUntilRequestIsModified() {
+        HttpRequest originalRequest = createRequest("/index.html?q=1", "www.example.com");
+        HttpRequest request = createRequest("/index.html?q=1", "www.example.com");
+        RequestContext context = new RequestContext(originalRequest, ctx);
+
+        RequestContext.RequestUrl url = context.getUrl(request);
+        assertEquals("http://www.example.com/index.html?q=1", url.getUrl());
+        assertSame(url, context.getUrl(request));
+
+        request.setUri("/other.html");
+        RequestContext.RequestUrl modifiedUrl = context.getUrl(request);
+        assertNotSame(url, modifiedUrl);
+        assertEquals("http://www.example.com/other.html", modifiedUrl.getUrl());
+
+        request.headers().set(HttpHeaders.Names.HOST, "localhost:8080");
+        assertEquals("http://localhost:8080/other.html", context.getUrl(request).getUrl());
+        assertEquals("localhost", context.getUrl(request).getHost());
+        assertEquals("localhost:8080", context.getUrl(request).getHostAndPort());
+
+        // the original URL does not reflect modifications
+        assertEquals("http://www.example.com/index.html?q=1", context.getOriginalUrl().getUrl());
+    }
+
+    @Test
+    public void testUrlComponents() {
+        HttpRequest request = createRequest("http://user@www.example.com:8080/path/to/page?a=b&c=d#fragment", "www.example.com");
+        RequestContext.RequestUrl url = new RequestContext(request, ctx).getOriginalUrl();
+
+        assertEquals("http", url.getScheme());
+        assertEquals(8080, url.getPort());
+        assertEquals("/path/to/page", url.getPath());
+        assertEquals("a=b&c=d", url.getQuery());
+
+        RequestContext.RequestUrl rootUrl = new RequestContext(createRequest("https://www.example.com", null), ctx).getOriginalUrl();
+        assertEquals("https", rootUrl.getScheme());
+        assertEquals(443, rootUrl.getPort());
+        assertEquals("/", rootUrl.getPath());
+        assertNull(rootUrl.getQuery());
+    }
+
+    @Test
+    public void testHttpsRequest() {
+        ctx.attr(AttributeKey.<Boolean>valueOf(HttpsAwareFiltersAdapter.IS_HTTPS_ATTRIBUTE_NAME)).set(true);
+        ctx.attr(AttributeKey.<String>valueOf(HttpsAwareFiltersAdapter.HOST_ATTRIBUTE_NAME)).set("secure.example.com:8443");
+
+        HttpRequest request = createRequest("/login?user=x", null);
+        RequestContext context = new RequestContext(request, ctx);
+
+        assertTrue(context.isHttps());
+        assertEquals("https://secure.example.com:8443/login?user=x", context.getOriginalUrl().getUrl());
+        assertEquals("secure.example.com", context.getOriginalUrl().getHost());
+        assertEquals(8443, context.getOriginalUrl().getPort());
+    }
+
+    @Test
+    public void testConnectRequestSeesHttpsAttributeChanges() {
+        HttpRequest connect = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.CONNECT, "secure.example.com:443");
+        RequestContext context = new RequestContext(connect, ctx);
+
+        assertFalse(context.isHttps());
+        assertEquals("https://secure.example.com", context.getOriginalUrl().getUrl());
+
+        ctx.attr(AttributeKey.<Boolean>valueOf(HttpsAwareFiltersAdapter.IS_HTTPS_ATTRIBUTE_NAME)).set(true);
+        assertTrue(context.isHttps());
+    }
+
+    @Test
+    public void testStandaloneFilterCreatesContext() {
+        HttpRequest request = createRequest("/", "www.example.com");
+        RequestContext context = new RequestContext(request, ctx);
+
+        HttpsAwareFiltersAdapter adapter = new HttpsAwareFiltersAdapter(request, ctx);
+        assertNotSame(context, adapter.getRequestContext());
+        assertSame(adapter.getRequestContext(), adapter.getRequestContext());
+        assertEquals("http://www.example.com/", adapter.getOriginalUrl());
+    }
+
+    private static HttpRequest createRequest(String uri, String host) {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+        if (host != null) {
+            request.headers().set(HttpHeaders.Names.HOST, host);
+        }
+
+        return request;
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.multicatch.bmp.proxy;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the cost of finding the matching entry in a compiled {@link Blacklist} with evaluating every {@link BlacklistEntry}
+ * in turn, for a blacklist of ad and tracker patterns of a realistic size.
+ */
+// ignored as a quick work-around to running these tests with unit tests
+@Ignore
+public class BlacklistPerformanceTests {
+    private static final Logger log = LoggerFactory.getLogger(BlacklistPerformanceTests.class);
+
+    private static final int ENTRIES = 3000;
+
+    private static final int URLS = 20000;
+
+    private static final int WARM_UP_ITERATIONS = 5;
+
+    private static final int ITERATIONS = 10;
+
+    @Test
+    public void testBlacklistMatchingCost() {
+        List<BlacklistEntry> entries = createEntries();
+        List<String> urls = createUrls(new Random(0));
+
+        Blacklist compiledBlacklist = new Blacklist(entries);
+        Blacklist uncachedBlacklist = new Blacklist(entries, 0);
+
+        measure("linear scan", urls, url -> CompiledBlacklistTest.findLinear(entries, url, "GET") != null);
+        measure("compiled blacklist, no verdict cache", urls, url -> uncachedBlacklist.findMatchingEntry(url, "GET") != null);
+        measure("compiled blacklist", urls, url -> compiledBlacklist.findMatchingEntry(url, "GET") != null);
+    }
+
+    private void measure(String name, List<String> urls, UrlMatcher matcher) {
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            matchAll(urls, matcher);
+        }
+
+        long start = System.nanoTime();
+        int matched = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            matched += matchAll(urls, matcher);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        log.info("{}: average cost per URL: {}ns ({} URLs blacklisted)", name, elapsed / ((long) ITERATIONS * urls.size()), matched / ITERATIONS);
+    }
+
+    private static int matchAll(List<String> urls, UrlMatcher matcher) {
+        int matched = 0;
+        for (String url : urls) {
+            if (matcher.isBlacklisted(url)) {
+                matched++;
+            }
+        }
+
+        return matched;
+    }
+
+    private static List<BlacklistEntry> createEntries() {
+        List<BlacklistEntry> entries = new ArrayList<>(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            switch (i % 4) {
+                case 0:
+                    entries.add(new BlacklistEntry("https?://ads" + i + "\\.adserver\\.com/.*", 404));
+                    break;
+                case 1:
+                    entries.add(new BlacklistEntry("https?://([^/]*\\.)?tracker" + i + "\\.net/.*", 404));
+                    break;
+                case 2:
+                    entries.add(new BlacklistEntry(".*/pixel" + i + "\\.gif.*", 404));
+                    break;
+                default:
+                    entries.add(new BlacklistEntry(".*[?&]utm_campaign=promo" + i + "(&.*)?", 404));
+                    break;
+            }
+        }
+
+        return entries;
+    }
+
+    private static List<String> createUrls(Random random) {
+        List<String> urls = new ArrayList<>(URLS);
+        for (int i = 0; i < URLS; i++) {
+            int entry = random.nextInt(ENTRIES * 4);
+            switch (random.nextInt(5)) {
+                case 0:
+                    urls.add("http://ads" + entry + ".adserver.com/banner?id=" + random.nextInt(1000));
+                    break;
+                case 1:
+                    urls.add("https://cdn.tracker" + entry + ".net/t.js");
+                    break;
+                case 2:
+                    urls.add("http://www.example.com/images/pixel" + entry + ".gif");
+                    break;
+                default:
+                    urls.add("http://www.example.com/articles/" + random.nextInt(100) + "?utm_campaign=promo" + entry);
+                    break;
+            }
+        }
+
+        return urls;
+    }
+
+    private interface UrlMatcher {
+        boolean isBlacklisted(String url);
+    }
+}
@@ -0,0 +1,186 @@
+package io.github.multicatch.bmp.proxy;
+
+import io.github.multicatch.bmp.core.har.Har;
+import io.github.multicatch.bmp.core.har.HarEntry;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTest;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTestUtil;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.Test;
+import org.mockserver.model.Header;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+public class CapturePolicyTest extends NewProxyServerTest {
+    @Test
+    public void testPolicyMatchesUrlAndMethod() {
+        CapturePolicy policy = new CapturePolicy("https?://www\\.example\\.com/api/.*", "GET|POST", null, null, 1.0, 0L);
+
+        assertTrue(policy.matches("http://www.example.com/api/users", "GET"));
+        assertFalse(policy.matches("http://www.example.com/api/users", "DELETE"));
+        assertFalse(policy.matches("http://www.example.com/images/logo.png", "GET"));
+    }
+
+    @Test
+    public void testPolicyMatchesContentType() {
+        CapturePolicy policy = new CapturePolicy(null, null, "application/json.*", EnumSet.of(CaptureType.RESPONSE_CONTENT), 1.0, 0L);
+
+        assertTrue(policy.matchesContentType("application/json; charset=UTF-8"));
+        assertFalse(policy.matchesContentType("image/png"));
+        assertFalse(policy.matchesContentType(null));
+
+        assertTrue(new CapturePolicy(".*", null).matchesContentType(null));
+    }
+
+    @Test
+    public void testCompiledPoliciesReturnFirstMatchingPolicy() {
+        CapturePolicy imagePolicy = new CapturePolicy(".*\\.png", EnumSet.noneOf(CaptureType.class));
+        CapturePolicy apiPolicy = new CapturePolicy("https?://www\\.example\\.com/api/.*", "POST", null, null, 1.0, 0L);
+        CapturePolicy hostPolicy = new CapturePolicy("https?://www\\.example\\.com/.*", EnumSet.of(CaptureType.RESPONSE_CONTENT));
+        CapturePolicy defaultPolicy = new CapturePolicy(null, "DELETE", null, null, 1.0, 0L);
+
+        CapturePolicies policies = new CapturePolicies(Arrays.asList(imagePolicy, apiPolicy, hostPolicy, defaultPolicy));
+
+        assertSame(imagePolicy, policies.findMatchingPolicy("http://www.example.com/api/logo.png", "POST"));
+        assertSame(apiPolicy, policies.findMatchingPolicy("http://www.example.com/api/users", "POST"));
+        assertSame(hostPolicy, policies.findMatchingPolicy("http://www.example.com/api/users", "GET"));
+        assertSame("Expected a policy without a URL pattern to match any URL", defaultPolicy, policies.findMatchingPolicy("http://other.example.com/", "DELETE"));
+        assertNull(policies.findMatchingPolicy("http://other.example.com/", "GET"));
+        assertNull(CapturePolicies.EMPTY.findMatchingPolicy("http://www.example.com/", "GET"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSampleRateRejected() {
+        new CapturePolicy(".*", null, null, null, 1.5, 0L);
+    }
+
+    @Test
+    public void testPolicyCaptureTypesOverrideProxyCaptureTypes() throws IOException, InterruptedException {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/api/data"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withHeader(new Header("Content-Type", "application/json; charset=UTF-8"))
+                        .withBody("{\"data\": true}"));
+
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/static/page"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withHeader(new Header("Content-Type", "text/plain; charset=UTF-8"))
+                        .withBody("static page"));
+
+        proxy.addCapturePolicy(new CapturePolicy(".*/api/.*", EnumSet.of(CaptureType.RESPONSE_CONTENT)));
+        proxy.newHar();
+
+        requestFromMockServer("/api/data");
+        requestFromMockServer("/static/page");
+
+        List<HarEntry> entries = getCompletedEntries(2);
+
+        HarEntry apiEntry = findEntry(entries, "/api/data");
+        assertEquals("{\"data\": true}", apiEntry.getResponse().getContent().getText());
+
+        HarEntry staticEntry = findEntry(entries, "/static/page");
+        assertNull("Expected content not to be captured for a URL that does not match the policy", staticEntry.getResponse().getContent().getText());
+    }
+
+    @Test
+    public void testUnsampledRequestsAreNotCaptured() throws IOException, InterruptedException {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/image.png"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody("not really an image"));
+
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/page"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody("page"));
+
+        proxy.setCapturePolicies(Collections.singletonList(new CapturePolicy(".*\\.png", null, null, null, 0.0, 0L)));
+        proxy.newHar();
+
+        requestFromMockServer("/image.png");
+        requestFromMockServer("/page");
+
+        Thread.sleep(500);
+
+        Har har = proxy.getHar();
+        assertEquals("Expected only the unmatched request to be captured", 1, har.getLog().getEntries().size());
+        assertThat(har.getLog().getEntries().get(0).getRequest().getUrl(), containsString("/page"));
+    }
+
+    @Test
+    public void testContentLargerThanMaximumIsNotCaptured() throws IOException, InterruptedException {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/large"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withHeader(new Header("Content-Type", "text/plain; charset=UTF-8"))
+                        .withBody("this response body is larger than the maximum captured content size"));
+
+        proxy.addCapturePolicy(new CapturePolicy(".*", null, null, EnumSet.of(CaptureType.RESPONSE_CONTENT), 1.0, 10L));
+        proxy.newHar();
+
+        requestFromMockServer("/large");
+
+        HarEntry entry = getCompletedEntries(1).get(0);
+
+        assertNull(entry.getResponse().getContent().getText());
+        assertThat(entry.getResponse().getContent().getComment(), containsString("maximum captured content size"));
+        assertEquals(67L, entry.getResponse().getBodySize());
+    }
+
+    private void requestFromMockServer(String path) throws IOException {
+        try (CloseableHttpClient httpClient = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort())) {
+            CloseableHttpResponse response = httpClient.execute(new HttpGet("http://localhost:" + mockServerPort + path));
+            NewProxyServerTestUtil.toStringAndClose(response.getEntity().getContent());
+            assertEquals(200, response.getStatusLine().getStatusCode());
+        }
+    }
+
+    private List<HarEntry> getCompletedEntries(int expectedEntries) throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            List<HarEntry> entries = proxy.getHarEntriesSince(0L, 0);
+            if (entries.size() >= expectedEntries) {
+                return entries;
+            }
+
+            Thread.sleep(20);
+        }
+
+        throw new AssertionError("Timed out waiting for " + expectedEntries + " completed HAR entries");
+    }
+
+    private static HarEntry findEntry(List<HarEntry> entries, String path) {
+        for (HarEntry entry : entries) {
+            if (entry.getRequest().getUrl().endsWith(path)) {
+                return entry;
+            }
+        }
+
+        throw new AssertionError("No HAR entry for " + path);
+    }
+}
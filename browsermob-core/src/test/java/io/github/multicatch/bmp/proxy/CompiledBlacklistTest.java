@@ -0,0 +1,156 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledBlacklistTest {
+    @Test
+    public void testHostConstraints() {
+        UrlPatternIndex.HostConstraint host = UrlPatternIndex.getHostConstraint("https?://ads\\.example\\.com/.*");
+        assertNotNull(host);
+        assertEquals("ads.example.com", host.host);
+        assertFalse(host.domain);
+
+        UrlPatternIndex.HostConstraint domain = UrlPatternIndex.getHostConstraint("https?://[^/]*\\.tracker\\.net/.*");
+        assertNotNull(domain);
+        assertEquals("tracker.net", domain.host);
+        assertTrue(domain.domain);
+
+        assertNotNull(UrlPatternIndex.getHostConstraint("http://ads\\.example\\.com:8080/.*"));
+
+        // patterns that may match other hosts cannot be indexed
+        assertNull(UrlPatternIndex.getHostConstraint(".*://ads\\.example\\.com/.*"));
+        assertNull(UrlPatternIndex.getHostConstraint("https?://ads\\.example\\.com.*"));
+        assertNull(UrlPatternIndex.getHostConstraint("https?://ads.example\\.com/.*"));
+        assertNull(UrlPatternIndex.getHostConstraint("https?://ads\\.example\\.co(m|uk)/.*"));
+        assertNull(UrlPatternIndex.getHostConstraint("https?://[^/]*\\.tracker\\.net:8080/.*"));
+        assertNull(UrlPatternIndex.getHostConstraint(".*\\.tracker\\.net/.*"));
+    }
+
+    @Test
+    public void testRequiredLiterals() {
+        assertEquals("/pixel.gif", UrlPatternIndex.getRequiredLiteral(".*/pixel\\.gif.*"));
+        assertEquals("analytics", UrlPatternIndex.getRequiredLiteral(".*analytics.*"));
+        assertEquals("/track", UrlPatternIndex.getRequiredLiteral(".*/tracks?\\?id=\\d+"));
+        assertEquals("/beacon", UrlPatternIndex.getRequiredLiteral(".*/beacon(/v2)?/{2}x.*"));
+
+        assertNull(UrlPatternIndex.getRequiredLiteral(".*(ads|tracker).*"));
+        assertNull(UrlPatternIndex.getRequiredLiteral("(?i).*ADS.*"));
+        assertNull(UrlPatternIndex.getRequiredLiteral(".*"));
+    }
+
+    @Test
+    public void testEscapesWithArgumentsAreNotLiterals() {
+        assertNull(UrlPatternIndex.getRequiredLiteral(".*\\x41BC.*"));
+        assertNull(UrlPatternIndex.getRequiredLiteral(".*/a\\u0042c/.*"));
+        assertNull(UrlPatternIndex.getRequiredLiteral(".*/\\0101bc/.*"));
+
+        Blacklist blacklist = new Blacklist(ImmutableList.of(
+                new BlacklistEntry(".*\\x41BC.*", 410),
+                new BlacklistEntry(".*/a\\u0042c/.*", 404),
+                new BlacklistEntry(".*/x\\0101y/.*", 403)));
+
+        assertEquals(410, blacklist.findMatchingEntry("http://www.example.com/ABC", "GET").getStatusCode());
+        assertEquals(404, blacklist.findMatchingEntry("http://www.example.com/aBc/", "GET").getStatusCode());
+        assertEquals(403, blacklist.findMatchingEntry("http://www.example.com/xAy/", "GET").getStatusCode());
+    }
+
+    @Test
+    public void testFirstMatchingEntryWins() {
+        Blacklist blacklist = new Blacklist(ImmutableList.of(
+                new BlacklistEntry(".*/pixel\\.gif.*", 410),
+                new BlacklistEntry("https?://[^/]*\\.example\\.com/.*", 404),
+                new BlacklistEntry("https?://ads\\.example\\.com/.*", 403)));
+
+        assertEquals(410, blacklist.findMatchingEntry("http://ads.example.com/pixel.gif", "GET").getStatusCode());
+        assertEquals(404, blacklist.findMatchingEntry("http://ads.example.com/banner.png", "GET").getStatusCode());
+        assertNull(blacklist.findMatchingEntry("http://example.com/banner.png", "GET"));
+        assertNull(blacklist.findMatchingEntry("http://www.example.org/?q=http://ads.example.com/", "GET"));
+    }
+
+    @Test
+    public void testMethodPatternsAndConnect() {
+        Blacklist blacklist = new Blacklist(ImmutableList.of(
+                new BlacklistEntry("https://secure\\.example\\.com:443", 502),
+                new BlacklistEntry("https://secure\\.example\\.com:443", 501, "CONNECT"),
+                new BlacklistEntry("https?://api\\.example\\.com/.*", 405, "POST|PUT")));
+
+        assertEquals(501, blacklist.findMatchingEntry("https://secure.example.com:443", "CONNECT").getStatusCode());
+        assertEquals(405, blacklist.findMatchingEntry("http://api.example.com/users", "POST").getStatusCode());
+        assertNull(blacklist.findMatchingEntry("http://api.example.com/users", "GET"));
+    }
+
+    @Test
+    public void testCachedVerdictsAreConsistent() {
+        Blacklist blacklist = new Blacklist(ImmutableList.of(new BlacklistEntry("https?://ads\\.example\\.com/.*", 404)));
+
+        BlacklistEntry first = blacklist.findMatchingEntry("http://ads.example.com/a", "GET");
+        assertSame(first, blacklist.findMatchingEntry("http://ads.example.com/a", "GET"));
+        assertNull(blacklist.findMatchingEntry("http://ads.example.com/a", "CONNECT"));
+        assertNull(blacklist.findMatchingEntry("http://www.example.com/a", "GET"));
+        assertNull(blacklist.findMatchingEntry("http://www.example.com/a", "GET"));
+    }
+
+    @Test
+    public void testMatchesLinearScan() {
+        List<BlacklistEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            entries.add(new BlacklistEntry("https?://ads" + i + "\\.example\\.com/.*", 400 + i % 10));
+            entries.add(new BlacklistEntry("https?://([^/]*\\.)?tracker" + i + "\\.net/.*", 410 + i % 10, i % 3 == 0 ? "GET" : null));
+            entries.add(new BlacklistEntry(".*/pixel" + i + "\\.gif.*", 420 + i % 10));
+            entries.add(new BlacklistEntry(".*[?&]campaign=" + i + "(&.*)?", 430 + i % 10));
+        }
+
+        Blacklist blacklist = new Blacklist(entries);
+        Blacklist uncachedBlacklist = new Blacklist(entries, 0);
+
+        String[] methods = {"GET", "POST", "CONNECT"};
+        for (int i = 0; i < 60; i++) {
+            String[] urls = {
+                    "http://ads" + i + ".example.com/banner",
+                    "https://ads" + i + ".example.com:8443/banner",
+                    "http://tracker" + i + ".net/t",
+                    "http://cdn.tracker" + i + ".net/t",
+                    "http://www.example.org/pixel" + i + ".gif?x=1",
+                    "http://ads" + (i + 1) + ".example.com/pixel" + i + ".gif",
+                    "http://www.example.org/landing?campaign=" + i,
+                    "http://www.example.org/landing?q=1&campaign=" + i + "&r=2",
+                    "http://tracker" + i + ".net.example.org/t",
+                    "https://tracker" + i + ".net:443",
+            };
+
+            for (String url : urls) {
+                for (String method : methods) {
+                    BlacklistEntry expected = findLinear(entries, url, method);
+                    assertSame("Wrong entry for " + method + " " + url, expected, blacklist.findMatchingEntry(url, method));
+                    assertSame("Wrong entry for " + method + " " + url, expected, blacklist.findMatchingEntry(url, method));
+                    assertSame("Wrong entry for " + method + " " + url, expected, uncachedBlacklist.findMatchingEntry(url, method));
+                }
+            }
+        }
+    }
+
+    static BlacklistEntry findLinear(List<BlacklistEntry> entries, String url, String method) {
+        for (BlacklistEntry entry : entries) {
+            if ("CONNECT".equals(method) && entry.getHttpMethodPattern() == null) {
+                continue;
+            }
+
+            if (entry.matches(url, method)) {
+                return entry;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.multicatch.bmp.proxy;
+
+import io.github.multicatch.bmp.filters.RequestFilter;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTest;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTestUtil;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+public class FilterLatencyStatsTest extends NewProxyServerTest {
+    @Test
+    public void testFilterLatencyRecordedOnlyWhileEnabled() throws IOException {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/stats"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody("success"));
+
+        RequestFilter requestFilter = (request, contents, messageInfo) -> null;
+        proxy.addRequestFilter(requestFilter);
+
+        assertFalse(proxy.isFilterLatencyStatsEnabled());
+        requestFromMockServer("/stats");
+        assertTrue("Expected no statistics to be recorded while disabled", proxy.getFilterLatencyStats().isEmpty());
+
+        proxy.setFilterLatencyStatsEnabled(true);
+        requestFromMockServer("/stats");
+        requestFromMockServer("/stats");
+
+        FilterLatency requestFilterLatency = findLatency(proxy.getFilterLatencyStats(), requestFilter.getClass().getName(), "clientToProxyRequest");
+        assertNotNull("Expected latency of the request filter to be recorded", requestFilterLatency);
+        assertEquals(2, requestFilterLatency.getCount());
+
+        proxy.resetFilterLatencyStats();
+        assertTrue(proxy.getFilterLatencyStats().isEmpty());
+    }
+
+    private void requestFromMockServer(String path) throws IOException {
+        try (CloseableHttpClient httpClient = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort())) {
+            CloseableHttpResponse response = httpClient.execute(new HttpGet("http://localhost:" + mockServerPort + path));
+            NewProxyServerTestUtil.toStringAndClose(response.getEntity().getContent());
+            assertEquals(200, response.getStatusLine().getStatusCode());
+        }
+    }
+
+    private static FilterLatency findLatency(List<FilterLatency> latencies, String filter, String phase) {
+        for (FilterLatency latency : latencies) {
+            if (latency.getFilter().equals(filter) && latency.getPhase().equals(phase)) {
+                return latency;
+            }
+        }
+
+        return null;
+    }
+}
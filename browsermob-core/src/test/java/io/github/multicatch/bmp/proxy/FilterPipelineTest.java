@@ -0,0 +1,98 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.collect.ImmutableMap;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTest;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTestUtil;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.Test;
+import org.mockserver.model.Header;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+/**
+ * Verifies that features which are skipped by the filter pipeline while disabled take effect as soon as they are enabled.
+ */
+public class FilterPipelineTest extends NewProxyServerTest {
+    @Test
+    public void testBlacklistAndWhitelistEnabledAfterStart() throws IOException {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/resource"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody("success"));
+
+        String url = "http://localhost:" + mockServerPort + "/resource";
+
+        assertEquals(200, getStatusCode(url));
+
+        proxy.blacklistRequests(".*/resource", 404);
+        assertEquals(404, getStatusCode(url));
+
+        proxy.clearBlacklist();
+        assertEquals(200, getStatusCode(url));
+
+        proxy.whitelistRequests(Collections.singletonList(".*/other"), 403);
+        assertEquals(403, getStatusCode(url));
+
+        proxy.disableWhitelist();
+        assertEquals(200, getStatusCode(url));
+    }
+
+    @Test
+    public void testHeadersAddedAfterStart() throws IOException {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/headers")
+                .withHeader(new Header("X-Added-Header", "added")))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody("success"));
+
+        String url = "http://localhost:" + mockServerPort + "/headers";
+
+        assertEquals("Expected mock server not to match a request without the added header", 404, getStatusCode(url));
+
+        proxy.addHeaders(ImmutableMap.of("X-Added-Header", "added"));
+        assertEquals(200, getStatusCode(url));
+    }
+
+    @Test
+    public void testLatencySetAfterStart() throws IOException {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/latency"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody("success"));
+
+        String url = "http://localhost:" + mockServerPort + "/latency";
+
+        proxy.setLatency(500, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        assertEquals(200, getStatusCode(url));
+        long elapsedMs = TimeUnit.MILLISECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        assertThat("Expected response to be delayed by the configured latency", elapsedMs, greaterThanOrEqualTo(500L));
+    }
+
+    private int getStatusCode(String url) throws IOException {
+        try (CloseableHttpClient httpClient = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort())) {
+            CloseableHttpResponse response = httpClient.execute(new HttpGet(url));
+            NewProxyServerTestUtil.toStringAndClose(response.getEntity().getContent());
+
+            return response.getStatusLine().getStatusCode();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the cost of finding the {@link FilterRule}s matching a request, for a rule set of a realistic size that adds headers,
+ * blocks URLs and returns canned responses for a number of hosts.
+ */
+// ignored as a quick work-around to running these tests with unit tests
+@Ignore
+public class FilterRulesPerformanceTests {
+    private static final Logger log = LoggerFactory.getLogger(FilterRulesPerformanceTests.class);
+
+    private static final int RULES = 1000;
+
+    private static final int REQUESTS = 20000;
+
+    private static final int WARM_UP_ITERATIONS = 5;
+
+    private static final int ITERATIONS = 10;
+
+    private static final FilterRule.HeaderLookup HEADERS = name -> "Accept".equalsIgnoreCase(name)
+            ? ImmutableList.of("application/json") : Collections.emptyList();
+
+    @Test
+    public void testRuleMatchingCost() {
+        FilterRules filterRules = new FilterRules(createRules());
+
+        Random random = new Random(0);
+        List<String> hosts = new ArrayList<>(REQUESTS);
+        List<String> paths = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            hosts.add(random.nextInt(4) == 0 ? "api" + random.nextInt(RULES) + ".example.com" : "www.site" + random.nextInt(100) + ".org");
+            paths.add(random.nextBoolean() ? "/api/items/" + i : "/static/app" + i + ".js");
+        }
+
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            matchAll(filterRules, hosts, paths);
+        }
+
+        long start = System.nanoTime();
+        int matched = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            matched += matchAll(filterRules, hosts, paths);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        log.info("Average cost per request: {}ns ({} rules matched per iteration)", elapsed / ((long) ITERATIONS * REQUESTS), matched / ITERATIONS);
+    }
+
+    private static int matchAll(FilterRules filterRules, List<String> hosts, List<String> paths) {
+        int matched = 0;
+        for (int i = 0; i < hosts.size(); i++) {
+            matched += filterRules.findMatchingRules("GET", hosts.get(i), paths.get(i), HEADERS).size();
+        }
+
+        return matched;
+    }
+
+    private static List<FilterRule> createRules() {
+        List<FilterRule> rules = new ArrayList<>(RULES);
+        for (int i = 0; i < RULES; i++) {
+            switch (i % 4) {
+                case 0:
+                    rules.add(new FilterRule(null, "api" + i + ".example.com", null, null, null,
+                            ImmutableList.of(FilterRuleAction.setRequestHeader("Authorization", "Bearer token" + i))));
+                    break;
+                case 1:
+                    rules.add(new FilterRule("GET", "*.tracker" + i + ".net", null, null, null,
+                            ImmutableList.of(FilterRuleAction.respond(204, null, null))));
+                    break;
+                case 2:
+                    rules.add(new FilterRule("GET", "api" + i + ".example.com", "/api/.*", "Accept", "application/json", ImmutableList.of(
+                            FilterRuleAction.respond(200, "application/json", "{\"mock\":" + i + "}"))));
+                    break;
+                default:
+                    rules.add(new FilterRule(null, "cdn" + i + ".example.com", null, null, null,
+                            ImmutableList.of(FilterRuleAction.removeResponseHeader("Set-Cookie"))));
+                    break;
+            }
+        }
+
+        // a few rules that apply to every request
+        rules.add(new FilterRule(null, null, null, null, null, ImmutableList.of(FilterRuleAction.setRequestHeader("X-Test-Run", "true"))));
+        rules.add(new FilterRule(null, null, "/static/.*", null, null, ImmutableList.of(FilterRuleAction.setResponseHeader("Cache-Control", "no-cache"))));
+
+        return rules;
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FilterRulesTest {
+    private static final FilterRule.HeaderLookup NO_HEADERS = name -> Collections.emptyList();
+
+    @Test
+    public void testHostConditions() {
+        FilterRule exactHost = rule(null, "api.example.com", null);
+        assertTrue(exactHost.matches("GET", "api.example.com", "/", NO_HEADERS));
+        assertTrue(exactHost.matches("GET", "API.Example.com", "/", NO_HEADERS));
+        assertFalse(exactHost.matches("GET", "www.api.example.com", "/", NO_HEADERS));
+
+        FilterRule subdomains = rule(null, "*.example.com", null);
+        assertTrue(subdomains.matches("GET", "api.example.com", "/", NO_HEADERS));
+        assertTrue(subdomains.matches("GET", "a.b.example.com", "/", NO_HEADERS));
+        assertFalse(subdomains.matches("GET", "example.com", "/", NO_HEADERS));
+        assertFalse(subdomains.matches("GET", "badexample.com", "/", NO_HEADERS));
+    }
+
+    @Test
+    public void testMethodPathAndHeaderConditions() {
+        FilterRule rule = new FilterRule("post", null, "/api/.*", "Content-Type", "application/json.*",
+                ImmutableList.of(FilterRuleAction.removeRequestHeader("Cookie")));
+
+        FilterRule.HeaderLookup json = headers(ImmutableMap.of("content-type", "application/json; charset=UTF-8"));
+        FilterRule.HeaderLookup form = headers(ImmutableMap.of("content-type", "application/x-www-form-urlencoded"));
+
+        assertTrue(rule.matches("POST", "example.com", "/api/items", json));
+        assertFalse("Expected method to be matched", rule.matches("GET", "example.com", "/api/items", json));
+        assertFalse("Expected path to be matched", rule.matches("POST", "example.com", "/static/app.js", json));
+        assertFalse("Expected header value to be matched", rule.matches("POST", "example.com", "/api/items", form));
+        assertFalse("Expected header to be required", rule.matches("POST", "example.com", "/api/items", NO_HEADERS));
+    }
+
+    @Test
+    public void testAllMatchingRulesAreReturnedInOrder() {
+        FilterRule anyHost = rule(null, null, "/api/.*");
+        FilterRule domain = rule(null, "*.example.com", null);
+        FilterRule host = rule(null, "api.example.com", null);
+        FilterRule otherHost = rule(null, "api.example.org", null);
+        FilterRule parentDomain = rule(null, "*.com", null);
+
+        FilterRules filterRules = new FilterRules(ImmutableList.of(host, anyHost, otherHost, domain, parentDomain));
+
+        assertEquals(ImmutableList.of(host, anyHost, domain, parentDomain), filterRules.findMatchingRules("GET", "api.example.com", "/api/items", NO_HEADERS));
+        assertEquals(ImmutableList.of(domain, parentDomain), filterRules.findMatchingRules("GET", "www.example.com", "/", NO_HEADERS));
+        assertEquals(ImmutableList.of(anyHost), filterRules.findMatchingRules("GET", null, "/api/items", NO_HEADERS));
+        assertTrue(filterRules.findMatchingRules("GET", "www.example.net", "/", NO_HEADERS).isEmpty());
+    }
+
+    @Test
+    public void testEmptyRules() {
+        assertTrue(FilterRules.EMPTY.isEmpty());
+        assertTrue(FilterRules.EMPTY.findMatchingRules("GET", "www.example.com", "/", NO_HEADERS).isEmpty());
+        assertTrue(new FilterRules(null).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRuleWithoutActionsIsRejected() {
+        new FilterRule(null, "www.example.com", null, null, null, Collections.emptyList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWildcardInMiddleOfHostIsRejected() {
+        rule(null, "www.*.com", null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidStatusCodeIsRejected() {
+        FilterRuleAction.respond(42, null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHeaderValueWithLineBreakIsRejected() {
+        FilterRuleAction.setRequestHeader("X-Test", "value\r\nX-Injected: true");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHeaderNameIsRejected() {
+        FilterRuleAction.removeResponseHeader("X Test:");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidContentTypeIsRejected() {
+        FilterRuleAction.respond(200, "text/plain\n", "body");
+    }
+
+    private static FilterRule rule(String method, String host, String pathPattern) {
+        return new FilterRule(method, host, pathPattern, null, null, ImmutableList.of(FilterRuleAction.setRequestHeader("X-Rule", "true")));
+    }
+
+    private static FilterRule.HeaderLookup headers(Map<String, String> headers) {
+        return name -> {
+            String value = headers.get(name.toLowerCase());
+            return value == null ? Collections.<String>emptyList() : (List<String>) ImmutableList.of(value);
+        };
+    }
+}
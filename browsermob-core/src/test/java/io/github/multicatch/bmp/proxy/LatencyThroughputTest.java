@@ -0,0 +1,126 @@
+package io.github.multicatch.bmp.proxy;
+
+import io.github.multicatch.bmp.BrowserMobProxyServer;
+import io.github.multicatch.bmp.proxy.test.util.MockServerTest;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTestUtil;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.littleshoot.proxy.impl.ThreadPoolConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+/**
+ * Load test for added latency. The proxy runs with a single client-facing event loop thread, so if the latency blocked the event
+ * loop, concurrent responses would be delayed one after another and the time to serve them all would grow with the number of
+ * requests. Since the latency is scheduled on the event loop instead, concurrent responses are delayed in parallel and the
+ * throughput of the proxy is limited only by the number of concurrent clients.
+ */
+public class LatencyThroughputTest extends MockServerTest {
+    private static final Logger log = LoggerFactory.getLogger(LatencyThroughputTest.class);
+
+    private static final int CONCURRENT_CLIENTS = 20;
+
+    private BrowserMobProxyServer proxy;
+
+    private ExecutorService clientExecutor;
+
+    @Before
+    public void setUp() {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/latency"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody("success"));
+
+        proxy = new BrowserMobProxyServer();
+        proxy.setThreadPoolConfiguration(new ThreadPoolConfiguration()
+                .withAcceptorThreads(1)
+                .withClientToProxyWorkerThreads(1)
+                .withProxyToServerWorkerThreads(1));
+        proxy.start();
+
+        clientExecutor = Executors.newFixedThreadPool(CONCURRENT_CLIENTS);
+    }
+
+    @After
+    public void tearDown() {
+        if (clientExecutor != null) {
+            clientExecutor.shutdownNow();
+        }
+
+        if (proxy != null) {
+            proxy.abort();
+        }
+    }
+
+    @Test
+    public void testThroughputDoesNotDecreaseWithLatency() throws Exception {
+        // warm up the proxy and the mock server, so the first measurement does not include start-up costs
+        sendConcurrentRequests();
+
+        long baselineMs = sendConcurrentRequests();
+        log.info("Served {} concurrent requests without latency in {}ms", CONCURRENT_CLIENTS, baselineMs);
+
+        for (int latencyMs : new int[]{100, 200, 400}) {
+            proxy.setLatency(latencyMs, TimeUnit.MILLISECONDS);
+
+            long elapsedMs = sendConcurrentRequests();
+
+            log.info("Served {} concurrent requests with {}ms of latency in {}ms ({} requests/sec)",
+                    CONCURRENT_CLIENTS, latencyMs, elapsedMs, CONCURRENT_CLIENTS * 1000L / Math.max(elapsedMs, 1));
+
+            assertThat("Expected every response to be delayed by the configured latency", elapsedMs, greaterThanOrEqualTo((long) latencyMs));
+
+            // blocking the event loop would take CONCURRENT_CLIENTS * latencyMs to serve all requests
+            assertThat("Expected concurrent responses to be delayed in parallel", elapsedMs, lessThan(baselineMs + latencyMs * 4L));
+        }
+    }
+
+    /**
+     * Sends one request from each client concurrently and returns the time taken to receive every response, in milliseconds.
+     */
+    private long sendConcurrentRequests() throws Exception {
+        String url = "http://127.0.0.1:" + mockServerPort + "/latency";
+
+        List<Callable<Integer>> requests = new ArrayList<>(CONCURRENT_CLIENTS);
+        for (int i = 0; i < CONCURRENT_CLIENTS; i++) {
+            requests.add(() -> {
+                try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort());
+                     CloseableHttpResponse response = client.execute(new HttpGet(url))) {
+                    NewProxyServerTestUtil.toStringAndClose(response.getEntity().getContent());
+                    return response.getStatusLine().getStatusCode();
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        List<Future<Integer>> statusCodes = clientExecutor.invokeAll(requests);
+        long elapsedMs = TimeUnit.MILLISECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        for (Future<Integer> statusCode : statusCodes) {
+            assertEquals("Expected request to succeed", 200, (int) statusCode.get());
+        }
+
+        return elapsedMs;
+    }
+}
@@ -0,0 +1,161 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import io.github.multicatch.bmp.BrowserMobProxyServer;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTest;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTestUtil;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+public class NetworkConditionsTest extends NewProxyServerTest {
+    @Test
+    public void testPresets() {
+        assertSame(NetworkConditions.UMTS, NetworkConditions.getPreset("3g"));
+        assertSame(NetworkConditions.LTE, NetworkConditions.getPreset("LTE"));
+        assertNull(NetworkConditions.getPreset("5G"));
+        assertEquals(5, NetworkConditions.getPresets().size());
+    }
+
+    @Test
+    public void testLatencyDistributions() {
+        Random random = new Random(1);
+
+        NetworkConditions constant = new NetworkConditions("constant", 100, 50, NetworkConditions.LatencyDistribution.CONSTANT, 0, 0.0, 0, 0, null);
+        NetworkConditions uniform = new NetworkConditions("uniform", 100, 50, NetworkConditions.LatencyDistribution.UNIFORM, 0, 0.0, 0, 0, null);
+        NetworkConditions normal = new NetworkConditions("normal", 100, 20, NetworkConditions.LatencyDistribution.NORMAL, 0, 0.0, 0, 0, null);
+        NetworkConditions exponential = new NetworkConditions("exponential", 100, 20, NetworkConditions.LatencyDistribution.EXPONENTIAL, 0, 0.0, 0, 0, null);
+
+        long normalTotal = 0;
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(100, constant.sampleResponseLatencyMs(random));
+
+            long uniformLatency = uniform.sampleResponseLatencyMs(random);
+            assertTrue("Uniform latency out of range: " + uniformLatency, uniformLatency >= 50 && uniformLatency <= 150);
+
+            long normalLatency = normal.sampleResponseLatencyMs(random);
+            assertTrue("Latency cannot be negative: " + normalLatency, normalLatency >= 0);
+            normalTotal += normalLatency;
+
+            assertThat(exponential.sampleResponseLatencyMs(random), greaterThanOrEqualTo(100L));
+        }
+
+        long normalMean = normalTotal / 10000;
+        assertTrue("Unexpected mean of normally distributed latency: " + normalMean, normalMean >= 98 && normalMean <= 102);
+    }
+
+    @Test
+    public void testPacketLossAddsRetransmissionTimeout() {
+        NetworkConditions lossy = new NetworkConditions("lossy", 50, 0, NetworkConditions.LatencyDistribution.CONSTANT, 0, 1.0, 0, 0, null);
+
+        assertEquals(50 + NetworkConditions.MIN_RETRANSMISSION_TIMEOUT_MS, lossy.sampleResponseLatencyMs(new Random()));
+        assertTrue(lossy.addsLatency());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPacketLossRate() {
+        new NetworkConditions("invalid", 0, 0, null, 0, 1.5, 0, 0, null);
+    }
+
+    @Test
+    public void testProfileLatencySwitchedAtRuntime() throws IOException {
+        mockResponse("/network", "success");
+        String url = "http://127.0.0.1:" + mockServerPort + "/network";
+
+        proxy.setNetworkConditions(new NetworkConditions("slow", 500, 0, 0));
+        assertEquals("slow", proxy.getNetworkConditions().getName());
+
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort())) {
+            long elapsedMs = timeRequest(client, url);
+            assertThat("Expected response to be delayed by the profile's latency", elapsedMs, greaterThanOrEqualTo(500L));
+
+            proxy.setNetworkConditions(null);
+            assertNull(proxy.getNetworkConditions());
+
+            elapsedMs = timeRequest(client, url);
+            assertThat("Expected response not to be delayed after the profile was cleared", elapsedMs, lessThan(500L));
+        }
+    }
+
+    @Test
+    public void testConnectionSetupDelayAppliedToHttpsRequests() throws IOException {
+        mockResponse("/secure", "success");
+        String url = "https://localhost:" + mockServerPort + "/secure";
+
+        // upstream server verification can only be disabled before the proxy is started
+        proxy.abort();
+        proxy = new BrowserMobProxyServer();
+        proxy.setTrustAllServers(true);
+        proxy.start();
+
+        // generate the impersonating certificate before the profile is set, so it does not delay the timed requests
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort())) {
+            timeRequest(client, url);
+        }
+
+        proxy.setNetworkConditions(new NetworkConditions("slow-setup", 0, 0, null, 500, 0.0, 0, 0, null));
+
+        // use a new client, so the proxy opens a new connection to the server when the client sends the CONNECT
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort())) {
+            assertThat("Expected first request through the tunnel to be delayed by the connection setup", timeRequest(client, url), greaterThanOrEqualTo(500L));
+            assertThat("Expected request on the established connection not to be delayed", timeRequest(client, url), lessThan(500L));
+        }
+    }
+
+    @Test
+    public void testHostBandwidthLimit() throws IOException {
+        // 100 KB response, limited to 25 KB/s
+        mockResponse("/large", Strings.repeat("0123456789", 10_000));
+        String url = "http://127.0.0.1:" + mockServerPort + "/large";
+
+        proxy.setNetworkConditions(new NetworkConditions("unlimited-host", 0, 0, null, 0, 0.0, 0, 0,
+                ImmutableList.of(new HostBandwidthLimit("example\\.com", 25_000, 0))));
+
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort())) {
+            assertThat("Expected response from a host without a limit not to be limited", timeRequest(client, url), lessThan(1000L));
+        }
+
+        proxy.setNetworkConditions(new NetworkConditions("limited-host", 0, 0, null, 0, 0.0, 0, 0,
+                ImmutableList.of(new HostBandwidthLimit("127\\.0\\.0\\.1", 25_000, 0))));
+
+        // use a new client, so the proxy opens a new connection to the server
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort())) {
+            assertThat("Expected response to be limited by the host bandwidth limit", timeRequest(client, url), greaterThanOrEqualTo(2000L));
+        }
+    }
+
+    private void mockResponse(String path, String body) {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath(path))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody(body));
+    }
+
+    private static long timeRequest(CloseableHttpClient client, String url) throws IOException {
+        long start = System.nanoTime();
+        try (CloseableHttpResponse response = client.execute(new HttpGet(url))) {
+            NewProxyServerTestUtil.toStringAndClose(response.getEntity().getContent());
+            assertEquals("Expected request to succeed", 200, response.getStatusLine().getStatusCode());
+        }
+
+        return TimeUnit.MILLISECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
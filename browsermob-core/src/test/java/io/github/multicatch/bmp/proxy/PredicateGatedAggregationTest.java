@@ -0,0 +1,163 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.base.Strings;
+import io.github.multicatch.bmp.BrowserMobProxyServer;
+import io.github.multicatch.bmp.filters.AggregationPredicate;
+import io.github.multicatch.bmp.filters.ResponseFilterAdapter;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTest;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTestUtil;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+public class PredicateGatedAggregationTest extends NewProxyServerTest {
+    @Test
+    public void testOnlyMatchingResponsesAreAggregated() throws IOException {
+        // larger than the 2 MiB maximum buffer size of ResponseFilters
+        String largeBody = Strings.repeat("abcdefghij", 300_000);
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/api/config"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"setting\":true}"));
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/large"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withHeader("Content-Type", "application/octet-stream")
+                        .withBody(largeBody));
+
+        Map<String, String> contentsByUrl = new ConcurrentHashMap<>();
+        proxy.addResponseFilter((response, contents, messageInfo) -> {
+            if (contents != null) {
+                contentsByUrl.put(messageInfo.getOriginalUrl(), contents.getTextContents());
+            }
+        }, AggregationPredicate.matching(".*/api/config", null, null));
+
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort())) {
+            assertEquals("{\"setting\":true}", get(client, "/api/config"));
+            assertEquals("Expected unmatched response larger than the aggregation buffer to be streamed in full", largeBody, get(client, "/large"));
+        }
+
+        assertEquals("Expected matching response to be aggregated", "{\"setting\":true}", contentsByUrl.get("http://127.0.0.1:" + mockServerPort + "/api/config"));
+        assertNull("Expected unmatched response not to be aggregated", contentsByUrl.get("http://127.0.0.1:" + mockServerPort + "/large"));
+    }
+
+    @Test
+    public void testCombinedPredicateIsReusedUntilFiltersAreAdded() {
+        BrowserMobProxyServer proxyServer = (BrowserMobProxyServer) proxy;
+
+        proxyServer.addResponseFilter((response, contents, messageInfo) -> {
+        }, AggregationPredicate.matching(".*/api/.*", null, null));
+
+        AggregationPredicate predicate = proxyServer.getResponseAggregationPredicate();
+        assertSame("Expected combined predicate to be reused", predicate, proxyServer.getResponseAggregationPredicate());
+
+        proxyServer.addResponseFilter((response, contents, messageInfo) -> {
+        }, AggregationPredicate.matching(".*/static/.*", null, null));
+
+        assertNotSame("Expected predicates to be combined again when a filter is added", predicate, proxyServer.getResponseAggregationPredicate());
+
+        proxyServer.addResponseFilter((response, contents, messageInfo) -> {
+        });
+
+        assertNull("Expected every response to be aggregated by a filter without a predicate", proxyServer.getResponseAggregationPredicate());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFilterFactoriesCannotBeAddedWithoutInvalidatingCombinedPredicate() {
+        BrowserMobProxyServer proxyServer = (BrowserMobProxyServer) proxy;
+
+        proxyServer.getFilterFactories().add(new ResponseFilterAdapter.FilterSource((response, contents, messageInfo) -> {
+        }));
+    }
+
+    @Test
+    public void testOnlyMatchingRequestsAreAggregated() throws IOException {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/first"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody("first"));
+        mockServer.when(request()
+                .withMethod("PUT")
+                .withPath("/upload"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody("success"));
+
+        Map<String, Boolean> aggregatedByUrl = new ConcurrentHashMap<>();
+        proxy.addRequestFilter((request, contents, messageInfo) -> {
+            aggregatedByUrl.put(messageInfo.getOriginalUrl(), contents != null);
+
+            return null;
+        }, AggregationPredicate.matching(null, "POST", null));
+
+        // larger than the 2 MiB maximum buffer size of RequestFilters
+        String largeBody = Strings.repeat("abcdefghij", 300_000);
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort())) {
+            // the first request on a client connection is always aggregated
+            assertEquals("first", get(client, "/first"));
+
+            HttpPut upload = new HttpPut("http://127.0.0.1:" + mockServerPort + "/upload");
+            upload.setEntity(new StringEntity(largeBody));
+            try (CloseableHttpResponse response = client.execute(upload)) {
+                assertEquals("Expected unmatched request larger than the aggregation buffer to be streamed to the server", 200, response.getStatusLine().getStatusCode());
+                assertEquals("success", NewProxyServerTestUtil.toStringAndClose(response.getEntity().getContent()));
+            }
+        }
+
+        assertTrue("Expected first request on the connection to be aggregated", aggregatedByUrl.get("http://127.0.0.1:" + mockServerPort + "/first"));
+        assertFalse("Expected unmatched request not to be aggregated", aggregatedByUrl.get("http://127.0.0.1:" + mockServerPort + "/upload"));
+    }
+
+    @Test
+    public void testUngatedFilterAggregatesAllResponses() throws IOException {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/page"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody("page"));
+
+        Map<String, Boolean> aggregatedByUrl = new ConcurrentHashMap<>();
+        proxy.addResponseFilter((response, contents, messageInfo) -> aggregatedByUrl.put(messageInfo.getOriginalUrl(), contents != null),
+                AggregationPredicate.matching(".*/api/.*", null, null));
+        proxy.addResponseFilter((response, contents, messageInfo) -> {
+        });
+
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort())) {
+            assertEquals("page", get(client, "/page"));
+        }
+
+        assertTrue("Expected a filter without a predicate to cause every response to be aggregated", aggregatedByUrl.get("http://127.0.0.1:" + mockServerPort + "/page"));
+    }
+
+    private String get(CloseableHttpClient client, String path) throws IOException {
+        try (CloseableHttpResponse response = client.execute(new HttpGet("http://127.0.0.1:" + mockServerPort + path))) {
+            assertEquals("Expected request to succeed", 200, response.getStatusLine().getStatusCode());
+
+            return NewProxyServerTestUtil.toStringAndClose(response.getEntity().getContent());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.collect.ImmutableList;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTest;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTestUtil;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+import static org.mockserver.verify.VerificationTimes.never;
+
+public class RuleFilterTest extends NewProxyServerTest {
+    @Test
+    public void testRulesModifyRequestAndResponseHeaders() throws IOException {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/headers")
+                .withHeader("X-Added", "added")
+                .withHeader("X-Second-Rule", "true"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withHeader("Server", "mock")
+                        .withBody("success"));
+
+        proxy.setFilterRules(ImmutableList.of(
+                new FilterRule("GET", "127.0.0.1", "/headers", null, null, ImmutableList.of(
+                        FilterRuleAction.setRequestHeader("X-Added", "added"),
+                        FilterRuleAction.setResponseHeader("X-Response-Rule", "applied"),
+                        FilterRuleAction.removeResponseHeader("Server"))),
+                new FilterRule(null, "*.example.com", null, null, null, ImmutableList.of(
+                        FilterRuleAction.setRequestHeader("X-Added", "wrong host"))),
+                new FilterRule(null, null, "/head.*", null, null, ImmutableList.of(
+                        FilterRuleAction.setRequestHeader("X-Second-Rule", "true")))));
+
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort());
+             CloseableHttpResponse response = client.execute(new HttpGet("http://127.0.0.1:" + mockServerPort + "/headers"))) {
+            assertEquals("Expected request headers to be modified by matching rules", 200, response.getStatusLine().getStatusCode());
+            assertEquals("success", NewProxyServerTestUtil.toStringAndClose(response.getEntity().getContent()));
+            assertEquals("applied", response.getFirstHeader("X-Response-Rule").getValue());
+            assertNull("Expected response header to be removed", response.getFirstHeader("Server"));
+        }
+    }
+
+    @Test
+    public void testRulesMatchRequestAsReceived() throws IOException {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/flag")
+                .withHeader("X-Flag-Seen", "true"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody("success"));
+
+        // the second rule matches even though the first rule removes the header it matches on
+        proxy.addFilterRules(ImmutableList.of(
+                new FilterRule(null, null, null, "X-Flag", null, ImmutableList.of(
+                        FilterRuleAction.removeRequestHeader("X-Flag"))),
+                new FilterRule(null, null, null, "X-Flag", "on", ImmutableList.of(
+                        FilterRuleAction.setRequestHeader("X-Flag-Seen", "true")))));
+
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort())) {
+            HttpGet get = new HttpGet("http://127.0.0.1:" + mockServerPort + "/flag");
+            get.addHeader("X-Flag", "on");
+
+            try (CloseableHttpResponse response = client.execute(get)) {
+                assertEquals(200, response.getStatusLine().getStatusCode());
+            }
+        }
+    }
+
+    @Test
+    public void testRuleRespondsWithoutContactingServer() throws IOException {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/blocked"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody("should not be returned"));
+
+        proxy.setFilterRules(ImmutableList.of(
+                new FilterRule(null, null, null, null, null, ImmutableList.of(
+                        FilterRuleAction.setResponseHeader("X-Blocked-By", "rules"))),
+                new FilterRule("GET", null, "/block.*", null, null, ImmutableList.of(
+                        FilterRuleAction.respond(403, "text/plain; charset=UTF-8", "blocked by rule"))),
+                new FilterRule(null, null, null, null, null, ImmutableList.of(
+                        FilterRuleAction.setResponseHeader("X-Not-Applied", "true")))));
+
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort());
+             CloseableHttpResponse response = client.execute(new HttpGet("http://127.0.0.1:" + mockServerPort + "/blocked"))) {
+            assertEquals(403, response.getStatusLine().getStatusCode());
+            assertEquals("blocked by rule", NewProxyServerTestUtil.toStringAndClose(response.getEntity().getContent()));
+            assertEquals("text/plain; charset=UTF-8", response.getFirstHeader("Content-Type").getValue());
+            assertEquals("Expected response actions of earlier rules to be applied", "rules", response.getFirstHeader("X-Blocked-By").getValue());
+            assertNull("Expected rules after the responding rule not to be applied", response.getFirstHeader("X-Not-Applied"));
+        }
+
+        mockServer.verify(request().withPath("/blocked"), never());
+    }
+
+    @Test
+    public void testRuleRewritesUrl() throws IOException {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath("/v2/items")
+                .withQueryStringParameter("id", "7"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody("rewritten"));
+
+        proxy.addFilterRules(ImmutableList.of(
+                new FilterRule(null, null, "/v1/.*", null, null, ImmutableList.of(
+                        FilterRuleAction.rewriteUrl("(.*)/v1/(.*)", "$1/v2/$2")))));
+
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort());
+             CloseableHttpResponse response = client.execute(new HttpGet("http://127.0.0.1:" + mockServerPort + "/v1/items?id=7"))) {
+            assertEquals(200, response.getStatusLine().getStatusCode());
+            assertEquals("rewritten", NewProxyServerTestUtil.toStringAndClose(response.getEntity().getContent()));
+        }
+
+        proxy.clearFilterRules();
+        assertEquals(0, proxy.getFilterRules().size());
+    }
+}
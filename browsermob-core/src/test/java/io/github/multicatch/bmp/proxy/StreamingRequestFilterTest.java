@@ -0,0 +1,130 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.base.Strings;
+import io.github.multicatch.bmp.filters.StreamingRequestFilter;
+import io.github.multicatch.bmp.filters.StreamingRequestFilterAdapter;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTest;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTestUtil;
+import io.github.multicatch.bmp.util.HttpMessageInfo;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+public class StreamingRequestFilterTest extends NewProxyServerTest {
+    @Test
+    public void testFilterTransformsUploadLargerThanAggregationBuffer() throws IOException {
+        // larger than the 2 MiB maximum buffer size of RequestFilters
+        String body = Strings.repeat("abcdefghij", 300_000);
+        expectUpload("/upload", body.toUpperCase());
+
+        AtomicInteger filtersCreated = new AtomicInteger();
+        AtomicInteger chunksFiltered = new AtomicInteger();
+        proxy.addFirstHttpFilterFactory(new StreamingRequestFilterAdapter.FilterSource(() -> {
+            filtersCreated.incrementAndGet();
+            return new UpperCaseFilter(chunksFiltered);
+        }));
+
+        assertEquals("Expected upload to succeed", 200, upload("/upload", body));
+
+        assertEquals("Expected a new filter to be created for the request", 1, filtersCreated.get());
+        assertThat("Expected upload to be filtered one chunk at a time", chunksFiltered.get(), greaterThan(1));
+    }
+
+    @Test
+    public void testFilterCanDropAndReplaceChunks() throws IOException {
+        expectUpload("/replace", "replaced body");
+
+        proxy.addStreamingRequestFilter(new StreamingRequestFilter() {
+            @Override
+            public boolean filterRequestHeaders(HttpRequest request, HttpMessageInfo messageInfo) {
+                return true;
+            }
+
+            @Override
+            public HttpContent filterRequestContent(HttpRequest request, HttpContent content, HttpMessageInfo messageInfo) {
+                if (content instanceof LastHttpContent) {
+                    return content.replace(Unpooled.copiedBuffer("replaced body", StandardCharsets.US_ASCII));
+                }
+
+                return null;
+            }
+        });
+
+        assertEquals("Expected upload to succeed", 200, upload("/replace", Strings.repeat("original body ", 100_000)));
+    }
+
+    @Test
+    public void testFilterReceivesEntireContentWhenRequestIsAggregated() throws IOException {
+        expectUpload("/aggregated", "AGGREGATED BODY");
+
+        // a RequestFilter enables aggregation, so the streaming filter receives the FullHttpRequest
+        proxy.addRequestFilter((request, contents, messageInfo) -> null);
+        proxy.addStreamingRequestFilter(new UpperCaseFilter(new AtomicInteger()));
+
+        assertEquals("Expected upload to succeed", 200, upload("/aggregated", "aggregated body"));
+    }
+
+    private void expectUpload(String path, String expectedBody) {
+        mockServer.when(request()
+                .withMethod("PUT")
+                .withPath(path)
+                .withBody(expectedBody))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody("success"));
+    }
+
+    private int upload(String path, String body) throws IOException {
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort())) {
+            HttpPut request = new HttpPut("http://127.0.0.1:" + mockServerPort + path);
+            request.setEntity(new StringEntity(body));
+
+            try (CloseableHttpResponse response = client.execute(request)) {
+                NewProxyServerTestUtil.toStringAndClose(response.getEntity().getContent());
+
+                return response.getStatusLine().getStatusCode();
+            }
+        }
+    }
+
+    /**
+     * Replaces each chunk with its upper-cased text.
+     */
+    private static class UpperCaseFilter implements StreamingRequestFilter {
+        private final AtomicInteger chunksFiltered;
+
+        UpperCaseFilter(AtomicInteger chunksFiltered) {
+            this.chunksFiltered = chunksFiltered;
+        }
+
+        @Override
+        public boolean filterRequestHeaders(HttpRequest request, HttpMessageInfo messageInfo) {
+            return true;
+        }
+
+        @Override
+        public HttpContent filterRequestContent(HttpRequest request, HttpContent content, HttpMessageInfo messageInfo) {
+            chunksFiltered.incrementAndGet();
+
+            String text = content.content().toString(StandardCharsets.US_ASCII).toUpperCase();
+
+            return content.replace(Unpooled.copiedBuffer(text, StandardCharsets.US_ASCII));
+        }
+    }
+}
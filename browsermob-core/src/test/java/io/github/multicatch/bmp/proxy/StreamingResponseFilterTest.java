@@ -0,0 +1,154 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.base.Strings;
+import io.github.multicatch.bmp.filters.StreamingResponseFilter;
+import io.github.multicatch.bmp.filters.StreamingResponseFilterAdapter;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTest;
+import io.github.multicatch.bmp.proxy.test.util.NewProxyServerTestUtil;
+import io.github.multicatch.bmp.util.HttpMessageInfo;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+public class StreamingResponseFilterTest extends NewProxyServerTest {
+    private static final String INJECTED_SCRIPT = "<script>injected()</script>";
+
+    @Test
+    public void testFilterTransformsResponseLargerThanAggregationBuffer() throws IOException {
+        // larger than the 2 MiB maximum buffer size of ResponseFilters
+        String body = Strings.repeat("abcdefghij", 300_000);
+        mockResponse("/large", body);
+
+        AtomicInteger filtersCreated = new AtomicInteger();
+        proxy.addLastHttpFilterFactory(new StreamingResponseFilterAdapter.FilterSource(() -> {
+            filtersCreated.incrementAndGet();
+            return new UpperCaseScriptInjectingFilter();
+        }));
+
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort());
+             CloseableHttpResponse response = client.execute(new HttpGet("http://127.0.0.1:" + mockServerPort + "/large"))) {
+            String responseBody = NewProxyServerTestUtil.toStringAndClose(response.getEntity().getContent());
+
+            assertEquals("Expected server to return a 200", 200, response.getStatusLine().getStatusCode());
+            assertEquals("Expected response body to be transformed chunk by chunk", body.toUpperCase() + INJECTED_SCRIPT, responseBody);
+            assertNull("Expected Content-Length of the filtered response to be removed", response.getFirstHeader("Content-Length"));
+        }
+
+        assertEquals("Expected a new filter to be created for the request", 1, filtersCreated.get());
+    }
+
+    @Test
+    public void testFilterCanDropChunks() throws IOException {
+        mockResponse("/drop", "content to drop");
+
+        proxy.addStreamingResponseFilter(new StreamingResponseFilter() {
+            @Override
+            public boolean filterResponseHeaders(HttpResponse response, HttpMessageInfo messageInfo) {
+                return true;
+            }
+
+            @Override
+            public HttpContent filterResponseContent(HttpResponse response, HttpContent content, HttpMessageInfo messageInfo) {
+                return null;
+            }
+        });
+
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort());
+             CloseableHttpResponse response = client.execute(new HttpGet("http://127.0.0.1:" + mockServerPort + "/drop"))) {
+            String responseBody = NewProxyServerTestUtil.toStringAndClose(response.getEntity().getContent());
+
+            assertEquals("Expected server to return a 200", 200, response.getStatusLine().getStatusCode());
+            assertEquals("Expected every chunk to be dropped", "", responseBody);
+        }
+    }
+
+    @Test
+    public void testHeaderOnlyFilterDoesNotModifyContent() throws IOException {
+        mockResponse("/headers", "unmodified content");
+
+        proxy.addStreamingResponseFilter(new StreamingResponseFilter() {
+            @Override
+            public boolean filterResponseHeaders(HttpResponse response, HttpMessageInfo messageInfo) {
+                response.headers().set("X-Streaming-Filter", messageInfo.getUrl());
+                return false;
+            }
+
+            @Override
+            public HttpContent filterResponseContent(HttpResponse response, HttpContent content, HttpMessageInfo messageInfo) {
+                throw new AssertionError("Content should not be filtered");
+            }
+        });
+
+        String url = "http://127.0.0.1:" + mockServerPort + "/headers";
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort());
+             CloseableHttpResponse response = client.execute(new HttpGet(url))) {
+            String responseBody = NewProxyServerTestUtil.toStringAndClose(response.getEntity().getContent());
+
+            assertEquals("Expected response body to be unmodified", "unmodified content", responseBody);
+            assertEquals("Expected header added by the filter", url, response.getFirstHeader("X-Streaming-Filter").getValue());
+            assertEquals("Expected Content-Length of the unfiltered response to be preserved", "18", response.getFirstHeader("Content-Length").getValue());
+        }
+    }
+
+    @Test
+    public void testFilterReceivesEntireContentWhenResponseIsAggregated() throws IOException {
+        mockResponse("/aggregated", "aggregated content");
+
+        // a ResponseFilter enables aggregation, so the streaming filter receives the FullHttpResponse
+        proxy.addResponseFilter((response, contents, messageInfo) -> { });
+        proxy.addStreamingResponseFilter(new UpperCaseScriptInjectingFilter());
+
+        try (CloseableHttpClient client = NewProxyServerTestUtil.getNewHttpClient(proxy.getPort());
+             CloseableHttpResponse response = client.execute(new HttpGet("http://127.0.0.1:" + mockServerPort + "/aggregated"))) {
+            String responseBody = NewProxyServerTestUtil.toStringAndClose(response.getEntity().getContent());
+
+            String expectedBody = "AGGREGATED CONTENT" + INJECTED_SCRIPT;
+            assertEquals("Expected aggregated response body to be transformed", expectedBody, responseBody);
+            assertEquals("Expected Content-Length to reflect the filtered content", Integer.toString(expectedBody.length()),
+                    response.getFirstHeader("Content-Length").getValue());
+        }
+    }
+
+    private void mockResponse(String path, String body) {
+        mockServer.when(request()
+                .withMethod("GET")
+                .withPath(path))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withBody(body));
+    }
+
+    /**
+     * Replaces each chunk with its upper-cased text and appends a script to the last chunk.
+     */
+    private static class UpperCaseScriptInjectingFilter implements StreamingResponseFilter {
+        @Override
+        public boolean filterResponseHeaders(HttpResponse response, HttpMessageInfo messageInfo) {
+            return true;
+        }
+
+        @Override
+        public HttpContent filterResponseContent(HttpResponse response, HttpContent content, HttpMessageInfo messageInfo) {
+            String text = content.content().toString(StandardCharsets.US_ASCII).toUpperCase();
+            if (content instanceof LastHttpContent) {
+                text += INJECTED_SCRIPT;
+            }
+
+            return content.replace(Unpooled.copiedBuffer(text, StandardCharsets.US_ASCII));
+        }
+    }
+}
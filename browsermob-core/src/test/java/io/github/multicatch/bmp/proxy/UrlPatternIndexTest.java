@@ -0,0 +1,112 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UrlPatternIndexTest {
+    @Test
+    public void testLiteralPrefixes() {
+        assertEquals("http://intranet", UrlPatternIndex.getLiteralPrefix("http://intranet.*"));
+        assertEquals("http://10.0.0.1:8080/", UrlPatternIndex.getLiteralPrefix("^http://10\\.0\\.0\\.1:8080/.*"));
+        assertEquals("http", UrlPatternIndex.getLiteralPrefix("https?://.*"));
+        assertEquals("http://a", UrlPatternIndex.getLiteralPrefix("http://a+b/.*"));
+
+        assertNull(UrlPatternIndex.getLiteralPrefix(".*/api/.*"));
+        assertNull(UrlPatternIndex.getLiteralPrefix("http://a.*|https://b.*"));
+        assertNull(UrlPatternIndex.getLiteralPrefix("(?i)http://a.*"));
+    }
+
+    @Test
+    public void testFindFirstMatchEvaluatesOnlyCandidates() {
+        List<Pattern> patterns = ImmutableList.of(
+                Pattern.compile("https?://host1\\.internal/.*"),
+                Pattern.compile("https?://[^/]*\\.corp\\.internal/.*"),
+                Pattern.compile("http://legacy.*"),
+                Pattern.compile(".*/health"));
+
+        UrlPatternIndex index = new UrlPatternIndex(patterns);
+
+        List<Integer> evaluated = new ArrayList<>();
+        int match = index.findFirstMatch("http://app.corp.internal/status", i -> {
+            evaluated.add(i);
+            return patterns.get(i).matcher("http://app.corp.internal/status").matches();
+        });
+
+        assertEquals(1, match);
+        assertEquals("Expected only the domain pattern to be evaluated", ImmutableList.of(1), evaluated);
+    }
+
+    @Test
+    public void testPrefixIndexedPatternsCheckRequiredLiteral() {
+        // the literal prefix "http" matches every URL, so the pattern is only skipped by its required literal
+        List<Pattern> patterns = ImmutableList.of(Pattern.compile("https?://.*\\.corp\\.com/.*"));
+
+        UrlPatternIndex index = new UrlPatternIndex(patterns);
+
+        List<Integer> evaluated = new ArrayList<>();
+        assertEquals(-1, index.findFirstMatch("http://www.example.com/", i -> {
+            evaluated.add(i);
+            return false;
+        }));
+        assertTrue("Expected pattern not to be evaluated for a URL without its required literal", evaluated.isEmpty());
+
+        assertEquals(0, index.findFirstMatch("https://app.corp.com/index.html",
+                i -> patterns.get(i).matcher("https://app.corp.com/index.html").matches()));
+    }
+
+    @Test
+    public void testWhitelistMatchesLinearScan() {
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            patterns.add("https?://service" + i + "\\.internal(:\\d+)?/.*");
+            patterns.add("https?://([^/]*\\.)?zone" + i + "\\.corp/.*");
+            patterns.add("http://10\\.0\\." + i + "\\.\\d+/.*");
+        }
+        patterns.add(".*/healthcheck");
+        patterns.add("(?i)https?://MIXEDCASE\\.corp/.*");
+
+        Whitelist whitelist = new Whitelist(patterns, 403);
+
+        for (int i = 0; i < 110; i++) {
+            String[] urls = {
+                    "http://service" + i + ".internal/api",
+                    "https://service" + i + ".internal:8443/api",
+                    "http://service" + i + ".internal.evil.com/api",
+                    "http://zone" + i + ".corp/",
+                    "http://a.b.zone" + i + ".corp/x",
+                    "http://zone" + i + ".corp:8080/x",
+                    "http://10.0." + i + ".7/",
+                    "http://10.0." + i + "7.7/",
+                    "http://example.com/healthcheck",
+                    "http://mixedcase.corp/" + i,
+                    "http://example.com/?next=http://service" + i + ".internal/",
+            };
+
+            for (String url : urls) {
+                assertEquals("Wrong whitelist result for " + url, matchesLinear(whitelist, url), whitelist.matches(url));
+            }
+        }
+
+        assertTrue(whitelist.matches("http://service5.internal/api"));
+        assertFalse(whitelist.matches("http://service5.internal.evil.com/api"));
+    }
+
+    private static boolean matchesLinear(Whitelist whitelist, String url) {
+        for (Pattern pattern : whitelist.getPatterns()) {
+            if (pattern.matcher(url).matches()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,128 @@
+package io.github.multicatch.bmp.proxy;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class UrlRewriterTest {
+    @Test
+    public void testRulesAreAppliedToRewrittenUrl() {
+        UrlRewriter urlRewriter = new UrlRewriter(ImmutableList.of(
+                new RewriteRule("http://www\\.example\\.com/(.*)", "http://www.example.org/$1"),
+                new RewriteRule("http://www\\.example\\.org/old/(.*)", "http://www.example.org/new/$1"),
+                new RewriteRule(".*\\?debug=true", "http://debug.example.org/")));
+
+        UrlRewriter.RewrittenUrl rewritten = urlRewriter.rewrite("http://www.example.com/old/page.html");
+        assertNotNull(rewritten);
+        assertEquals("http://www.example.org/new/page.html", rewritten.getUrl());
+        assertEquals("/new/page.html", rewritten.getPathAndParams());
+        assertEquals("www.example.com", rewritten.getOriginalHostAndPort());
+        assertEquals("www.example.org", rewritten.getHostAndPort());
+
+        // a rule is not applied again after a later rule rewrites the URL
+        UrlRewriter repeatingRewriter = new UrlRewriter(ImmutableList.of(
+                new RewriteRule("http://a/(.*)", "http://b/$1"),
+                new RewriteRule("http://b/(.*)", "http://a/$1")));
+        assertEquals("http://a/x", repeatingRewriter.rewrite("http://a/x").getUrl());
+
+        assertNull(urlRewriter.rewrite("https://www.example.net/"));
+    }
+
+    @Test
+    public void testResultsAreCached() {
+        UrlRewriter urlRewriter = new UrlRewriter(ImmutableList.of(new RewriteRule("http://www\\.example\\.com/(.*)", "http://localhost:8080/$1")));
+
+        UrlRewriter.RewrittenUrl rewritten = urlRewriter.rewrite("http://www.example.com/index.html");
+        assertSame(rewritten, urlRewriter.rewrite("http://www.example.com/index.html"));
+        assertEquals("localhost:8080", rewritten.getHostAndPort());
+
+        assertNull(urlRewriter.rewrite("http://www.example.net/index.html"));
+        assertNull(urlRewriter.rewrite("http://www.example.net/index.html"));
+    }
+
+    @Test
+    public void testUnparseableRewrittenUrl() {
+        UrlRewriter urlRewriter = new UrlRewriter(ImmutableList.of(new RewriteRule("http://www\\.example\\.com/(.*)", "http://www.example.com/ bad uri/$1")));
+
+        UrlRewriter.RewrittenUrl rewritten = urlRewriter.rewrite("http://www.example.com/index.html");
+        assertNotNull(rewritten);
+        assertNull(rewritten.getPathAndParams());
+        assertNull(rewritten.getHostAndPort());
+        assertEquals("www.example.com", rewritten.getOriginalHostAndPort());
+    }
+
+    @Test
+    public void testEmptyRewriter() {
+        assertTrue(UrlRewriter.EMPTY.isEmpty());
+        assertNull(UrlRewriter.EMPTY.rewrite("http://www.example.com/"));
+        assertTrue(new UrlRewriter(null).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeCacheSize() {
+        new UrlRewriter(ImmutableList.of(), -1);
+    }
+
+    @Test
+    public void testIndexedRewriterMatchesSequentialRewrite() {
+        List<RewriteRule> rules = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            rules.add(new RewriteRule("https?://host" + i + "\\.example\\.com/(.*)", "http://host" + (i * 7 % 50) + ".example.com/$1"));
+            rules.add(new RewriteRule("https?://[^/]*\\.domain" + i + "\\.net/(.*)", "http://host" + i + ".example.com/d/$1"));
+            rules.add(new RewriteRule("http://prefix" + i + "/(.*)", "http://www.domain" + (i * 3 % 50) + ".net/$1"));
+            rules.add(new RewriteRule(".*/path" + i + "/(.*)", "http://prefix" + (i * 11 % 50) + "/$1"));
+        }
+
+        UrlRewriter urlRewriter = new UrlRewriter(rules, 0);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            String url;
+            switch (random.nextInt(4)) {
+                case 0:
+                    url = "http://host" + random.nextInt(60) + ".example.com/path" + random.nextInt(60) + "/x";
+                    break;
+                case 1:
+                    url = "https://www.domain" + random.nextInt(60) + ".net/y";
+                    break;
+                case 2:
+                    url = "http://prefix" + random.nextInt(60) + "/path" + random.nextInt(60) + "/z";
+                    break;
+                default:
+                    url = "http://other.example.org/path" + random.nextInt(60) + "/w";
+                    break;
+            }
+
+            String expected = rewriteSequentially(rules, url);
+            UrlRewriter.RewrittenUrl rewritten = urlRewriter.rewrite(url);
+            assertEquals("Unexpected rewrite of " + url, expected, rewritten == null ? null : rewritten.getUrl());
+        }
+    }
+
+    /**
+     * Applies every rule in turn, as RewriteUrlFilter did before rewrite rules were compiled.
+     */
+    private static String rewriteSequentially(List<RewriteRule> rules, String url) {
+        String rewrittenUrl = url;
+        boolean rewroteUrl = false;
+        for (RewriteRule rule : rules) {
+            Matcher matcher = rule.getPattern().matcher(rewrittenUrl);
+            if (matcher.matches()) {
+                rewrittenUrl = matcher.replaceAll(rule.getReplace());
+                rewroteUrl = true;
+            }
+        }
+
+        return rewroteUrl ? rewrittenUrl : null;
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.multicatch.bmp.util;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Compares the cost of appending to a {@link ConcurrentAppendOnlyList} with a {@link CopyOnWriteArrayList} as the list grows.
+ * The average cost of an add to the append-only list should stay flat, while the copy-on-write list grows linearly.
+ */
+// ignored as a quick work-around to running these tests with unit tests
+@Ignore
+public class ConcurrentAppendOnlyListPerformanceTests {
+    private static final Logger log = LoggerFactory.getLogger(ConcurrentAppendOnlyListPerformanceTests.class);
+
+    private static final int WARM_UP_ITERATIONS = 5;
+
+    private static final int BATCHES = 10;
+
+    private static final int BATCH_SIZE = 5000;
+
+    @Test
+    public void testAppendOnlyListAddCost() {
+        measureAddCost("ConcurrentAppendOnlyList", ConcurrentAppendOnlyList::new);
+    }
+
+    @Test
+    public void testCopyOnWriteArrayListAddCost() {
+        measureAddCost("CopyOnWriteArrayList", CopyOnWriteArrayList::new);
+    }
+
+    private void measureAddCost(String name, Supplier<List<Object>> listFactory) {
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            fill(listFactory.get());
+        }
+
+        List<Object> list = listFactory.get();
+        Object element = new Object();
+
+        for (int batch = 0; batch < BATCHES; batch++) {
+            long start = System.nanoTime();
+
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                list.add(element);
+            }
+
+            long elapsed = System.nanoTime() - start;
+
+            log.info("{}: average add cost at size {}: {}ns", name, list.size(), elapsed / BATCH_SIZE);
+        }
+    }
+
+    private static void fill(List<Object> list) {
+        Object element = new Object();
+        for (int i = 0; i < BATCHES * BATCH_SIZE; i++) {
+            list.add(element);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.multicatch.bmp.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentAppendOnlyListTest {
+    @Test
+    public void testAddAndGetAcrossSegments() {
+        List<Integer> list = new ConcurrentAppendOnlyList<>();
+
+        for (int i = 0; i < 10000; i++) {
+            list.add(i);
+        }
+
+        assertEquals(10000, list.size());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, (int) list.get(i));
+        }
+
+        int expected = 0;
+        for (Integer element : list) {
+            assertEquals(expected++, (int) element);
+        }
+        assertEquals(10000, expected);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetBeyondSizeThrowsException() {
+        List<String> list = new ConcurrentAppendOnlyList<>();
+        list.add("first");
+
+        list.get(1);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullElementRejected() {
+        new ConcurrentAppendOnlyList<String>().add(null);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemoveUnsupported() {
+        List<String> list = new ConcurrentAppendOnlyList<>();
+        list.add("first");
+
+        list.remove(0);
+    }
+
+    @Test
+    public void testIteratorIsSnapshot() {
+        List<String> list = new ConcurrentAppendOnlyList<>();
+        list.add("first");
+        list.add("second");
+
+        Iterator<String> iterator = list.iterator();
+
+        list.add("third");
+
+        assertEquals("first", iterator.next());
+        assertEquals("second", iterator.next());
+        assertFalse("Expected iterator to ignore elements added after it was created", iterator.hasNext());
+
+        assertEquals(3, list.size());
+    }
+
+    @Test
+    public void testConcurrentAddsWhileIterating() throws Exception {
+        final int threads = 8;
+        final int elementsPerThread = 20000;
+
+        final List<Integer> list = new ConcurrentAppendOnlyList<>();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < elementsPerThread; i++) {
+                        list.add(thread * elementsPerThread + i);
+                    }
+                    return null;
+                }));
+            }
+
+            // iterate repeatedly while the writers are running; every visible element must be non-null
+            Future<?> reader = executor.submit(() -> {
+                start.await();
+                while (list.size() < threads * elementsPerThread) {
+                    int seen = 0;
+                    for (Integer element : list) {
+                        assertNotNull(element);
+                        seen++;
+                    }
+                    assertTrue(seen <= list.size());
+                }
+                return null;
+            });
+
+            start.countDown();
+
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+            reader.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * elementsPerThread, list.size());
+
+        List<Integer> sorted = new ArrayList<>(list);
+        Collections.sort(sorted);
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals("Expected every element to be added exactly once", i, (int) sorted.get(i));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.github.multicatch.bmp.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HttpMessageContentsTest {
+    private FullHttpResponse response;
+
+    @After
+    public void releaseResponse() {
+        if (response != null) {
+            response.release();
+        }
+    }
+
+    @Test
+    public void testSetTextContentsEncodesInMessageCharset() {
+        HttpMessageContents contents = createContents("text/html; charset=UTF-8", "original", StandardCharsets.UTF_8);
+
+        contents.setTextContents("zażółć gęślą jaźń");
+
+        assertEquals("zażółć gęślą jaźń", contents.getTextContents());
+        assertArrayEquals("zażółć gęślą jaźń".getBytes(StandardCharsets.UTF_8), contents.getBinaryContents());
+        assertEquals(String.valueOf("zażółć gęślą jaźń".getBytes(StandardCharsets.UTF_8).length), response.headers().get(HttpHeaderNames.CONTENT_LENGTH));
+    }
+
+    @Test
+    public void testSetTextContentsWithNonUtf8Charset() {
+        Charset utf16 = StandardCharsets.UTF_16BE;
+        HttpMessageContents contents = createContents("text/plain; charset=UTF-16BE", "a much longer original body", utf16);
+
+        contents.setTextContents("short €");
+
+        assertArrayEquals("short €".getBytes(utf16), contents.getBinaryContents());
+        assertEquals("short €", contents.getTextContents());
+        assertEquals(String.valueOf("short €".getBytes(utf16).length), response.headers().get(HttpHeaderNames.CONTENT_LENGTH));
+    }
+
+    @Test
+    public void testAppendTextContents() {
+        HttpMessageContents contents = createContents("text/html; charset=UTF-8", "<html>ü</html>", StandardCharsets.UTF_8);
+        assertEquals("<html>ü</html>", contents.getTextContents());
+
+        contents.appendTextContents("<script>ö</script>");
+
+        assertEquals("Expected cached contents to be invalidated", "<html>ü</html><script>ö</script>", contents.getTextContents());
+        assertEquals(String.valueOf("<html>ü</html><script>ö</script>".getBytes(StandardCharsets.UTF_8).length), response.headers().get(HttpHeaderNames.CONTENT_LENGTH));
+    }
+
+    @Test
+    public void testSetBinaryContentsFromBuffer() {
+        HttpMessageContents contents = createContents("application/octet-stream", "original", StandardCharsets.US_ASCII);
+
+        ByteBuf newContents = Unpooled.wrappedBuffer(new byte[]{0, 1, 2, 3, 4});
+        newContents.readByte();
+        try {
+            contents.setBinaryContents(newContents);
+
+            assertEquals("Expected buffer indexes to be unchanged", 1, newContents.readerIndex());
+        } finally {
+            newContents.release();
+        }
+
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, contents.getBinaryContents());
+        assertEquals("4", response.headers().get(HttpHeaderNames.CONTENT_LENGTH));
+    }
+
+    @Test
+    public void testCharSequenceViewOfLatin1Contents() {
+        HttpMessageContents contents = createContents("text/plain; charset=ISO-8859-1", "café crème", StandardCharsets.ISO_8859_1);
+
+        CharSequence view = contents.getTextContentsAsCharSequence();
+
+        assertEquals(10, view.length());
+        assertEquals('é', view.charAt(3));
+        assertEquals("crème", view.subSequence(5, 10).toString());
+        assertEquals("café crème", view.toString());
+        assertTrue("Expected view to support regular expressions", Pattern.compile("cr.me").matcher(view).find());
+    }
+
+    @Test
+    public void testCharSequenceViewOfUtf8Contents() {
+        HttpMessageContents contents = createContents("application/json; charset=utf-8", "{\"name\":\"Zoë\"}", StandardCharsets.UTF_8);
+
+        CharSequence view = contents.getTextContentsAsCharSequence();
+
+        assertEquals("{\"name\":\"Zoë\"}", view.toString());
+        assertEquals('ë', view.charAt(11));
+    }
+
+    @Test
+    public void testCharSequenceViewOfAsciiContentsWithDefaultCharset() {
+        // no charset in the Content-Type header, so the contents are UTF-8
+        HttpMessageContents contents = createContents("text/plain", "plain ascii text", StandardCharsets.UTF_8);
+
+        CharSequence view = contents.getTextContentsAsCharSequence();
+
+        assertEquals("plain ascii text", view.toString());
+        assertEquals("ascii", view.subSequence(6, 11).toString());
+    }
+
+    /**
+     * Creates contents for a response whose body is split across a composite buffer, as the proxy's aggregator creates.
+     */
+    private HttpMessageContents createContents(String contentType, String body, Charset charset) {
+        byte[] bytes = body.getBytes(charset);
+        int half = bytes.length / 2;
+
+        CompositeByteBuf content = ByteBufAllocator.DEFAULT.compositeBuffer();
+        content.addComponent(true, Unpooled.copiedBuffer(bytes, 0, half));
+        content.addComponent(true, Unpooled.copiedBuffer(bytes, half, bytes.length - half));
+
+        response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content);
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, bytes.length);
+
+        return new HttpMessageContents(response);
+    }
+}
@@ -12,52 +12,82 @@ import javax.script.Bindings;
 import javax.script.Compilable;
 import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Convenience class that executes arbitrary javascript code as a {@link RequestFilter} or {@link ResponseFilter}.
+ * <br>
+ * Script engines are not safe for concurrent use, so each thread that runs the filter uses its own script engine, shared by every
+ * javascript filter on that thread, and compiles its own copy of the filter's scripts the first time it runs them. Since the proxy's
+ * filters run on a fixed set of event loop threads, the scripts are only compiled once per event loop thread. The global scope the
+ * scripts run in is also created once per thread and reused. To keep each invocation from seeing the previous one's variables, a
+ * script runs inside a function scope of its own, so the variables and functions it declares are local to the invocation, and any
+ * other global variable it defines (for example, by assigning to an undeclared name) is removed after the script runs.
  */
 public class JavascriptRequestResponseFilter implements RequestFilter, ResponseFilter {
     private static final Logger log = LoggerFactory.getLogger(JavascriptRequestResponseFilter.class);
 
-    private static final ScriptEngine JAVASCRIPT_ENGINE = new ScriptEngineManager().getEngineByName("JavaScript");
+    private static final ScriptEngineFactory JAVASCRIPT_ENGINE_FACTORY = findJavascriptEngineFactory();
 
-    private CompiledScript compiledRequestFilterScript;
-    private CompiledScript compiledResponseFilterScript;
+    /**
+     * The javascript engine of each thread. Created lazily, the first time the thread compiles a script.
+     */
+    private static final ThreadLocal<ScriptEngine> JAVASCRIPT_ENGINE = ThreadLocal.withInitial(() -> JAVASCRIPT_ENGINE_FACTORY.getScriptEngine());
+
+    private volatile String requestFilterScript;
+    private volatile String responseFilterScript;
+
+    /**
+     * The scripts and bindings of this filter for each thread.
+     */
+    private final ThreadLocal<ThreadScripts> threadScripts = ThreadLocal.withInitial(ThreadScripts::new);
 
     public void setRequestFilterScript(String script) {
-        Compilable compilable = (Compilable) JAVASCRIPT_ENGINE;
-        try {
-            compiledRequestFilterScript = compilable.compile(script);
-        } catch (ScriptException e) {
-            throw new JavascriptCompilationException("Unable to compile javascript. Script in error:\n" + script, e);
-        }
+        ThreadScripts scripts = getThreadScripts(script);
+        scripts.requestFilterScript = compile(script);
+        scripts.requestFilterScriptSource = script;
+
+        requestFilterScript = script;
     }
 
     public void setResponseFilterScript(String script) {
-        Compilable compilable = (Compilable) JAVASCRIPT_ENGINE;
-        try {
-            compiledResponseFilterScript = compilable.compile(script);
-        } catch (ScriptException e) {
-            throw new JavascriptCompilationException("Unable to compile javascript. Script in error:\n" + script, e);
-        }
+        ThreadScripts scripts = getThreadScripts(script);
+        scripts.responseFilterScript = compile(script);
+        scripts.responseFilterScriptSource = script;
+
+        responseFilterScript = script;
     }
 
     @Override
     public HttpResponse filterRequest(HttpRequest request, HttpMessageContents contents, HttpMessageInfo messageInfo) {
-        if (compiledRequestFilterScript == null) {
+        String script = requestFilterScript;
+        if (script == null) {
             return null;
         }
 
-        Bindings bindings = JAVASCRIPT_ENGINE.createBindings();
+        // compare by identity, since the script only needs to be recompiled if it was replaced
+        ThreadScripts scripts = threadScripts.get();
+        if (scripts.requestFilterScriptSource != script) {
+            scripts.requestFilterScript = compileOnFilterThread(script);
+            scripts.requestFilterScriptSource = script;
+        }
+
+        if (scripts.requestFilterScript == null) {
+            return null;
+        }
+
+        Bindings bindings = scripts.bindings;
         bindings.put("request", request);
         bindings.put("contents", contents);
         bindings.put("messageInfo", messageInfo);
-        bindings.put("log", log);
 
         try {
-            Object retVal = compiledRequestFilterScript.eval(bindings);
+            Object retVal = scripts.requestFilterScript.eval(bindings);
             // avoid implicit javascript returns
             if (retVal instanceof HttpResponse) {
                 return (HttpResponse) retVal;
@@ -68,24 +98,176 @@ public class JavascriptRequestResponseFilter implements RequestFilter, ResponseF
             log.error("Could not invoke filterRequest using supplied javascript", e);
 
             return null;
+        } finally {
+            scripts.resetBindings();
         }
     }
 
     @Override
     public void filterResponse(HttpResponse response, HttpMessageContents contents, HttpMessageInfo messageInfo) {
-        if (compiledResponseFilterScript == null) {
+        String script = responseFilterScript;
+        if (script == null) {
             return;
         }
 
-        Bindings bindings = JAVASCRIPT_ENGINE.createBindings();
+        ThreadScripts scripts = threadScripts.get();
+        if (scripts.responseFilterScriptSource != script) {
+            scripts.responseFilterScript = compileOnFilterThread(script);
+            scripts.responseFilterScriptSource = script;
+        }
+
+        if (scripts.responseFilterScript == null) {
+            return;
+        }
+
+        Bindings bindings = scripts.bindings;
         bindings.put("response", response);
         bindings.put("contents", contents);
         bindings.put("messageInfo", messageInfo);
-        bindings.put("log", log);
         try {
-            compiledResponseFilterScript.eval(bindings);
+            scripts.responseFilterScript.eval(bindings);
         } catch (ScriptException e) {
             log.error("Could not invoke filterResponse using supplied javascript", e);
+        } finally {
+            scripts.resetBindings();
+        }
+    }
+
+    /**
+     * Returns the scripts of this filter for the current thread, or throws a {@link JavascriptCompilationException} if there is no javascript
+     * engine to compile the script with.
+     */
+    private ThreadScripts getThreadScripts(String script) {
+        if (JAVASCRIPT_ENGINE_FACTORY == null) {
+            throw new JavascriptCompilationException("Unable to compile javascript: no javascript engine is available on this platform. Script in error:\n" + script);
+        }
+
+        return threadScripts.get();
+    }
+
+    /**
+     * Returns the bindings this filter's scripts run with on the current thread.
+     */
+    Bindings getThreadBindings() {
+        return threadScripts.get().bindings;
+    }
+
+    /**
+     * Returns the current thread's javascript engine.
+     */
+    static ScriptEngine getScriptEngine() {
+        return JAVASCRIPT_ENGINE.get();
+    }
+
+    /**
+     * Compiles the script using the current thread's javascript engine, to run inside a function scope of its own.
+     */
+    private static CompiledScript compile(String script) {
+        Compilable compilable = (Compilable) getScriptEngine();
+        try {
+            // compile the script itself to report syntax errors now, rather than when the function scope evaluates it
+            compilable.compile(script);
+
+            return compilable.compile(toFunctionScope(script));
+        } catch (ScriptException e) {
+            throw new JavascriptCompilationException("Unable to compile javascript. Script in error:\n" + script, e);
+        }
+    }
+
+    /**
+     * Returns a script that evaluates the specified script in a new function scope, and evaluates to the script's completion value.
+     * Since the script is evaluated by a direct eval in the function, its declarations belong to the function rather than to the global
+     * scope. The engine compiles the evaluated source once and reuses it for later invocations.
+     */
+    static String toFunctionScope(String script) {
+        StringBuilder scopedScript = new StringBuilder(script.length() + 64);
+        scopedScript.append("(function() { return eval('");
+
+        for (int i = 0; i < script.length(); i++) {
+            char c = script.charAt(i);
+            if (c == '\\' || c == '\'' || c < 0x20 || c > 0x7e) {
+                scopedScript.append(String.format("\\u%04x", (int) c));
+            } else {
+                scopedScript.append(c);
+            }
+        }
+
+        scopedScript.append("'); }).call(this);");
+
+        return scopedScript.toString();
+    }
+
+    /**
+     * Compiles a script that was already compiled successfully on the thread that set it, for use on the current thread. Returns null if the
+     * script cannot be compiled, so the filter is skipped rather than failing the request.
+     */
+    private static CompiledScript compileOnFilterThread(String script) {
+        try {
+            return compile(script);
+        } catch (JavascriptCompilationException e) {
+            log.error("Could not compile supplied javascript on filter thread", e);
+
+            return null;
+        }
+    }
+
+    private static ScriptEngineFactory findJavascriptEngineFactory() {
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName("JavaScript");
+        if (engine == null) {
+            log.warn("No javascript engine is available on this platform. Javascript filters cannot be used.");
+
+            return null;
+        }
+
+        return engine.getFactory();
+    }
+
+    /**
+     * The compiled scripts and bindings of a filter, confined to a single thread. The source of each compiled script is kept so that
+     * the script is recompiled if it is replaced.
+     */
+    private static class ThreadScripts {
+        private Bindings bindings;
+
+        /**
+         * The names bound before any script has run. Every other name is removed after a script runs.
+         */
+        private Set<String> initialBindings;
+
+        private String requestFilterScriptSource;
+        private CompiledScript requestFilterScript;
+
+        private String responseFilterScriptSource;
+        private CompiledScript responseFilterScript;
+
+        ThreadScripts() {
+            createBindings();
+        }
+
+        private void createBindings() {
+            bindings = JAVASCRIPT_ENGINE.get().createBindings();
+            bindings.put("log", log);
+
+            initialBindings = new HashSet<>(bindings.keySet());
+        }
+
+        /**
+         * Removes the message variables and any global variables the script defined, so the bindings can be reused by the next invocation.
+         */
+        void resetBindings() {
+            for (String name : new ArrayList<>(bindings.keySet())) {
+                if (!initialBindings.contains(name)) {
+                    bindings.remove(name);
+                }
+            }
+
+            if (!initialBindings.containsAll(bindings.keySet())) {
+                // the engine would not remove some of the script's variables. scripts only declare variables in their own function
+                // scope, so this only happens if a script declares global variables explicitly, such as with an indirect eval.
+                log.debug("Javascript filter left global variables that could not be removed. Recreating the script bindings.");
+
+                createBindings();
+            }
         }
     }
 }
@@ -0,0 +1,77 @@
+package io.github.multicatch.bmp.proxy.bricks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.google.inject.TypeLiteral;
+import com.google.sitebricks.client.Transport;
+import io.github.multicatch.bmp.core.har.Har;
+import io.github.multicatch.bmp.core.har.HarStreamingWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A JSON transport that streams {@link Har} replies directly to the servlet output stream using a {@link HarStreamingWriter},
+ * instead of serializing the entire HAR in one pass. Entities other than a HAR are serialized normally.
+ */
+public class HarTransport implements Transport {
+    private final ObjectMapper objectMapper;
+
+    private final HarStreamingWriter harWriter;
+
+    @Inject
+    public HarTransport(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.harWriter = new HarStreamingWriter(objectMapper);
+    }
+
+    @Override
+    public <T> T in(InputStream in, Class<T> type) throws IOException {
+        return objectMapper.readValue(in, type);
+    }
+
+    @Override
+    public <T> T in(InputStream in, TypeLiteral<T> type) throws IOException {
+        return objectMapper.readValue(in, objectMapper.getTypeFactory().constructType(type.getType()));
+    }
+
+    @Override
+    public <T> void out(OutputStream out, Class<T> type, T data) throws IOException {
+        // a null entity is written by the HAR writer as well, so the gzip variant always produces a compressed body
+        if (data == null || data instanceof Har) {
+            writeHar((Har) data, out);
+        } else {
+            objectMapper.writeValue(out, data);
+        }
+    }
+
+    @Override
+    public String contentType() {
+        return "application/json";
+    }
+
+    protected void writeHar(Har har, OutputStream out) throws IOException {
+        harWriter.write(har, out);
+    }
+
+    protected HarStreamingWriter getHarWriter() {
+        return harWriter;
+    }
+
+    /**
+     * A {@link HarTransport} that gzip-compresses the HAR as it is written. Replies using this transport must set the
+     * <code>Content-Encoding: gzip</code> header.
+     */
+    public static class Gzip extends HarTransport {
+        @Inject
+        public Gzip(ObjectMapper objectMapper) {
+            super(objectMapper);
+        }
+
+        @Override
+        protected void writeHar(Har har, OutputStream out) throws IOException {
+            getHarWriter().writeGzipped(har, out);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package io.github.multicatch.bmp.proxy.bricks;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.google.sitebricks.At;
@@ -14,12 +15,19 @@ import com.google.sitebricks.http.Post;
 import com.google.sitebricks.http.Put;
 import io.github.multicatch.bmp.BrowserMobProxyServer;
 import io.github.multicatch.bmp.core.har.Har;
+import io.github.multicatch.bmp.core.har.HarCaptureLimits;
+import io.github.multicatch.bmp.core.har.HarEntry;
 import io.github.multicatch.bmp.exception.ProxyExistsException;
 import io.github.multicatch.bmp.exception.ProxyPortsExhaustedException;
 import io.github.multicatch.bmp.exception.UnsupportedCharsetException;
 import io.github.multicatch.bmp.filters.JavascriptRequestResponseFilter;
 import io.github.multicatch.bmp.proxy.BrowserMobProxyServerLegacyAdapter;
 import io.github.multicatch.bmp.proxy.CaptureType;
+import io.github.multicatch.bmp.proxy.FilterLatency;
+import io.github.multicatch.bmp.proxy.FilterRule;
+import io.github.multicatch.bmp.proxy.FilterRuleAction;
+import io.github.multicatch.bmp.proxy.HostBandwidthLimit;
+import io.github.multicatch.bmp.proxy.NetworkConditions;
 import io.github.multicatch.bmp.proxy.ProxyManager;
 import io.github.multicatch.bmp.util.BrowserMobHttpUtil;
 import org.slf4j.Logger;
@@ -32,10 +40,13 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.PatternSyntaxException;
 
 @At("/proxy")
 @Service
@@ -110,7 +121,7 @@ public class ProxyResource {
 
     @Get
     @At("/:port/har")
-    public Reply<?> getHar(@Named("port") int port) {
+    public Reply<?> getHar(@Named("port") int port, Request request) {
         BrowserMobProxyServerLegacyAdapter proxy = proxyManager.get(port);
         if (proxy == null) {
             return Reply.saying().notFound();
@@ -118,7 +129,31 @@ public class ProxyResource {
 
         Har har = proxy.getHar();
 
-        return Reply.with(har).as(Json.class);
+        return harReply(har, request);
+    }
+
+    @Get
+    @At("/:port/har/entries")
+    public Reply<?> getHarEntries(@Named("port") int port, Request request) {
+        BrowserMobProxyServerLegacyAdapter proxy = proxyManager.get(port);
+        if (proxy == null) {
+            return Reply.saying().notFound();
+        }
+
+        long since;
+        int limit;
+        try {
+            since = request.param("since") == null ? 0L : Long.parseLong(request.param("since"));
+            limit = request.param("limit") == null ? 0 : Integer.parseInt(request.param("limit"));
+        } catch (NumberFormatException e) {
+            return Reply.with("Invalid since or limit parameter: " + e.getMessage()).as(Text.class).status(400);
+        }
+
+        List<HarEntry> entries = proxy.getHarEntriesSince(since, limit);
+
+        long lastSequence = entries.isEmpty() ? since : entries.get(entries.size() - 1).getSequence();
+
+        return Reply.with(new HarEntriesDescriptor(lastSequence, entries)).as(Json.class);
     }
 
     @Put
@@ -129,9 +164,16 @@ public class ProxyResource {
             return Reply.saying().notFound();
         }
 
+        HarCaptureLimits limits;
+        try {
+            limits = parseHarCaptureLimits(request);
+        } catch (IllegalArgumentException e) {
+            return Reply.with(e.getMessage()).as(Text.class).status(400);
+        }
+
         String initialPageRef = request.param("initialPageRef");
         String initialPageTitle = request.param("initialPageTitle");
-        Har oldHar = proxy.newHar(initialPageRef, initialPageTitle);
+        Har oldHar = proxy.newHar(initialPageRef, initialPageTitle, limits);
 
         String captureHeaders = request.param("captureHeaders");
         String captureContent = request.param("captureContent");
@@ -147,7 +189,7 @@ public class ProxyResource {
         }
 
         if (oldHar != null) {
-            return Reply.with(oldHar).as(Json.class);
+            return harReply(oldHar, request);
         } else {
             return Reply.saying().noContent();
         }
@@ -312,6 +354,56 @@ public class ProxyResource {
         return Reply.saying().ok();
     }
 
+    @Get
+    @At("/:port/filter/rules")
+    public Reply<?> getFilterRules(@Named("port") int port, Request request) {
+        BrowserMobProxyServerLegacyAdapter proxy = proxyManager.get(port);
+        if (proxy == null) {
+            return Reply.saying().notFound();
+        }
+
+        List<FilterRuleDescriptor> rules = new ArrayList<>();
+        for (FilterRule rule : proxy.getFilterRules()) {
+            rules.add(new FilterRuleDescriptor(rule));
+        }
+
+        return Reply.with(rules).as(Json.class);
+    }
+
+    @Post
+    @At("/:port/filter/rules")
+    public Reply<?> addFilterRules(@Named("port") int port, Request request) {
+        BrowserMobProxyServerLegacyAdapter proxy = proxyManager.get(port);
+        if (proxy == null) {
+            return Reply.saying().notFound();
+        }
+
+        List<FilterRule> rules = new ArrayList<>();
+        try {
+            FilterRuleDescriptor[] descriptors = request.read(FilterRuleDescriptor[].class).as(Json.class);
+            for (FilterRuleDescriptor descriptor : descriptors) {
+                rules.add(descriptor.toFilterRule());
+            }
+        } catch (IllegalArgumentException e) {
+            return Reply.with(e.getMessage()).as(Text.class).status(400);
+        }
+
+        proxy.addFilterRules(rules);
+        return Reply.saying().ok();
+    }
+
+    @Delete
+    @At("/:port/filter/rules")
+    public Reply<?> clearFilterRules(@Named("port") int port, Request request) {
+        BrowserMobProxyServerLegacyAdapter proxy = proxyManager.get(port);
+        if (proxy == null) {
+            return Reply.saying().notFound();
+        }
+
+        proxy.clearFilterRules();
+        return Reply.saying().ok();
+    }
+
     @Put
     @At("/:port/timeout")
     public Reply<?> timeout(@Named("port") int port, Request request) {
@@ -450,6 +542,144 @@ public class ProxyResource {
         return Reply.saying().ok();
     }
 
+    @Get
+    @At("/:port/filters/stats")
+    public Reply<?> getFilterLatencyStats(@Named("port") int port, Request request) {
+        BrowserMobProxyServerLegacyAdapter proxy = proxyManager.get(port);
+        if (proxy == null) {
+            return Reply.saying().notFound();
+        }
+
+        return Reply.with(new FilterLatencyStatsDescriptor(proxy.isFilterLatencyStatsEnabled(), proxy.getFilterLatencyStats())).as(Json.class);
+    }
+
+    @Put
+    @At("/:port/filters/stats")
+    public Reply<?> setFilterLatencyStatsEnabled(@Named("port") int port, Request request) {
+        BrowserMobProxyServerLegacyAdapter proxy = proxyManager.get(port);
+        if (proxy == null) {
+            return Reply.saying().notFound();
+        }
+
+        proxy.setFilterLatencyStatsEnabled(Boolean.parseBoolean(request.param("enabled")));
+        return Reply.saying().ok();
+    }
+
+    @Delete
+    @At("/:port/filters/stats")
+    public Reply<?> resetFilterLatencyStats(@Named("port") int port, Request request) {
+        BrowserMobProxyServerLegacyAdapter proxy = proxyManager.get(port);
+        if (proxy == null) {
+            return Reply.saying().notFound();
+        }
+
+        proxy.resetFilterLatencyStats();
+        return Reply.saying().ok();
+    }
+
+    @Get
+    @At("/:port/network")
+    public Reply<?> getNetworkConditions(@Named("port") int port, Request request) {
+        BrowserMobProxyServerLegacyAdapter proxy = proxyManager.get(port);
+        if (proxy == null) {
+            return Reply.saying().notFound();
+        }
+
+        NetworkConditions networkConditions = proxy.getNetworkConditions();
+        if (networkConditions == null) {
+            return Reply.saying().noContent();
+        }
+
+        return Reply.with(new NetworkConditionsDescriptor(networkConditions)).as(Json.class);
+    }
+
+    @Put
+    @At("/:port/network")
+    public Reply<?> setNetworkConditions(@Named("port") int port, Request request) {
+        BrowserMobProxyServerLegacyAdapter proxy = proxyManager.get(port);
+        if (proxy == null) {
+            return Reply.saying().notFound();
+        }
+
+        NetworkConditions networkConditions;
+        String profile = request.param("profile");
+        if (profile != null) {
+            networkConditions = NetworkConditions.getPreset(profile);
+            if (networkConditions == null) {
+                return Reply.with("Unknown network conditions profile: " + profile + ". Available profiles: " + NetworkConditions.getPresets().keySet()).as(Text.class).status(400);
+            }
+        } else {
+            try {
+                networkConditions = request.read(NetworkConditionsDescriptor.class).as(Json.class).toNetworkConditions();
+            } catch (IllegalArgumentException e) {
+                return Reply.with(e.getMessage()).as(Text.class).status(400);
+            }
+        }
+
+        proxy.setNetworkConditions(networkConditions);
+        return Reply.saying().ok();
+    }
+
+    @Delete
+    @At("/:port/network")
+    public Reply<?> clearNetworkConditions(@Named("port") int port, Request request) {
+        BrowserMobProxyServerLegacyAdapter proxy = proxyManager.get(port);
+        if (proxy == null) {
+            return Reply.saying().notFound();
+        }
+
+        proxy.setNetworkConditions(null);
+        return Reply.saying().ok();
+    }
+
+    /**
+     * Creates a reply that streams the HAR to the client, gzip-compressing it if the client accepts gzip encoding.
+     */
+    private Reply<?> harReply(Har har, Request request) {
+        if (acceptsGzip(request)) {
+            return Reply.with(har).as(HarTransport.Gzip.class).headers(ImmutableMap.of("Content-Encoding", "gzip"));
+        } else {
+            return Reply.with(har).as(HarTransport.class);
+        }
+    }
+
+    private boolean acceptsGzip(Request request) {
+        String acceptEncoding = request.header("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String encoding : acceptEncoding.split(",")) {
+            // ignore any quality value, unless the client explicitly refuses gzip with q=0
+            String[] encodingAndParams = encoding.trim().split(";");
+            if (encodingAndParams[0].trim().equalsIgnoreCase("gzip")) {
+                return encodingAndParams.length < 2 || !encodingAndParams[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Reads the optional maxEntries and maxContentSize parameters, which limit the new HAR to the most recent entries, and the
+     * optional maxDecompressedContentSize parameter, which limits the decompressed size of each compressed response body.
+     *
+     * @throws IllegalArgumentException if any parameter is not a non-negative number
+     */
+    private HarCaptureLimits parseHarCaptureLimits(Request request) {
+        String maxEntries = request.param("maxEntries");
+        String maxContentSize = request.param("maxContentSize");
+        String maxDecompressedContentSize = request.param("maxDecompressedContentSize");
+
+        if (maxEntries == null && maxContentSize == null && maxDecompressedContentSize == null) {
+            return HarCaptureLimits.UNLIMITED;
+        }
+
+        return new HarCaptureLimits(maxEntries == null ? 0 : Integer.parseInt(maxEntries),
+                maxContentSize == null ? 0L : Long.parseLong(maxContentSize),
+                maxDecompressedContentSize == null ? 0L : Long.parseLong(maxDecompressedContentSize));
+    }
+
     private int parseResponseCode(String response) {
         int responseCode = 200;
         if (response != null) {
@@ -499,6 +729,38 @@ public class ProxyResource {
         }
     }
 
+    public static class HarEntriesDescriptor {
+        private long lastSequence;
+        private List<HarEntry> entries;
+
+        public HarEntriesDescriptor() {
+        }
+
+        public HarEntriesDescriptor(long lastSequence, List<HarEntry> entries) {
+            this.lastSequence = lastSequence;
+            this.entries = entries;
+        }
+
+        /**
+         * @return sequence number of the last entry in this response, to be used as the <code>since</code> parameter of the next request
+         */
+        public long getLastSequence() {
+            return lastSequence;
+        }
+
+        public void setLastSequence(long lastSequence) {
+            this.lastSequence = lastSequence;
+        }
+
+        public List<HarEntry> getEntries() {
+            return entries;
+        }
+
+        public void setEntries(List<HarEntry> entries) {
+            this.entries = entries;
+        }
+    }
+
     private String getEntityBodyFromRequest(Request request) throws IOException {
         String contentTypeHeader = request.header("Content-Type");
         Charset charset = null;
@@ -521,4 +783,409 @@ public class ProxyResource {
         return new String(entityBodyBytes.toByteArray(), charset);
     }
 
+
+    public static class FilterLatencyStatsDescriptor {
+        private boolean enabled;
+        private List<FilterLatency> filters;
+
+        public FilterLatencyStatsDescriptor() {
+        }
+
+        public FilterLatencyStatsDescriptor(boolean enabled, List<FilterLatency> filters) {
+            this.enabled = enabled;
+            this.filters = filters;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<FilterLatency> getFilters() {
+            return filters;
+        }
+
+        public void setFilters(List<FilterLatency> filters) {
+            this.filters = filters;
+        }
+    }
+
+    public static class NetworkConditionsDescriptor {
+        private String name;
+        private int latencyMs;
+        private int jitterMs;
+        private NetworkConditions.LatencyDistribution latencyDistribution;
+        private int connectionSetupDelayMs;
+        private double packetLossRate;
+        private long downstreamBytesPerSecond;
+        private long upstreamBytesPerSecond;
+        private List<HostBandwidthLimitDescriptor> hostBandwidthLimits;
+
+        public NetworkConditionsDescriptor() {
+        }
+
+        public NetworkConditionsDescriptor(NetworkConditions networkConditions) {
+            this.name = networkConditions.getName();
+            this.latencyMs = networkConditions.getLatencyMs();
+            this.jitterMs = networkConditions.getJitterMs();
+            this.latencyDistribution = networkConditions.getLatencyDistribution();
+            this.connectionSetupDelayMs = networkConditions.getConnectionSetupDelayMs();
+            this.packetLossRate = networkConditions.getPacketLossRate();
+            this.downstreamBytesPerSecond = networkConditions.getDownstreamBytesPerSecond();
+            this.upstreamBytesPerSecond = networkConditions.getUpstreamBytesPerSecond();
+
+            this.hostBandwidthLimits = new ArrayList<>();
+            for (HostBandwidthLimit hostBandwidthLimit : networkConditions.getHostBandwidthLimits()) {
+                hostBandwidthLimits.add(new HostBandwidthLimitDescriptor(hostBandwidthLimit));
+            }
+        }
+
+        /**
+         * @throws IllegalArgumentException if any of the values is invalid
+         */
+        public NetworkConditions toNetworkConditions() {
+            List<HostBandwidthLimit> limits = new ArrayList<>();
+            if (hostBandwidthLimits != null) {
+                for (HostBandwidthLimitDescriptor hostBandwidthLimit : hostBandwidthLimits) {
+                    limits.add(hostBandwidthLimit.toHostBandwidthLimit());
+                }
+            }
+
+            return new NetworkConditions(name, latencyMs, jitterMs, latencyDistribution, connectionSetupDelayMs, packetLossRate,
+                    downstreamBytesPerSecond, upstreamBytesPerSecond, limits);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getLatencyMs() {
+            return latencyMs;
+        }
+
+        public void setLatencyMs(int latencyMs) {
+            this.latencyMs = latencyMs;
+        }
+
+        public int getJitterMs() {
+            return jitterMs;
+        }
+
+        public void setJitterMs(int jitterMs) {
+            this.jitterMs = jitterMs;
+        }
+
+        public NetworkConditions.LatencyDistribution getLatencyDistribution() {
+            return latencyDistribution;
+        }
+
+        public void setLatencyDistribution(NetworkConditions.LatencyDistribution latencyDistribution) {
+            this.latencyDistribution = latencyDistribution;
+        }
+
+        public int getConnectionSetupDelayMs() {
+            return connectionSetupDelayMs;
+        }
+
+        public void setConnectionSetupDelayMs(int connectionSetupDelayMs) {
+            this.connectionSetupDelayMs = connectionSetupDelayMs;
+        }
+
+        public double getPacketLossRate() {
+            return packetLossRate;
+        }
+
+        public void setPacketLossRate(double packetLossRate) {
+            this.packetLossRate = packetLossRate;
+        }
+
+        public long getDownstreamBytesPerSecond() {
+            return downstreamBytesPerSecond;
+        }
+
+        public void setDownstreamBytesPerSecond(long downstreamBytesPerSecond) {
+            this.downstreamBytesPerSecond = downstreamBytesPerSecond;
+        }
+
+        public long getUpstreamBytesPerSecond() {
+            return upstreamBytesPerSecond;
+        }
+
+        public void setUpstreamBytesPerSecond(long upstreamBytesPerSecond) {
+            this.upstreamBytesPerSecond = upstreamBytesPerSecond;
+        }
+
+        public List<HostBandwidthLimitDescriptor> getHostBandwidthLimits() {
+            return hostBandwidthLimits;
+        }
+
+        public void setHostBandwidthLimits(List<HostBandwidthLimitDescriptor> hostBandwidthLimits) {
+            this.hostBandwidthLimits = hostBandwidthLimits;
+        }
+    }
+
+    public static class HostBandwidthLimitDescriptor {
+        private String hostPattern;
+        private long downstreamBytesPerSecond;
+        private long upstreamBytesPerSecond;
+
+        public HostBandwidthLimitDescriptor() {
+        }
+
+        public HostBandwidthLimitDescriptor(HostBandwidthLimit hostBandwidthLimit) {
+            this.hostPattern = hostBandwidthLimit.getHostPattern().pattern();
+            this.downstreamBytesPerSecond = hostBandwidthLimit.getDownstreamBytesPerSecond();
+            this.upstreamBytesPerSecond = hostBandwidthLimit.getUpstreamBytesPerSecond();
+        }
+
+        public HostBandwidthLimit toHostBandwidthLimit() {
+            return new HostBandwidthLimit(hostPattern, downstreamBytesPerSecond, upstreamBytesPerSecond);
+        }
+
+        public String getHostPattern() {
+            return hostPattern;
+        }
+
+        public void setHostPattern(String hostPattern) {
+            this.hostPattern = hostPattern;
+        }
+
+        public long getDownstreamBytesPerSecond() {
+            return downstreamBytesPerSecond;
+        }
+
+        public void setDownstreamBytesPerSecond(long downstreamBytesPerSecond) {
+            this.downstreamBytesPerSecond = downstreamBytesPerSecond;
+        }
+
+        public long getUpstreamBytesPerSecond() {
+            return upstreamBytesPerSecond;
+        }
+
+        public void setUpstreamBytesPerSecond(long upstreamBytesPerSecond) {
+            this.upstreamBytesPerSecond = upstreamBytesPerSecond;
+        }
+    }
+
+    public static class FilterRuleDescriptor {
+        private String method;
+        private String host;
+        private String path;
+        private String headerName;
+        private String headerValue;
+        private List<FilterRuleActionDescriptor> actions;
+
+        public FilterRuleDescriptor() {
+        }
+
+        public FilterRuleDescriptor(FilterRule rule) {
+            this.method = rule.getMethod();
+            this.host = rule.getHost();
+            this.path = rule.getPathPattern() == null ? null : rule.getPathPattern().pattern();
+            this.headerName = rule.getHeaderName();
+            this.headerValue = rule.getHeaderValuePattern() == null ? null : rule.getHeaderValuePattern().pattern();
+
+            this.actions = new ArrayList<>();
+            for (FilterRuleAction action : rule.getActions()) {
+                actions.add(new FilterRuleActionDescriptor(action));
+            }
+        }
+
+        /**
+         * @throws IllegalArgumentException if the rule or any of its actions is invalid
+         */
+        public FilterRule toFilterRule() {
+            List<FilterRuleAction> ruleActions = new ArrayList<>();
+            if (actions != null) {
+                for (FilterRuleActionDescriptor action : actions) {
+                    ruleActions.add(action.toFilterRuleAction());
+                }
+            }
+
+            try {
+                return new FilterRule(method, host, path, headerName, headerValue, ruleActions);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid regular expression in filter rule: " + e.getMessage(), e);
+            }
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public void setMethod(String method) {
+            this.method = method;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public String getHeaderName() {
+            return headerName;
+        }
+
+        public void setHeaderName(String headerName) {
+            this.headerName = headerName;
+        }
+
+        public String getHeaderValue() {
+            return headerValue;
+        }
+
+        public void setHeaderValue(String headerValue) {
+            this.headerValue = headerValue;
+        }
+
+        public List<FilterRuleActionDescriptor> getActions() {
+            return actions;
+        }
+
+        public void setActions(List<FilterRuleActionDescriptor> actions) {
+            this.actions = actions;
+        }
+    }
+
+    public static class FilterRuleActionDescriptor {
+        private FilterRuleAction.Type type;
+        private String name;
+        private String value;
+        private String pattern;
+        private String replacement;
+        private int status;
+        private String contentType;
+        private String body;
+
+        public FilterRuleActionDescriptor() {
+        }
+
+        public FilterRuleActionDescriptor(FilterRuleAction action) {
+            this.type = action.getType();
+            this.name = action.getName();
+            this.value = action.getValue();
+            if (action.getRewriteRule() != null) {
+                this.pattern = action.getRewriteRule().getPattern().pattern();
+                this.replacement = action.getRewriteRule().getReplace();
+            }
+            this.status = action.getStatusCode();
+            this.contentType = action.getContentType();
+            this.body = action.getBody();
+        }
+
+        /**
+         * @throws IllegalArgumentException if the action is invalid
+         */
+        public FilterRuleAction toFilterRuleAction() {
+            if (type == null) {
+                throw new IllegalArgumentException("Filter rule action must have a type. Available types: " + Arrays.toString(FilterRuleAction.Type.values()));
+            }
+
+            switch (type) {
+                case SET_REQUEST_HEADER:
+                    return FilterRuleAction.setRequestHeader(name, value);
+
+                case REMOVE_REQUEST_HEADER:
+                    return FilterRuleAction.removeRequestHeader(name);
+
+                case SET_RESPONSE_HEADER:
+                    return FilterRuleAction.setResponseHeader(name, value);
+
+                case REMOVE_RESPONSE_HEADER:
+                    return FilterRuleAction.removeResponseHeader(name);
+
+                case REWRITE_URL:
+                    try {
+                        return FilterRuleAction.rewriteUrl(pattern, replacement);
+                    } catch (PatternSyntaxException e) {
+                        throw new IllegalArgumentException("Invalid regular expression in rewrite action: " + e.getMessage(), e);
+                    }
+
+                default:
+                    return FilterRuleAction.respond(status, contentType, body);
+            }
+        }
+
+        public FilterRuleAction.Type getType() {
+            return type;
+        }
+
+        public void setType(FilterRuleAction.Type type) {
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+
+        public String getReplacement() {
+            return replacement;
+        }
+
+        public void setReplacement(String replacement) {
+            this.replacement = replacement;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public void setContentType(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public void setBody(String body) {
+            this.body = body;
+        }
+    }
 }
@@ -0,0 +1,107 @@
+package io.github.multicatch.bmp.filters;
+
+import io.github.multicatch.bmp.util.HttpMessageContents;
+import io.github.multicatch.bmp.util.HttpMessageInfo;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures the number of requests per second a {@link JavascriptRequestResponseFilter} running a trivial script, and a script declaring
+ * variables, can filter, on a single thread and on as many threads as the proxy has event loop threads by default.
+ */
+// ignored as a quick work-around to running these tests with unit tests
+@Ignore
+public class JavascriptFilterPerformanceTests {
+    private static final Logger log = LoggerFactory.getLogger(JavascriptFilterPerformanceTests.class);
+
+    private static final String SCRIPT = "request.headers().set('X-Filtered', 'true');";
+
+    /**
+     * A script that declares variables and functions, which run in a function scope of their own on every invocation.
+     */
+    private static final String VAR_SCRIPT = "var filtered = 'true'; function headerName() { return 'X-Filtered'; } "
+            + "request.headers().set(headerName(), filtered);";
+
+    private static final int WARM_UP_REQUESTS = 20000;
+
+    private static final int REQUESTS = 100000;
+
+    @Test
+    public void testJavascriptFilterThroughput() throws Exception {
+        JavascriptRequestResponseFilter filter = new JavascriptRequestResponseFilter();
+        filter.setRequestFilterScript(SCRIPT);
+
+        measure("1 thread", filter, 1);
+        measure(Runtime.getRuntime().availableProcessors() * 2 + " threads", filter, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    @Test
+    public void testJavascriptFilterDeclaringVariablesThroughput() throws Exception {
+        JavascriptRequestResponseFilter filter = new JavascriptRequestResponseFilter();
+        filter.setRequestFilterScript(VAR_SCRIPT);
+
+        measure("1 thread, declaring variables", filter, 1);
+        measure(Runtime.getRuntime().availableProcessors() * 2 + " threads, declaring variables", filter, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    private void measure(String name, JavascriptRequestResponseFilter filter, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // warm up every thread, so each thread's engine has compiled the script before the measurement starts
+            runOnAllThreads(executor, threads, filter, WARM_UP_REQUESTS / threads);
+
+            long start = System.nanoTime();
+            runOnAllThreads(executor, threads, filter, REQUESTS / threads);
+            long elapsed = System.nanoTime() - start;
+
+            int requests = (REQUESTS / threads) * threads;
+            log.info("{}: {} requests per second", name, (long) (requests / (elapsed / 1_000_000_000.0)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void runOnAllThreads(ExecutorService executor, int threads, JavascriptRequestResponseFilter filter, int requestsPerThread) throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            tasks.add(() -> {
+                for (int j = 0; j < requestsPerThread; j++) {
+                    filterRequest(filter);
+                }
+
+                return null;
+            });
+        }
+
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+            future.get();
+        }
+    }
+
+    private static void filterRequest(JavascriptRequestResponseFilter filter) {
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "http://www.example.com/",
+                Unpooled.copiedBuffer("request body", StandardCharsets.UTF_8));
+        try {
+            HttpMessageInfo messageInfo = new HttpMessageInfo(request, null, false, "http://www.example.com/", "http://www.example.com/");
+
+            filter.filterRequest(request, new HttpMessageContents(request), messageInfo);
+        } finally {
+            request.release();
+        }
+    }
+}
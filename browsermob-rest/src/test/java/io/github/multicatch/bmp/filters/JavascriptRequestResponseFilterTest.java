@@ -0,0 +1,139 @@
+package io.github.multicatch.bmp.filters;
+
+import io.github.multicatch.bmp.util.HttpMessageContents;
+import io.github.multicatch.bmp.util.HttpMessageInfo;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.script.Bindings;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeNotNull;
+
+public class JavascriptRequestResponseFilterTest {
+    @Before
+    public void requireJavascriptEngine() {
+        assumeNotNull("No javascript engine is available on this platform", new ScriptEngineManager().getEngineByName("JavaScript"));
+    }
+
+    @Test
+    public void testEachThreadUsesItsOwnEngine() throws Exception {
+        ScriptEngine engine = JavascriptRequestResponseFilter.getScriptEngine();
+        assertSame("Expected the engine to be reused on the same thread", engine, JavascriptRequestResponseFilter.getScriptEngine());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ScriptEngine otherThreadEngine = executor.submit(JavascriptRequestResponseFilter::getScriptEngine).get();
+            assertNotSame("Expected each thread to use its own engine", engine, otherThreadEngine);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReplacedScriptIsRecompiledOnEveryThread() throws Exception {
+        JavascriptRequestResponseFilter filter = new JavascriptRequestResponseFilter();
+        filter.setRequestFilterScript("request.headers().set('X-Script', 'first');");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals("first", filterRequest(filter));
+            assertEquals("first", executor.submit(() -> filterRequest(filter)).get());
+
+            filter.setRequestFilterScript("request.headers().set('X-Script', 'second');");
+
+            assertEquals("second", filterRequest(filter));
+            assertEquals("Expected the replaced script to be recompiled on the filter thread", "second", executor.submit(() -> filterRequest(filter)).get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGlobalVariablesDoNotPersistBetweenInvocations() {
+        JavascriptRequestResponseFilter filter = new JavascriptRequestResponseFilter();
+        filter.setRequestFilterScript("if (typeof body !== 'undefined') { request.headers().set('X-Script', 'stale'); } "
+                + "var body = contents.getTextContents();");
+
+        filterRequest(filter);
+        assertFalse("Expected global variables of the previous invocation to be removed", "stale".equals(filterRequest(filter)));
+    }
+
+    @Test
+    public void testBindingsAreReusedByScriptsDeclaringVariables() {
+        JavascriptRequestResponseFilter filter = new JavascriptRequestResponseFilter();
+        filter.setRequestFilterScript("var body = contents.getTextContents(); function header() { return 'declared'; } "
+                + "request.headers().set('X-Script', header());");
+
+        assertEquals("declared", filterRequest(filter));
+        Bindings bindings = filter.getThreadBindings();
+
+        assertEquals("declared", filterRequest(filter));
+        assertSame("Expected the bindings to be reused when the script declares variables", bindings, filter.getThreadBindings());
+        assertFalse("Expected declared variables not to be global", bindings.containsKey("body"));
+        assertFalse("Expected declared functions not to be global", bindings.containsKey("header"));
+    }
+
+    @Test
+    public void testCompletionValueIsReturnedAsResponse() {
+        JavascriptRequestResponseFilter filter = new JavascriptRequestResponseFilter();
+        filter.setRequestFilterScript("var HttpResponseStatus = Java.type('io.netty.handler.codec.http.HttpResponseStatus');\n"
+                + "var response = new (Java.type('io.netty.handler.codec.http.DefaultFullHttpResponse'))(request.protocolVersion(), HttpResponseStatus.FORBIDDEN);\n"
+                + "response");
+
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "http://www.example.com/");
+        try {
+            HttpMessageInfo messageInfo = new HttpMessageInfo(request, null, false, "http://www.example.com/", "http://www.example.com/");
+
+            HttpResponse response = filter.filterRequest(request, new HttpMessageContents(request), messageInfo);
+
+            assertNotNull("Expected the script's completion value to be returned", response);
+            assertEquals(HttpResponseStatus.FORBIDDEN, response.status());
+        } finally {
+            request.release();
+        }
+    }
+
+    @Test
+    public void testScriptsWithQuotesAndLineBreaksRunUnchanged() {
+        JavascriptRequestResponseFilter filter = new JavascriptRequestResponseFilter();
+        filter.setRequestFilterScript("var text = 'it\\'s \"q\"\\\\';\r\n"
+                + "// a comment ending the line\n"
+                + "request.headers().set('X-Script', text + '\u00e9'.length);");
+
+        assertEquals("it's \"q\"\\1", filterRequest(filter));
+    }
+
+    /**
+     * Runs the filter on a new request and returns the value of the X-Script header it set.
+     */
+    private static String filterRequest(JavascriptRequestResponseFilter filter) {
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "http://www.example.com/",
+                Unpooled.copiedBuffer("request body", StandardCharsets.UTF_8));
+        try {
+            HttpMessageInfo messageInfo = new HttpMessageInfo(request, null, false, "http://www.example.com/", "http://www.example.com/");
+
+            filter.filterRequest(request, new HttpMessageContents(request), messageInfo);
+
+            return request.headers().get("X-Script");
+        } finally {
+            request.release();
+        }
+    }
+}